@@ -11,11 +11,16 @@
 package cuchaz.enigma;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.util.jar.JarFile;
 
 import cuchaz.enigma.Deobfuscator.ProgressListener;
+import cuchaz.enigma.analysis.JarIndexCache;
 import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsBinaryReader;
+import cuchaz.enigma.mapping.MappingsBinaryWriter;
 import cuchaz.enigma.mapping.MappingsReader;
 
 public class CommandMain {
@@ -23,7 +28,7 @@ public class CommandMain {
 	public static class ConsoleProgressListener implements ProgressListener {
 		
 		private static final int ReportTime = 5000; // 5s
-
+		
 		private int m_totalWork;
 		private long m_startTime;
 		private long m_lastReportTime;
@@ -35,7 +40,7 @@ public class CommandMain {
 			m_lastReportTime = m_startTime;
 			System.out.println(title);
 		}
-
+		
 		@Override
 		public void onProgress(int numDone, String message) {
 			
@@ -70,6 +75,8 @@ public class CommandMain {
 				protectify(args);
 			} else if (command.equalsIgnoreCase("publify")) {
 				publify(args);
+			} else if (command.equalsIgnoreCase("compileMappings")) {
+				compileMappings(args);
 			} else {
 				throw new IllegalArgumentException("Command not recognized: " + command);
 			}
@@ -78,7 +85,7 @@ public class CommandMain {
 			printHelp();
 		}
 	}
-
+	
 	private static void printHelp() {
 		System.out.println(String.format("%s - %s", Constants.Name, Constants.Version));
 		System.out.println("Usage:");
@@ -87,6 +94,7 @@ public class CommandMain {
 		System.out.println("\t\tdeobfuscate <in jar> <out jar> [<mappings file>]");
 		System.out.println("\t\tdecompile <in jar> <out folder> [<mappings file>]");
 		System.out.println("\t\tprotectify <in jar> <out jar>");
+		System.out.println("\t\tcompileMappings <in mappings file> <out binary mappings file>");
 	}
 	
 	private static void decompile(String[] args)
@@ -97,7 +105,7 @@ public class CommandMain {
 		Deobfuscator deobfuscator = getDeobfuscator(fileMappings, new JarFile(fileJarIn));
 		deobfuscator.writeSources(fileJarOut, new ConsoleProgressListener());
 	}
-
+	
 	private static void deobfuscate(String[] args)
 	throws Exception {
 		File fileJarIn = getReadableFile(getArg(args, 1, "in jar", true));
@@ -123,13 +131,34 @@ public class CommandMain {
 		deobfuscator.publifyJar(fileJarOut, new ConsoleProgressListener());
 	}
 	
+	private static void compileMappings(String[] args)
+	throws Exception {
+		File fileMappingsIn = getReadableFile(getArg(args, 1, "in mappings file", true));
+		File fileMappingsOut = getWritableFile(getArg(args, 2, "out binary mappings file", true));
+		System.out.println("Reading mappings...");
+		Mappings mappings = new MappingsReader().read(new FileReader(fileMappingsIn), true);
+		System.out.println("Writing binary mappings...");
+		try (FileOutputStream out = new FileOutputStream(fileMappingsOut)) {
+			new MappingsBinaryWriter().write(out, mappings);
+		}
+	}
+	
 	private static Deobfuscator getDeobfuscator(File fileMappings, JarFile jar)
 	throws Exception {
 		System.out.println("Reading jar...");
-		Deobfuscator deobfuscator = new Deobfuscator(jar);
+		Deobfuscator deobfuscator = new Deobfuscator(jar, JarIndexCache.getDefault());
 		if (fileMappings != null) {
 			System.out.println("Reading mappings...");
-			Mappings mappings = new MappingsReader().read(new FileReader(fileMappings));
+			Mappings mappings;
+			if (fileMappings.isDirectory()) {
+				mappings = new MappingsReader().readDirectory(fileMappings);
+			} else if (MappingsBinaryReader.isBinary(fileMappings)) {
+				try (FileInputStream in = new FileInputStream(fileMappings)) {
+					mappings = new MappingsBinaryReader().read(in);
+				}
+			} else {
+				mappings = new MappingsReader().read(new FileReader(fileMappings), true);
+			}
 			deobfuscator.setMappings(mappings);
 		}
 		return deobfuscator;
@@ -145,7 +174,7 @@ public class CommandMain {
 		}
 		return args[i];
 	}
-
+	
 	private static File getWritableFile(String path) {
 		if (path == null) {
 			return null;
@@ -161,7 +190,7 @@ public class CommandMain {
 		}
 		return file;
 	}
-
+	
 	private static File getWritableFolder(String path) {
 		if (path == null) {
 			return null;
@@ -17,7 +17,6 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
@@ -25,8 +24,8 @@ import java.util.jar.JarOutputStream;
 import javassist.CtClass;
 import javassist.bytecode.Descriptor;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.strobel.assembler.metadata.MetadataSystem;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.assembler.metadata.TypeReference;
@@ -39,11 +38,13 @@ import com.strobel.decompiler.languages.java.ast.CompilationUnit;
 import com.strobel.decompiler.languages.java.ast.InsertParenthesesVisitor;
 
 import cuchaz.enigma.analysis.EntryReference;
-import cuchaz.enigma.analysis.JarClassIterator;
+import cuchaz.enigma.analysis.JarClassRepository;
 import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.analysis.JarIndexCache;
 import cuchaz.enigma.analysis.SourceIndex;
 import cuchaz.enigma.analysis.SourceIndexVisitor;
 import cuchaz.enigma.analysis.Token;
+import cuchaz.enigma.analysis.TranslationIndex;
 import cuchaz.enigma.bytecode.ClassProtectifier;
 import cuchaz.enigma.bytecode.ClassPublifier;
 import cuchaz.enigma.mapping.ArgumentEntry;
@@ -55,11 +56,14 @@ import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.FieldEntry;
 import cuchaz.enigma.mapping.FieldMapping;
 import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsChange;
 import cuchaz.enigma.mapping.MappingsChecker;
+import cuchaz.enigma.mapping.MappingsDiff;
 import cuchaz.enigma.mapping.MappingsRenamer;
 import cuchaz.enigma.mapping.MethodEntry;
 import cuchaz.enigma.mapping.MethodMapping;
 import cuchaz.enigma.mapping.TranslationDirection;
+import cuchaz.enigma.mapping.TranslationTable;
 import cuchaz.enigma.mapping.Translator;
 
 public class Deobfuscator {
@@ -70,30 +74,78 @@ public class Deobfuscator {
 	}
 	
 	private JarFile m_jar;
-	private DecompilerSettings m_settings;
+	private JarClassRepository m_classes;
 	private JarIndex m_jarIndex;
 	private Mappings m_mappings;
 	private MappingsRenamer m_renamer;
 	private Map<TranslationDirection,Translator> m_translatorCache;
+	private List<MappingsRenamer.ChangeListener> m_changeListeners;
+	
+	// decompiling and exporting can happen on other threads while the mappings change, so they read snapshots
+	// every edit publishes a new snapshot, and readers pick it up on their next read
+	private volatile Snapshot m_snapshot;
+	
+	private static class Snapshot {
+		
+		private Mappings m_mappings;
+		private TranslationIndex m_index;
+		private Translator m_deobfuscatingTranslator;
+		private volatile Translator m_obfuscatingTranslator;
+		
+		public Snapshot(Mappings mappings, TranslationIndex index) {
+			m_mappings = mappings;
+			m_index = index;
+			m_deobfuscatingTranslator = mappings.getTranslator(TranslationDirection.Deobfuscating, index);
+			m_obfuscatingTranslator = null;
+		}
+		
+		public Mappings getMappings() {
+			return m_mappings;
+		}
+		
+		public Translator getTranslator(TranslationDirection direction) {
+			switch (direction) {
+				case Deobfuscating:
+					return m_deobfuscatingTranslator;
+				case Obfuscating:
+					// this one translates the index (or at least the parts that changed since the last snapshot), so don't build it until someone asks
+					Translator translator = m_obfuscatingTranslator;
+					if (translator == null) {
+						synchronized (this) {
+							translator = m_obfuscatingTranslator;
+							if (translator == null) {
+								translator = m_mappings.getTranslator(direction, m_index);
+								m_obfuscatingTranslator = translator;
+							}
+						}
+					}
+					return translator;
+				default:
+					throw new Error("Invalid translation direction!");
+			}
+		}
+	}
 	
 	public Deobfuscator(JarFile jar) throws IOException {
+		// no cache unless someone asks for one, so nothing gets written to the user's home by surprise
+		this(jar, null);
+	}
+	
+	public Deobfuscator(JarFile jar, JarIndexCache indexCache) throws IOException {
 		m_jar = jar;
+		m_classes = new JarClassRepository(jar);
 		
-		// build the jar index
-		m_jarIndex = new JarIndex();
-		m_jarIndex.indexJar(m_jar, true);
-		
-		// config the decompiler
-		m_settings = DecompilerSettings.javaDefaults();
-		m_settings.setMergeVariables(true);
-		m_settings.setForceExplicitImports(true);
-		m_settings.setForceExplicitTypeArguments(true);
-		m_settings.setShowDebugLineNumbers(true);
-		// DEBUG
-		//m_settings.setShowSyntheticMembers(true);
+		// build the jar index, or read it from the cache if we've seen this jar before
+		if (indexCache != null) {
+			m_jarIndex = indexCache.getJarIndex(m_classes, true, true);
+		} else {
+			m_jarIndex = new JarIndex();
+			m_jarIndex.indexJar(m_classes, true, true);
+		}
 		
 		// init defaults
 		m_translatorCache = Maps.newTreeMap();
+		m_changeListeners = Lists.newArrayList();
 		
 		// init mappings
 		setMappings(new Mappings());
@@ -107,6 +159,16 @@ public class Deobfuscator {
 		return m_jar.getName();
 	}
 	
+	public JarClassRepository getClasses() {
+		return m_classes;
+	}
+	
+	public void close() throws IOException {
+		// let go of the jar, so it can be replaced while we're still running
+		m_classes.close();
+		m_jar.close();
+	}
+	
 	public JarIndex getJarIndex() {
 		return m_jarIndex;
 	}
@@ -149,7 +211,17 @@ public class Deobfuscator {
 		
 		m_mappings = val;
 		m_renamer = new MappingsRenamer(m_jarIndex, val);
+		m_renamer.addListener(new MappingsRenamer.ChangeListener() {
+			@Override
+			public void onChange(MappingsChange change) {
+				clearTranslatorCaches(change);
+				for (MappingsRenamer.ChangeListener listener : m_changeListeners) {
+					listener.onChange(change);
+				}
+			}
+		});
 		m_translatorCache.clear();
+		publishSnapshot();
 	}
 	
 	public Translator getTranslator(TranslationDirection direction) {
@@ -161,15 +233,38 @@ public class Deobfuscator {
 		return translator;
 	}
 	
+	public void addChangeListener(MappingsRenamer.ChangeListener listener) {
+		// hears about every edit made through rename(), removeMapping(), and markAsDeobfuscated()
+		m_changeListeners.add(listener);
+	}
+	
+	public void removeChangeListener(MappingsRenamer.ChangeListener listener) {
+		m_changeListeners.remove(listener);
+	}
+	
+	public Translator getTranslatorSnapshot(TranslationDirection direction) {
+		// unlike getTranslator(), this one is safe to use on other threads, but doesn't see later edits
+		return m_snapshot.getTranslator(direction);
+	}
+	
+	private void publishSnapshot() {
+		Mappings mappings = m_mappings.getSnapshot();
+		Snapshot snapshot = m_snapshot;
+		if (snapshot == null || snapshot.getMappings() != mappings) {
+			m_snapshot = new Snapshot(mappings, m_jarIndex.getTranslationIndex());
+		}
+	}
+	
 	public void getSeparatedClasses(List<ClassEntry> obfClasses, List<ClassEntry> deobfClasses) {
-		for (ClassEntry obfClassEntry : m_jarIndex.getObfClassEntries()) {
-			// skip inner classes
-			if (obfClassEntry.isInnerClass()) {
-				continue;
-			}
+		
+		// deobfuscate all the outer classes in one go
+		List<ClassEntry> obfClassEntries = getOuterObfClassEntries();
+		TranslationTable deobfTable = getTranslator(TranslationDirection.Deobfuscating).translateAll(obfClassEntries);
+		
+		for (ClassEntry obfClassEntry : obfClassEntries) {
 			
 			// separate the classes
-			ClassEntry deobfClassEntry = deobfuscateEntry(obfClassEntry);
+			ClassEntry deobfClassEntry = deobfTable.translateEntry(obfClassEntry);
 			if (!deobfClassEntry.equals(obfClassEntry)) {
 				// if the class has a mapping, clearly it's deobfuscated
 				deobfClasses.add(deobfClassEntry);
@@ -184,6 +279,10 @@ public class Deobfuscator {
 	}
 	
 	public CompilationUnit getSourceTree(String className) {
+		return getSourceTree(className, m_snapshot);
+	}
+	
+	private CompilationUnit getSourceTree(String className, Snapshot snapshot) {
 		
 		// we don't know if this class name is obfuscated or deobfuscated
 		// we need to tell the decompiler the deobfuscated name so it doesn't get freaked out
@@ -193,20 +292,23 @@ public class Deobfuscator {
 		String deobfClassName = className;
 		
 		// if it wasn't actually deobf, then we can find a mapping for it and get the deobf name
-		ClassMapping classMapping = m_mappings.getClassByObf(className);
+		ClassMapping classMapping = snapshot.getMappings().getClassByObf(className);
 		if (classMapping != null && classMapping.getDeobfName() != null) {
 			deobfClassName = classMapping.getDeobfName();
 		}
 		
 		// set the type loader
 		TranslatingTypeLoader loader = new TranslatingTypeLoader(
-			m_jar,
+			m_classes,
 			m_jarIndex,
-			getTranslator(TranslationDirection.Obfuscating),
-			getTranslator(TranslationDirection.Deobfuscating)
-		); 
-		m_settings.setTypeLoader(loader);
-
+			snapshot.getTranslator(TranslationDirection.Obfuscating),
+			snapshot.getTranslator(TranslationDirection.Deobfuscating)
+		);
+		
+		// each decompile gets its own settings, so threads decompiling with other snapshots can't swap the type loader out from under us
+		DecompilerSettings settings = newDecompilerSettings();
+		settings.setTypeLoader(loader);
+		
 		// see if procyon can find the type
 		TypeReference type = new MetadataSystem(loader).lookupType(deobfClassName);
 		if (type == null) {
@@ -219,7 +321,7 @@ public class Deobfuscator {
 		// decompile it!
 		DecompilerContext context = new DecompilerContext();
 		context.setCurrentType(resolvedType);
-		context.setSettings(m_settings);
+		context.setSettings(settings);
 		AstBuilder builder = new AstBuilder(context);
 		builder.addType(resolvedType);
 		builder.runTransformations(null);
@@ -240,32 +342,52 @@ public class Deobfuscator {
 			index = new SourceIndex(source);
 		}
 		sourceTree.acceptVisitor(new SourceIndexVisitor(), index);
+		Snapshot snapshot = m_snapshot;
 		
 		// DEBUG
 		// sourceTree.acceptVisitor( new TreeDumpVisitor( new File( "tree.txt" ) ), null );
 		
+		// obfuscate all the referenced entries in one go, lots of tokens refer to the same entries
+		List<Token> tokens = Lists.newArrayList(index.referenceTokens());
+		List<Entry> deobfEntries = Lists.newArrayList();
+		for (Token token : tokens) {
+			Entry deobfEntry = index.getDeobfReference(token).entry;
+			if (deobfEntry != null) {
+				deobfEntries.add(deobfEntry);
+			}
+		}
+		TranslationTable obfTable = snapshot.getTranslator(TranslationDirection.Obfuscating).translateAll(deobfEntries);
+		
 		// resolve all the classes in the source references
-		for (Token token : index.referenceTokens()) {
+		Map<Token,Entry> resolvedObfEntries = Maps.newLinkedHashMap();
+		for (Token token : tokens) {
 			EntryReference<Entry,Entry> deobfReference = index.getDeobfReference(token);
+			if (deobfReference.entry == null) {
+				continue;
+			}
 			
 			// get the obfuscated entry
-			Entry obfEntry = obfuscateEntry(deobfReference.entry);
+			Entry obfEntry = obfTable.translateEntry(deobfReference.entry);
 			
 			// try to resolve the class
 			ClassEntry resolvedObfClassEntry = m_jarIndex.getTranslationIndex().resolveEntryClass(obfEntry);
 			if (resolvedObfClassEntry != null && !resolvedObfClassEntry.equals(obfEntry.getClassEntry())) {
 				// change the class of the entry
-				obfEntry = obfEntry.cloneToNewClass(resolvedObfClassEntry);
-				
-				// save the new deobfuscated reference
-				deobfReference.entry = deobfuscateEntry(obfEntry);
-				index.replaceDeobfReference(token, deobfReference);
+				resolvedObfEntries.put(token, obfEntry.cloneToNewClass(resolvedObfClassEntry));
 			}
 			
 			// DEBUG
 			// System.out.println( token + " -> " + reference + " -> " + index.getReferenceToken( reference ) );
 		}
 		
+		// then deobfuscate the resolved entries in one go too, and save the new deobfuscated references
+		TranslationTable deobfTable = snapshot.getTranslator(TranslationDirection.Deobfuscating).translateAll(resolvedObfEntries.values());
+		for (Map.Entry<Token,Entry> entry : resolvedObfEntries.entrySet()) {
+			EntryReference<Entry,Entry> deobfReference = index.getDeobfReference(entry.getKey());
+			deobfReference.entry = deobfTable.translateEntry(entry.getValue());
+			index.replaceDeobfReference(entry.getKey(), deobfReference);
+		}
+		
 		return index;
 	}
 	
@@ -273,13 +395,23 @@ public class Deobfuscator {
 		// render the AST into source
 		StringWriter buf = new StringWriter();
 		sourceTree.acceptVisitor(new InsertParenthesesVisitor(), null);
-		sourceTree.acceptVisitor(new JavaOutputVisitor(new PlainTextOutput(buf), m_settings), null);
+		sourceTree.acceptVisitor(new JavaOutputVisitor(new PlainTextOutput(buf), newDecompilerSettings()), null);
 		return buf.toString();
 	}
 	
-	public void writeSources(File dirOut, ProgressListener progress) throws IOException {
-		// get the classes to decompile
-		Set<ClassEntry> classEntries = Sets.newHashSet();
+	private DecompilerSettings newDecompilerSettings() {
+		DecompilerSettings settings = DecompilerSettings.javaDefaults();
+		settings.setMergeVariables(true);
+		settings.setForceExplicitImports(true);
+		settings.setForceExplicitTypeArguments(true);
+		settings.setShowDebugLineNumbers(true);
+		// DEBUG
+		//settings.setShowSyntheticMembers(true);
+		return settings;
+	}
+	
+	private List<ClassEntry> getOuterObfClassEntries() {
+		List<ClassEntry> classEntries = Lists.newArrayList();
 		for (ClassEntry obfClassEntry : m_jarIndex.getObfClassEntries()) {
 			// skip inner classes
 			if (obfClassEntry.isInnerClass()) {
@@ -288,6 +420,15 @@ public class Deobfuscator {
 			
 			classEntries.add(obfClassEntry);
 		}
+		return classEntries;
+	}
+	
+	public void writeSources(File dirOut, ProgressListener progress) throws IOException {
+		// get the classes to decompile, and their deobfuscated names
+		// use the same snapshot for every class, so edits during the export don't leave it half renamed
+		Snapshot snapshot = m_snapshot;
+		List<ClassEntry> classEntries = getOuterObfClassEntries();
+		TranslationTable deobfTable = snapshot.getTranslator(TranslationDirection.Deobfuscating).translateAll(classEntries);
 		
 		if (progress != null) {
 			progress.init(classEntries.size(), "Decompiling classes...");
@@ -296,14 +437,14 @@ public class Deobfuscator {
 		// DEOBFUSCATE ALL THE THINGS!! @_@
 		int i = 0;
 		for (ClassEntry obfClassEntry : classEntries) {
-			ClassEntry deobfClassEntry = deobfuscateEntry(new ClassEntry(obfClassEntry));
+			ClassEntry deobfClassEntry = deobfTable.translateEntry(obfClassEntry);
 			if (progress != null) {
 				progress.onProgress(i++, deobfClassEntry.toString());
 			}
 			
 			try {
 				// get the source
-				String source = getSource(getSourceTree(obfClassEntry.getName()));
+				String source = getSource(getSourceTree(obfClassEntry.getName(), snapshot));
 				
 				// write the file
 				File file = new File(dirOut, deobfClassEntry.getName().replace('.', '/') + ".java");
@@ -324,14 +465,15 @@ public class Deobfuscator {
 	}
 	
 	public void writeJar(File out, ProgressListener progress) {
+		Snapshot snapshot = m_snapshot;
 		final TranslatingTypeLoader loader = new TranslatingTypeLoader(
-			m_jar,
+			m_classes,
 			m_jarIndex,
-			getTranslator(TranslationDirection.Obfuscating),
-			getTranslator(TranslationDirection.Deobfuscating)
+			snapshot.getTranslator(TranslationDirection.Obfuscating),
+			snapshot.getTranslator(TranslationDirection.Deobfuscating)
 		);
 		transformJar(out, progress, new ClassTransformer() {
-
+			
 			@Override
 			public CtClass transform(CtClass c) throws Exception {
 				return loader.transformClass(c);
@@ -341,7 +483,7 @@ public class Deobfuscator {
 	
 	public void protectifyJar(File out, ProgressListener progress) {
 		transformJar(out, progress, new ClassTransformer() {
-
+			
 			@Override
 			public CtClass transform(CtClass c) throws Exception {
 				return ClassProtectifier.protectify(c);
@@ -351,7 +493,7 @@ public class Deobfuscator {
 	
 	public void publifyJar(File out, ProgressListener progress) {
 		transformJar(out, progress, new ClassTransformer() {
-
+			
 			@Override
 			public CtClass transform(CtClass c) throws Exception {
 				return ClassPublifier.publify(c);
@@ -365,11 +507,11 @@ public class Deobfuscator {
 	private void transformJar(File out, ProgressListener progress, ClassTransformer transformer) {
 		try (JarOutputStream outJar = new JarOutputStream(new FileOutputStream(out))) {
 			if (progress != null) {
-				progress.init(JarClassIterator.getClassEntries(m_jar).size(), "Transforming classes...");
+				progress.init(m_classes.getClassEntries().size(), "Transforming classes...");
 			}
 			
 			int i = 0;
-			for (CtClass c : JarClassIterator.classes(m_jar)) {
+			for (CtClass c : m_classes.classes()) {
 				if (progress != null) {
 					progress.onProgress(i++, c.getName());
 				}
@@ -507,8 +649,8 @@ public class Deobfuscator {
 			throw new Error("Unknown entry type: " + obfEntry.getClass().getName());
 		}
 		
-		// clear caches
-		m_translatorCache.clear();
+		// show the edit to the other threads
+		publishSnapshot();
 	}
 	
 	public void removeMapping(Entry obfEntry) {
@@ -526,8 +668,8 @@ public class Deobfuscator {
 			throw new Error("Unknown entry type: " + obfEntry);
 		}
 		
-		// clear caches
-		m_translatorCache.clear();
+		// show the edit to the other threads
+		publishSnapshot();
 	}
 	
 	public void markAsDeobfuscated(Entry obfEntry) {
@@ -545,7 +687,29 @@ public class Deobfuscator {
 			throw new Error("Unknown entry type: " + obfEntry);
 		}
 		
-		// clear caches
-		m_translatorCache.clear();
+		// show the edit to the other threads
+		publishSnapshot();
+	}
+	
+	public List<MappingsChange> applyChanges(MappingsDiff diff) {
+		List<MappingsChange> conflicts = diff.applyTo(m_renamer);
+		
+		// show the edits to the other threads
+		publishSnapshot();
+		
+		return conflicts;
+	}
+	
+	private void clearTranslatorCaches(MappingsChange change) {
+		
+		// the deobfuscating translator reads the mappings directly, so it only needs to forget the translations the change could affect
+		// method tree edits send a change for every method in the tree, so there's no need to look for the rest of the tree here
+		Translator deobfuscatingTranslator = m_translatorCache.get(TranslationDirection.Deobfuscating);
+		if (deobfuscatingTranslator != null) {
+			deobfuscatingTranslator.clearCache(change.getObfClassEntry());
+		}
+		
+		// the mappings keep their obfuscating translator up to date themselves, but some edits make them build a new one
+		m_translatorCache.remove(TranslationDirection.Obfuscating);
 	}
 }
@@ -56,9 +56,9 @@ public class MainFormatConverter {
 		MappingsReader mappingsReader = new MappingsReader() {
 			
 			@Override
-			protected FieldMapping readField(String[] parts) {
+			protected FieldMapping readField(String obfName, String deobfName, String obfType) {
 				// assume the void type for now
-				return new FieldMapping(parts[1], new Type("V"), parts[2]);
+				return new FieldMapping(obfName, new Type("V"), deobfName);
 			}
 		};
 		Mappings mappings = mappingsReader.read(new FileReader(fileMappings));
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class Parallel {
+	
+	// everyone shares one fork-join pool, so parallel work doesn't start up a new set of threads every time
+	// the pool threads are daemons, so they never keep the JVM running
+	private static final ForkJoinPool Pool = new ForkJoinPool();
+	
+	public interface RangeWorker<T> {
+		
+		// do the work for the items in [start, stop)
+		T work(int start, int stop);
+		
+		// combine the results for two neighboring ranges, left comes first
+		T merge(T left, T right);
+	}
+	
+	public static <T> T forRange(int size, RangeWorker<T> worker) {
+		// aim for a few tasks per thread so the work stays balanced
+		int maxPerTask = Math.max(1, size/(Pool.getParallelism()*4));
+		return Pool.invoke(new RangeTask<T>(worker, 0, size, maxPerTask));
+	}
+	
+	private static class RangeTask<T> extends RecursiveTask<T> {
+		
+		private static final long serialVersionUID = -2907546316414839235L;
+		
+		private RangeWorker<T> m_worker;
+		private int m_start;
+		private int m_stop;
+		private int m_maxPerTask;
+		
+		public RangeTask(RangeWorker<T> worker, int start, int stop, int maxPerTask) {
+			m_worker = worker;
+			m_start = start;
+			m_stop = stop;
+			m_maxPerTask = maxPerTask;
+		}
+		
+		@Override
+		protected T compute() {
+			if (m_stop - m_start <= m_maxPerTask) {
+				return m_worker.work(m_start, m_stop);
+			}
+			
+			// split the range in half, and merge the results back in order
+			int mid = (m_start + m_stop)/2;
+			RangeTask<T> left = new RangeTask<T>(m_worker, m_start, mid, m_maxPerTask);
+			RangeTask<T> right = new RangeTask<T>(m_worker, mid, m_stop, m_maxPerTask);
+			right.fork();
+			T leftResult = left.compute();
+			return m_worker.merge(leftResult, right.join());
+		}
+	}
+}
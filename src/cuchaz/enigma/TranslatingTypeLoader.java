@@ -10,17 +10,11 @@
  ******************************************************************************/
 package cuchaz.enigma;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
-import javassist.ByteArrayClassPath;
 import javassist.CannotCompileException;
-import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.NotFoundException;
 import javassist.bytecode.Descriptor;
@@ -32,6 +26,7 @@ import com.strobel.assembler.metadata.ClasspathTypeLoader;
 import com.strobel.assembler.metadata.ITypeLoader;
 
 import cuchaz.enigma.analysis.BridgeMarker;
+import cuchaz.enigma.analysis.JarClassRepository;
 import cuchaz.enigma.analysis.JarIndex;
 import cuchaz.enigma.bytecode.ClassRenamer;
 import cuchaz.enigma.bytecode.ClassTranslator;
@@ -43,19 +38,19 @@ import cuchaz.enigma.mapping.Translator;
 
 public class TranslatingTypeLoader implements ITypeLoader {
 	
-	private JarFile m_jar;
+	private JarClassRepository m_classes;
 	private JarIndex m_jarIndex;
 	private Translator m_obfuscatingTranslator;
 	private Translator m_deobfuscatingTranslator;
 	private Map<String,byte[]> m_cache;
 	private ClasspathTypeLoader m_defaultTypeLoader;
 	
-	public TranslatingTypeLoader(JarFile jar, JarIndex jarIndex) {
-		this(jar, jarIndex, new Translator(), new Translator());
+	public TranslatingTypeLoader(JarClassRepository classes, JarIndex jarIndex) {
+		this(classes, jarIndex, new Translator(), new Translator());
 	}
 	
-	public TranslatingTypeLoader(JarFile jar, JarIndex jarIndex, Translator obfuscatingTranslator, Translator deobfuscatingTranslator) {
-		m_jar = jar;
+	public TranslatingTypeLoader(JarClassRepository classes, JarIndex jarIndex, Translator obfuscatingTranslator, Translator deobfuscatingTranslator) {
+		m_classes = classes;
 		m_jarIndex = jarIndex;
 		m_obfuscatingTranslator = obfuscatingTranslator;
 		m_deobfuscatingTranslator = deobfuscatingTranslator;
@@ -99,14 +94,7 @@ public class TranslatingTypeLoader implements ITypeLoader {
 		}
 		
 		// return a javassist handle for the class
-		String javaClassFileName = Descriptor.toJavaName(deobfClassName);
-		ClassPool classPool = new ClassPool();
-		classPool.insertClassPath(new ByteArrayClassPath(javaClassFileName, data));
-		try {
-			return classPool.get(javaClassFileName);
-		} catch (NotFoundException ex) {
-			throw new Error(ex);
-		}
+		return m_classes.makeClass(data);
 	}
 	
 	private byte[] loadType(String className) {
@@ -142,26 +130,8 @@ public class TranslatingTypeLoader implements ITypeLoader {
 		}
 		
 		try {
-			// read the class file into a buffer
-			ByteArrayOutputStream data = new ByteArrayOutputStream();
-			byte[] buf = new byte[1024 * 1024]; // 1 KiB
-			InputStream in = m_jar.getInputStream(m_jar.getJarEntry(classInJarName + ".class"));
-			while (true) {
-				int bytesRead = in.read(buf);
-				if (bytesRead <= 0) {
-					break;
-				}
-				data.write(buf, 0, bytesRead);
-			}
-			data.close();
-			in.close();
-			buf = data.toByteArray();
-			
 			// load the javassist handle to the raw class
-			ClassPool classPool = new ClassPool();
-			String classInJarJavaName = Descriptor.toJavaName(classInJarName);
-			classPool.insertClassPath(new ByteArrayClassPath(classInJarJavaName, buf));
-			CtClass c = classPool.get(classInJarJavaName);
+			CtClass c = m_classes.getClass(classInJarName);
 			
 			c = transformClass(c);
 			
@@ -182,8 +152,7 @@ public class TranslatingTypeLoader implements ITypeLoader {
 
 		// try to find the class in the jar
 		for (String className : getClassNamesToTry(obfClassEntry)) {
-			JarEntry jarEntry = m_jar.getJarEntry(className + ".class");
-			if (jarEntry != null) {
+			if (m_classes.containsClass(className)) {
 				return className;
 			}
 		}
@@ -222,10 +191,7 @@ public class TranslatingTypeLoader implements ITypeLoader {
 		
 		// re-get the javassist handle since we changed class names
 		ClassEntry obfClassEntry = new ClassEntry(Descriptor.toJvmName(c.getName()));
-		String javaClassReconstructedName = Descriptor.toJavaName(obfClassEntry.getName());
-		ClassPool classPool = new ClassPool();
-		classPool.insertClassPath(new ByteArrayClassPath(javaClassReconstructedName, c.toBytecode()));
-		c = classPool.get(javaClassReconstructedName);
+		c = m_classes.makeClass(c.toBytecode());
 		
 		// check that the file is correct after inner class reconstruction (ie cause Javassist to fail fast if something is wrong)
 		assertClassName(c, obfClassEntry);
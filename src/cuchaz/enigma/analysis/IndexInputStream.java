@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+public class IndexInputStream extends ObjectInputStream {
+	
+	// index files can come from anywhere, so only let them make the classes an index is actually made of
+	// otherwise, reading a file someone else wrote could run whatever code the classpath lets serialization reach
+	private static final Set<String> AllowedClasses = ImmutableSet.of(
+		"[Ljava.lang.Object;",
+		"java.lang.Enum",
+		"java.lang.Number",
+		"java.lang.Integer",
+		"java.lang.Long",
+		"java.util.ArrayList",
+		"java.util.HashMap",
+		"java.util.HashSet",
+		"com.google.common.collect.AbstractMapBasedMultimap",
+		"com.google.common.collect.AbstractSetMultimap",
+		"com.google.common.collect.HashMultimap",
+		"cuchaz.enigma.analysis.Access",
+		"cuchaz.enigma.analysis.EntryReference",
+		"cuchaz.enigma.analysis.TranslationIndex",
+		"cuchaz.enigma.mapping.ArgumentEntry",
+		"cuchaz.enigma.mapping.ClassEntry",
+		"cuchaz.enigma.mapping.ConstructorEntry",
+		"cuchaz.enigma.mapping.FieldEntry",
+		"cuchaz.enigma.mapping.MethodEntry",
+		"cuchaz.enigma.mapping.Signature",
+		"cuchaz.enigma.mapping.Type"
+	);
+	
+	public IndexInputStream(InputStream in)
+	throws IOException {
+		super(in);
+	}
+	
+	@Override
+	protected Class<?> resolveClass(ObjectStreamClass desc)
+	throws IOException, ClassNotFoundException {
+		if (!AllowedClasses.contains(desc.getName())) {
+			throw new InvalidClassException(desc.getName(), "Not allowed in an index");
+		}
+		return super.resolveClass(desc);
+	}
+	
+	@Override
+	protected Class<?> resolveProxyClass(String[] interfaces)
+	throws IOException, ClassNotFoundException {
+		throw new InvalidClassException("Proxies are not allowed in an index");
+	}
+}
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+
+import cuchaz.enigma.Constants;
+import cuchaz.enigma.bytecode.ClassHeader;
+import cuchaz.enigma.mapping.ClassEntry;
+
+public class JarClassRepository implements Closeable {
+	
+	private static class ByteBufferInputStream extends InputStream {
+		
+		private ByteBuffer m_buf;
+		
+		public ByteBufferInputStream(ByteBuffer buf) {
+			m_buf = buf;
+		}
+		
+		@Override
+		public int read() {
+			if (!m_buf.hasRemaining()) {
+				return -1;
+			}
+			return m_buf.get() & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] out, int offset, int length) {
+			if (!m_buf.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, m_buf.remaining());
+			m_buf.get(out, offset, length);
+			return length;
+		}
+		
+		@Override
+		public int available() {
+			return m_buf.remaining();
+		}
+	}
+	
+	private static class JarClassPool extends ClassPool {
+		
+		// every class from the jar comes from this one pool, along with the system classes they refer to
+		// the pool only holds on to jar classes while someone else still does, so it doesn't grow with every class ever read
+		// frozen jar classes are done being edited, so they stay out of the way of fresh copies of the same class
+		
+		private Set<CtClass> m_jarClasses;
+		private ConcurrentMap<String,CtClass> m_jarClassesByName;
+		
+		public JarClassPool() {
+			m_jarClasses = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<CtClass,Boolean>()));
+			m_jarClassesByName = new MapMaker().weakValues().makeMap();
+			appendSystemPath();
+		}
+		
+		@Override
+		protected void cacheCtClass(String className, CtClass c, boolean isDynamic) {
+			// classes from makeClass() are jar classes, and they stay jar classes when they get renamed
+			if (isDynamic || m_jarClasses.contains(c)) {
+				m_jarClasses.add(c);
+				m_jarClassesByName.put(className, c);
+			} else {
+				super.cacheCtClass(className, c, isDynamic);
+			}
+		}
+		
+		@Override
+		protected CtClass getCached(String className) {
+			CtClass c = m_jarClassesByName.get(className);
+			if (c != null && !c.isFrozen()) {
+				return c;
+			}
+			return super.getCached(className);
+		}
+		
+		@Override
+		protected CtClass removeCached(String className) {
+			CtClass c = m_jarClassesByName.remove(className);
+			if (c != null) {
+				return c;
+			}
+			return super.removeCached(className);
+		}
+	}
+	
+	// keep up to this many bytes of read classes, in case someone asks for the same class again
+	private static final int MaxCachedBytes = 16*Constants.MiB;
+	
+	private JarFile m_jar;
+	private MappedJarFile m_mappedJar;
+	private List<ClassEntry> m_classEntries;
+	private Map<String,Integer> m_indices;
+	
+	// class bytes get read lazily the first time each class is asked for, and kept for a while for header scans and re-reads
+	// once a class is parsed, the CtClass has everything, so its bytes get dropped
+	private LinkedHashMap<Integer,byte[]> m_cache;
+	private int m_cachedBytes;
+	
+	private JarClassPool m_classPool;
+	
+	public JarClassRepository(JarFile jar) {
+		m_jar = jar;
+		
+		// read straight from the mapped jar if we can, otherwise fall back to the JarFile streams
+		m_mappedJar = MappedJarFile.open(new File(jar.getName()));
+		if (m_mappedJar != null) {
+			List<ClassEntry> classEntries = Lists.newArrayList();
+			for (String name : m_mappedJar.getEntryNames()) {
+				if (name.endsWith(".class")) {
+					classEntries.add(new ClassEntry(name.substring(0, name.length() - ".class".length())));
+				}
+			}
+			m_classEntries = Collections.unmodifiableList(classEntries);
+		} else {
+			m_classEntries = Collections.unmodifiableList(JarClassIterator.getClassEntries(jar));
+		}
+		m_indices = Maps.newHashMap();
+		for (int i = 0; i < m_classEntries.size(); i++) {
+			m_indices.put(m_classEntries.get(i).getName(), i);
+		}
+		m_cache = new LinkedHashMap<Integer,byte[]>(16, 0.75f, true);
+		m_cachedBytes = 0;
+		m_classPool = new JarClassPool();
+	}
+	
+	public JarFile getJar() {
+		return m_jar;
+	}
+	
+	public List<ClassEntry> getClassEntries() {
+		return m_classEntries;
+	}
+	
+	public boolean containsClass(String className) {
+		return m_indices.containsKey(className);
+	}
+	
+	public long getClassCrc(ClassEntry classEntry) {
+		String entryName = classEntry.getName() + ".class";
+		MappedJarFile mappedJar = m_mappedJar;
+		if (mappedJar != null) {
+			return mappedJar.getCrc(entryName);
+		}
+		JarEntry entry = m_jar.getJarEntry(entryName);
+		if (entry == null) {
+			return -1;
+		}
+		return entry.getCrc();
+	}
+	
+	public CtClass getClass(ClassEntry classEntry) {
+		return getClass(classEntry.getName());
+	}
+	
+	public CtClass getClass(String className) {
+		Integer index = m_indices.get(className);
+		if (index == null) {
+			return null;
+		}
+		// the bytes never change once they're read, so we can parse them outside the lock
+		ByteBuffer buf;
+		synchronized (this) {
+			buf = getBuffer(index, false);
+		}
+		return makeClass(new ByteBufferInputStream(buf));
+	}
+	
+	public ClassHeader getClassHeader(ClassEntry classEntry) {
+		return getClassHeader(classEntry.getName());
+	}
+	
+	public ClassHeader getClassHeader(String className) {
+		Integer index = m_indices.get(className);
+		if (index == null) {
+			return null;
+		}
+		ByteBuffer buf;
+		synchronized (this) {
+			buf = getBuffer(index, true);
+		}
+		return ClassHeader.read(buf);
+	}
+	
+	public synchronized byte[] getClassBytes(String className) {
+		Integer index = m_indices.get(className);
+		if (index == null) {
+			return null;
+		}
+		ByteBuffer buf = getBuffer(index, true);
+		byte[] data = new byte[buf.remaining()];
+		buf.get(data);
+		return data;
+	}
+	
+	public CtClass makeClass(byte[] data) {
+		return makeClass(new ByteBufferInputStream(ByteBuffer.wrap(data)));
+	}
+	
+	private CtClass makeClass(InputStream in) {
+		try {
+			// don't check for frozen classes, a class can always be read again, even if an older copy is done being edited
+			return m_classPool.makeClass(in, false);
+		} catch (IOException ex) {
+			throw new Error(ex);
+		}
+	}
+	
+	private ByteBuffer getBuffer(int index, boolean keep) {
+		
+		// always copy out of the mapped jar, even stored classes, so nothing we hand out goes bad when the jar gets closed
+		String entryName = m_classEntries.get(index).getName() + ".class";
+		byte[] data = keep ? m_cache.get(index) : m_cache.remove(index);
+		if (data != null) {
+			if (!keep) {
+				m_cachedBytes -= data.length;
+			}
+		} else {
+			data = read(entryName);
+			if (keep) {
+				cache(index, data);
+			}
+		}
+		return ByteBuffer.wrap(data);
+	}
+	
+	private void cache(int index, byte[] data) {
+		m_cache.put(index, data);
+		m_cachedBytes += data.length;
+		Iterator<byte[]> iter = m_cache.values().iterator();
+		while (m_cachedBytes > MaxCachedBytes && iter.hasNext()) {
+			m_cachedBytes -= iter.next().length;
+			iter.remove();
+		}
+	}
+	
+	private byte[] read(String entryName) {
+		
+		if (m_mappedJar != null) {
+			// inflate right into the array
+			int size = m_mappedJar.getSize(entryName);
+			if (size > Constants.MiB) {
+				throw new Error("Class file " + entryName + " larger than 1 MiB! Something is wrong!");
+			}
+			byte[] data = new byte[size];
+			m_mappedJar.read(entryName, data, 0);
+			return data;
+		}
+		
+		try (InputStream in = m_jar.getInputStream(m_jar.getJarEntry(entryName))) {
+			byte[] data = ByteStreams.toByteArray(ByteStreams.limit(in, Constants.MiB + 1));
+			
+			// sanity checking
+			if (data.length > Constants.MiB) {
+				throw new Error("Class file " + entryName + " larger than 1 MiB! Something is wrong!");
+			}
+			return data;
+		} catch (IOException ex) {
+			throw new Error("Unable to load class: " + entryName, ex);
+		}
+	}
+	
+	public Iterable<CtClass> classes() {
+		return JarClassIterator.classes(this);
+	}
+	
+	@Override
+	public synchronized void close() {
+		// the JarFile belongs to whoever opened it, we only let go of our mapping
+		if (m_mappedJar != null) {
+			m_mappedJar.close();
+			m_mappedJar = null;
+		}
+		m_cache.clear();
+		m_cachedBytes = 0;
+	}
+}
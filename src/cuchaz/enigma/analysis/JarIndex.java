@@ -10,22 +10,28 @@
  ******************************************************************************/
 package cuchaz.enigma.analysis;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.jar.JarFile;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javassist.CannotCompileException;
 import javassist.CtBehavior;
 import javassist.CtClass;
 import javassist.CtConstructor;
-import javassist.CtField;
 import javassist.CtMethod;
-import javassist.NotFoundException;
 import javassist.bytecode.AccessFlag;
 import javassist.bytecode.Descriptor;
 import javassist.bytecode.EnclosingMethodAttribute;
@@ -44,6 +50,8 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 import cuchaz.enigma.Constants;
+import cuchaz.enigma.Parallel;
+import cuchaz.enigma.bytecode.ClassHeader;
 import cuchaz.enigma.bytecode.ClassRenamer;
 import cuchaz.enigma.mapping.ArgumentEntry;
 import cuchaz.enigma.mapping.BehaviorEntry;
@@ -51,9 +59,11 @@ import cuchaz.enigma.mapping.ClassEntry;
 import cuchaz.enigma.mapping.ConstructorEntry;
 import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.EntryFactory;
+import cuchaz.enigma.mapping.EntryInterner;
 import cuchaz.enigma.mapping.FieldEntry;
 import cuchaz.enigma.mapping.MethodEntry;
 import cuchaz.enigma.mapping.Translator;
+import cuchaz.enigma.mapping.Type;
 
 public class JarIndex {
 	
@@ -69,10 +79,19 @@ public class JarIndex {
 	private Map<ClassEntry,ClassEntry> m_outerClassesByInner;
 	private Map<ClassEntry,BehaviorEntry> m_anonymousClasses;
 	private Map<MethodEntry,MethodEntry> m_bridgedMethods;
+	private boolean m_buildInnerClasses;
+	private Map<String,Long> m_classCrcs;
+	private Map<String,String> m_innerClassRenames;
+	private EntryInterner m_interner;
 	
 	public JarIndex() {
+		this(new EntryInterner());
+	}
+	
+	public JarIndex(EntryInterner interner) {
+		m_interner = interner;
 		m_obfClassEntries = Sets.newHashSet();
-		m_translationIndex = new TranslationIndex();
+		m_translationIndex = new TranslationIndex(interner);
 		m_access = Maps.newHashMap();
 		m_fields = HashMultimap.create();
 		m_behaviors = HashMultimap.create();
@@ -83,124 +102,654 @@ public class JarIndex {
 		m_outerClassesByInner = Maps.newHashMap();
 		m_anonymousClasses = Maps.newHashMap();
 		m_bridgedMethods = Maps.newHashMap();
+		m_buildInnerClasses = false;
+		m_classCrcs = Maps.newHashMap();
+		m_innerClassRenames = Maps.newHashMap();
 	}
 	
 	public void indexJar(JarFile jar, boolean buildInnerClasses) {
+		indexJar(jar, buildInnerClasses, false);
+	}
+	
+	public void indexJar(JarFile jar, boolean buildInnerClasses, boolean parallel) {
+		try (JarClassRepository repository = new JarClassRepository(jar)) {
+			indexJar(repository, buildInnerClasses, parallel);
+		}
+	}
+	
+	public void indexJar(JarClassRepository repository, boolean buildInnerClasses, boolean parallel) {
+		
+		m_buildInnerClasses = buildInnerClasses;
 		
 		// step 1: read the class names
-		for (ClassEntry classEntry : JarClassIterator.getClassEntries(jar)) {
-			if (classEntry.isInDefaultPackage()) {
-				// move out of default package
-				classEntry = new ClassEntry(Constants.NonePackage + "/" + classEntry.getName());
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			m_classCrcs.put(classEntry.getName(), repository.getClassCrc(classEntry));
+			m_obfClassEntries.add(m_interner.intern(getIndexClassEntry(classEntry)));
+		}
+		
+		// steps 2 and 3 only need the class headers
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			indexClassHeader(readClassHeader(repository, classEntry));
+		}
+		
+		// step 4: index field, method, constructor references, and bridge methods
+		// this is the only step that needs the whole classes, so each class gets parsed once and let go right after
+		// step 5 needs every class's references first, so we just keep what it needs to know about each class by itself
+		List<InnerClassClues> clues = indexReferences(repository, repository.getClassEntries(), parallel, buildInnerClasses);
+		
+		if (buildInnerClasses) {
+			
+			// step 5: index inner classes and anonymous classes
+			indexOuterClasses(clues, parallel);
+			
+			// step 6: update other indices with inner class info
+			renameInnerClasses();
+		}
+	}
+	
+	public void updateJar(JarFile jar, boolean parallel) {
+		try (JarClassRepository repository = new JarClassRepository(jar)) {
+			updateJar(repository, parallel);
+		}
+	}
+	
+	public void updateJar(JarClassRepository repository, boolean parallel) {
+		
+		// patches this index, built from an older build of the jar, to match the new jar
+		// we only re-read the classes whose CRCs changed, plus the classes whose references or
+		// inner class info could depend on them, instead of re-indexing the whole jar
+		
+		// which classes changed?
+		Map<String,Long> classCrcs = Maps.newHashMap();
+		Map<ClassEntry,ClassEntry> jarClassEntries = Maps.newHashMap();
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			classCrcs.put(classEntry.getName(), repository.getClassCrc(classEntry));
+			jarClassEntries.put(getIndexClassEntry(classEntry), classEntry);
+		}
+		Set<ClassEntry> removedClasses = Sets.newHashSet();
+		Set<ClassEntry> changedClasses = Sets.newHashSet();
+		Set<ClassEntry> addedClasses = Sets.newHashSet();
+		for (Map.Entry<String,Long> entry : m_classCrcs.entrySet()) {
+			ClassEntry classEntry = getIndexClassEntry(new ClassEntry(entry.getKey()));
+			Long crc = classCrcs.get(entry.getKey());
+			if (crc == null) {
+				removedClasses.add(classEntry);
+			} else if (!crc.equals(entry.getValue())) {
+				changedClasses.add(classEntry);
 			}
-			m_obfClassEntries.add(classEntry);
+		}
+		for (String className : classCrcs.keySet()) {
+			if (!m_classCrcs.containsKey(className)) {
+				addedClasses.add(getIndexClassEntry(new ClassEntry(className)));
+			}
+		}
+		m_classCrcs = classCrcs;
+		if (removedClasses.isEmpty() && changedClasses.isEmpty() && addedClasses.isEmpty()) {
+			return;
 		}
 		
-		// step 2: index field/method/constructor access
-		for (CtClass c : JarClassIterator.classes(jar)) {
-			ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
-			for (CtField field : c.getDeclaredFields()) {
-				FieldEntry fieldEntry = EntryFactory.getFieldEntry(field);
-				m_access.put(fieldEntry, Access.get(field));
-				m_fields.put(fieldEntry.getClassEntry(), fieldEntry);
+		// put the index back the way it was before step 6, so the names match the jar again
+		if (m_buildInnerClasses) {
+			Map<String,String> renames = Maps.newHashMap();
+			for (Map.Entry<String,String> entry : m_innerClassRenames.entrySet()) {
+				renames.put(entry.getValue(), entry.getKey());
 			}
-			for (CtBehavior behavior : c.getDeclaredBehaviors()) {
-				BehaviorEntry behaviorEntry = EntryFactory.getBehaviorEntry(behavior);
-				m_access.put(behaviorEntry, Access.get(behavior));
-				m_behaviors.put(behaviorEntry.getClassEntry(), behaviorEntry);
+			renameClasses(renames);
+			shareReferenceContexts();
+		}
+		
+		// read the new class headers
+		Map<ClassEntry,ClassHeader> headers = Maps.newHashMap();
+		for (ClassEntry classEntry : Sets.union(changedClasses, addedClasses)) {
+			headers.put(classEntry, readClassHeader(repository, jarClassEntries.get(classEntry)));
+		}
+		
+		// references are resolved up the class hierarchy, so a changed class can change references to its relatives too
+		// collect the member keys whose resolution could change, or null if any member could change
+		Map<ClassEntry,Set<String>> changedMembers = Maps.newHashMap();
+		for (ClassEntry classEntry : removedClasses) {
+			changedMembers.put(classEntry, null);
+		}
+		for (ClassEntry classEntry : addedClasses) {
+			changedMembers.put(classEntry, null);
+		}
+		for (ClassEntry classEntry : changedClasses) {
+			ClassHeader header = headers.get(classEntry);
+			if (!getSupertypes(classEntry).equals(getSupertypes(header))) {
+				changedMembers.put(classEntry, null);
+			} else {
+				Set<String> oldMembers = getMemberKeys(classEntry);
+				Set<String> newMembers = getMemberKeys(header);
+				if (!oldMembers.equals(newMembers)) {
+					changedMembers.put(classEntry, Sets.newHashSet(Sets.symmetricDifference(oldMembers, newMembers)));
+				}
 			}
 		}
+		Map<ClassEntry,Set<String>> suspectMembers = Maps.newHashMap();
+		Set<ClassEntry> suspectClasses = Sets.newHashSet();
+		collectSuspectMembers(changedMembers, suspectMembers, suspectClasses);
+		
+		// patch steps 1, 2 and 3
+		for (ClassEntry classEntry : Sets.union(removedClasses, changedClasses)) {
+			removeClassHeader(classEntry);
+		}
+		m_obfClassEntries.removeAll(removedClasses);
+		for (ClassEntry classEntry : addedClasses) {
+			m_obfClassEntries.add(m_interner.intern(classEntry));
+		}
+		for (ClassHeader header : headers.values()) {
+			indexClassHeader(header);
+		}
+		collectSuspectMembers(changedMembers, suspectMembers, suspectClasses);
+		
+		// which classes need their references indexed again?
+		Set<ClassEntry> referencingClasses = Sets.newHashSet();
+		referencingClasses.addAll(changedClasses);
+		referencingClasses.addAll(addedClasses);
+		for (EntryReference<BehaviorEntry,BehaviorEntry> reference : m_behaviorReferences.values()) {
+			if (isSuspectReference(reference.entry, suspectMembers, suspectClasses)) {
+				referencingClasses.add(reference.context.getClassEntry());
+			}
+		}
+		for (EntryReference<FieldEntry,BehaviorEntry> reference : m_fieldReferences.values()) {
+			if (isSuspectReference(reference.entry, suspectMembers, suspectClasses)) {
+				referencingClasses.add(reference.context.getClassEntry());
+			}
+		}
+		referencingClasses.removeAll(removedClasses);
+		
+		// remember whose constructors the old references called, the outer class finder depends on those calls
+		Set<ClassEntry> staleClasses = Sets.union(referencingClasses, removedClasses);
+		Set<ClassEntry> innerClassCandidates = Sets.newHashSet();
+		innerClassCandidates.addAll(getCalledConstructorClasses(staleClasses));
+		
+		// patch step 4
+		removeReferences(staleClasses);
+		List<ClassEntry> classEntries = Lists.newArrayList();
+		for (ClassEntry classEntry : referencingClasses) {
+			classEntries.add(jarClassEntries.get(classEntry));
+		}
+		indexReferences(repository, classEntries, parallel, false);
+		
+		if (m_buildInnerClasses) {
+			
+			// which classes could have a different outer class now?
+			innerClassCandidates.addAll(getCalledConstructorClasses(referencingClasses));
+			innerClassCandidates.addAll(referencingClasses);
+			Set<ClassEntry> addedOrRemovedClasses = Sets.union(addedClasses, removedClasses);
+			for (Map.Entry<ClassEntry,FieldEntry> entry : m_fields.entries()) {
+				Type type = entry.getValue().getType();
+				if (type.hasClass() && addedOrRemovedClasses.contains(type.getClassEntry())) {
+					// the field types can point to the outer class
+					innerClassCandidates.add(entry.getKey());
+				}
+			}
+			innerClassCandidates.addAll(removedClasses);
+			
+			// patch step 5
+			for (ClassEntry classEntry : innerClassCandidates) {
+				ClassEntry outerClassEntry = m_outerClassesByInner.remove(classEntry);
+				if (outerClassEntry != null) {
+					m_innerClassesByOuter.remove(outerClassEntry, classEntry);
+				}
+				m_anonymousClasses.remove(classEntry);
+			}
+			classEntries.clear();
+			for (ClassEntry classEntry : innerClassCandidates) {
+				// the candidates can include classes that aren't in the jar, like JRE classes with called constructors
+				ClassEntry jarClassEntry = jarClassEntries.get(classEntry);
+				if (jarClassEntry != null) {
+					classEntries.add(jarClassEntry);
+				}
+			}
+			indexOuterClasses(readInnerClassClues(repository, classEntries, parallel), parallel);
+			
+			// redo step 6
+			renameInnerClasses();
+		}
+	}
+	
+	private ClassEntry getIndexClassEntry(ClassEntry classEntry) {
+		if (classEntry.isInDefaultPackage()) {
+			// move out of default package
+			return new ClassEntry(Constants.NonePackage + "/" + classEntry.getName());
+		}
+		return classEntry;
+	}
+	
+	private ClassHeader readClassHeader(JarClassRepository repository, ClassEntry classEntry) {
+		ClassHeader header = repository.getClassHeader(classEntry);
+		ClassRenamer.moveAllClassesOutOfDefaultPackage(header, Constants.NonePackage);
+		return header;
+	}
+	
+	private CtClass readClass(JarClassRepository repository, ClassEntry classEntry) {
+		CtClass c = repository.getClass(classEntry);
+		ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
+		return c;
+	}
+	
+	private void indexClassHeader(ClassHeader header) {
+		
+		// step 2: index field/method/constructor access
+		for (ClassHeader.Member field : header.getFields()) {
+			FieldEntry fieldEntry = m_interner.intern(EntryFactory.getFieldEntry(header, field));
+			m_access.put(fieldEntry, Access.get(field.getAccess()));
+			m_fields.put(fieldEntry.getClassEntry(), fieldEntry);
+		}
+		for (ClassHeader.Member behavior : header.getMethods()) {
+			BehaviorEntry behaviorEntry = m_interner.intern(EntryFactory.getBehaviorEntry(header, behavior));
+			m_access.put(behaviorEntry, Access.get(behavior.getAccess()));
+			m_behaviors.put(behaviorEntry.getClassEntry(), behaviorEntry);
+		}
 		
 		// step 3: index extends, implements, fields, and methods
-		for (CtClass c : JarClassIterator.classes(jar)) {
-			ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
-			m_translationIndex.indexClass(c);
-			String className = Descriptor.toJvmName(c.getName());
-			for (String interfaceName : c.getClassFile().getInterfaces()) {
-				className = Descriptor.toJvmName(className);
-				interfaceName = Descriptor.toJvmName(interfaceName);
-				if (className.equals(interfaceName)) {
-					throw new IllegalArgumentException("Class cannot be its own interface! " + className);
+		m_translationIndex.indexClass(header);
+		String className = header.getName();
+		for (String interfaceName : header.getInterfaces()) {
+			if (className.equals(interfaceName)) {
+				throw new IllegalArgumentException("Class cannot be its own interface! " + className);
+			}
+		}
+		for (BehaviorEntry behaviorEntry : m_behaviors.get(new ClassEntry(className))) {
+			if (behaviorEntry instanceof MethodEntry) {
+				// index implementation
+				m_methodImplementations.put(className, (MethodEntry)behaviorEntry);
+			}
+			// looks like we don't care about constructors here
+		}
+	}
+	
+	private void removeClassHeader(ClassEntry classEntry) {
+		for (FieldEntry fieldEntry : m_fields.removeAll(classEntry)) {
+			m_access.remove(fieldEntry);
+		}
+		for (BehaviorEntry behaviorEntry : m_behaviors.removeAll(classEntry)) {
+			m_access.remove(behaviorEntry);
+		}
+		m_methodImplementations.removeAll(classEntry.getName());
+		m_translationIndex.removeClass(classEntry);
+	}
+	
+	private List<InnerClassClues> indexReferences(final JarClassRepository repository, List<ClassEntry> classEntries, boolean parallel, final boolean collectClues) {
+		return indexAll(classEntries, parallel, new Indexer<ClassEntry>() {
+			@Override
+			public void index(ClassEntry classEntry, PartialIndex out) {
+				CtClass c = readClass(repository, classEntry);
+				for (CtBehavior behavior : c.getDeclaredBehaviors()) {
+					indexBehaviorReferences(behavior, out);
+					if (behavior instanceof CtMethod) {
+						indexBridgedMethod((CtMethod)behavior, out);
+					}
 				}
+				if (collectClues) {
+					out.m_clues.add(new InnerClassClues(c));
+				}
+			}
+		}).m_clues;
+	}
+	
+	private List<InnerClassClues> readInnerClassClues(final JarClassRepository repository, List<ClassEntry> classEntries, boolean parallel) {
+		return indexAll(classEntries, parallel, new Indexer<ClassEntry>() {
+			@Override
+			public void index(ClassEntry classEntry, PartialIndex out) {
+				out.m_clues.add(new InnerClassClues(readClass(repository, classEntry)));
 			}
-			for (CtBehavior behavior : c.getDeclaredBehaviors()) {
-				indexBehavior(behavior);
+		}).m_clues;
+	}
+	
+	private void indexOuterClasses(List<InnerClassClues> clues, boolean parallel) {
+		indexAll(clues, parallel, new Indexer<InnerClassClues>() {
+			@Override
+			public void index(InnerClassClues classClues, PartialIndex out) {
+				indexOuterClass(classClues, out);
 			}
+		});
+	}
+	
+	private void renameInnerClasses() {
+		Map<String,String> renames = Maps.newHashMap();
+		for (ClassEntry innerClassEntry : m_innerClassesByOuter.values()) {
+			String newName = innerClassEntry.buildClassEntry(getObfClassChain(innerClassEntry)).getName();
+			if (!innerClassEntry.getName().equals(newName)) {
+				// DEBUG
+				//System.out.println("REPLACE: " + innerClassEntry.getName() + " WITH " + newName);
+				renames.put(innerClassEntry.getName(), newName);
+			}
+		}
+		renameClasses(renames);
+		
+		// remember the renames, so we can undo them if the jar gets updated
+		m_innerClassRenames = renames;
+	}
+	
+	private void renameClasses(Map<String,String> renames) {
+		EntryRenamer.renameClassesInSet(renames, m_obfClassEntries);
+		m_translationIndex.renameClasses(renames);
+		EntryRenamer.renameClassesInMultimap(renames, m_methodImplementations);
+		EntryRenamer.renameClassesInMultimap(renames, m_behaviorReferences);
+		EntryRenamer.renameClassesInMultimap(renames, m_fieldReferences);
+		EntryRenamer.renameClassesInMap(renames, m_access);
+	}
+	
+	private void shareReferenceContexts() {
+		
+		// when we index a behavior, all its references share the same context entry, and the anonymous class finder counts on that
+		// renaming gives every reference its own copy, so share them again
+		Map<BehaviorEntry,BehaviorEntry> contexts = Maps.newHashMap();
+		for (EntryReference<BehaviorEntry,BehaviorEntry> reference : m_behaviorReferences.values()) {
+			reference.context = getShared(contexts, reference.context);
+		}
+		for (EntryReference<FieldEntry,BehaviorEntry> reference : m_fieldReferences.values()) {
+			reference.context = getShared(contexts, reference.context);
+		}
+	}
+	
+	private BehaviorEntry getShared(Map<BehaviorEntry,BehaviorEntry> entries, BehaviorEntry entry) {
+		BehaviorEntry sharedEntry = entries.get(entry);
+		if (sharedEntry == null) {
+			entries.put(entry, entry);
+			return entry;
+		}
+		return sharedEntry;
+	}
+	
+	private Set<ClassEntry> getSupertypes(ClassEntry classEntry) {
+		Set<ClassEntry> supertypes = Sets.newHashSet(m_translationIndex.getInterfaces(classEntry));
+		ClassEntry superclassEntry = m_translationIndex.getSuperclass(classEntry);
+		if (superclassEntry != null) {
+			supertypes.add(superclassEntry);
+		}
+		return supertypes;
+	}
+	
+	private Set<ClassEntry> getSupertypes(ClassHeader header) {
+		
+		// same as the translation index, so no JRE interfaces
+		TranslationIndex index = new TranslationIndex();
+		index.indexClass(header, false);
+		ClassEntry classEntry = EntryFactory.getClassEntry(header);
+		Set<ClassEntry> supertypes = Sets.newHashSet(index.getInterfaces(classEntry));
+		ClassEntry superclassEntry = index.getSuperclass(classEntry);
+		if (superclassEntry != null) {
+			supertypes.add(superclassEntry);
+		}
+		return supertypes;
+	}
+	
+	private Set<String> getMemberKeys(ClassEntry classEntry) {
+		Set<String> keys = Sets.newHashSet();
+		for (FieldEntry fieldEntry : m_fields.get(classEntry)) {
+			keys.add(getMemberKey(fieldEntry));
+		}
+		for (BehaviorEntry behaviorEntry : m_behaviors.get(classEntry)) {
+			keys.add(getMemberKey(behaviorEntry));
 		}
+		return keys;
+	}
+	
+	private Set<String> getMemberKeys(ClassHeader header) {
+		Set<String> keys = Sets.newHashSet();
+		for (ClassHeader.Member field : header.getFields()) {
+			keys.add(getMemberKey(EntryFactory.getFieldEntry(header, field)));
+		}
+		for (ClassHeader.Member behavior : header.getMethods()) {
+			keys.add(getMemberKey(EntryFactory.getBehaviorEntry(header, behavior)));
+		}
+		return keys;
+	}
+	
+	private String getMemberKey(Entry entry) {
+		if (entry instanceof FieldEntry) {
+			return entry.getName() + ":" + ((FieldEntry)entry).getType();
+		} else if (entry instanceof BehaviorEntry) {
+			return entry.getName() + ((BehaviorEntry)entry).getSignature();
+		}
+		throw new IllegalArgumentException("Not a member: " + entry);
+	}
+	
+	private void collectSuspectMembers(Map<ClassEntry,Set<String>> changedMembers, Map<ClassEntry,Set<String>> suspectMembers, Set<ClassEntry> suspectClasses) {
 		
-		// step 4: index field, method, constructor references
-		for (CtClass c : JarClassIterator.classes(jar)) {
-			ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
-			for (CtBehavior behavior : c.getDeclaredBehaviors()) {
-				indexBehaviorReferences(behavior);
+		// find every class in the hierarchy under each changed class, and all their ancestors
+		// resolving a reference to any of those classes can walk through the changed class
+		Multimap<ClassEntry,ClassEntry> subtypes = HashMultimap.create();
+		for (Map.Entry<ClassEntry,ClassEntry> entry : m_translationIndex.getClassSuperclasses()) {
+			subtypes.put(entry.getValue(), entry.getKey());
+		}
+		for (Map.Entry<ClassEntry,ClassEntry> entry : m_translationIndex.getClassInterfaces()) {
+			subtypes.put(entry.getValue(), entry.getKey());
+		}
+		for (Map.Entry<ClassEntry,Set<String>> entry : changedMembers.entrySet()) {
+			Set<ClassEntry> descendants = Sets.newHashSet();
+			collectRelatives(descendants, entry.getKey(), subtypes);
+			Set<ClassEntry> relatives = Sets.newHashSet();
+			for (ClassEntry classEntry : descendants) {
+				collectAncestors(relatives, classEntry);
+			}
+			for (ClassEntry classEntry : relatives) {
+				if (entry.getValue() == null) {
+					suspectClasses.add(classEntry);
+				} else {
+					Set<String> members = suspectMembers.get(classEntry);
+					if (members == null) {
+						members = Sets.newHashSet();
+						suspectMembers.put(classEntry, members);
+					}
+					members.addAll(entry.getValue());
+				}
 			}
 		}
+	}
+	
+	private void collectRelatives(Set<ClassEntry> out, ClassEntry classEntry, Multimap<ClassEntry,ClassEntry> relatives) {
+		if (out.add(classEntry)) {
+			for (ClassEntry relativeEntry : relatives.get(classEntry)) {
+				collectRelatives(out, relativeEntry, relatives);
+			}
+		}
+	}
+	
+	private void collectAncestors(Set<ClassEntry> out, ClassEntry classEntry) {
+		if (out.add(classEntry)) {
+			ClassEntry superclassEntry = m_translationIndex.getSuperclass(classEntry);
+			if (superclassEntry != null) {
+				collectAncestors(out, superclassEntry);
+			}
+			for (ClassEntry interfaceEntry : m_translationIndex.getInterfaces(classEntry)) {
+				collectAncestors(out, interfaceEntry);
+			}
+		}
+	}
+	
+	private boolean isSuspectReference(Entry entry, Map<ClassEntry,Set<String>> suspectMembers, Set<ClassEntry> suspectClasses) {
+		if (entry instanceof ConstructorEntry) {
+			// constructor calls aren't resolved
+			return false;
+		}
+		ClassEntry classEntry = entry.getClassEntry();
+		if (suspectClasses.contains(classEntry)) {
+			return true;
+		}
+		Set<String> members = suspectMembers.get(classEntry);
+		return members != null && members.contains(getMemberKey(entry));
+	}
+	
+	private Set<ClassEntry> getCalledConstructorClasses(Set<ClassEntry> callerClasses) {
+		Set<ClassEntry> classEntries = Sets.newHashSet();
+		for (EntryReference<BehaviorEntry,BehaviorEntry> reference : m_behaviorReferences.values()) {
+			if (reference.entry instanceof ConstructorEntry && callerClasses.contains(reference.context.getClassEntry())) {
+				classEntries.add(reference.entry.getClassEntry());
+			}
+		}
+		return classEntries;
+	}
+	
+	private void removeReferences(Set<ClassEntry> callerClasses) {
+		Iterator<EntryReference<BehaviorEntry,BehaviorEntry>> behaviorIter = m_behaviorReferences.values().iterator();
+		while (behaviorIter.hasNext()) {
+			if (callerClasses.contains(behaviorIter.next().context.getClassEntry())) {
+				behaviorIter.remove();
+			}
+		}
+		Iterator<EntryReference<FieldEntry,BehaviorEntry>> fieldIter = m_fieldReferences.values().iterator();
+		while (fieldIter.hasNext()) {
+			if (callerClasses.contains(fieldIter.next().context.getClassEntry())) {
+				fieldIter.remove();
+			}
+		}
+		Iterator<MethodEntry> bridgeIter = m_bridgedMethods.keySet().iterator();
+		while (bridgeIter.hasNext()) {
+			if (callerClasses.contains(bridgeIter.next().getClassEntry())) {
+				bridgeIter.remove();
+			}
+		}
+	}
+	
+	private interface Indexer<T> {
+		void index(T thing, PartialIndex out);
+	}
+	
+	private static class InnerClassClues {
 		
-		if (buildInnerClasses) {
+		// what step 5 needs to know about a class by itself, so step 4 can let go of the parsed class
+		// the rest of step 5 needs every class's references, so it has to wait until all the classes are indexed
+		
+		private ClassEntry m_classEntry;
+		private Map<ConstructorEntry,Set<String>> m_illegalConstructors;
+		private boolean m_hasEnclosingMethodAttribute;
+		private BehaviorEntry m_enclosingBehavior;
+		private boolean m_hasInnerClassesAttribute;
+		private boolean m_isAbstract;
+		private ConstructorEntry m_onlyConstructorEntry;
+		
+		public InnerClassClues(CtClass c) {
+			m_classEntry = EntryFactory.getClassEntry(c);
 			
-			// step 5: index inner classes and anonymous classes
-			for (CtClass c : JarClassIterator.classes(jar)) {
-				ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
-				ClassEntry innerClassEntry = EntryFactory.getClassEntry(c);
-				ClassEntry outerClassEntry = findOuterClass(c);
-				if (outerClassEntry != null) {
-					m_innerClassesByOuter.put(outerClassEntry, innerClassEntry);
-					boolean innerWasAdded = m_outerClassesByInner.put(innerClassEntry, outerClassEntry) == null;
-					assert (innerWasAdded);
-					
-					BehaviorEntry enclosingBehavior = isAnonymousClass(c, outerClassEntry);
-					if (enclosingBehavior != null) {
-						m_anonymousClasses.put(innerClassEntry, enclosingBehavior);
-						
-						// DEBUG
-						//System.out.println("ANONYMOUS: " + outerClassEntry.getName() + "$" + innerClassEntry.getSimpleName());
-					} else {
-						// DEBUG
-						//System.out.println("INNER: " + outerClassEntry.getName() + "$" + innerClassEntry.getSimpleName());
+			// the synthetic field types each illegal constructor sets, in constructor order
+			// classes that already have an outer class don't need them
+			m_illegalConstructors = Maps.newLinkedHashMap();
+			if (!m_classEntry.isInnerClass()) {
+				for (CtConstructor constructor : c.getDeclaredConstructors()) {
+					Set<String> syntheticFieldTypes = Sets.newHashSet();
+					if (isIllegalConstructor(syntheticFieldTypes, constructor)) {
+						m_illegalConstructors.put(EntryFactory.getConstructorEntry(constructor), syntheticFieldTypes);
 					}
 				}
 			}
 			
-			// step 6: update other indices with inner class info
-			Map<String,String> renames = Maps.newHashMap();
-			for (ClassEntry innerClassEntry : m_innerClassesByOuter.values()) {
-				String newName = innerClassEntry.buildClassEntry(getObfClassChain(innerClassEntry)).getName();
-				if (!innerClassEntry.getName().equals(newName)) {
-					// DEBUG
-					//System.out.println("REPLACE: " + innerClassEntry.getName() + " WITH " + newName);
-					renames.put(innerClassEntry.getName(), newName);
-				}
+			EnclosingMethodAttribute enclosingMethodAttribute = (EnclosingMethodAttribute)c.getClassFile().getAttribute(EnclosingMethodAttribute.tag);
+			m_hasEnclosingMethodAttribute = enclosingMethodAttribute != null;
+			if (enclosingMethodAttribute != null && enclosingMethodAttribute.methodIndex() > 0) {
+				m_enclosingBehavior = EntryFactory.getBehaviorEntry(
+					Descriptor.toJvmName(enclosingMethodAttribute.className()),
+					enclosingMethodAttribute.methodName(),
+					enclosingMethodAttribute.methodDescriptor()
+				);
+			}
+			m_hasInnerClassesAttribute = c.getClassFile().getAttribute(InnerClassesAttribute.tag) != null;
+			m_isAbstract = Modifier.isAbstract(c.getModifiers());
+			CtConstructor[] constructors = c.getDeclaredConstructors();
+			if (constructors.length == 1) {
+				m_onlyConstructorEntry = EntryFactory.getConstructorEntry(constructors[0]);
 			}
-			EntryRenamer.renameClassesInSet(renames, m_obfClassEntries);
-			m_translationIndex.renameClasses(renames);
-			EntryRenamer.renameClassesInMultimap(renames, m_methodImplementations);
-			EntryRenamer.renameClassesInMultimap(renames, m_behaviorReferences);
-			EntryRenamer.renameClassesInMultimap(renames, m_fieldReferences);
-			EntryRenamer.renameClassesInMap(renames, m_access);
 		}
 	}
 	
-	private void indexBehavior(CtBehavior behavior) {
-		// get the behavior entry
-		final BehaviorEntry behaviorEntry = EntryFactory.getBehaviorEntry(behavior);
-		if (behaviorEntry instanceof MethodEntry) {
-			MethodEntry methodEntry = (MethodEntry)behaviorEntry;
-			
-			// index implementation
-			m_methodImplementations.put(behaviorEntry.getClassName(), methodEntry);
+	private static class PartialIndex {
+		
+		// just the parts of the index that steps 4 and 5 add to, everything else is read from the whole index
+		// the entries all come from the whole index's interner, so merging never has to intern anything again
+		// HashMaps don't make their tables until the first put, so the parts a step doesn't use cost next to nothing
+		
+		private Map<MethodEntry,MethodEntry> m_bridgedMethods;
+		private Multimap<BehaviorEntry,EntryReference<BehaviorEntry,BehaviorEntry>> m_behaviorReferences;
+		private Multimap<FieldEntry,EntryReference<FieldEntry,BehaviorEntry>> m_fieldReferences;
+		private Multimap<ClassEntry,ClassEntry> m_innerClassesByOuter;
+		private Map<ClassEntry,ClassEntry> m_outerClassesByInner;
+		private Map<ClassEntry,BehaviorEntry> m_anonymousClasses;
+		
+		// not part of the index, just what step 4 learned for step 5, in class order
+		private List<InnerClassClues> m_clues;
+		
+		public PartialIndex() {
+			m_bridgedMethods = Maps.newHashMap();
+			m_behaviorReferences = HashMultimap.create();
+			m_fieldReferences = HashMultimap.create();
+			m_innerClassesByOuter = HashMultimap.create();
+			m_outerClassesByInner = Maps.newHashMap();
+			m_anonymousClasses = Maps.newHashMap();
+			m_clues = Lists.newArrayList();
+		}
+		
+		public PartialIndex(JarIndex index) {
+			// add straight to the whole index
+			m_bridgedMethods = index.m_bridgedMethods;
+			m_behaviorReferences = index.m_behaviorReferences;
+			m_fieldReferences = index.m_fieldReferences;
+			m_innerClassesByOuter = index.m_innerClassesByOuter;
+			m_outerClassesByInner = index.m_outerClassesByInner;
+			m_anonymousClasses = index.m_anonymousClasses;
+			m_clues = Lists.newArrayList();
+		}
+		
+		public void addAll(PartialIndex other) {
+			m_bridgedMethods.putAll(other.m_bridgedMethods);
+			m_behaviorReferences.putAll(other.m_behaviorReferences);
+			m_fieldReferences.putAll(other.m_fieldReferences);
+			m_innerClassesByOuter.putAll(other.m_innerClassesByOuter);
+			for (Map.Entry<ClassEntry,ClassEntry> entry : other.m_outerClassesByInner.entrySet()) {
+				boolean innerWasAdded = m_outerClassesByInner.put(entry.getKey(), entry.getValue()) == null;
+				assert (innerWasAdded);
+			}
+			m_anonymousClasses.putAll(other.m_anonymousClasses);
+			m_clues.addAll(other.m_clues);
+		}
+	}
+	
+	private <T> PartialIndex indexAll(final List<T> things, boolean parallel, final Indexer<T> indexer) {
+		PartialIndex out = new PartialIndex(this);
+		if (!parallel) {
+			for (T thing : things) {
+				indexer.index(thing, out);
+			}
+			return out;
+		}
+		
+		// index ranges of classes into partial indices on the fork-join pool
+		// then merge them back in class order, so we get exactly what the sequential indexer would
+		out.addAll(Parallel.forRange(things.size(), new Parallel.RangeWorker<PartialIndex>() {
+			@Override
+			public PartialIndex work(int start, int stop) {
+				PartialIndex partialIndex = new PartialIndex();
+				for (int i = start; i < stop; i++) {
+					indexer.index(things.get(i), partialIndex);
+				}
+				return partialIndex;
+			}
 			
-			// look for bridge and bridged methods
-			CtMethod bridgedMethod = getBridgedMethod((CtMethod)behavior);
-			if (bridgedMethod != null) {
-				m_bridgedMethods.put(methodEntry, EntryFactory.getMethodEntry(bridgedMethod));
+			@Override
+			public PartialIndex merge(PartialIndex left, PartialIndex right) {
+				left.addAll(right);
+				return left;
 			}
+		}));
+		return out;
+	}
+	
+	private void indexBridgedMethod(CtMethod method, PartialIndex out) {
+		// look for bridge and bridged methods
+		MethodEntry bridgedMethodEntry = getBridgedMethod(method);
+		if (bridgedMethodEntry != null) {
+			out.m_bridgedMethods.put(
+				m_interner.intern(EntryFactory.getMethodEntry(method)),
+				m_interner.intern(bridgedMethodEntry)
+			);
 		}
-		// looks like we don't care about constructors here
 	}
 	
-	private void indexBehaviorReferences(CtBehavior behavior) {
+	private void indexBehaviorReferences(CtBehavior behavior, final PartialIndex out) {
 		// index method calls
-		final BehaviorEntry behaviorEntry = EntryFactory.getBehaviorEntry(behavior);
+		final BehaviorEntry behaviorEntry = m_interner.intern(EntryFactory.getBehaviorEntry(behavior));
 		try {
 			behavior.instrument(new ExprEditor() {
 				@Override
@@ -214,12 +763,13 @@ public class JarIndex {
 							calledMethodEntry.getSignature()
 						);
 					}
+					calledMethodEntry = m_interner.intern(calledMethodEntry);
 					EntryReference<BehaviorEntry,BehaviorEntry> reference = new EntryReference<BehaviorEntry,BehaviorEntry>(
 						calledMethodEntry,
 						call.getMethodName(),
 						behaviorEntry
 					);
-					m_behaviorReferences.put(calledMethodEntry, reference);
+					out.m_behaviorReferences.put(calledMethodEntry, reference);
 				}
 				
 				@Override
@@ -229,34 +779,35 @@ public class JarIndex {
 					if (resolvedClassEntry != null && !resolvedClassEntry.equals(calledFieldEntry.getClassEntry())) {
 						calledFieldEntry = new FieldEntry(calledFieldEntry, resolvedClassEntry);
 					}
+					calledFieldEntry = m_interner.intern(calledFieldEntry);
 					EntryReference<FieldEntry,BehaviorEntry> reference = new EntryReference<FieldEntry,BehaviorEntry>(
 						calledFieldEntry,
 						call.getFieldName(),
 						behaviorEntry
 					);
-					m_fieldReferences.put(calledFieldEntry, reference);
+					out.m_fieldReferences.put(calledFieldEntry, reference);
 				}
 				
 				@Override
 				public void edit(ConstructorCall call) {
-					ConstructorEntry calledConstructorEntry = EntryFactory.getConstructorEntry(call);
+					ConstructorEntry calledConstructorEntry = m_interner.intern(EntryFactory.getConstructorEntry(call));
 					EntryReference<BehaviorEntry,BehaviorEntry> reference = new EntryReference<BehaviorEntry,BehaviorEntry>(
 						calledConstructorEntry,
 						call.getMethodName(),
 						behaviorEntry
 					);
-					m_behaviorReferences.put(calledConstructorEntry, reference);
+					out.m_behaviorReferences.put(calledConstructorEntry, reference);
 				}
 				
 				@Override
 				public void edit(NewExpr call) {
-					ConstructorEntry calledConstructorEntry = EntryFactory.getConstructorEntry(call);
+					ConstructorEntry calledConstructorEntry = m_interner.intern(EntryFactory.getConstructorEntry(call));
 					EntryReference<BehaviorEntry,BehaviorEntry> reference = new EntryReference<BehaviorEntry,BehaviorEntry>(
 						calledConstructorEntry,
 						call.getClassName(),
 						behaviorEntry
 					);
-					m_behaviorReferences.put(calledConstructorEntry, reference);
+					out.m_behaviorReferences.put(calledConstructorEntry, reference);
 				}
 			});
 		} catch (CannotCompileException ex) {
@@ -264,7 +815,7 @@ public class JarIndex {
 		}
 	}
 	
-	private CtMethod getBridgedMethod(CtMethod method) {
+	private MethodEntry getBridgedMethod(CtMethod method) {
 		
 		// bridge methods just call another method, cast it to the return type, and return the result
 		// let's see if we can detect this scenario
@@ -292,20 +843,44 @@ public class JarIndex {
 		if (methodCalls.size() != 1) {
 			return null;
 		}
-		MethodCall call = methodCalls.get(0);
+		MethodEntry calledMethodEntry = EntryFactory.getMethodEntry(methodCalls.get(0));
 		
-		try {
-			// we have a bridge method!
-			return call.getMethod();
-		} catch (NotFoundException ex) {
-			// can't find the type? not a bridge method
+		// find the called method in the index instead of the class pool
+		// the other classes in the jar aren't kept around anymore, so the pool can't be counted on to find them
+		ClassEntry resolvedClassEntry = m_translationIndex.resolveEntryClass(calledMethodEntry);
+		if (resolvedClassEntry == null) {
+			// can't find the method? not a bridge method
 			return null;
 		}
+		
+		// we have a bridge method!
+		return new MethodEntry(resolvedClassEntry, calledMethodEntry.getName(), calledMethodEntry.getSignature());
 	}
 	
-	private ClassEntry findOuterClass(CtClass c) {
+	private void indexOuterClass(InnerClassClues clues, PartialIndex out) {
+		ClassEntry innerClassEntry = m_interner.intern(clues.m_classEntry);
+		ClassEntry outerClassEntry = m_interner.intern(findOuterClass(clues));
+		if (outerClassEntry != null) {
+			out.m_innerClassesByOuter.put(outerClassEntry, innerClassEntry);
+			boolean innerWasAdded = out.m_outerClassesByInner.put(innerClassEntry, outerClassEntry) == null;
+			assert (innerWasAdded);
+			
+			BehaviorEntry enclosingBehavior = isAnonymousClass(clues);
+			if (enclosingBehavior != null) {
+				out.m_anonymousClasses.put(innerClassEntry, enclosingBehavior);
+				
+				// DEBUG
+				//System.out.println("ANONYMOUS: " + outerClassEntry.getName() + "$" + innerClassEntry.getSimpleName());
+			} else {
+				// DEBUG
+				//System.out.println("INNER: " + outerClassEntry.getName() + "$" + innerClassEntry.getSimpleName());
+			}
+		}
+	}
+	
+	private ClassEntry findOuterClass(InnerClassClues clues) {
 		
-		ClassEntry classEntry = EntryFactory.getClassEntry(c);
+		ClassEntry classEntry = clues.m_classEntry;
 		
 		// does this class already have an outer class?
 		if (classEntry.isInnerClass()) {
@@ -317,13 +892,9 @@ public class JarIndex {
 		// the outer class is the only class that calls constructors
 		
 		// use the synthetic fields to find the synthetic constructors
-		for (CtConstructor constructor : c.getDeclaredConstructors()) {
-			Set<String> syntheticFieldTypes = Sets.newHashSet();
-			if (!isIllegalConstructor(syntheticFieldTypes, constructor)) {
-				continue;
-			}
-			
-			ConstructorEntry constructorEntry = EntryFactory.getConstructorEntry(constructor);
+		for (Map.Entry<ConstructorEntry,Set<String>> entry : clues.m_illegalConstructors.entrySet()) {
+			ConstructorEntry constructorEntry = entry.getKey();
+			Set<String> syntheticFieldTypes = entry.getValue();
 			
 			// gather the classes from the illegally-set synthetic fields
 			Set<ClassEntry> illegallySetClasses = Sets.newHashSet();
@@ -399,7 +970,7 @@ public class JarIndex {
 	}
 	
 	@SuppressWarnings("unchecked")
-	private boolean isIllegalConstructor(Set<String> syntheticFieldTypes, CtConstructor constructor) {
+	private static boolean isIllegalConstructor(Set<String> syntheticFieldTypes, CtConstructor constructor) {
 		
 		// illegal constructors only set synthetic member fields, then call super()
 		String className = constructor.getDeclaringClass().getName();
@@ -467,30 +1038,20 @@ public class JarIndex {
 		return true;
 	}
 	
-	private BehaviorEntry isAnonymousClass(CtClass c, ClassEntry outerClassEntry) {
+	private BehaviorEntry isAnonymousClass(InnerClassClues clues) {
 		
 		// is this class already marked anonymous?
-		EnclosingMethodAttribute enclosingMethodAttribute = (EnclosingMethodAttribute)c.getClassFile().getAttribute(EnclosingMethodAttribute.tag);
-		if (enclosingMethodAttribute != null) {
-			if (enclosingMethodAttribute.methodIndex() > 0) {
-				return EntryFactory.getBehaviorEntry(
-					Descriptor.toJvmName(enclosingMethodAttribute.className()),
-					enclosingMethodAttribute.methodName(),
-					enclosingMethodAttribute.methodDescriptor()
-				);
-			} else {
-				// an attribute but no method? assume not anonymous
-				return null;
-			}
+		if (clues.m_hasEnclosingMethodAttribute) {
+			// an attribute but no method leaves no enclosing behavior, so we assume it's not anonymous
+			return clues.m_enclosingBehavior;
 		}
 		
 		// if there's an inner class attribute, but not an enclosing method attribute, then it's not anonymous
-		InnerClassesAttribute innerClassesAttribute = (InnerClassesAttribute)c.getClassFile().getAttribute(InnerClassesAttribute.tag);
-		if (innerClassesAttribute != null) {
+		if (clues.m_hasInnerClassesAttribute) {
 			return null;
 		}
 		
-		ClassEntry innerClassEntry = new ClassEntry(Descriptor.toJvmName(c.getName()));
+		ClassEntry innerClassEntry = clues.m_classEntry;
 		
 		// anonymous classes:
 		// can't be abstract
@@ -499,18 +1060,17 @@ public class JarIndex {
 		// the type the instance is assigned to can't be this type
 		
 		// is abstract?
-		if (Modifier.isAbstract(c.getModifiers())) {
+		if (clues.m_isAbstract) {
 			return null;
 		}
 		
 		// is there exactly one constructor?
-		if (c.getDeclaredConstructors().length != 1) {
+		ConstructorEntry constructorEntry = clues.m_onlyConstructorEntry;
+		if (constructorEntry == null) {
 			return null;
 		}
-		CtConstructor constructor = c.getDeclaredConstructors()[0];
 		
 		// is this constructor called exactly once?
-		ConstructorEntry constructorEntry = EntryFactory.getConstructorEntry(constructor);
 		Collection<EntryReference<BehaviorEntry,BehaviorEntry>> references = getBehaviorReferences(constructorEntry);
 		if (references.size() != 1) {
 			return null;
@@ -815,7 +1375,7 @@ public class JarIndex {
 	public MethodEntry getBridgedMethod(MethodEntry bridgeMethodEntry) {
 		return m_bridgedMethods.get(bridgeMethodEntry);
 	}
-
+	
 	public List<ClassEntry> getObfClassChain(ClassEntry obfClassEntry) {
 		
 		// build class chain in inner-to-outer order
@@ -836,4 +1396,52 @@ public class JarIndex {
 		
 		return obfClassChain;
 	}
+	
+	public void write(OutputStream out)
+	throws IOException {
+		GZIPOutputStream gzipout = new GZIPOutputStream(out);
+		ObjectOutputStream oout = new ObjectOutputStream(gzipout);
+		oout.writeObject(m_obfClassEntries);
+		oout.writeObject(m_translationIndex);
+		oout.writeObject(m_access);
+		oout.writeObject(m_fields);
+		oout.writeObject(m_behaviors);
+		oout.writeObject(m_methodImplementations);
+		oout.writeObject(m_behaviorReferences);
+		oout.writeObject(m_fieldReferences);
+		oout.writeObject(m_innerClassesByOuter);
+		oout.writeObject(m_outerClassesByInner);
+		oout.writeObject(m_anonymousClasses);
+		oout.writeObject(m_bridgedMethods);
+		oout.writeBoolean(m_buildInnerClasses);
+		oout.writeObject(m_classCrcs);
+		oout.writeObject(m_innerClassRenames);
+		oout.flush();
+		gzipout.finish();
+	}
+	
+	@SuppressWarnings("unchecked")
+	public void read(InputStream in)
+	throws IOException {
+		try {
+			ObjectInputStream oin = new IndexInputStream(new GZIPInputStream(in));
+			m_obfClassEntries = (Set<ClassEntry>)oin.readObject();
+			m_translationIndex = (TranslationIndex)oin.readObject();
+			m_access = (Map<Entry,Access>)oin.readObject();
+			m_fields = (Multimap<ClassEntry,FieldEntry>)oin.readObject();
+			m_behaviors = (Multimap<ClassEntry,BehaviorEntry>)oin.readObject();
+			m_methodImplementations = (Multimap<String,MethodEntry>)oin.readObject();
+			m_behaviorReferences = (Multimap<BehaviorEntry,EntryReference<BehaviorEntry,BehaviorEntry>>)oin.readObject();
+			m_fieldReferences = (Multimap<FieldEntry,EntryReference<FieldEntry,BehaviorEntry>>)oin.readObject();
+			m_innerClassesByOuter = (Multimap<ClassEntry,ClassEntry>)oin.readObject();
+			m_outerClassesByInner = (Map<ClassEntry,ClassEntry>)oin.readObject();
+			m_anonymousClasses = (Map<ClassEntry,BehaviorEntry>)oin.readObject();
+			m_bridgedMethods = (Map<MethodEntry,MethodEntry>)oin.readObject();
+			m_buildInnerClasses = oin.readBoolean();
+			m_classCrcs = (Map<String,Long>)oin.readObject();
+			m_innerClassRenames = (Map<String,String>)oin.readObject();
+		} catch (ClassNotFoundException ex) {
+			throw new Error(ex);
+		}
+	}
 }
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+public class JarIndexCache {
+	
+	private static final int Magic = 0x454e4958; // "ENIX"
+	
+	// bump this whenever the index or any of the entries change their serialized form
+	private static final int Version = 3;
+	
+	private static String m_thisCodeHash;
+	
+	private File m_dir;
+	private String m_codeHash;
+	
+	public JarIndexCache()
+	throws IOException {
+		// keep the cache files in the user's home, where nobody else can drop files for us to read
+		this(new File(System.getProperty("user.home"), ".enigma" + File.separator + "indexCache"));
+	}
+	
+	public JarIndexCache(File dir)
+	throws IOException {
+		this(dir, getCodeHash());
+	}
+	
+	public JarIndexCache(File dir, String codeHash) {
+		// the cache only trusts files written by code with the same hash
+		m_dir = dir;
+		m_codeHash = codeHash;
+	}
+	
+	public static JarIndexCache getDefault() {
+		// use -Denigma.indexCache=false to turn the cache off
+		// or -Denigma.indexCacheDir=<dir> to keep the cache files somewhere else
+		if (System.getProperty("enigma.indexCache", "true").equalsIgnoreCase("false")) {
+			return null;
+		}
+		try {
+			String dir = System.getProperty("enigma.indexCacheDir");
+			if (dir != null) {
+				return new JarIndexCache(new File(dir));
+			}
+			return new JarIndexCache();
+		} catch (IOException ex) {
+			// the cache is just an optimization, so go without it
+			System.err.println("WARNING: Unable to use the jar index cache: " + ex.getMessage());
+			return null;
+		}
+	}
+	
+	public static synchronized String getCodeHash()
+	throws IOException {
+		
+		// the index depends on how this build of enigma reads jars, not just on what it writes
+		// so hash the code itself, then a cache from any other build never gets read, even if nobody bumped the version
+		if (m_thisCodeHash == null) {
+			CodeSource source = JarIndexCache.class.getProtectionDomain().getCodeSource();
+			if (source == null || !source.getLocation().getProtocol().equals("file")) {
+				throw new IOException("Can't find the code to hash");
+			}
+			File location;
+			try {
+				location = new File(source.getLocation().toURI());
+			} catch (URISyntaxException ex) {
+				throw new IOException(ex);
+			}
+			if (location.isFile()) {
+				m_thisCodeHash = Files.hash(location, Hashing.sha1()).toString();
+			} else {
+				// running from a folder of classes, hash all of them in a stable order
+				List<File> files = Lists.newArrayList(Files.fileTreeTraverser().preOrderTraversal(location).filter(Files.isFile()));
+				Collections.sort(files);
+				Hasher hasher = Hashing.sha1().newHasher();
+				for (File file : files) {
+					hasher.putString(location.toURI().relativize(file.toURI()).getPath(), StandardCharsets.UTF_8);
+					hasher.putBytes(Files.toByteArray(file));
+				}
+				m_thisCodeHash = hasher.hash().toString();
+			}
+		}
+		return m_thisCodeHash;
+	}
+	
+	public JarIndex getJarIndex(JarFile jar, boolean buildInnerClasses, boolean parallel)
+	throws IOException {
+		try (JarClassRepository repository = new JarClassRepository(jar)) {
+			return getJarIndex(repository, buildInnerClasses, parallel);
+		}
+	}
+	
+	public JarIndex getJarIndex(JarClassRepository repository, boolean buildInnerClasses, boolean parallel)
+	throws IOException {
+		
+		File jarFile = new File(repository.getJar().getName());
+		String hash = Files.hash(jarFile, Hashing.sha1()).toString();
+		File cacheFile = getCacheFile(jarFile);
+		
+		// try the cache first
+		JarIndex index = null;
+		String cachedHash = readHash(cacheFile, buildInnerClasses);
+		if (cachedHash != null) {
+			index = read(cacheFile);
+		}
+		if (index != null && cachedHash.equals(hash)) {
+			return index;
+		}
+		
+		if (index != null) {
+			// the cache is for an older build of this jar, just patch the index
+			index.updateJar(repository, parallel);
+		} else {
+			// cache miss, index the jar
+			index = new JarIndex();
+			index.indexJar(repository, buildInnerClasses, parallel);
+		}
+		
+		// and save it for next time
+		write(cacheFile, hash, buildInnerClasses, index);
+		return index;
+	}
+	
+	public File getCacheFile(File jarFile)
+	throws IOException {
+		// there's one cache file per jar path, and the hash inside it says which build of the jar it's for
+		// so a newer build of the jar finds the old cache and can just patch it
+		String pathHash = Hashing.sha1().hashString(jarFile.getCanonicalPath(), StandardCharsets.UTF_8).toString();
+		return new File(m_dir, jarFile.getName() + "-" + pathHash + ".index");
+	}
+	
+	private String readHash(File cacheFile, boolean buildInnerClasses) {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			
+			// is this cache for this version, and was it written by this code?
+			if (in.readInt() != Magic || in.readInt() != Version || !in.readUTF().equals(m_codeHash)) {
+				return null;
+			}
+			String hash = in.readUTF();
+			if (in.readBoolean() != buildInnerClasses) {
+				return null;
+			}
+			return hash;
+		} catch (IOException | RuntimeException ex) {
+			System.err.println("WARNING: Unable to read jar index cache " + cacheFile + ", re-indexing the jar.");
+			return null;
+		}
+	}
+	
+	private JarIndex read(File cacheFile) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			
+			// skip the header, readHash() already checked it
+			in.readInt();
+			in.readInt();
+			in.readUTF();
+			in.readUTF();
+			in.readBoolean();
+			
+			JarIndex index = new JarIndex();
+			index.read(in);
+			return index;
+		} catch (IOException | RuntimeException ex) {
+			System.err.println("WARNING: Unable to read jar index cache " + cacheFile + ", re-indexing the jar.");
+			return null;
+		}
+	}
+	
+	private void write(File cacheFile, String hash, boolean buildInnerClasses, JarIndex index) {
+		// write to a temp file first, so a crash never leaves a half-written cache behind
+		// every writer gets its own temp file, so two processes caching the same jar don't write over each other
+		// the move replaces the cache file in one step, so readers see either the old cache or the new one
+		File tempFile = null;
+		try {
+			m_dir.mkdirs();
+			tempFile = File.createTempFile(cacheFile.getName() + "-", ".tmp", m_dir);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+				out.writeInt(Magic);
+				out.writeInt(Version);
+				out.writeUTF(m_codeHash);
+				out.writeUTF(hash);
+				out.writeBoolean(buildInnerClasses);
+				index.write(out);
+			}
+			java.nio.file.Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			// the cache is just an optimization, don't crash over it
+			System.err.println("WARNING: Unable to write jar index cache " + cacheFile + ": " + ex.getMessage());
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+	}
+}
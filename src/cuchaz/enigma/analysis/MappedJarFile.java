@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class MappedJarFile {
+	
+	// reads entries straight out of a memory-mapped jar
+	// we only handle the plain zip format here (no zip64, no encryption, no multi-disk)
+	// anything else makes open() return null and the caller should just use a JarFile instead
+	
+	private static final int EndOfCentralDirectorySignature = 0x06054b50;
+	private static final int Zip64EndOfCentralDirectoryLocatorSignature = 0x07064b50;
+	private static final int CentralDirectorySignature = 0x02014b50;
+	private static final int LocalHeaderSignature = 0x04034b50;
+	private static final int EndOfCentralDirectorySize = 22;
+	private static final int CentralDirectoryHeaderSize = 46;
+	private static final int LocalHeaderSize = 30;
+	private static final int MaxCommentSize = 0xffff;
+	private static final Charset Utf8 = Charset.forName("UTF-8");
+	
+	private static class Entry {
+		
+		public int method;
+		public long crc;
+		public int compressedSize;
+		public int size;
+		public int headerOffset;
+		public int dataOffset;
+		
+		public Entry() {
+			dataOffset = -1;
+		}
+	}
+	
+	private File m_file;
+	private ByteBuffer m_buf;
+	private List<String> m_names;
+	private Map<String,Entry> m_entries;
+	private Inflater m_inflater;
+	private byte[] m_inBuf;
+	private byte[] m_outBuf;
+	
+	private MappedJarFile(File file, ByteBuffer buf) {
+		m_file = file;
+		m_buf = buf;
+		m_names = Lists.newArrayList();
+		m_entries = Maps.newHashMap();
+		m_inflater = new Inflater(true);
+		m_inBuf = new byte[0];
+		m_outBuf = new byte[0];
+	}
+	
+	public static MappedJarFile open(File file) {
+		MappedByteBuffer buf;
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			if (in.length() > Integer.MAX_VALUE) {
+				return null;
+			}
+			// the mapping stays valid after the channel is closed
+			buf = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+		} catch (IOException ex) {
+			return null;
+		}
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		
+		MappedJarFile jar = new MappedJarFile(file, buf);
+		try {
+			if (!jar.readCentralDirectory()) {
+				return null;
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+			// the zip is truncated or lies about its offsets
+			return null;
+		}
+		return jar;
+	}
+	
+	public File getFile() {
+		return m_file;
+	}
+	
+	public synchronized void close() {
+		
+		// the channel closed right after mapping, so the mapping is all that's left holding on to the file
+		// until it's unmapped, some platforms (like Windows) won't let anyone replace the jar
+		if (m_buf != null) {
+			unmap(m_buf);
+			m_buf = null;
+		}
+	}
+	
+	private static void unmap(ByteBuffer buf) {
+		// there's no public way to unmap a buffer, so ask its cleaner
+		// if this JVM doesn't have one, the mapping just goes away whenever the buffer gets collected
+		try {
+			Method cleanerMethod = buf.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buf);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			// oh well, we tried
+		}
+	}
+	
+	public List<String> getEntryNames() {
+		return Collections.unmodifiableList(m_names);
+	}
+	
+	public boolean contains(String name) {
+		return m_entries.containsKey(name);
+	}
+	
+	public int getSize(String name) {
+		Entry entry = m_entries.get(name);
+		if (entry == null) {
+			return -1;
+		}
+		return entry.size;
+	}
+	
+	public long getCrc(String name) {
+		Entry entry = m_entries.get(name);
+		if (entry == null) {
+			return -1;
+		}
+		return entry.crc;
+	}
+	
+	public boolean isStored(String name) {
+		Entry entry = m_entries.get(name);
+		return entry != null && entry.method == ZipEntry.STORED;
+	}
+	
+	public synchronized ByteBuffer getEntry(String name) {
+		
+		// stored entries are just a window on the mapped file, so they're only good until close()
+		checkOpen();
+		Entry entry = m_entries.get(name);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.method == ZipEntry.STORED) {
+			return slice(getDataOffset(entry), entry.size);
+		}
+		
+		// everything else gets inflated into our reusable buffer, so it's only good until the next call
+		if (m_outBuf.length < entry.size) {
+			m_outBuf = new byte[entry.size];
+		}
+		read(entry, m_outBuf, 0);
+		return ByteBuffer.wrap(m_outBuf, 0, entry.size).slice();
+	}
+	
+	public synchronized int read(String name, byte[] out, int offset) {
+		checkOpen();
+		Entry entry = m_entries.get(name);
+		if (entry == null) {
+			return -1;
+		}
+		read(entry, out, offset);
+		return entry.size;
+	}
+	
+	private void read(Entry entry, byte[] out, int offset) {
+		int dataOffset = getDataOffset(entry);
+		if (entry.method == ZipEntry.STORED) {
+			ByteBuffer data = slice(dataOffset, entry.size);
+			data.get(out, offset, entry.size);
+			return;
+		}
+		
+		// copy the compressed bytes out of the mapping and inflate them
+		if (m_inBuf.length < entry.compressedSize + 1) {
+			m_inBuf = new byte[entry.compressedSize + 1];
+		}
+		slice(dataOffset, entry.compressedSize).get(m_inBuf, 0, entry.compressedSize);
+		m_inflater.reset();
+		// raw inflaters need one extra dummy byte at the end of the input
+		m_inBuf[entry.compressedSize] = 0;
+		m_inflater.setInput(m_inBuf, 0, entry.compressedSize + 1);
+		try {
+			int numBytes = 0;
+			while (numBytes < entry.size) {
+				int numBytesInflated = m_inflater.inflate(out, offset + numBytes, entry.size - numBytes);
+				if (numBytesInflated == 0 && (m_inflater.finished() || m_inflater.needsInput() || m_inflater.needsDictionary())) {
+					break;
+				}
+				numBytes += numBytesInflated;
+			}
+			if (numBytes != entry.size) {
+				throw new Error(String.format("Entry in %s inflated to %d bytes, expected %d", m_file, numBytes, entry.size));
+			}
+		} catch (DataFormatException ex) {
+			throw new Error("Unable to inflate entry in " + m_file, ex);
+		}
+	}
+	
+	private void checkOpen() {
+		if (m_buf == null) {
+			throw new Error("Mapped jar " + m_file + " is closed!");
+		}
+	}
+	
+	private int getDataOffset(Entry entry) {
+		if (entry.dataOffset < 0) {
+			// the local header can have a different extra field than the central directory, so read its own lengths
+			if (m_buf.getInt(entry.headerOffset) != LocalHeaderSignature) {
+				throw new Error("Bad local header in " + m_file + " at " + entry.headerOffset);
+			}
+			int nameLength = m_buf.getShort(entry.headerOffset + 26) & 0xffff;
+			int extraLength = m_buf.getShort(entry.headerOffset + 28) & 0xffff;
+			entry.dataOffset = entry.headerOffset + LocalHeaderSize + nameLength + extraLength;
+		}
+		return entry.dataOffset;
+	}
+	
+	private ByteBuffer slice(int offset, int length) {
+		ByteBuffer buf = m_buf.duplicate();
+		buf.limit(offset + length);
+		buf.position(offset);
+		return buf.slice();
+	}
+	
+	private boolean readCentralDirectory() {
+		
+		// find the end of central directory record, it's somewhere before the trailing comment
+		int end = m_buf.limit();
+		int eocdOffset = -1;
+		for (int i = end - EndOfCentralDirectorySize; i >= Math.max(0, end - EndOfCentralDirectorySize - MaxCommentSize); i--) {
+			if (m_buf.getInt(i) == EndOfCentralDirectorySignature) {
+				eocdOffset = i;
+				break;
+			}
+		}
+		if (eocdOffset < 0) {
+			return false;
+		}
+		
+		// bail on zip64 and multi-disk archives
+		if (eocdOffset >= 20 && m_buf.getInt(eocdOffset - 20) == Zip64EndOfCentralDirectoryLocatorSignature) {
+			return false;
+		}
+		int diskNumber = m_buf.getShort(eocdOffset + 4) & 0xffff;
+		int numEntriesOnDisk = m_buf.getShort(eocdOffset + 8) & 0xffff;
+		int numEntries = m_buf.getShort(eocdOffset + 10) & 0xffff;
+		long directorySize = m_buf.getInt(eocdOffset + 12) & 0xffffffffL;
+		long directoryOffset = m_buf.getInt(eocdOffset + 16) & 0xffffffffL;
+		if (diskNumber != 0 || numEntriesOnDisk != numEntries || numEntries == 0xffff
+			|| directoryOffset + directorySize > eocdOffset) {
+			return false;
+		}
+		
+		// read the entries
+		int offset = (int)directoryOffset;
+		for (int i = 0; i < numEntries; i++) {
+			if (m_buf.getInt(offset) != CentralDirectorySignature) {
+				return false;
+			}
+			int flags = m_buf.getShort(offset + 8) & 0xffff;
+			Entry entry = new Entry();
+			entry.method = m_buf.getShort(offset + 10) & 0xffff;
+			entry.crc = m_buf.getInt(offset + 16) & 0xffffffffL;
+			long compressedSize = m_buf.getInt(offset + 20) & 0xffffffffL;
+			long size = m_buf.getInt(offset + 24) & 0xffffffffL;
+			int nameLength = m_buf.getShort(offset + 28) & 0xffff;
+			int extraLength = m_buf.getShort(offset + 30) & 0xffff;
+			int commentLength = m_buf.getShort(offset + 32) & 0xffff;
+			long headerOffset = m_buf.getInt(offset + 42) & 0xffffffffL;
+			
+			// encrypted entries and zip64 sizes are the JarFile's problem
+			if ((flags & 0x1) != 0 || compressedSize >= Integer.MAX_VALUE || size >= Integer.MAX_VALUE || headerOffset >= eocdOffset) {
+				return false;
+			}
+			if (entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED) {
+				return false;
+			}
+			entry.compressedSize = (int)compressedSize;
+			entry.size = (int)size;
+			entry.headerOffset = (int)headerOffset;
+			
+			byte[] nameBytes = new byte[nameLength];
+			ByteBuffer nameBuf = slice(offset + CentralDirectoryHeaderSize, nameLength);
+			nameBuf.get(nameBytes);
+			String name = new String(nameBytes, Utf8);
+			
+			m_names.add(name);
+			m_entries.put(name, entry);
+			offset += CentralDirectoryHeaderSize + nameLength + extraLength + commentLength;
+		}
+		return true;
+	}
+}
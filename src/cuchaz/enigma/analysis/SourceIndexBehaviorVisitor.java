@@ -55,11 +55,11 @@ public class SourceIndexBehaviorVisitor extends SourceIndexVisitor {
 		if (ref instanceof MethodReference) {
 			MethodReference methodRef = (MethodReference)ref;
 			if (methodRef.isConstructor()) {
-				behaviorEntry = new ConstructorEntry(classEntry, new Signature(ref.getErasedSignature()));
+				behaviorEntry = new ConstructorEntry(classEntry, Signature.get(ref.getErasedSignature()));
 			} else if (methodRef.isTypeInitializer()) {
 				behaviorEntry = new ConstructorEntry(classEntry);
 			} else {
-				behaviorEntry = new MethodEntry(classEntry, ref.getName(), new Signature(ref.getErasedSignature()));
+				behaviorEntry = new MethodEntry(classEntry, ref.getName(), Signature.get(ref.getErasedSignature()));
 			}
 		}
 		if (behaviorEntry != null) {
@@ -90,7 +90,7 @@ public class SourceIndexBehaviorVisitor extends SourceIndexVisitor {
 			}
 			
 			ClassEntry classEntry = new ClassEntry(ref.getDeclaringType().getInternalName());
-			FieldEntry fieldEntry = new FieldEntry(classEntry, ref.getName(), new Type(ref.getErasedSignature()));
+			FieldEntry fieldEntry = new FieldEntry(classEntry, ref.getName(), Type.get(ref.getErasedSignature()));
 			index.addReference(node.getMemberNameToken(), fieldEntry, m_behaviorEntry);
 		}
 		
@@ -126,7 +126,7 @@ public class SourceIndexBehaviorVisitor extends SourceIndexVisitor {
 		MemberReference ref = node.getUserData(Keys.MEMBER_REFERENCE);
 		if (ref != null) {
 			ClassEntry classEntry = new ClassEntry(ref.getDeclaringType().getInternalName());
-			FieldEntry fieldEntry = new FieldEntry(classEntry, ref.getName(), new Type(ref.getErasedSignature()));
+			FieldEntry fieldEntry = new FieldEntry(classEntry, ref.getName(), Type.get(ref.getErasedSignature()));
 			index.addReference(node.getIdentifierToken(), fieldEntry, m_behaviorEntry);
 		}
 		
@@ -138,7 +138,7 @@ public class SourceIndexBehaviorVisitor extends SourceIndexVisitor {
 		MemberReference ref = node.getUserData(Keys.MEMBER_REFERENCE);
 		if (ref != null) {
 			ClassEntry classEntry = new ClassEntry(ref.getDeclaringType().getInternalName());
-			ConstructorEntry constructorEntry = new ConstructorEntry(classEntry, new Signature(ref.getErasedSignature()));
+			ConstructorEntry constructorEntry = new ConstructorEntry(classEntry, Signature.get(ref.getErasedSignature()));
 			if (node.getType() instanceof SimpleType) {
 				SimpleType simpleTypeNode = (SimpleType)node.getType();
 				index.addReference(simpleTypeNode.getIdentifierToken(), constructorEntry, m_behaviorEntry);
@@ -17,10 +17,14 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -29,18 +33,23 @@ import javassist.CtClass;
 import javassist.CtField;
 import javassist.bytecode.Descriptor;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
+import cuchaz.enigma.bytecode.ClassHeader;
 import cuchaz.enigma.mapping.ArgumentEntry;
 import cuchaz.enigma.mapping.BehaviorEntry;
 import cuchaz.enigma.mapping.ClassEntry;
 import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.EntryFactory;
+import cuchaz.enigma.mapping.EntryInterner;
 import cuchaz.enigma.mapping.FieldEntry;
 import cuchaz.enigma.mapping.Translator;
+import cuchaz.enigma.mapping.Type;
 
 public class TranslationIndex implements Serializable {
 	
@@ -51,49 +60,80 @@ public class TranslationIndex implements Serializable {
 	private Multimap<ClassEntry,BehaviorEntry> m_behaviorEntries;
 	private Multimap<ClassEntry,ClassEntry> m_interfaces;
 	
+	// the reverse of m_superclasses, and the descendants of each class, built from it on demand
+	// neither one is serialized, they're rebuilt from m_superclasses after reading
+	private transient Multimap<ClassEntry,ClassEntry> m_subclasses;
+	private transient Map<ClassEntry,List<ClassEntry>> m_descendants;
+	
+	// resolved classes for member entries, keyed by (class, name, descriptor), and dropped whenever the index changes
+	// the indexer resolves references from many threads at once, so this one has to be concurrent
+	private transient ConcurrentMap<Entry,Optional<ClassEntry>> m_resolvedClasses;
+	private transient AtomicLong m_numResolutionHits;
+	private transient AtomicLong m_numResolutionMisses;
+	private transient EntryInterner m_interner;
+	
 	public TranslationIndex() {
+		this(new EntryInterner());
+	}
+	
+	public TranslationIndex(EntryInterner interner) {
+		m_interner = interner;
 		m_superclasses = Maps.newHashMap();
 		m_fieldEntries = HashMultimap.create();
 		m_behaviorEntries = HashMultimap.create();
 		m_interfaces = HashMultimap.create();
+		m_subclasses = HashMultimap.create();
+		m_descendants = Maps.newHashMap();
+		initResolutionCache();
+	}
+	
+	public TranslationIndex(TranslationIndex other) {
+		
+		// a copy that can change without changing the other one
+		this(other.m_interner);
+		m_superclasses.putAll(other.m_superclasses);
+		m_fieldEntries.putAll(other.m_fieldEntries);
+		m_behaviorEntries.putAll(other.m_behaviorEntries);
+		m_interfaces.putAll(other.m_interfaces);
+		indexSubclasses();
 	}
 	
 	public TranslationIndex(TranslationIndex other, Translator translator) {
+		this();
+		for (ClassEntry classEntry : other.getIndexedClasses()) {
+			translateClass(other, classEntry, translator);
+		}
+	}
+	
+	public ClassEntry translateClass(TranslationIndex other, ClassEntry classEntry, Translator translator) {
 		
-		// translate the superclasses
-		m_superclasses = Maps.newHashMap();
-		for (Map.Entry<ClassEntry,ClassEntry> mapEntry : other.m_superclasses.entrySet()) {
-			m_superclasses.put(
-				translator.translateEntry(mapEntry.getKey()),
-				translator.translateEntry(mapEntry.getValue())
-			);
+		// copy everything the other index knows about this class, translated
+		// returns the translated class entry, which is where the class lives in this index
+		m_resolvedClasses.clear();
+		ClassEntry translatedClassEntry = m_interner.intern(translator.translateEntry(classEntry));
+		
+		// translate the superclass
+		ClassEntry superclassEntry = other.m_superclasses.get(classEntry);
+		if (superclassEntry != null) {
+			setSuperclass(translatedClassEntry, m_interner.intern(translator.translateEntry(superclassEntry)));
 		}
 		
 		// translate the interfaces
-		m_interfaces = HashMultimap.create();
-		for (Map.Entry<ClassEntry,ClassEntry> mapEntry : other.m_interfaces.entries()) {
-			m_interfaces.put(
-				translator.translateEntry(mapEntry.getKey()),
-				translator.translateEntry(mapEntry.getValue())
-			);
+		for (ClassEntry interfaceEntry : other.m_interfaces.get(classEntry)) {
+			m_interfaces.put(translatedClassEntry, m_interner.intern(translator.translateEntry(interfaceEntry)));
 		}
 		
 		// translate the fields
-		m_fieldEntries = HashMultimap.create();
-		for (Map.Entry<ClassEntry,FieldEntry> mapEntry : other.m_fieldEntries.entries()) {
-			m_fieldEntries.put(
-				translator.translateEntry(mapEntry.getKey()),
-				translator.translateEntry(mapEntry.getValue())
-			);
+		for (FieldEntry fieldEntry : other.m_fieldEntries.get(classEntry)) {
+			m_fieldEntries.put(translatedClassEntry, m_interner.intern(translator.translateEntry(fieldEntry)));
 		}
 		
-		m_behaviorEntries = HashMultimap.create();
-		for (Map.Entry<ClassEntry,BehaviorEntry> mapEntry : other.m_behaviorEntries.entries()) {
-			m_behaviorEntries.put(
-				translator.translateEntry(mapEntry.getKey()),
-				translator.translateEntry(mapEntry.getValue())
-			);
+		// translate the behaviors
+		for (BehaviorEntry behaviorEntry : other.m_behaviorEntries.get(classEntry)) {
+			m_behaviorEntries.put(translatedClassEntry, m_interner.intern(translator.translateEntry(behaviorEntry)));
 		}
+		
+		return translatedClassEntry;
 	}
 	
 	public void indexClass(CtClass c) {
@@ -102,44 +142,168 @@ public class TranslationIndex implements Serializable {
 	
 	public void indexClass(CtClass c, boolean indexMembers) {
 		
-		ClassEntry classEntry = EntryFactory.getClassEntry(c);
+		ClassEntry classEntry = m_interner.intern(EntryFactory.getClassEntry(c));
 		if (isJre(classEntry)) {
 			return;
 		}
+		m_resolvedClasses.clear();
 		
 		// add the superclass
-		ClassEntry superclassEntry = EntryFactory.getSuperclassEntry(c);
+		ClassEntry superclassEntry = m_interner.intern(EntryFactory.getSuperclassEntry(c));
 		if (superclassEntry != null) {
-			m_superclasses.put(classEntry, superclassEntry);
+			setSuperclass(classEntry, superclassEntry);
 		}
 		
 		// add the interfaces
 		for (String interfaceClassName : c.getClassFile().getInterfaces()) {
 			ClassEntry interfaceClassEntry = new ClassEntry(Descriptor.toJvmName(interfaceClassName));
 			if (!isJre(interfaceClassEntry)) {
-				m_interfaces.put(classEntry, interfaceClassEntry);
+				m_interfaces.put(classEntry, m_interner.intern(interfaceClassEntry));
 			}
 		}
 		
 		if (indexMembers) {
 			// add fields
 			for (CtField field : c.getDeclaredFields()) {
-				FieldEntry fieldEntry = EntryFactory.getFieldEntry(field);
+				FieldEntry fieldEntry = m_interner.intern(EntryFactory.getFieldEntry(field));
 				m_fieldEntries.put(fieldEntry.getClassEntry(), fieldEntry);
 			}
 			
 			// add behaviors
 			for (CtBehavior behavior : c.getDeclaredBehaviors()) {
-				BehaviorEntry behaviorEntry = EntryFactory.getBehaviorEntry(behavior);
+				BehaviorEntry behaviorEntry = m_interner.intern(EntryFactory.getBehaviorEntry(behavior));
 				m_behaviorEntries.put(behaviorEntry.getClassEntry(), behaviorEntry);
 			}
 		}
 	}
 	
+	public void indexClass(ClassHeader header) {
+		indexClass(header, true);
+	}
+	
+	public void indexClass(ClassHeader header, boolean indexMembers) {
+		
+		ClassEntry classEntry = m_interner.intern(EntryFactory.getClassEntry(header));
+		if (isJre(classEntry)) {
+			return;
+		}
+		m_resolvedClasses.clear();
+		
+		// add the superclass
+		ClassEntry superclassEntry = m_interner.intern(EntryFactory.getSuperclassEntry(header));
+		if (superclassEntry != null) {
+			setSuperclass(classEntry, superclassEntry);
+		}
+		
+		// add the interfaces
+		for (String interfaceClassName : header.getInterfaces()) {
+			ClassEntry interfaceClassEntry = new ClassEntry(interfaceClassName);
+			if (!isJre(interfaceClassEntry)) {
+				m_interfaces.put(classEntry, m_interner.intern(interfaceClassEntry));
+			}
+		}
+		
+		if (indexMembers) {
+			// add fields
+			for (ClassHeader.Member field : header.getFields()) {
+				m_fieldEntries.put(classEntry, m_interner.intern(EntryFactory.getFieldEntry(header, field)));
+			}
+			
+			// add behaviors
+			for (ClassHeader.Member behavior : header.getMethods()) {
+				m_behaviorEntries.put(classEntry, m_interner.intern(EntryFactory.getBehaviorEntry(header, behavior)));
+			}
+		}
+	}
+	
+	public void removeClass(ClassEntry classEntry) {
+		m_resolvedClasses.clear();
+		setSuperclass(classEntry, null);
+		m_interfaces.removeAll(classEntry);
+		m_fieldEntries.removeAll(classEntry);
+		m_behaviorEntries.removeAll(classEntry);
+	}
+	
 	public void renameClasses(Map<String,String> renames) {
 		EntryRenamer.renameClassesInMap(renames, m_superclasses);
 		EntryRenamer.renameClassesInMultimap(renames, m_fieldEntries);
 		EntryRenamer.renameClassesInMultimap(renames, m_behaviorEntries);
+		indexSubclasses();
+		m_resolvedClasses.clear();
+	}
+	
+	private void setSuperclass(ClassEntry classEntry, ClassEntry superclassEntry) {
+		ClassEntry oldSuperclassEntry;
+		if (superclassEntry != null) {
+			oldSuperclassEntry = m_superclasses.put(classEntry, superclassEntry);
+		} else {
+			oldSuperclassEntry = m_superclasses.remove(classEntry);
+		}
+		if (oldSuperclassEntry != null) {
+			m_subclasses.remove(oldSuperclassEntry, classEntry);
+		}
+		if (superclassEntry != null) {
+			m_subclasses.put(superclassEntry, classEntry);
+		}
+		m_descendants.clear();
+	}
+	
+	private void indexSubclasses() {
+		m_subclasses = HashMultimap.create();
+		for (Map.Entry<ClassEntry,ClassEntry> entry : m_superclasses.entrySet()) {
+			m_subclasses.put(entry.getValue(), entry.getKey());
+		}
+		m_descendants = Maps.newHashMap();
+	}
+	
+	private void initResolutionCache() {
+		m_resolvedClasses = new ConcurrentHashMap<Entry,Optional<ClassEntry>>();
+		m_numResolutionHits = new AtomicLong();
+		m_numResolutionMisses = new AtomicLong();
+	}
+	
+	public long getNumResolutionHits() {
+		return m_numResolutionHits.get();
+	}
+	
+	public long getNumResolutionMisses() {
+		return m_numResolutionMisses.get();
+	}
+	
+	public Set<ClassEntry> getIndexedClasses() {
+		Set<ClassEntry> classEntries = Sets.newHashSet();
+		classEntries.addAll(m_superclasses.keySet());
+		classEntries.addAll(m_interfaces.keySet());
+		classEntries.addAll(m_fieldEntries.keySet());
+		classEntries.addAll(m_behaviorEntries.keySet());
+		return classEntries;
+	}
+	
+	public Set<ClassEntry> getReferencedClasses(ClassEntry classEntry) {
+		
+		// every class named by what we know about this class, so every class whose name shows up in its translation
+		Set<ClassEntry> classEntries = Sets.newHashSet();
+		classEntries.add(classEntry);
+		ClassEntry superclassEntry = m_superclasses.get(classEntry);
+		if (superclassEntry != null) {
+			classEntries.add(superclassEntry);
+		}
+		classEntries.addAll(m_interfaces.get(classEntry));
+		for (FieldEntry fieldEntry : m_fieldEntries.get(classEntry)) {
+			if (fieldEntry.getType().hasClass()) {
+				classEntries.add(fieldEntry.getType().getClassEntry());
+			}
+		}
+		for (BehaviorEntry behaviorEntry : m_behaviorEntries.get(classEntry)) {
+			if (behaviorEntry.getSignature() != null) {
+				for (Type type : behaviorEntry.getSignature().types()) {
+					if (type.hasClass()) {
+						classEntries.add(type.getClassEntry());
+					}
+				}
+			}
+		}
+		return classEntries;
 	}
 	
 	public ClassEntry getSuperclass(ClassEntry classEntry) {
@@ -158,33 +322,43 @@ public class TranslationIndex implements Serializable {
 	}
 	
 	public List<ClassEntry> getSubclass(ClassEntry classEntry) {
-		
-		// linear search is fast enough for now
-		List<ClassEntry> subclasses = Lists.newArrayList();
-		for (Map.Entry<ClassEntry,ClassEntry> entry : m_superclasses.entrySet()) {
-			ClassEntry subclass = entry.getKey();
-			ClassEntry superclass = entry.getValue();
-			if (classEntry.equals(superclass)) {
-				subclasses.add(subclass);
-			}
-		}
-		return subclasses;
+		return Lists.newArrayList(m_subclasses.get(classEntry));
 	}
 	
 	public void getSubclassesRecursively(Set<ClassEntry> out, ClassEntry classEntry) {
-		for (ClassEntry subclassEntry : getSubclass(classEntry)) {
-			out.add(subclassEntry);
-			getSubclassesRecursively(out, subclassEntry);
-		}
+		out.addAll(getDescendants(classEntry));
 	}
 	
 	public void getSubclassNamesRecursively(Set<String> out, ClassEntry classEntry) {
-		for (ClassEntry subclassEntry : getSubclass(classEntry)) {
+		for (ClassEntry subclassEntry : getDescendants(classEntry)) {
 			out.add(subclassEntry.getName());
-			getSubclassNamesRecursively(out, subclassEntry);
 		}
 	}
 	
+	private synchronized List<ClassEntry> getDescendants(ClassEntry classEntry) {
+		
+		// each class's descendants are its subclasses followed by theirs, so remember them all on the way down
+		List<ClassEntry> descendants = m_descendants.get(classEntry);
+		if (descendants == null) {
+			Collection<ClassEntry> subclassEntries = m_subclasses.get(classEntry);
+			if (subclassEntries.isEmpty()) {
+				descendants = Collections.emptyList();
+			} else {
+				descendants = Lists.newArrayList();
+				for (ClassEntry subclassEntry : subclassEntries) {
+					descendants.add(subclassEntry);
+					descendants.addAll(getDescendants(subclassEntry));
+				}
+			}
+			m_descendants.put(classEntry, descendants);
+		}
+		return descendants;
+	}
+	
+	public Collection<Map.Entry<ClassEntry,ClassEntry>> getClassSuperclasses() {
+		return Collections.unmodifiableMap(m_superclasses).entrySet();
+	}
+	
 	public Collection<Map.Entry<ClassEntry,ClassEntry>> getClassInterfaces() {
 		return m_interfaces.entries();
 	}
@@ -222,6 +396,24 @@ public class TranslationIndex implements Serializable {
 			return (ClassEntry)entry;
 		}
 		
+		// arguments always resolve to wherever their behavior does
+		if (entry instanceof ArgumentEntry) {
+			entry = ((ArgumentEntry)entry).getBehaviorEntry();
+		}
+		
+		Optional<ClassEntry> resolvedClassEntry = m_resolvedClasses.get(entry);
+		if (resolvedClassEntry != null) {
+			m_numResolutionHits.incrementAndGet();
+			return resolvedClassEntry.orNull();
+		}
+		m_numResolutionMisses.incrementAndGet();
+		resolvedClassEntry = Optional.fromNullable(resolveUncachedEntryClass(entry));
+		m_resolvedClasses.put(entry, resolvedClassEntry);
+		return resolvedClassEntry.orNull();
+	}
+	
+	private ClassEntry resolveUncachedEntryClass(Entry entry) {
+		
 		ClassEntry superclassEntry = resolveSuperclass(entry);
 		if (superclassEntry != null) {
 			return superclassEntry;
@@ -280,6 +472,8 @@ public class TranslationIndex implements Serializable {
 		oout.writeObject(m_superclasses);
 		oout.writeObject(m_fieldEntries);
 		oout.writeObject(m_behaviorEntries);
+		oout.writeObject(m_interfaces);
+		oout.flush();
 		gzipout.finish();
 	}
 	
@@ -287,12 +481,23 @@ public class TranslationIndex implements Serializable {
 	public void read(InputStream in)
 	throws IOException {
 		try {
-			ObjectInputStream oin = new ObjectInputStream(new GZIPInputStream(in));
+			ObjectInputStream oin = new IndexInputStream(new GZIPInputStream(in));
 			m_superclasses = (HashMap<ClassEntry,ClassEntry>)oin.readObject();
 			m_fieldEntries = (HashMultimap<ClassEntry,FieldEntry>)oin.readObject();
 			m_behaviorEntries = (HashMultimap<ClassEntry,BehaviorEntry>)oin.readObject();
+			m_interfaces = (HashMultimap<ClassEntry,ClassEntry>)oin.readObject();
 		} catch (ClassNotFoundException ex) {
 			throw new Error(ex);
 		}
+		indexSubclasses();
+		initResolutionCache();
+	}
+	
+	private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		m_interner = new EntryInterner();
+		indexSubclasses();
+		initResolutionCache();
 	}
 }
@@ -100,7 +100,7 @@ public class CheckCastIterator implements Iterator<CheckCast> {
 				return new MethodEntry(
 					new ClassEntry(Descriptor.toJvmName(m_constants.getMethodrefClassName(index))),
 					m_constants.getMethodrefName(index),
-					new Signature(m_constants.getMethodrefType(index))
+					Signature.get(m_constants.getMethodrefType(index))
 				);
 			}
 			
@@ -109,7 +109,7 @@ public class CheckCastIterator implements Iterator<CheckCast> {
 				return new MethodEntry(
 					new ClassEntry(Descriptor.toJvmName(m_constants.getInterfaceMethodrefClassName(index))),
 					m_constants.getInterfaceMethodrefName(index),
-					new Signature(m_constants.getInterfaceMethodrefType(index))
+					Signature.get(m_constants.getInterfaceMethodrefType(index))
 				);
 			}
 		}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.bytecode;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import cuchaz.enigma.mapping.ClassNameReplacer;
+
+public class ClassHeader {
+	
+	// the parts of a class file we need to build the structural indices, read straight from the bytes
+	// we only walk the constant pool and the member tables, and skip over all the attributes (ie code)
+	// all names are JVM names (ie with slashes), and descriptors are left as they are in the class file
+	
+	public static class Member {
+		
+		private int m_access;
+		private String m_name;
+		private String m_descriptor;
+		
+		public Member(int access, String name, String descriptor) {
+			m_access = access;
+			m_name = name;
+			m_descriptor = descriptor;
+		}
+		
+		public int getAccess() {
+			return m_access;
+		}
+		
+		public String getName() {
+			return m_name;
+		}
+		
+		public String getDescriptor() {
+			return m_descriptor;
+		}
+		
+		@Override
+		public String toString() {
+			return m_name + m_descriptor;
+		}
+	}
+	
+	private static final int Magic = 0xcafebabe;
+	
+	private int m_access;
+	private String m_name;
+	private String m_superName;
+	private List<String> m_interfaces;
+	private List<Member> m_fields;
+	private List<Member> m_methods;
+	
+	private ClassHeader() {
+		m_interfaces = Lists.newArrayList();
+		m_fields = Lists.newArrayList();
+		m_methods = Lists.newArrayList();
+	}
+	
+	public int getAccess() {
+		return m_access;
+	}
+	
+	public String getName() {
+		return m_name;
+	}
+	
+	public String getSuperName() {
+		return m_superName;
+	}
+	
+	public List<String> getInterfaces() {
+		return m_interfaces;
+	}
+	
+	public List<Member> getFields() {
+		return m_fields;
+	}
+	
+	public List<Member> getMethods() {
+		return m_methods;
+	}
+	
+	@Override
+	public String toString() {
+		return m_name;
+	}
+	
+	public static ClassHeader read(ByteBuffer buf) {
+		try {
+			return new Reader(buf.duplicate()).read();
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Bad class file", ex);
+		}
+	}
+	
+	public void renameClasses(ClassNameReplacer replacer) {
+		m_name = renameClass(m_name, replacer);
+		m_superName = renameClass(m_superName, replacer);
+		for (int i = 0; i < m_interfaces.size(); i++) {
+			m_interfaces.set(i, renameClass(m_interfaces.get(i), replacer));
+		}
+		for (Member member : m_fields) {
+			member.m_descriptor = renameDescriptor(member.m_descriptor, replacer);
+		}
+		for (Member member : m_methods) {
+			member.m_descriptor = renameDescriptor(member.m_descriptor, replacer);
+		}
+	}
+	
+	private static String renameClass(String className, ClassNameReplacer replacer) {
+		if (className == null) {
+			return null;
+		}
+		String newName = replacer.replace(className);
+		if (newName != null) {
+			return newName;
+		}
+		return className;
+	}
+	
+	private static String renameDescriptor(String descriptor, ClassNameReplacer replacer) {
+		
+		// descriptors have no generics, so every class name is just between an L and the next ;
+		StringBuilder buf = null;
+		int copied = 0;
+		int i = 0;
+		while (i < descriptor.length()) {
+			if (descriptor.charAt(i) != 'L') {
+				i++;
+				continue;
+			}
+			int end = descriptor.indexOf(';', i);
+			String newName = replacer.replace(descriptor.substring(i + 1, end));
+			if (newName != null) {
+				if (buf == null) {
+					buf = new StringBuilder();
+				}
+				buf.append(descriptor, copied, i + 1);
+				buf.append(newName);
+				copied = end;
+			}
+			i = end + 1;
+		}
+		if (buf == null) {
+			return descriptor;
+		}
+		buf.append(descriptor, copied, descriptor.length());
+		return buf.toString();
+	}
+	
+	private static class Reader {
+		
+		private ByteBuffer m_buf;
+		private int[] m_offsets;
+		private String[] m_strings;
+		
+		public Reader(ByteBuffer buf) {
+			m_buf = buf;
+			m_buf.order(ByteOrder.BIG_ENDIAN);
+		}
+		
+		public ClassHeader read() {
+			if (m_buf.getInt() != Magic) {
+				throw new IllegalArgumentException("Not a class file");
+			}
+			m_buf.getShort(); // minor version
+			m_buf.getShort(); // major version
+			readConstantPool();
+			
+			ClassHeader header = new ClassHeader();
+			header.m_access = readUnsignedShort();
+			header.m_name = getClassName(readUnsignedShort());
+			int superIndex = readUnsignedShort();
+			if (superIndex != 0) {
+				header.m_superName = getClassName(superIndex);
+			}
+			int numInterfaces = readUnsignedShort();
+			for (int i = 0; i < numInterfaces; i++) {
+				header.m_interfaces.add(getClassName(readUnsignedShort()));
+			}
+			readMembers(header.m_fields);
+			readMembers(header.m_methods);
+			return header;
+		}
+		
+		private void readConstantPool() {
+			
+			// just remember where each item starts, we'll only decode the few strings we need
+			int numItems = readUnsignedShort();
+			m_offsets = new int[numItems];
+			m_strings = new String[numItems];
+			for (int i = 1; i < numItems; i++) {
+				m_offsets[i] = m_buf.position();
+				int tag = m_buf.get();
+				switch (tag) {
+					case 1: // utf8
+						skip(readUnsignedShort());
+					break;
+					case 7: // class
+					case 8: // string
+					case 16: // method type
+					case 19: // module
+					case 20: // package
+						skip(2);
+					break;
+					case 15: // method handle
+						skip(3);
+					break;
+					case 3: // integer
+					case 4: // float
+					case 9: // field ref
+					case 10: // method ref
+					case 11: // interface method ref
+					case 12: // name and type
+					case 17: // dynamic
+					case 18: // invoke dynamic
+						skip(4);
+					break;
+					case 5: // long
+					case 6: // double
+						// these take up two slots
+						skip(8);
+						i++;
+					break;
+					default:
+						throw new IllegalArgumentException("Unknown constant pool tag " + tag + " at index " + i);
+				}
+			}
+		}
+		
+		private void readMembers(List<Member> out) {
+			int numMembers = readUnsignedShort();
+			for (int i = 0; i < numMembers; i++) {
+				int access = readUnsignedShort();
+				String name = getUtf8(readUnsignedShort());
+				String descriptor = getUtf8(readUnsignedShort());
+				out.add(new Member(access, name, descriptor));
+				skipAttributes();
+			}
+		}
+		
+		private void skipAttributes() {
+			int numAttributes = readUnsignedShort();
+			for (int i = 0; i < numAttributes; i++) {
+				skip(2);
+				skip(m_buf.getInt());
+			}
+		}
+		
+		private String getClassName(int index) {
+			checkTag(index, 7);
+			return getUtf8(m_buf.getShort(m_offsets[index] + 1) & 0xffff);
+		}
+		
+		private String getUtf8(int index) {
+			if (m_strings[index] == null) {
+				checkTag(index, 1);
+				m_strings[index] = decodeUtf8(m_offsets[index] + 3, m_buf.getShort(m_offsets[index] + 1) & 0xffff);
+			}
+			return m_strings[index];
+		}
+		
+		private String decodeUtf8(int offset, int length) {
+			
+			// class files use modified UTF-8, so we can't just hand this to a Charset
+			char[] chars = new char[length];
+			int numChars = 0;
+			int end = offset + length;
+			while (offset < end) {
+				int b = m_buf.get(offset++) & 0xff;
+				if (b < 0x80) {
+					chars[numChars++] = (char)b;
+				} else if ((b & 0xe0) == 0xc0) {
+					int b2 = m_buf.get(offset++) & 0x3f;
+					chars[numChars++] = (char)(((b & 0x1f) << 6) | b2);
+				} else {
+					int b2 = m_buf.get(offset++) & 0x3f;
+					int b3 = m_buf.get(offset++) & 0x3f;
+					chars[numChars++] = (char)(((b & 0x0f) << 12) | (b2 << 6) | b3);
+				}
+			}
+			return new String(chars, 0, numChars);
+		}
+		
+		private void checkTag(int index, int tag) {
+			if (index <= 0 || index >= m_offsets.length || m_buf.get(m_offsets[index]) != tag) {
+				throw new IllegalArgumentException("Expected constant pool tag " + tag + " at index " + index);
+			}
+		}
+		
+		private int readUnsignedShort() {
+			return m_buf.getShort() & 0xffff;
+		}
+		
+		private void skip(int numBytes) {
+			m_buf.position(m_buf.position() + numBytes);
+		}
+	}
+}
@@ -109,8 +109,16 @@ public class ClassRenamer {
 		});
 	}
 	
-	public static void moveAllClassesOutOfDefaultPackage(CtClass c, final String newPackageName) {
-		renameClasses(c, new ClassNameReplacer() {
+	public static void moveAllClassesOutOfDefaultPackage(CtClass c, String newPackageName) {
+		renameClasses(c, getOutOfDefaultPackageReplacer(newPackageName));
+	}
+	
+	public static void moveAllClassesOutOfDefaultPackage(ClassHeader header, String newPackageName) {
+		header.renameClasses(getOutOfDefaultPackageReplacer(newPackageName));
+	}
+	
+	private static ClassNameReplacer getOutOfDefaultPackageReplacer(final String newPackageName) {
+		return new ClassNameReplacer() {
 			@Override
 			public String replace(String className) {
 				ClassEntry entry = new ClassEntry(className);
@@ -119,7 +127,7 @@ public class ClassRenamer {
 				}
 				return null;
 			}
-		});
+		};
 	}
 	
 	public static void moveAllClassesIntoDefaultPackage(CtClass c, final String oldPackageName) {
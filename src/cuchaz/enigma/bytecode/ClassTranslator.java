@@ -10,6 +10,8 @@
  ******************************************************************************/
 package cuchaz.enigma.bytecode;
 
+import java.util.Map;
+
 import javassist.CtBehavior;
 import javassist.CtClass;
 import javassist.CtField;
@@ -18,11 +20,16 @@ import javassist.bytecode.ConstPool;
 import javassist.bytecode.Descriptor;
 import javassist.bytecode.EnclosingMethodAttribute;
 import javassist.bytecode.SourceFileAttribute;
+
+import com.google.common.collect.Maps;
+
 import cuchaz.enigma.mapping.BehaviorEntry;
 import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.EntryFactory;
 import cuchaz.enigma.mapping.FieldEntry;
 import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.TranslationTable;
 import cuchaz.enigma.mapping.Translator;
 import cuchaz.enigma.mapping.Type;
 
@@ -39,44 +46,50 @@ public class ClassTranslator {
 		// NOTE: the order of these translations is very important
 		
 		// translate all the field and method references in the code by editing the constant pool
+		// read all the references first, so we can translate them in one batch
 		ConstPool constants = c.getClassFile().getConstPool();
 		ConstPoolEditor editor = new ConstPoolEditor(constants);
+		Map<Integer,Entry> entries = Maps.newLinkedHashMap();
 		for (int i = 1; i < constants.getSize(); i++) {
 			switch (constants.getTag(i)) {
 				
-				case ConstPool.CONST_Fieldref: {
-					
-					// translate the name and type
-					FieldEntry entry = EntryFactory.getFieldEntry(
+				case ConstPool.CONST_Fieldref:
+					entries.put(i, EntryFactory.getFieldEntry(
 						Descriptor.toJvmName(constants.getFieldrefClassName(i)),
 						constants.getFieldrefName(i),
 						constants.getFieldrefType(i)
-					);
-					FieldEntry translatedEntry = m_translator.translateEntry(entry);
-					if (!entry.equals(translatedEntry)) {
-						editor.changeMemberrefNameAndType(i, translatedEntry.getName(), translatedEntry.getType().toString());
-					}
-				}
+					));
 				break;
 				
 				case ConstPool.CONST_Methodref:
-				case ConstPool.CONST_InterfaceMethodref: {
-					
-					// translate the name and type (ie signature)
-					BehaviorEntry entry = EntryFactory.getBehaviorEntry(
+				case ConstPool.CONST_InterfaceMethodref:
+					entries.put(i, EntryFactory.getBehaviorEntry(
 						Descriptor.toJvmName(editor.getMemberrefClassname(i)),
 						editor.getMemberrefName(i),
 						editor.getMemberrefType(i)
-					);
-					BehaviorEntry translatedEntry = m_translator.translateEntry(entry);
-					if (!entry.equals(translatedEntry)) {
-						editor.changeMemberrefNameAndType(i, translatedEntry.getName(), translatedEntry.getSignature().toString());
-					}
-				}
+					));
 				break;
 			}
 		}
 		
+		// classes are translated one at a time, so the batch is too small to be worth spreading across threads
+		TranslationTable table = m_translator.translateAll(entries.values(), false);
+		for (Map.Entry<Integer,Entry> mapEntry : entries.entrySet()) {
+			int i = mapEntry.getKey();
+			Entry entry = mapEntry.getValue();
+			Entry translatedEntry = table.translateEntry(entry);
+			if (entry.equals(translatedEntry)) {
+				continue;
+			}
+			
+			// translate the name and type (ie signature)
+			if (translatedEntry instanceof FieldEntry) {
+				editor.changeMemberrefNameAndType(i, translatedEntry.getName(), ((FieldEntry)translatedEntry).getType().toString());
+			} else {
+				editor.changeMemberrefNameAndType(i, translatedEntry.getName(), ((BehaviorEntry)translatedEntry).getSignature().toString());
+			}
+		}
+		
 		ClassEntry classEntry = new ClassEntry(Descriptor.toJvmName(c.getName()));
 		
 		// translate all the fields
@@ -262,7 +262,7 @@ public class ClassIdentity {
 	}
 	
 	private String scrubType(String typeName) {
-		return scrubType(new Type(typeName)).toString();
+		return scrubType(Type.get(typeName)).toString();
 	}
 	
 	private Type scrubType(Type type) {
@@ -274,7 +274,7 @@ public class ClassIdentity {
 	}
 	
 	private String scrubSignature(String signature) {
-		return scrubSignature(new Signature(signature)).toString();
+		return scrubSignature(Signature.get(signature)).toString();
 	}
 	
 	private Signature scrubSignature(Signature signature) {
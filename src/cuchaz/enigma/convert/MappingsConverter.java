@@ -29,6 +29,7 @@ import com.google.common.collect.Sets;
 
 import cuchaz.enigma.Constants;
 import cuchaz.enigma.Deobfuscator;
+import cuchaz.enigma.analysis.JarClassRepository;
 import cuchaz.enigma.analysis.JarIndex;
 import cuchaz.enigma.convert.ClassNamer.SidedClassNamer;
 import cuchaz.enigma.mapping.BehaviorEntry;
@@ -51,20 +52,23 @@ public class MappingsConverter {
 	
 	public static ClassMatches computeClassMatches(JarFile sourceJar, JarFile destJar, Mappings mappings) {
 		
-		// index jars
-		System.out.println("Indexing source jar...");
-		JarIndex sourceIndex = new JarIndex();
-		sourceIndex.indexJar(sourceJar, false);
-		System.out.println("Indexing dest jar...");
-		JarIndex destIndex = new JarIndex();
-		destIndex.indexJar(destJar, false);
-		
-		// compute the matching
-		ClassMatching matching = computeMatching(sourceJar, sourceIndex, destJar, destIndex, null);
-		return new ClassMatches(matching.matches());
+		try (JarClassRepository sourceClasses = new JarClassRepository(sourceJar); JarClassRepository destClasses = new JarClassRepository(destJar)) {
+			
+			// index jars
+			System.out.println("Indexing source jar...");
+			JarIndex sourceIndex = new JarIndex();
+			sourceIndex.indexJar(sourceClasses, false, false);
+			System.out.println("Indexing dest jar...");
+			JarIndex destIndex = new JarIndex();
+			destIndex.indexJar(destClasses, false, false);
+			
+			// compute the matching
+			ClassMatching matching = computeMatching(sourceClasses, sourceIndex, destClasses, destIndex, null);
+			return new ClassMatches(matching.matches());
+		}
 	}
 	
-	public static ClassMatching computeMatching(JarFile sourceJar, JarIndex sourceIndex, JarFile destJar, JarIndex destIndex, BiMap<ClassEntry,ClassEntry> knownMatches) {
+	public static ClassMatching computeMatching(JarClassRepository sourceClasses, JarIndex sourceIndex, JarClassRepository destClasses, JarIndex destIndex, BiMap<ClassEntry,ClassEntry> knownMatches) {
 		
 		System.out.println("Iteratively matching classes");
 		
@@ -85,8 +89,8 @@ public class MappingsConverter {
 				
 				// init the matching with identity settings
 				ClassMatching matching = new ClassMatching(
-					new ClassIdentifier(sourceJar, sourceIndex, sourceNamer, useReferences),
-					new ClassIdentifier(destJar, destIndex, destNamer, useReferences)
+					new ClassIdentifier(sourceClasses, sourceIndex, sourceNamer, useReferences),
+					new ClassIdentifier(destClasses, destIndex, destNamer, useReferences)
 				);
 				
 				if (knownMatches != null) {
@@ -245,7 +249,7 @@ public class MappingsConverter {
 		}
 		return true;
 	}
-
+	
 	private static boolean canMigrate(Type oldObfType, ClassMatches classMatches) {
 		
 		// non classes can be migrated
@@ -262,7 +266,7 @@ public class MappingsConverter {
 		// obfuscated classes with mappings can be migrated
 		return classMatches.getUniqueMatches().containsKey(classEntry);
 	}
-
+	
 	public static void convertMappings(Mappings mappings, BiMap<ClassEntry,ClassEntry> changes) {
 		
 		// sort the changes so classes are renamed in the correct order
@@ -310,22 +314,22 @@ public class MappingsConverter {
 	
 	public static Doer<FieldEntry> getFieldDoer() {
 		return new Doer<FieldEntry>() {
-
+			
 			@Override
 			public Collection<FieldEntry> getDroppedEntries(MappingsChecker checker) {
 				return checker.getDroppedFieldMappings().keySet();
 			}
-
+			
 			@Override
 			public Collection<FieldEntry> getObfEntries(JarIndex jarIndex) {
 				return jarIndex.getObfFieldEntries();
 			}
-
+			
 			@Override
 			public Collection<? extends MemberMapping<FieldEntry>> getMappings(ClassMapping destClassMapping) {
 				return (Collection<? extends MemberMapping<FieldEntry>>)destClassMapping.fields();
 			}
-
+			
 			@Override
 			public Set<FieldEntry> filterEntries(Collection<FieldEntry> obfDestFields, FieldEntry obfSourceField, ClassMatches classMatches) {
 				Set<FieldEntry> out = Sets.newHashSet();
@@ -337,7 +341,7 @@ public class MappingsConverter {
 				}
 				return out;
 			}
-
+			
 			@Override
 			public void setUpdateObfMember(ClassMapping classMapping, MemberMapping<FieldEntry> memberMapping, FieldEntry newField) {
 				FieldMapping fieldMapping = (FieldMapping)memberMapping;
@@ -348,7 +352,7 @@ public class MappingsConverter {
 			public boolean hasObfMember(ClassMapping classMapping, FieldEntry obfField) {
 				return classMapping.getFieldByObf(obfField.getName(), obfField.getType()) != null;
 			}
-
+			
 			@Override
 			public void removeMemberByObf(ClassMapping classMapping, FieldEntry obfField) {
 				classMapping.removeFieldMapping(classMapping.getFieldByObf(obfField.getName(), obfField.getType()));
@@ -358,22 +362,22 @@ public class MappingsConverter {
 	
 	public static Doer<BehaviorEntry> getMethodDoer() {
 		return new Doer<BehaviorEntry>() {
-
+			
 			@Override
 			public Collection<BehaviorEntry> getDroppedEntries(MappingsChecker checker) {
 				return checker.getDroppedMethodMappings().keySet();
 			}
-
+			
 			@Override
 			public Collection<BehaviorEntry> getObfEntries(JarIndex jarIndex) {
 				return jarIndex.getObfBehaviorEntries();
 			}
-
+			
 			@Override
 			public Collection<? extends MemberMapping<BehaviorEntry>> getMappings(ClassMapping destClassMapping) {
 				return (Collection<? extends MemberMapping<BehaviorEntry>>)destClassMapping.methods();
 			}
-
+			
 			@Override
 			public Set<BehaviorEntry> filterEntries(Collection<BehaviorEntry> obfDestFields, BehaviorEntry obfSourceField, ClassMatches classMatches) {
 				Set<BehaviorEntry> out = Sets.newHashSet();
@@ -389,7 +393,7 @@ public class MappingsConverter {
 				}
 				return out;
 			}
-
+			
 			@Override
 			public void setUpdateObfMember(ClassMapping classMapping, MemberMapping<BehaviorEntry> memberMapping, BehaviorEntry newBehavior) {
 				MethodMapping methodMapping = (MethodMapping)memberMapping;
@@ -400,7 +404,7 @@ public class MappingsConverter {
 			public boolean hasObfMember(ClassMapping classMapping, BehaviorEntry obfBehavior) {
 				return classMapping.getMethodByObf(obfBehavior.getName(), obfBehavior.getSignature()) != null;
 			}
-
+			
 			@Override
 			public void removeMemberByObf(ClassMapping classMapping, BehaviorEntry obfBehavior) {
 				classMapping.removeMethodMapping(classMapping.getMethodByObf(obfBehavior.getName(), obfBehavior.getSignature()));
@@ -431,7 +435,7 @@ public class MappingsConverter {
 				memberMatches.addUnmatchedDestEntry(destEntry);
 			}
 		}
-
+		
 		System.out.println("Automatching " + memberMatches.getUnmatchedSourceEntries().size() + " unmatched source entries...");
 		
 		// go through the unmatched source fields and try to pick out the easy matches
@@ -476,7 +480,7 @@ public class MappingsConverter {
 			collectMatchedFields(memberMatches, destInnerClassMapping, classMatches, doer);
 		}
 	}
-
+	
 	@SuppressWarnings("unchecked")
 	private static <T extends Entry> T translate(T in, BiMap<ClassEntry,ClassEntry> map) {
 		if (in instanceof FieldEntry) {
@@ -499,7 +503,7 @@ public class MappingsConverter {
 		}
 		throw new Error("Unhandled entry type: " + in.getClass());
 	}
-
+	
 	private static Type translate(Type type, final BiMap<ClassEntry,ClassEntry> map) {
 		return new Type(type, new ClassNameReplacer() {
 			@Override
@@ -528,7 +532,7 @@ public class MappingsConverter {
 			}
 		});
 	}
-
+	
 	public static <T extends Entry> void applyMemberMatches(Mappings mappings, ClassMatches classMatches, MemberMatches<T> memberMatches, Doer<T> doer) {
 		for (ClassMapping classMapping : mappings.classes()) {
 			applyMemberMatches(classMapping, classMatches, memberMatches, doer);
@@ -551,7 +555,7 @@ public class MappingsConverter {
 				doer.removeMemberByObf(classMapping, obfOldDestEntry);
 				continue;
 			}
-				
+			
 			T obfNewDestEntry = memberMatches.matches().get(obfSourceEntry);
 			if (obfNewDestEntry != null && !obfOldDestEntry.getName().equals(obfNewDestEntry.getName())) {
 				renames.put(obfOldDestEntry, obfNewDestEntry);
@@ -559,7 +563,7 @@ public class MappingsConverter {
 		}
 		
 		if (!renames.isEmpty()) {
-		
+			
 			// apply to this class (should never need more than n passes)
 			int numRenamesAppliedThisRound;
 			do {
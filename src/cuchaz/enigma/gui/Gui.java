@@ -83,6 +83,7 @@ import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.FieldEntry;
 import cuchaz.enigma.mapping.IllegalNameException;
 import cuchaz.enigma.mapping.MappingParseException;
+import cuchaz.enigma.mapping.MappingsFormat;
 import cuchaz.enigma.mapping.MethodEntry;
 import cuchaz.enigma.mapping.Signature;
 import de.sciss.syntaxpane.DefaultSyntaxKit;
@@ -112,8 +113,10 @@ public class Gui {
 	// dynamic menu items
 	private JMenuItem m_closeJarMenu;
 	private JMenuItem m_openMappingsMenu;
+	private JMenuItem m_openMappingsDirectoryMenu;
 	private JMenuItem m_saveMappingsMenu;
 	private JMenuItem m_saveMappingsAsMenu;
+	private JMenuItem m_saveMappingsAsDirectoryMenu;
 	private JMenuItem m_closeMappingsMenu;
 	private JMenuItem m_renameMenu;
 	private JMenuItem m_showInheritanceMenu;
@@ -129,6 +132,7 @@ public class Gui {
 	private EntryReference<Entry,Entry> m_reference;
 	private JFileChooser m_jarFileChooser;
 	private JFileChooser m_mappingsFileChooser;
+	private JFileChooser m_mappingsDirectoryChooser;
 	private JFileChooser m_exportSourceFileChooser;
 	private JFileChooser m_exportJarFileChooser;
 	
@@ -158,6 +162,8 @@ public class Gui {
 		// init file choosers
 		m_jarFileChooser = new JFileChooser();
 		m_mappingsFileChooser = new JFileChooser();
+		m_mappingsDirectoryChooser = new JFileChooser();
+		m_mappingsDirectoryChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
 		m_exportSourceFileChooser = new JFileChooser();
 		m_exportSourceFileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
 		m_exportJarFileChooser = new JFileChooser();
@@ -541,6 +547,25 @@ public class Gui {
 				});
 				m_openMappingsMenu = item;
 			}
+			{
+				JMenuItem item = new JMenuItem("Open Mappings Directory...");
+				menu.add(item);
+				item.addActionListener(new ActionListener() {
+					@Override
+					public void actionPerformed(ActionEvent event) {
+						if (m_mappingsDirectoryChooser.showOpenDialog(m_frame) == JFileChooser.APPROVE_OPTION) {
+							try {
+								m_controller.openMappingsDirectory(m_mappingsDirectoryChooser.getSelectedFile());
+							} catch (IOException ex) {
+								throw new Error(ex);
+							} catch (MappingParseException ex) {
+								JOptionPane.showMessageDialog(m_frame, ex.getMessage());
+							}
+						}
+					}
+				});
+				m_openMappingsDirectoryMenu = item;
+			}
 			{
 				JMenuItem item = new JMenuItem("Save Mappings");
 				menu.add(item);
@@ -565,8 +590,12 @@ public class Gui {
 					public void actionPerformed(ActionEvent event) {
 						if (m_mappingsFileChooser.showSaveDialog(m_frame) == JFileChooser.APPROVE_OPTION) {
 							try {
-								m_controller.saveMappings(m_mappingsFileChooser.getSelectedFile());
-								m_saveMappingsMenu.setEnabled(true);
+								// keep binary mappings binary, everything else goes to a text file
+								MappingsFormat format = m_controller.getMappingsFormat();
+								if (format == MappingsFormat.Directory) {
+									format = MappingsFormat.Text;
+								}
+								m_controller.saveMappings(m_mappingsFileChooser.getSelectedFile(), format);
 							} catch (IOException ex) {
 								throw new Error(ex);
 							}
@@ -576,6 +605,23 @@ public class Gui {
 				item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK));
 				m_saveMappingsAsMenu = item;
 			}
+			{
+				JMenuItem item = new JMenuItem("Save Mappings As Directory...");
+				menu.add(item);
+				item.addActionListener(new ActionListener() {
+					@Override
+					public void actionPerformed(ActionEvent event) {
+						if (m_mappingsDirectoryChooser.showSaveDialog(m_frame) == JFileChooser.APPROVE_OPTION) {
+							try {
+								m_controller.saveMappings(m_mappingsDirectoryChooser.getSelectedFile(), MappingsFormat.Directory);
+							} catch (IOException ex) {
+								throw new Error(ex);
+							}
+						}
+					}
+				});
+				m_saveMappingsAsDirectoryMenu = item;
+			}
 			{
 				JMenuItem item = new JMenuItem("Close Mappings");
 				menu.add(item);
@@ -686,8 +732,10 @@ public class Gui {
 		// update menu
 		m_closeJarMenu.setEnabled(true);
 		m_openMappingsMenu.setEnabled(true);
+		m_openMappingsDirectoryMenu.setEnabled(true);
 		m_saveMappingsMenu.setEnabled(false);
 		m_saveMappingsAsMenu.setEnabled(true);
+		m_saveMappingsAsDirectoryMenu.setEnabled(true);
 		m_closeMappingsMenu.setEnabled(true);
 		m_exportSourceMenu.setEnabled(true);
 		m_exportJarMenu.setEnabled(true);
@@ -706,8 +754,10 @@ public class Gui {
 		// update menu
 		m_closeJarMenu.setEnabled(false);
 		m_openMappingsMenu.setEnabled(false);
+		m_openMappingsDirectoryMenu.setEnabled(false);
 		m_saveMappingsMenu.setEnabled(false);
 		m_saveMappingsAsMenu.setEnabled(false);
+		m_saveMappingsAsDirectoryMenu.setEnabled(false);
 		m_closeMappingsMenu.setEnabled(false);
 		m_exportSourceMenu.setEnabled(false);
 		m_exportJarMenu.setEnabled(false);
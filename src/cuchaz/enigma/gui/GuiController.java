@@ -11,7 +11,8 @@
 package cuchaz.enigma.gui;
 
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Collection;
@@ -30,6 +31,7 @@ import cuchaz.enigma.analysis.ClassImplementationsTreeNode;
 import cuchaz.enigma.analysis.ClassInheritanceTreeNode;
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.FieldReferenceTreeNode;
+import cuchaz.enigma.analysis.JarIndexCache;
 import cuchaz.enigma.analysis.MethodImplementationsTreeNode;
 import cuchaz.enigma.analysis.MethodInheritanceTreeNode;
 import cuchaz.enigma.analysis.SourceIndex;
@@ -39,8 +41,15 @@ import cuchaz.enigma.mapping.BehaviorEntry;
 import cuchaz.enigma.mapping.ClassEntry;
 import cuchaz.enigma.mapping.Entry;
 import cuchaz.enigma.mapping.FieldEntry;
+import cuchaz.enigma.mapping.LazyMappingsReader;
+import cuchaz.enigma.mapping.MappingLoadException;
 import cuchaz.enigma.mapping.MappingParseException;
+import cuchaz.enigma.mapping.MappingsBinaryReader;
+import cuchaz.enigma.mapping.MappingsBinaryWriter;
+import cuchaz.enigma.mapping.MappingsChange;
+import cuchaz.enigma.mapping.MappingsFormat;
 import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsRenamer;
 import cuchaz.enigma.mapping.MappingsWriter;
 import cuchaz.enigma.mapping.MethodEntry;
 import cuchaz.enigma.mapping.TranslationDirection;
@@ -52,6 +61,8 @@ public class GuiController {
 	private SourceIndex m_index;
 	private ClassEntry m_currentObfClass;
 	private boolean m_isDirty;
+	private File m_cleanDirectory;
+	private MappingsFormat m_mappingsFormat;
 	private Deque<EntryReference<Entry,Entry>> m_referenceStack;
 	
 	public GuiController(Gui gui) {
@@ -60,6 +71,8 @@ public class GuiController {
 		m_index = null;
 		m_currentObfClass = null;
 		m_isDirty = false;
+		m_cleanDirectory = null;
+		m_mappingsFormat = MappingsFormat.Text;
 		m_referenceStack = Queues.newArrayDeque();
 	}
 	
@@ -69,34 +82,109 @@ public class GuiController {
 	
 	public void openJar(final JarFile jar) throws IOException {
 		m_gui.onStartOpenJar();
-		m_deobfuscator = new Deobfuscator(jar);
+		if (m_deobfuscator != null) {
+			m_deobfuscator.close();
+		}
+		m_deobfuscator = new Deobfuscator(jar, JarIndexCache.getDefault());
+		m_deobfuscator.addChangeListener(new MappingsRenamer.ChangeListener() {
+			@Override
+			public void onChange(MappingsChange change) {
+				// the class lists only show outer classes, so they only care when those get renamed
+				if (change.changesClassName() && !change.getObfClassEntry().isInnerClass()) {
+					refreshClasses();
+				}
+			}
+		});
 		m_gui.onFinishOpenJar(m_deobfuscator.getJarName());
 		refreshClasses();
 	}
 	
 	public void closeJar() {
+		if (m_deobfuscator != null) {
+			try {
+				m_deobfuscator.close();
+			} catch (IOException ex) {
+				// the jar's going away anyway
+			}
+		}
 		m_deobfuscator = null;
 		m_gui.onCloseJar();
 	}
 	
+	public MappingsFormat getMappingsFormat() {
+		return m_mappingsFormat;
+	}
+	
 	public void openMappings(File file) throws IOException, MappingParseException {
-		FileReader in = new FileReader(file);
-		m_deobfuscator.setMappings(new MappingsReader().read(in));
-		in.close();
+		m_cleanDirectory = null;
+		m_mappingsFormat = MappingsFormat.Text;
+		if (MappingsBinaryReader.isBinary(file)) {
+			try (FileInputStream in = new FileInputStream(file)) {
+				m_deobfuscator.setMappings(new MappingsBinaryReader().read(in));
+			}
+			// save them back the same way
+			m_mappingsFormat = MappingsFormat.Binary;
+		} else {
+			// we usually only look at a few classes, so only read the ones we look at
+			// checking the mappings against the jar goes over every class though, so that's where parse errors show up
+			try {
+				m_deobfuscator.setMappings(new LazyMappingsReader().read(file));
+			} catch (MappingLoadException ex) {
+				throw ex.getParseException();
+			}
+		}
+		onOpenMappings(file);
+	}
+	
+	public void openMappingsDirectory(File dir) throws IOException, MappingParseException {
+		m_deobfuscator.setMappings(new MappingsReader().readDirectory(dir));
+		m_cleanDirectory = dir.getCanonicalFile();
+		m_mappingsFormat = MappingsFormat.Directory;
+		onOpenMappings(dir);
+	}
+	
+	private void onOpenMappings(File file) {
 		m_isDirty = false;
 		m_gui.setMappingsFile(file);
 		refreshClasses();
 		refreshCurrentClass();
 	}
 	
+	public void saveMappings(File file, MappingsFormat format) throws IOException {
+		m_mappingsFormat = format;
+		saveMappings(file);
+		m_gui.setMappingsFile(file);
+	}
+	
 	public void saveMappings(File file) throws IOException {
-		FileWriter out = new FileWriter(file);
-		new MappingsWriter().write(out, m_deobfuscator.getMappings());
-		out.close();
+		switch (m_mappingsFormat) {
+			case Directory:
+				// the files in the directory only match the clean classes if we read them from there or saved them there last
+				boolean onlyDirty = file.getCanonicalFile().equals(m_cleanDirectory);
+				new MappingsWriter().writeDirectory(file, m_deobfuscator.getMappings(), onlyDirty);
+				m_cleanDirectory = file.getCanonicalFile();
+			break;
+			
+			case Binary:
+				try (FileOutputStream out = new FileOutputStream(file)) {
+					new MappingsBinaryWriter().write(out, m_deobfuscator.getMappings());
+				}
+				m_cleanDirectory = null;
+			break;
+			
+			case Text:
+				FileWriter out = new FileWriter(file);
+				new MappingsWriter().write(out, m_deobfuscator.getMappings());
+				out.close();
+				m_cleanDirectory = null;
+			break;
+		}
 		m_isDirty = false;
 	}
 	
 	public void closeMappings() {
+		m_cleanDirectory = null;
+		m_mappingsFormat = MappingsFormat.Text;
 		m_deobfuscator.setMappings(null);
 		m_gui.setMappingsFile(null);
 		refreshClasses();
@@ -223,7 +311,6 @@ public class GuiController {
 		EntryReference<Entry,Entry> obfReference = m_deobfuscator.obfuscateReference(deobfReference);
 		m_deobfuscator.rename(obfReference.getNameableEntry(), newName);
 		m_isDirty = true;
-		refreshClasses();
 		refreshCurrentClass(obfReference);
 	}
 	
@@ -231,7 +318,6 @@ public class GuiController {
 		EntryReference<Entry,Entry> obfReference = m_deobfuscator.obfuscateReference(deobfReference);
 		m_deobfuscator.removeMapping(obfReference.getNameableEntry());
 		m_isDirty = true;
-		refreshClasses();
 		refreshCurrentClass(obfReference);
 	}
 	
@@ -239,7 +325,6 @@ public class GuiController {
 		EntryReference<Entry,Entry> obfReference = m_deobfuscator.obfuscateReference(deobfReference);
 		m_deobfuscator.markAsDeobfuscated(obfReference.getNameableEntry());
 		m_isDirty = true;
-		refreshClasses();
 		refreshCurrentClass(obfReference);
 	}
 	
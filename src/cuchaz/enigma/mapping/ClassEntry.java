@@ -13,13 +13,18 @@ package cuchaz.enigma.mapping;
 import java.io.Serializable;
 import java.util.List;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 
 public class ClassEntry implements Entry, Serializable {
 	
 	private static final long serialVersionUID = 4235460580973955811L;
 	
-	private String m_name;
+	private final String m_name;
+	
+	// the inner class chain gets split up the first time anyone asks for it, then we just hand out the pieces
+	// the pieces are immutable, so it doesn't matter if two threads race to compute them
+	private transient List<String> m_classChainNames;
+	private transient List<ClassEntry> m_classChain;
 	
 	public ClassEntry(String className) {
 		if (className == null) {
@@ -31,13 +36,14 @@ public class ClassEntry implements Entry, Serializable {
 		
 		m_name = className;
 		
-		if (isInnerClass() && getInnermostClassName().indexOf('/') >= 0) {
+		if (isInnerClass() && className.indexOf('/', className.lastIndexOf('$')) >= 0) {
 			throw new IllegalArgumentException("Inner class must not have a package: " + className);
 		}
 	}
 	
 	public ClassEntry(ClassEntry other) {
 		m_name = other.m_name;
+		m_classChainNames = other.m_classChainNames;
 	}
 	
 	@Override
@@ -87,31 +93,45 @@ public class ClassEntry implements Entry, Serializable {
 	}
 	
 	public List<String> getClassChainNames() {
-		return Lists.newArrayList(m_name.split("\\$"));
+		List<String> names = m_classChainNames;
+		if (names == null) {
+			ImmutableList.Builder<String> builder = ImmutableList.builder();
+			int start = 0;
+			int pos;
+			while ((pos = m_name.indexOf('$', start)) >= 0) {
+				builder.add(m_name.substring(start, pos));
+				start = pos + 1;
+			}
+			builder.add(m_name.substring(start));
+			names = builder.build();
+			m_classChainNames = names;
+		}
+		return names;
 	}
 	
 	public List<ClassEntry> getClassChain() {
-		List<ClassEntry> entries = Lists.newArrayList();
-		StringBuilder buf = new StringBuilder();
-		for (String name : getClassChainNames()) {
-			if (buf.length() > 0) {
-				buf.append("$");
+		List<ClassEntry> entries = m_classChain;
+		if (entries == null) {
+			if (isInnerClass()) {
+				// the outer class already knows the rest of the chain
+				entries = ImmutableList.<ClassEntry>builder()
+					.addAll(getOuterClassEntry().getClassChain())
+					.add(this)
+					.build();
+			} else {
+				entries = ImmutableList.of(this);
 			}
-			buf.append(name);
-			entries.add(new ClassEntry(buf.toString()));
+			m_classChain = entries;
 		}
 		return entries;
 	}
 	
 	public String getOutermostClassName() {
-		if (isInnerClass()) {
-			return m_name.substring(0, m_name.indexOf('$'));
-		}
-		return m_name;
+		return getClassChainNames().get(0);
 	}
 	
 	public ClassEntry getOutermostClassEntry() {
-		return new ClassEntry(getOutermostClassName());
+		return getClassChain().get(0);
 	}
 	
 	public String getOuterClassName() {
@@ -122,6 +142,10 @@ public class ClassEntry implements Entry, Serializable {
 	}
 	
 	public ClassEntry getOuterClassEntry() {
+		List<ClassEntry> entries = m_classChain;
+		if (entries != null && entries.size() > 1) {
+			return entries.get(entries.size() - 2);
+		}
 		return new ClassEntry(getOuterClassName());
 	}
 	
@@ -129,7 +153,8 @@ public class ClassEntry implements Entry, Serializable {
 		if (!isInnerClass()) {
 			throw new Error("This is not an inner class!");
 		}
-		return m_name.substring(m_name.lastIndexOf('$') + 1);
+		List<String> names = getClassChainNames();
+		return names.get(names.size() - 1);
 	}
 	
 	public boolean isInDefaultPackage() {
@@ -10,8 +10,11 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Map;
 
 import com.google.common.collect.Maps;
@@ -20,31 +23,93 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	
 	private static final long serialVersionUID = -5148491146902340107L;
 	
+	// the same order compareTo() gives, since inner classes in the same class only differ in their simple names
+	private static class ObfSimpleNameOrder implements Comparator<String>, Serializable {
+		
+		private static final long serialVersionUID = 5925062011524838370L;
+		
+		@Override
+		public int compare(String a, String b) {
+			if (a.length() != b.length()) {
+				return a.length() - b.length();
+			}
+			return a.compareTo(b);
+		}
+	}
+	
 	private String m_obfFullName;
 	private String m_obfSimpleName;
 	private String m_deobfName;
 	private Map<String,ClassMapping> m_innerClassesByObfSimple;
 	private Map<String,ClassMapping> m_innerClassesByDeobf;
-	private Map<String,FieldMapping> m_fieldsByObf;
-	private Map<String,FieldMapping> m_fieldsByDeobf;
-	private Map<String,MethodMapping> m_methodsByObf;
-	private Map<String,MethodMapping> m_methodsByDeobf;
+	private MemberMap<Type,FieldMapping> m_fieldsByObf;
+	private MemberMap<Type,FieldMapping> m_fieldsByDeobf;
+	private MemberMap<Signature,MethodMapping> m_methodsByObf;
+	private MemberMap<Signature,MethodMapping> m_methodsByDeobf;
+	
+	// class mappings read lazily start out with just their names
+	// the inner classes, fields, and methods get read the first time anyone asks for them
+	public interface BodyLoader {
+		ClassMapping loadBody(ClassMapping classMapping);
+		
+		// goes over what loadBody() would read, without keeping any of it
+		void scanBody(ClassMapping classMapping, BodyScanner scanner);
+	}
+	
+	public interface BodyScanner {
+		// return false to skip everything in the inner class
+		boolean visitInnerClass(ClassMapping outerClassMapping, ClassMapping innerClassMapping);
+		void visitField(ClassMapping classMapping, FieldMapping fieldMapping);
+		void visitMethod(ClassMapping classMapping, MethodMapping methodMapping);
+	}
+	
+	private transient volatile BodyLoader m_bodyLoader;
+	
+	// whether this class changed since it was last read or saved, so saves can skip the classes that didn't
+	private transient boolean m_isDirty;
 	
 	public ClassMapping(String obfFullName) {
 		this(obfFullName, null);
 	}
 	
 	public ClassMapping(String obfFullName, String deobfName) {
+		this(obfFullName, deobfName, null);
+	}
+	
+	public ClassMapping(String obfFullName, String deobfName, BodyLoader bodyLoader) {
 		m_obfFullName = obfFullName;
 		ClassEntry classEntry = new ClassEntry(obfFullName);
 		m_obfSimpleName = classEntry.isInnerClass() ? classEntry.getInnermostClassName() : classEntry.getSimpleName();
 		m_deobfName = NameValidator.validateClassName(deobfName, false);
-		m_innerClassesByObfSimple = Maps.newHashMap();
-		m_innerClassesByDeobf = Maps.newHashMap();
-		m_fieldsByObf = Maps.newHashMap();
-		m_fieldsByDeobf = Maps.newHashMap();
-		m_methodsByObf = Maps.newHashMap();
-		m_methodsByDeobf = Maps.newHashMap();
+		m_bodyLoader = bodyLoader;
+		if (bodyLoader == null) {
+			makeBody();
+		}
+	}
+	
+	public ClassMapping(ClassMapping other) {
+		// copy everything down to the arguments, so changes to the other mapping don't show up in this one
+		m_obfFullName = other.m_obfFullName;
+		m_obfSimpleName = other.m_obfSimpleName;
+		m_deobfName = other.m_deobfName;
+		
+		// if the other mapping hasn't read its body yet, nothing could have changed it, so this one can read it later too
+		synchronized (other) {
+			m_bodyLoader = other.m_bodyLoader;
+		}
+		if (m_bodyLoader != null) {
+			return;
+		}
+		makeBody();
+		for (ClassMapping innerClassMapping : other.innerClasses()) {
+			addInnerClassMapping(new ClassMapping(innerClassMapping));
+		}
+		for (FieldMapping fieldMapping : other.fields()) {
+			addFieldMapping(new FieldMapping(fieldMapping));
+		}
+		for (MethodMapping methodMapping : other.methods()) {
+			addMethodMapping(new MethodMapping(methodMapping));
+		}
 	}
 	
 	public String getObfFullName() {
@@ -61,16 +126,105 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	
 	public void setDeobfName(String val) {
 		m_deobfName = NameValidator.validateClassName(val, false);
+		m_isDirty = true;
+	}
+	
+	public boolean isDirty() {
+		if (m_isDirty) {
+			return true;
+		}
+		if (isBodyLoaded()) {
+			for (ClassMapping innerClassMapping : m_innerClassesByObfSimple.values()) {
+				if (innerClassMapping.isDirty()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	public void markClean() {
+		m_isDirty = false;
+		if (isBodyLoaded()) {
+			for (ClassMapping innerClassMapping : m_innerClassesByObfSimple.values()) {
+				innerClassMapping.markClean();
+			}
+		}
+	}
+	
+	//// LAZY LOADING ////////
+	
+	public boolean isBodyLoaded() {
+		return m_bodyLoader == null;
+	}
+	
+	public synchronized BodyLoader getBodyLoader() {
+		return m_bodyLoader;
+	}
+	
+	public synchronized void setBodyLoader(BodyLoader val) {
+		if (m_bodyLoader == null) {
+			throw new Error("Class mapping for " + m_obfFullName + " is already loaded!");
+		}
+		m_bodyLoader = val;
+	}
+	
+	private void loadBody() {
+		if (m_bodyLoader == null) {
+			return;
+		}
+		
+		// several threads can read the same mappings, so only one of them gets to load the body
+		synchronized (this) {
+			BodyLoader bodyLoader = m_bodyLoader;
+			if (bodyLoader == null) {
+				return;
+			}
+			ClassMapping body = bodyLoader.loadBody(this);
+			m_innerClassesByObfSimple = body.m_innerClassesByObfSimple;
+			m_innerClassesByDeobf = body.m_innerClassesByDeobf;
+			m_fieldsByObf = body.m_fieldsByObf;
+			m_fieldsByDeobf = body.m_fieldsByDeobf;
+			m_methodsByObf = body.m_methodsByObf;
+			m_methodsByDeobf = body.m_methodsByDeobf;
+			if (body.m_isDirty) {
+				// the loader changed what was read, eg to drop broken mappings
+				m_isDirty = true;
+			}
+			
+			// clear the loader last, other threads don't lock once it's gone
+			m_bodyLoader = null;
+		}
+	}
+	
+	private void makeBody() {
+		// unloaded mappings leave these null, there can be lots of them
+		// the obf maps keep everything in the order the writer wants, so saving never has to sort
+		m_innerClassesByObfSimple = Maps.newTreeMap(new ObfSimpleNameOrder());
+		m_innerClassesByDeobf = Maps.newHashMap();
+		m_fieldsByObf = new MemberMap<Type,FieldMapping>(true);
+		m_fieldsByDeobf = new MemberMap<Type,FieldMapping>();
+		m_methodsByObf = new MemberMap<Signature,MethodMapping>(true);
+		m_methodsByDeobf = new MemberMap<Signature,MethodMapping>();
+	}
+	
+	private void writeObject(ObjectOutputStream out)
+	throws IOException {
+		loadBody();
+		out.defaultWriteObject();
 	}
 	
 	//// INNER CLASSES ////////
 	
 	public Iterable<ClassMapping> innerClasses() {
+		loadBody();
 		assert (m_innerClassesByObfSimple.size() >= m_innerClassesByDeobf.size());
 		return m_innerClassesByObfSimple.values();
 	}
 	
 	public void addInnerClassMapping(ClassMapping classMapping) {
+		loadBody();
+		m_isDirty = true;
 		boolean obfWasAdded = m_innerClassesByObfSimple.put(classMapping.getObfSimpleName(), classMapping) == null;
 		assert (obfWasAdded);
 		if (classMapping.getDeobfName() != null) {
@@ -81,6 +235,8 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public void removeInnerClassMapping(ClassMapping classMapping) {
+		loadBody();
+		m_isDirty = true;
 		boolean obfWasRemoved = m_innerClassesByObfSimple.remove(classMapping.getObfSimpleName()) != null;
 		assert (obfWasRemoved);
 		if (classMapping.getDeobfName() != null) {
@@ -90,21 +246,25 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public ClassMapping getOrCreateInnerClass(ClassEntry obfInnerClass) {
+		loadBody();
 		ClassMapping classMapping = m_innerClassesByObfSimple.get(obfInnerClass.getInnermostClassName());
 		if (classMapping == null) {
 			classMapping = new ClassMapping(obfInnerClass.getName());
 			boolean wasAdded = m_innerClassesByObfSimple.put(classMapping.getObfSimpleName(), classMapping) == null;
 			assert (wasAdded);
+			m_isDirty = true;
 		}
 		return classMapping;
 	}
 	
 	public ClassMapping getInnerClassByObfSimple(String obfSimpleName) {
+		loadBody();
 		assert (isSimpleClassName(obfSimpleName));
 		return m_innerClassesByObfSimple.get(obfSimpleName);
 	}
 	
 	public ClassMapping getInnerClassByDeobf(String deobfName) {
+		loadBody();
 		assert (isSimpleClassName(deobfName));
 		return m_innerClassesByDeobf.get(deobfName);
 	}
@@ -118,6 +278,7 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public String getDeobfInnerClassName(String obfSimpleName) {
+		loadBody();
 		assert (isSimpleClassName(obfSimpleName));
 		ClassMapping classMapping = m_innerClassesByObfSimple.get(obfSimpleName);
 		if (classMapping != null) {
@@ -127,6 +288,7 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public void setInnerClassName(ClassEntry obfInnerClass, String deobfName) {
+		loadBody();
 		ClassMapping classMapping = getOrCreateInnerClass(obfInnerClass);
 		if (classMapping.getDeobfName() != null) {
 			boolean wasRemoved = m_innerClassesByDeobf.remove(classMapping.getDeobfName()) != null;
@@ -141,10 +303,12 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public boolean hasInnerClassByObfSimple(String obfSimpleName) {
+		loadBody();
 		return m_innerClassesByObfSimple.containsKey(obfSimpleName);
 	}
 	
 	public boolean hasInnerClassByDeobf(String deobfName) {
+		loadBody();
 		return m_innerClassesByDeobf.containsKey(deobfName);
 	}
 	
@@ -152,53 +316,61 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	//// FIELDS ////////
 	
 	public Iterable<FieldMapping> fields() {
+		loadBody();
 		assert (m_fieldsByObf.size() == m_fieldsByDeobf.size());
 		return m_fieldsByObf.values();
 	}
 	
 	public boolean containsObfField(String obfName, Type obfType) {
-		return m_fieldsByObf.containsKey(getFieldKey(obfName, obfType));
+		loadBody();
+		return m_fieldsByObf.containsKey(obfName, obfType);
 	}
 	
 	public boolean containsDeobfField(String deobfName, Type deobfType) {
-		return m_fieldsByDeobf.containsKey(getFieldKey(deobfName, deobfType));
+		loadBody();
+		return m_fieldsByDeobf.containsKey(deobfName, deobfType);
 	}
 	
 	public void addFieldMapping(FieldMapping fieldMapping) {
-		String obfKey = getFieldKey(fieldMapping.getObfName(), fieldMapping.getObfType());
-		if (m_fieldsByObf.containsKey(obfKey)) {
-			throw new Error("Already have mapping for " + m_obfFullName + "." + obfKey);
+		loadBody();
+		m_isDirty = true;
+		if (m_fieldsByObf.containsKey(fieldMapping.getObfName(), fieldMapping.getObfType())) {
+			throw new Error("Already have mapping for " + m_obfFullName + "." + fieldMapping.getObfName() + ":" + fieldMapping.getObfType());
 		}
-		String deobfKey = getFieldKey(fieldMapping.getDeobfName(), fieldMapping.getObfType());
-		if (m_fieldsByDeobf.containsKey(deobfKey)) {
-			throw new Error("Already have mapping for " + m_deobfName + "." + deobfKey);
+		if (m_fieldsByDeobf.containsKey(fieldMapping.getDeobfName(), fieldMapping.getObfType())) {
+			throw new Error("Already have mapping for " + m_deobfName + "." + fieldMapping.getDeobfName() + ":" + fieldMapping.getObfType());
 		}
-		boolean obfWasAdded = m_fieldsByObf.put(obfKey, fieldMapping) == null;
+		boolean obfWasAdded = m_fieldsByObf.put(fieldMapping.getObfName(), fieldMapping.getObfType(), fieldMapping) == null;
 		assert (obfWasAdded);
-		boolean deobfWasAdded = m_fieldsByDeobf.put(deobfKey, fieldMapping) == null;
+		boolean deobfWasAdded = m_fieldsByDeobf.put(fieldMapping.getDeobfName(), fieldMapping.getObfType(), fieldMapping) == null;
 		assert (deobfWasAdded);
 		assert (m_fieldsByObf.size() == m_fieldsByDeobf.size());
 	}
 	
 	public void removeFieldMapping(FieldMapping fieldMapping) {
-		boolean obfWasRemoved = m_fieldsByObf.remove(getFieldKey(fieldMapping.getObfName(), fieldMapping.getObfType())) != null;
+		loadBody();
+		m_isDirty = true;
+		boolean obfWasRemoved = m_fieldsByObf.remove(fieldMapping.getObfName(), fieldMapping.getObfType()) != null;
 		assert (obfWasRemoved);
 		if (fieldMapping.getDeobfName() != null) {
-			boolean deobfWasRemoved = m_fieldsByDeobf.remove(getFieldKey(fieldMapping.getDeobfName(), fieldMapping.getObfType())) != null;
+			boolean deobfWasRemoved = m_fieldsByDeobf.remove(fieldMapping.getDeobfName(), fieldMapping.getObfType()) != null;
 			assert (deobfWasRemoved);
 		}
 	}
 	
 	public FieldMapping getFieldByObf(String obfName, Type obfType) {
-		return m_fieldsByObf.get(getFieldKey(obfName, obfType));
+		loadBody();
+		return m_fieldsByObf.get(obfName, obfType);
 	}
 	
 	public FieldMapping getFieldByDeobf(String deobfName, Type obfType) {
-		return m_fieldsByDeobf.get(getFieldKey(deobfName, obfType));
+		loadBody();
+		return m_fieldsByDeobf.get(deobfName, obfType);
 	}
 	
 	public String getObfFieldName(String deobfName, Type obfType) {
-		FieldMapping fieldMapping = m_fieldsByDeobf.get(getFieldKey(deobfName, obfType));
+		loadBody();
+		FieldMapping fieldMapping = m_fieldsByDeobf.get(deobfName, obfType);
 		if (fieldMapping != null) {
 			return fieldMapping.getObfName();
 		}
@@ -206,49 +378,44 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public String getDeobfFieldName(String obfName, Type obfType) {
-		FieldMapping fieldMapping = m_fieldsByObf.get(getFieldKey(obfName, obfType));
+		loadBody();
+		FieldMapping fieldMapping = m_fieldsByObf.get(obfName, obfType);
 		if (fieldMapping != null) {
 			return fieldMapping.getDeobfName();
 		}
 		return null;
 	}
 	
-	private String getFieldKey(String name, Type type) {
-		if (name == null) {
-			throw new IllegalArgumentException("name cannot be null!");
-		}
-		if (type == null) {
-			throw new IllegalArgumentException("type cannot be null!");
-		}
-		return name + ":" + type;
-	}
-	
 	
 	public void setFieldName(String obfName, Type obfType, String deobfName) {
+		loadBody();
+		m_isDirty = true;
 		assert(deobfName != null);
-		FieldMapping fieldMapping = m_fieldsByObf.get(getFieldKey(obfName, obfType));
+		FieldMapping fieldMapping = m_fieldsByObf.get(obfName, obfType);
 		if (fieldMapping == null) {
 			fieldMapping = new FieldMapping(obfName, obfType, deobfName);
-			boolean obfWasAdded = m_fieldsByObf.put(getFieldKey(obfName, obfType), fieldMapping) == null;
+			boolean obfWasAdded = m_fieldsByObf.put(obfName, obfType, fieldMapping) == null;
 			assert (obfWasAdded);
 		} else {
-			boolean wasRemoved = m_fieldsByDeobf.remove(getFieldKey(fieldMapping.getDeobfName(), obfType)) != null;
+			boolean wasRemoved = m_fieldsByDeobf.remove(fieldMapping.getDeobfName(), obfType) != null;
 			assert (wasRemoved);
 		}
 		fieldMapping.setDeobfName(deobfName);
 		if (deobfName != null) {
-			boolean wasAdded = m_fieldsByDeobf.put(getFieldKey(deobfName, obfType), fieldMapping) == null;
+			boolean wasAdded = m_fieldsByDeobf.put(deobfName, obfType, fieldMapping) == null;
 			assert (wasAdded);
 		}
 	}
 	
 	public void setFieldObfNameAndType(String oldObfName, Type obfType, String newObfName, Type newObfType) {
+		loadBody();
+		m_isDirty = true;
 		assert(newObfName != null);
-		FieldMapping fieldMapping = m_fieldsByObf.remove(getFieldKey(oldObfName, obfType));
+		FieldMapping fieldMapping = m_fieldsByObf.remove(oldObfName, obfType);
 		assert(fieldMapping != null);
 		fieldMapping.setObfName(newObfName);
 		fieldMapping.setObfType(newObfType);
-		boolean obfWasAdded = m_fieldsByObf.put(getFieldKey(newObfName, newObfType), fieldMapping) == null;
+		boolean obfWasAdded = m_fieldsByObf.put(newObfName, newObfType, fieldMapping) == null;
 		assert(obfWasAdded);
 	}
 	
@@ -256,93 +423,96 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	//// METHODS ////////
 	
 	public Iterable<MethodMapping> methods() {
+		loadBody();
 		assert (m_methodsByObf.size() >= m_methodsByDeobf.size());
 		return m_methodsByObf.values();
 	}
 	
 	public boolean containsObfMethod(String obfName, Signature obfSignature) {
-		return m_methodsByObf.containsKey(getMethodKey(obfName, obfSignature));
+		loadBody();
+		return m_methodsByObf.containsKey(obfName, obfSignature);
 	}
 	
 	public boolean containsDeobfMethod(String deobfName, Signature obfSignature) {
-		return m_methodsByDeobf.containsKey(getMethodKey(deobfName, obfSignature));
+		loadBody();
+		return m_methodsByDeobf.containsKey(deobfName, obfSignature);
 	}
 	
 	public void addMethodMapping(MethodMapping methodMapping) {
-		String obfKey = getMethodKey(methodMapping.getObfName(), methodMapping.getObfSignature());
-		if (m_methodsByObf.containsKey(obfKey)) {
-			throw new Error("Already have mapping for " + m_obfFullName + "." + obfKey);
+		loadBody();
+		m_isDirty = true;
+		if (m_methodsByObf.containsKey(methodMapping.getObfName(), methodMapping.getObfSignature())) {
+			throw new Error("Already have mapping for " + m_obfFullName + "." + methodMapping.getObfName() + methodMapping.getObfSignature());
 		}
-		boolean wasAdded = m_methodsByObf.put(obfKey, methodMapping) == null;
+		boolean wasAdded = m_methodsByObf.put(methodMapping.getObfName(), methodMapping.getObfSignature(), methodMapping) == null;
 		assert (wasAdded);
 		if (methodMapping.getDeobfName() != null) {
-			String deobfKey = getMethodKey(methodMapping.getDeobfName(), methodMapping.getObfSignature());
-			if (m_methodsByDeobf.containsKey(deobfKey)) {
-				throw new Error("Already have mapping for " + m_deobfName + "." + deobfKey);
+			if (m_methodsByDeobf.containsKey(methodMapping.getDeobfName(), methodMapping.getObfSignature())) {
+				throw new Error("Already have mapping for " + m_deobfName + "." + methodMapping.getDeobfName() + methodMapping.getObfSignature());
 			}
-			boolean deobfWasAdded = m_methodsByDeobf.put(deobfKey, methodMapping) == null;
+			boolean deobfWasAdded = m_methodsByDeobf.put(methodMapping.getDeobfName(), methodMapping.getObfSignature(), methodMapping) == null;
 			assert (deobfWasAdded);
 		}
 		assert (m_methodsByObf.size() >= m_methodsByDeobf.size());
 	}
 	
 	public void removeMethodMapping(MethodMapping methodMapping) {
-		boolean obfWasRemoved = m_methodsByObf.remove(getMethodKey(methodMapping.getObfName(), methodMapping.getObfSignature())) != null;
+		loadBody();
+		m_isDirty = true;
+		boolean obfWasRemoved = m_methodsByObf.remove(methodMapping.getObfName(), methodMapping.getObfSignature()) != null;
 		assert (obfWasRemoved);
 		if (methodMapping.getDeobfName() != null) {
-			boolean deobfWasRemoved = m_methodsByDeobf.remove(getMethodKey(methodMapping.getDeobfName(), methodMapping.getObfSignature())) != null;
+			boolean deobfWasRemoved = m_methodsByDeobf.remove(methodMapping.getDeobfName(), methodMapping.getObfSignature()) != null;
 			assert (deobfWasRemoved);
 		}
 	}
 	
 	public MethodMapping getMethodByObf(String obfName, Signature obfSignature) {
-		return m_methodsByObf.get(getMethodKey(obfName, obfSignature));
+		loadBody();
+		return m_methodsByObf.get(obfName, obfSignature);
 	}
 	
 	public MethodMapping getMethodByDeobf(String deobfName, Signature obfSignature) {
-		return m_methodsByDeobf.get(getMethodKey(deobfName, obfSignature));
-	}
-	
-	private String getMethodKey(String name, Signature signature) {
-		if (name == null) {
-			throw new IllegalArgumentException("name cannot be null!");
-		}
-		if (signature == null) {
-			throw new IllegalArgumentException("signature cannot be null!");
-		}
-		return name + signature;
+		loadBody();
+		return m_methodsByDeobf.get(deobfName, obfSignature);
 	}
 	
 	public void setMethodName(String obfName, Signature obfSignature, String deobfName) {
-		MethodMapping methodMapping = m_methodsByObf.get(getMethodKey(obfName, obfSignature));
+		loadBody();
+		m_isDirty = true;
+		MethodMapping methodMapping = m_methodsByObf.get(obfName, obfSignature);
 		if (methodMapping == null) {
 			methodMapping = createMethodMapping(obfName, obfSignature);
 		} else if (methodMapping.getDeobfName() != null) {
-			boolean wasRemoved = m_methodsByDeobf.remove(getMethodKey(methodMapping.getDeobfName(), methodMapping.getObfSignature())) != null;
+			boolean wasRemoved = m_methodsByDeobf.remove(methodMapping.getDeobfName(), methodMapping.getObfSignature()) != null;
 			assert (wasRemoved);
 		}
 		methodMapping.setDeobfName(deobfName);
 		if (deobfName != null) {
-			boolean wasAdded = m_methodsByDeobf.put(getMethodKey(deobfName, obfSignature), methodMapping) == null;
+			boolean wasAdded = m_methodsByDeobf.put(deobfName, obfSignature, methodMapping) == null;
 			assert (wasAdded);
 		}
 	}
 	
 	public void setMethodObfNameAndSignature(String oldObfName, Signature obfSignature, String newObfName, Signature newObfSignature) {
+		loadBody();
+		m_isDirty = true;
 		assert(newObfName != null);
-		MethodMapping methodMapping = m_methodsByObf.remove(getMethodKey(oldObfName, obfSignature));
+		MethodMapping methodMapping = m_methodsByObf.remove(oldObfName, obfSignature);
 		assert(methodMapping != null);
 		methodMapping.setObfName(newObfName);
 		methodMapping.setObfSignature(newObfSignature);
-		boolean obfWasAdded = m_methodsByObf.put(getMethodKey(newObfName, newObfSignature), methodMapping) == null;
+		boolean obfWasAdded = m_methodsByObf.put(newObfName, newObfSignature, methodMapping) == null;
 		assert(obfWasAdded);
 	}
 	
 	//// ARGUMENTS ////////
 	
 	public void setArgumentName(String obfMethodName, Signature obfMethodSignature, int argumentIndex, String argumentName) {
+		loadBody();
+		m_isDirty = true;
 		assert(argumentName != null);
-		MethodMapping methodMapping = m_methodsByObf.get(getMethodKey(obfMethodName, obfMethodSignature));
+		MethodMapping methodMapping = m_methodsByObf.get(obfMethodName, obfMethodSignature);
 		if (methodMapping == null) {
 			methodMapping = createMethodMapping(obfMethodName, obfMethodSignature);
 		}
@@ -350,18 +520,21 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public void removeArgumentName(String obfMethodName, Signature obfMethodSignature, int argumentIndex) {
-		m_methodsByObf.get(getMethodKey(obfMethodName, obfMethodSignature)).removeArgumentName(argumentIndex);
+		loadBody();
+		m_isDirty = true;
+		m_methodsByObf.get(obfMethodName, obfMethodSignature).removeArgumentName(argumentIndex);
 	}
 	
 	private MethodMapping createMethodMapping(String obfName, Signature obfSignature) {
 		MethodMapping methodMapping = new MethodMapping(obfName, obfSignature);
-		boolean wasAdded = m_methodsByObf.put(getMethodKey(obfName, obfSignature), methodMapping) == null;
+		boolean wasAdded = m_methodsByObf.put(obfName, obfSignature, methodMapping) == null;
 		assert (wasAdded);
 		return methodMapping;
 	}
 	
 	@Override
 	public String toString() {
+		loadBody();
 		StringBuilder buf = new StringBuilder();
 		buf.append(m_obfFullName);
 		buf.append(" <-> ");
@@ -401,6 +574,7 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	}
 	
 	public boolean renameObfClass(String oldObfClassName, String newObfClassName) {
+		loadBody();
 		
 		// rename inner classes
 		for (ClassMapping innerClassMapping : new ArrayList<ClassMapping>(m_innerClassesByObfSimple.values())) {
@@ -414,36 +588,42 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 		
 		// rename field types
 		for (FieldMapping fieldMapping : new ArrayList<FieldMapping>(m_fieldsByObf.values())) {
-			String oldFieldKey = getFieldKey(fieldMapping.getObfName(), fieldMapping.getObfType());
+			String oldObfName = fieldMapping.getObfName();
+			Type oldObfType = fieldMapping.getObfType();
 			if (fieldMapping.renameObfClass(oldObfClassName, newObfClassName)) {
-				boolean wasRemoved = m_fieldsByObf.remove(oldFieldKey) != null;
+				boolean wasRemoved = m_fieldsByObf.remove(oldObfName, oldObfType) != null;
 				assert (wasRemoved);
-				boolean wasAdded = m_fieldsByObf.put(getFieldKey(fieldMapping.getObfName(), fieldMapping.getObfType()), fieldMapping) == null;
+				boolean wasAdded = m_fieldsByObf.put(fieldMapping.getObfName(), fieldMapping.getObfType(), fieldMapping) == null;
 				assert (wasAdded);
+				m_isDirty = true;
 			}
 		}
 		
 		// rename method signatures
 		for (MethodMapping methodMapping : new ArrayList<MethodMapping>(m_methodsByObf.values())) {
-			String oldMethodKey = getMethodKey(methodMapping.getObfName(), methodMapping.getObfSignature());
+			String oldObfName = methodMapping.getObfName();
+			Signature oldObfSignature = methodMapping.getObfSignature();
 			if (methodMapping.renameObfClass(oldObfClassName, newObfClassName)) {
-				boolean wasRemoved = m_methodsByObf.remove(oldMethodKey) != null;
+				boolean wasRemoved = m_methodsByObf.remove(oldObfName, oldObfSignature) != null;
 				assert (wasRemoved);
-				boolean wasAdded = m_methodsByObf.put(getMethodKey(methodMapping.getObfName(), methodMapping.getObfSignature()), methodMapping) == null;
+				boolean wasAdded = m_methodsByObf.put(methodMapping.getObfName(), methodMapping.getObfSignature(), methodMapping) == null;
 				assert (wasAdded);
+				m_isDirty = true;
 			}
 		}
 		
 		if (m_obfFullName.equals(oldObfClassName)) {
 			// rename this class
 			m_obfFullName = newObfClassName;
+			m_isDirty = true;
 			return true;
 		}
 		return false;
 	}
 	
 	public boolean containsArgument(BehaviorEntry obfBehaviorEntry, String name) {
-		MethodMapping methodMapping = m_methodsByObf.get(getMethodKey(obfBehaviorEntry.getName(), obfBehaviorEntry.getSignature()));
+		loadBody();
+		MethodMapping methodMapping = m_methodsByObf.get(obfBehaviorEntry.getName(), obfBehaviorEntry.getSignature());
 		if (methodMapping != null) {
 			return methodMapping.containsArgument(name);
 		}
@@ -453,7 +633,7 @@ public class ClassMapping implements Serializable, Comparable<ClassMapping> {
 	public static boolean isSimpleClassName(String name) {
 		return name.indexOf('/') < 0 && name.indexOf('$') < 0;
 	}
-
+	
 	public ClassEntry getObfEntry() {
 		return new ClassEntry(m_obfFullName);
 	}
@@ -22,6 +22,7 @@ import javassist.expr.MethodCall;
 import javassist.expr.NewExpr;
 
 import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.bytecode.ClassHeader;
 
 public class EntryFactory {
 	
@@ -29,6 +30,10 @@ public class EntryFactory {
 		return new ClassEntry(Descriptor.toJvmName(c.getName()));
 	}
 	
+	public static ClassEntry getClassEntry(ClassHeader header) {
+		return new ClassEntry(header.getName());
+	}
+	
 	public static ClassEntry getObfClassEntry(JarIndex jarIndex, ClassMapping classMapping) {
 		ClassEntry obfClassEntry = new ClassEntry(classMapping.getObfFullName());
 		return obfClassEntry.buildClassEntry(jarIndex.getObfClassChain(obfClassEntry));
@@ -46,11 +51,18 @@ public class EntryFactory {
 		return new ClassEntry(Descriptor.toJvmName(c.getClassFile().getSuperclass()));
 	}
 	
+	public static ClassEntry getSuperclassEntry(ClassHeader header) {
+		if (header.getSuperName() == null) {
+			return null;
+		}
+		return new ClassEntry(header.getSuperName());
+	}
+	
 	public static FieldEntry getFieldEntry(CtField field) {
 		return new FieldEntry(
 			getClassEntry(field.getDeclaringClass()),
 			field.getName(),
-			new Type(field.getFieldInfo().getDescriptor())
+			Type.get(field.getFieldInfo().getDescriptor())
 		);
 	}
 	
@@ -58,12 +70,16 @@ public class EntryFactory {
 		return new FieldEntry(
 			new ClassEntry(Descriptor.toJvmName(call.getClassName())),
 			call.getFieldName(),
-			new Type(call.getSignature())
+			Type.get(call.getSignature())
 		);
 	}
 	
+	public static FieldEntry getFieldEntry(ClassHeader header, ClassHeader.Member field) {
+		return new FieldEntry(getClassEntry(header), field.getName(), Type.get(field.getDescriptor()));
+	}
+	
 	public static FieldEntry getFieldEntry(String className, String name, String type) {
-		return new FieldEntry(new ClassEntry(className), name, new Type(type));
+		return new FieldEntry(new ClassEntry(className), name, Type.get(type));
 	}
 	
 	public static FieldEntry getObfFieldEntry(ClassMapping classMapping, FieldMapping fieldMapping) {
@@ -78,7 +94,7 @@ public class EntryFactory {
 		return new MethodEntry(
 			getClassEntry(method.getDeclaringClass()),
 			method.getName(),
-			new Signature(method.getMethodInfo().getDescriptor())
+			Signature.get(method.getMethodInfo().getDescriptor())
 		);
 	}
 	
@@ -86,7 +102,7 @@ public class EntryFactory {
 		return new MethodEntry(
 			new ClassEntry(Descriptor.toJvmName(call.getClassName())),
 			call.getMethodName(),
-			new Signature(call.getSignature())
+			Signature.get(call.getSignature())
 		);
 	}
 	
@@ -98,7 +114,7 @@ public class EntryFactory {
 		} else {
 			return new ConstructorEntry(
 				getClassEntry(constructor.getDeclaringClass()),
-				new Signature(constructor.getMethodInfo().getDescriptor())
+				Signature.get(constructor.getMethodInfo().getDescriptor())
 			);
 		}
 	}
@@ -106,14 +122,14 @@ public class EntryFactory {
 	public static ConstructorEntry getConstructorEntry(ConstructorCall call) {
 		return new ConstructorEntry(
 			new ClassEntry(Descriptor.toJvmName(call.getClassName())),
-			new Signature(call.getSignature())
+			Signature.get(call.getSignature())
 		);
 	}
 	
 	public static ConstructorEntry getConstructorEntry(NewExpr call) {
 		return new ConstructorEntry(
 			new ClassEntry(Descriptor.toJvmName(call.getClassName())),
-			new Signature(call.getSignature())
+			Signature.get(call.getSignature())
 		);
 	}
 	
@@ -126,8 +142,12 @@ public class EntryFactory {
 		throw new Error("behavior is neither Method nor Constructor!");
 	}
 	
+	public static BehaviorEntry getBehaviorEntry(ClassHeader header, ClassHeader.Member behavior) {
+		return getBehaviorEntry(getClassEntry(header), behavior.getName(), Signature.get(behavior.getDescriptor()));
+	}
+	
 	public static BehaviorEntry getBehaviorEntry(String className, String behaviorName, String behaviorSignature) {
-		return getBehaviorEntry(new ClassEntry(className), behaviorName, new Signature(behaviorSignature));
+		return getBehaviorEntry(new ClassEntry(className), behaviorName, Signature.get(behaviorSignature));
 	}
 
 	public static BehaviorEntry getBehaviorEntry(String className, String behaviorName) {
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+public class EntryInterner {
+	
+	// hands out one shared instance for each distinct entry, so big indices don't hold millions of equal copies
+	// every index gets its own interner, and interners only hold their instances weakly,
+	// so nothing outlives the indices that use it, and nothing leaks from one jar to the next
+	// all the interners are safe to use from many threads at once
+	
+	private boolean m_isEnabled;
+	private Interner<String> m_names;
+	private Interner<ClassEntry> m_classEntries;
+	private Interner<Type> m_types;
+	private Interner<Signature> m_signatures;
+	private Interner<Entry> m_memberEntries;
+	
+	public EntryInterner() {
+		this(true);
+	}
+	
+	public EntryInterner(boolean isEnabled) {
+		// disabled interners hand back whatever they're given, which is handy for measuring what we save
+		m_isEnabled = isEnabled;
+		if (m_isEnabled) {
+			m_names = Interners.newWeakInterner();
+			m_classEntries = Interners.newWeakInterner();
+			m_types = Interners.newWeakInterner();
+			m_signatures = Interners.newWeakInterner();
+			m_memberEntries = Interners.newWeakInterner();
+		}
+	}
+	
+	public boolean isEnabled() {
+		return m_isEnabled;
+	}
+	
+	public String internName(String name) {
+		if (!m_isEnabled || name == null) {
+			return name;
+		}
+		return m_names.intern(name);
+	}
+	
+	public ClassEntry intern(ClassEntry classEntry) {
+		if (!m_isEnabled || classEntry == null) {
+			return classEntry;
+		}
+		return m_classEntries.intern(classEntry);
+	}
+	
+	public Type intern(Type type) {
+		if (!m_isEnabled || type == null) {
+			return type;
+		}
+		return m_types.intern(type);
+	}
+	
+	public Signature intern(Signature signature) {
+		if (!m_isEnabled || signature == null) {
+			return signature;
+		}
+		return m_signatures.intern(signature);
+	}
+	
+	public FieldEntry intern(FieldEntry fieldEntry) {
+		if (!m_isEnabled || fieldEntry == null) {
+			return fieldEntry;
+		}
+		
+		// make sure the canonical entry is built from canonical parts
+		ClassEntry classEntry = intern(fieldEntry.getClassEntry());
+		String name = internName(fieldEntry.getName());
+		Type type = intern(fieldEntry.getType());
+		if (classEntry != fieldEntry.getClassEntry() || name != fieldEntry.getName() || type != fieldEntry.getType()) {
+			fieldEntry = new FieldEntry(classEntry, name, type);
+		}
+		return (FieldEntry)m_memberEntries.intern(fieldEntry);
+	}
+	
+	public MethodEntry intern(MethodEntry methodEntry) {
+		if (!m_isEnabled || methodEntry == null) {
+			return methodEntry;
+		}
+		
+		// make sure the canonical entry is built from canonical parts
+		ClassEntry classEntry = intern(methodEntry.getClassEntry());
+		String name = internName(methodEntry.getName());
+		Signature signature = intern(methodEntry.getSignature());
+		if (classEntry != methodEntry.getClassEntry() || name != methodEntry.getName() || signature != methodEntry.getSignature()) {
+			methodEntry = new MethodEntry(classEntry, name, signature);
+		}
+		return (MethodEntry)m_memberEntries.intern(methodEntry);
+	}
+	
+	public ConstructorEntry intern(ConstructorEntry constructorEntry) {
+		if (!m_isEnabled || constructorEntry == null) {
+			return constructorEntry;
+		}
+		
+		// make sure the canonical entry is built from canonical parts
+		ClassEntry classEntry = intern(constructorEntry.getClassEntry());
+		Signature signature = intern(constructorEntry.getSignature());
+		if (classEntry != constructorEntry.getClassEntry() || signature != constructorEntry.getSignature()) {
+			constructorEntry = new ConstructorEntry(classEntry, signature);
+		}
+		return (ConstructorEntry)m_memberEntries.intern(constructorEntry);
+	}
+	
+	public BehaviorEntry intern(BehaviorEntry behaviorEntry) {
+		if (behaviorEntry instanceof MethodEntry) {
+			return intern((MethodEntry)behaviorEntry);
+		} else if (behaviorEntry instanceof ConstructorEntry) {
+			return intern((ConstructorEntry)behaviorEntry);
+		}
+		return behaviorEntry;
+	}
+}
@@ -26,12 +26,19 @@ public class FieldMapping implements Serializable, Comparable<FieldMapping>, Mem
 		m_obfType = obfType;
 	}
 	
+	public FieldMapping(FieldMapping other) {
+		// types are immutable, so just share it
+		m_obfName = other.m_obfName;
+		m_deobfName = other.m_deobfName;
+		m_obfType = other.m_obfType;
+	}
+	
 	public FieldMapping(FieldMapping other, ClassNameReplacer obfClassNameReplacer) {
 		m_obfName = other.m_obfName;
 		m_deobfName = other.m_deobfName;
 		m_obfType = new Type(other.m_obfType, obfClassNameReplacer);
 	}
-
+	
 	@Override
 	public String getObfName() {
 		return m_obfName;
@@ -61,7 +68,7 @@ public class FieldMapping implements Serializable, Comparable<FieldMapping>, Mem
 	public int compareTo(FieldMapping other) {
 		return (m_obfName + m_obfType).compareTo(other.m_obfName + other.m_obfType);
 	}
-
+	
 	public boolean renameObfClass(final String oldObfClassName, final String newObfClassName) {
 		
 		// rename obf classes in the type
@@ -81,9 +88,9 @@ public class FieldMapping implements Serializable, Comparable<FieldMapping>, Mem
 		}
 		return false;
 	}
-
+	
 	@Override
 	public FieldEntry getObfEntry(ClassEntry classEntry) {
-		return new FieldEntry(classEntry, m_obfName, new Type(m_obfType));
+		return new FieldEntry(classEntry, m_obfName, m_obfType);
 	}
 }
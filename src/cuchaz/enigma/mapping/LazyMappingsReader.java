@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import com.google.common.io.ByteStreams;
+
+public class LazyMappingsReader {
+	
+	// reads just the CLASS line of each top-level class up front, and gives back class mappings with only their names
+	// each class reads the rest of its block from the file contents the first time anyone asks for its members or inner classes
+	// so opening a big set of mappings only costs as much as the classes that actually get used
+	// only the CLASS lines get checked up front, errors in the rest of a class show up as a MappingLoadException when it gets read
+	// the file gets read into memory instead of memory-mapped, so saving over it while the mappings are in use is safe
+	
+	private MappingsReader m_reader;
+	
+	public LazyMappingsReader() {
+		this(new MappingsReader());
+	}
+	
+	public LazyMappingsReader(MappingsReader reader) {
+		// the reader parses the class blocks, so any of its hooks still apply
+		m_reader = reader;
+	}
+	
+	public Mappings read(File file)
+	throws IOException, MappingParseException {
+		try {
+			return read(Files.readAllBytes(file.toPath()), file);
+		} catch (MappingParseException ex) {
+			throw new MappingParseException(file, ex);
+		}
+	}
+	
+	public Mappings read(InputStream in)
+	throws IOException, MappingParseException {
+		return read(ByteStreams.toByteArray(in), null);
+	}
+	
+	private Mappings read(byte[] bytes, File file)
+	throws MappingParseException {
+		Mappings mappings = new Mappings();
+		ClassBlock block = null;
+		int lineNumber = 1;
+		int pos = 0;
+		while (pos < bytes.length) {
+			int lineEnd = pos;
+			while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			
+			// every top-level line starts a class, so look for the next one
+			// newlines, tabs, spaces, and comment signs can't be part of a multi-byte UTF-8 character, so the bytes are safe to check directly
+			if (isTopLevelLine(bytes, pos, lineEnd)) {
+				if (block != null) {
+					block.m_end = pos;
+				}
+				block = readClassLine(bytes, pos, lineEnd, lineNumber, file, mappings);
+			} else if (block == null && !isBlankLine(bytes, pos, lineEnd)) {
+				throw new MappingParseException(lineNumber, "Unexpected entry before the first CLASS entry!");
+			}
+			pos = lineEnd + 1;
+			lineNumber++;
+		}
+		if (block != null) {
+			block.m_end = bytes.length;
+		}
+		return mappings;
+	}
+	
+	private ClassBlock readClassLine(byte[] bytes, int start, int end, int lineNumber, File file, Mappings mappings)
+	throws MappingParseException {
+		
+		// split the line into tokens, stopping at any comment
+		String[] tokens = new String[3];
+		int numTokens = 0;
+		int i = start;
+		while (i < end && bytes[i] != '#') {
+			if (bytes[i] <= ' ' && bytes[i] >= 0) {
+				i++;
+				continue;
+			}
+			int tokenStart = i;
+			while (i < end && (bytes[i] > ' ' || bytes[i] < 0) && bytes[i] != '#') {
+				i++;
+			}
+			if (numTokens < tokens.length) {
+				tokens[numTokens] = new String(bytes, tokenStart, i - tokenStart, StandardCharsets.UTF_8);
+			}
+			numTokens++;
+		}
+		
+		if (!tokens[0].equalsIgnoreCase("CLASS")) {
+			throw new MappingParseException(lineNumber, "Unexpected " + tokens[0] + " entry here!");
+		}
+		ClassBlock block = new ClassBlock(bytes, start, lineNumber, file);
+		try {
+			mappings.addClassMapping(new ClassMapping(tokens[1], numTokens > 2 ? tokens[2] : null, block));
+		} catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+			throw new MappingParseException(lineNumber, "Malformed line:\n" + new String(bytes, start, i - start, StandardCharsets.UTF_8).trim());
+		}
+		return block;
+	}
+	
+	private static boolean isTopLevelLine(byte[] bytes, int start, int end) {
+		return start < end && bytes[start] != '\t' && !isBlankLine(bytes, start, end);
+	}
+	
+	private static boolean isBlankLine(byte[] bytes, int start, int end) {
+		int i = start;
+		while (i < end && bytes[i] <= ' ' && bytes[i] >= 0) {
+			i++;
+		}
+		return i == end || bytes[i] == '#';
+	}
+	
+	private class ClassBlock implements ClassMapping.BodyLoader {
+		
+		private byte[] m_bytes;
+		private int m_start;
+		private int m_end;
+		private int m_lineNumber;
+		private File m_file;
+		
+		public ClassBlock(byte[] bytes, int start, int lineNumber, File file) {
+			m_bytes = bytes;
+			m_start = start;
+			m_lineNumber = lineNumber;
+			m_file = file;
+		}
+		
+		@Override
+		public ClassMapping loadBody(ClassMapping classMapping) {
+			char[] buf = decode();
+			try {
+				return m_reader.readClass(buf, 0, buf.length, m_lineNumber);
+			} catch (MappingParseException ex) {
+				throw newLoadException(classMapping, ex);
+			}
+		}
+		
+		@Override
+		public void scanBody(ClassMapping classMapping, ClassMapping.BodyScanner scanner) {
+			char[] buf = decode();
+			try {
+				m_reader.scanClass(buf, 0, buf.length, m_lineNumber, classMapping, scanner);
+			} catch (MappingParseException ex) {
+				throw newLoadException(classMapping, ex);
+			}
+		}
+		
+		private MappingLoadException newLoadException(ClassMapping classMapping, MappingParseException ex) {
+			if (m_file != null) {
+				ex = new MappingParseException(m_file, ex);
+			}
+			return new MappingLoadException(classMapping.getObfFullName(), ex);
+		}
+		
+		private char[] decode() {
+			CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(m_bytes, m_start, m_end - m_start));
+			char[] buf = new char[chars.remaining()];
+			chars.get(buf);
+			return buf;
+		}
+	}
+}
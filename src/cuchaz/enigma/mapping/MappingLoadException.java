@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+public class MappingLoadException extends RuntimeException {
+	
+	// lazily read classes parse their lines whenever someone first asks for them
+	// that can be anywhere, so parse errors have to get out without being declared
+	
+	private static final long serialVersionUID = 3406729140382619044L;
+	
+	private String m_obfClassName;
+	private MappingParseException m_parseException;
+	
+	public MappingLoadException(String obfClassName, MappingParseException parseException) {
+		super(parseException);
+		m_obfClassName = obfClassName;
+		m_parseException = parseException;
+	}
+	
+	public MappingParseException getParseException() {
+		return m_parseException;
+	}
+	
+	@Override
+	public String getMessage() {
+		return "Unable to read mappings for class " + m_obfClassName + ": " + m_parseException.getMessage();
+	}
+}
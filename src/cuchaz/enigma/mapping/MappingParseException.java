@@ -10,10 +10,13 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
+import java.io.File;
+
 public class MappingParseException extends Exception {
 	
 	private static final long serialVersionUID = -5487280332892507236L;
 	
+	private File m_file;
 	private int m_line;
 	private String m_message;
 	
@@ -22,8 +25,16 @@ public class MappingParseException extends Exception {
 		m_message = message;
 	}
 	
+	public MappingParseException(File file, MappingParseException ex) {
+		this(ex.m_line, ex.m_message);
+		m_file = file;
+	}
+	
 	@Override
 	public String getMessage() {
+		if (m_file != null) {
+			return m_file.getPath() + ": Line " + m_line + ": " + m_message;
+		}
 		return "Line " + m_line + ": " + m_message;
 	}
 }
@@ -29,6 +29,19 @@ public class Mappings implements Serializable {
 	
 	protected Map<String,ClassMapping> m_classesByObf;
 	protected Map<String,ClassMapping> m_classesByDeobf;
+	private transient ObfuscatingIndex m_obfuscatingIndex;
+	
+	// threads that only read the mappings (eg, decompiling or exporting) should read snapshots instead, so they never see half an edit
+	// snapshots are copied one outermost class at a time: each one shares the class mappings of the last one,
+	// except for the outermost classes that changed since then
+	private transient boolean m_isSnapshot;
+	private transient Mappings m_snapshot;
+	private transient Set<String> m_changedOuterClasses;
+	
+	// snapshots don't build their obfuscating index from scratch, they start from the last snapshot index that got built
+	// and translate again only what changed in the outermost classes since then
+	private transient ObfuscatingIndex m_obfuscatingIndexBase;
+	private transient Set<String> m_obfuscatingIndexBaseChanges;
 	
 	public Mappings() {
 		m_classesByObf = Maps.newHashMap();
@@ -52,6 +65,7 @@ public class Mappings implements Serializable {
 	}
 	
 	public void addClassMapping(ClassMapping classMapping) {
+		checkNotSnapshot();
 		if (m_classesByObf.containsKey(classMapping.getObfFullName())) {
 			throw new Error("Already have mapping for " + classMapping.getObfFullName());
 		}
@@ -64,15 +78,24 @@ public class Mappings implements Serializable {
 			boolean deobfWasAdded = m_classesByDeobf.put(classMapping.getDeobfName(), classMapping) == null;
 			assert (deobfWasAdded);
 		}
+		if (m_obfuscatingIndex != null) {
+			m_obfuscatingIndex.classAdded(classMapping);
+		}
+		classChanged(classMapping.getObfFullName());
 	}
 	
 	public void removeClassMapping(ClassMapping classMapping) {
+		checkNotSnapshot();
 		boolean obfWasRemoved = m_classesByObf.remove(classMapping.getObfFullName()) != null;
 		assert (obfWasRemoved);
 		if (classMapping.getDeobfName() != null) {
 			boolean deobfWasRemoved = m_classesByDeobf.remove(classMapping.getDeobfName()) != null;
 			assert (deobfWasRemoved);
 		}
+		
+		// this takes away members and inner classes too, so just start over
+		m_obfuscatingIndex = null;
+		classChanged(classMapping.getObfFullName());
 	}
 	
 	public ClassMapping getClassByObf(ClassEntry entry) {
@@ -92,8 +115,10 @@ public class Mappings implements Serializable {
 	}
 	
 	public void setClassDeobfName(ClassMapping classMapping, String deobfName) {
-		if (classMapping.getDeobfName() != null) {
-			boolean wasRemoved = m_classesByDeobf.remove(classMapping.getDeobfName()) != null;
+		checkNotSnapshot();
+		String oldDeobfName = classMapping.getDeobfName();
+		if (oldDeobfName != null) {
+			boolean wasRemoved = m_classesByDeobf.remove(oldDeobfName) != null;
 			assert (wasRemoved);
 		}
 		classMapping.setDeobfName(deobfName);
@@ -101,6 +126,118 @@ public class Mappings implements Serializable {
 			boolean wasAdded = m_classesByDeobf.put(deobfName, classMapping) == null;
 			assert (wasAdded);
 		}
+		if (m_obfuscatingIndex != null) {
+			m_obfuscatingIndex.classNameChanged(classMapping, oldDeobfName);
+		}
+		classChanged(classMapping.getObfFullName());
+	}
+	
+	// the obfuscating translator is kept up to date as the mappings change, instead of rebuilding it for every edit
+	// so after changing a class mapping directly (ie, not through this class), call one of these
+	// snapshots need to know which classes changed too
+	
+	public void classNameChanged(ClassEntry obfClassEntry) {
+		checkNotSnapshot();
+		if (m_obfuscatingIndex != null) {
+			m_obfuscatingIndex.classNameChanged(obfClassEntry);
+		}
+		classChanged(obfClassEntry.getOutermostClassName());
+	}
+	
+	public void classMembersChanged(ClassEntry obfClassEntry) {
+		checkNotSnapshot();
+		if (m_obfuscatingIndex != null) {
+			m_obfuscatingIndex.classMembersChanged(obfClassEntry);
+		}
+		classChanged(obfClassEntry.getOutermostClassName());
+	}
+	
+	private void classChanged(String obfOuterClassName) {
+		if (m_changedOuterClasses != null) {
+			m_changedOuterClasses.add(obfOuterClassName);
+		}
+	}
+	
+	private void checkNotSnapshot() {
+		if (m_isSnapshot) {
+			throw new Error("Snapshots of mappings can't be changed!");
+		}
+	}
+	
+	public boolean isSnapshot() {
+		return m_isSnapshot;
+	}
+	
+	public Mappings getSnapshot() {
+		
+		// NOTE: this reads the mappings, so call it from the thread that changes them, then hand the snapshot to the other threads
+		// snapshots never change, so until the mappings do, everyone gets the same one
+		if (m_isSnapshot) {
+			return this;
+		}
+		if (m_snapshot != null && m_changedOuterClasses.isEmpty()) {
+			return m_snapshot;
+		}
+		
+		Mappings snapshot = new Mappings();
+		snapshot.m_isSnapshot = true;
+		if (m_snapshot == null) {
+			// nothing to share yet, copy everything
+			for (ClassMapping classMapping : m_classesByObf.values()) {
+				snapshot.m_classesByObf.put(classMapping.getObfFullName(), new ClassMapping(classMapping));
+			}
+		} else {
+			// share the classes that didn't change, and copy the ones that did
+			snapshot.m_classesByObf.putAll(m_snapshot.m_classesByObf);
+			for (String obfClassName : m_changedOuterClasses) {
+				ClassMapping classMapping = m_classesByObf.get(obfClassName);
+				if (classMapping != null) {
+					snapshot.m_classesByObf.put(obfClassName, new ClassMapping(classMapping));
+				} else {
+					snapshot.m_classesByObf.remove(obfClassName);
+				}
+			}
+		}
+		for (ClassMapping classMapping : snapshot.m_classesByObf.values()) {
+			if (classMapping.getDeobfName() != null) {
+				snapshot.m_classesByDeobf.put(classMapping.getDeobfName(), classMapping);
+			}
+		}
+		
+		if (m_snapshot != null) {
+			m_snapshot.passObfuscatingIndexBase(snapshot, m_changedOuterClasses);
+		}
+		
+		m_snapshot = snapshot;
+		m_changedOuterClasses = Sets.newHashSet();
+		return snapshot;
+	}
+	
+	private synchronized void passObfuscatingIndexBase(Mappings nextSnapshot, Set<String> changedOuterClasses) {
+		// NOTE: snapshots build their index on other threads, so this is synchronized with getSnapshotObfuscatingIndex()
+		if (m_obfuscatingIndex != null) {
+			nextSnapshot.m_obfuscatingIndexBase = m_obfuscatingIndex;
+			nextSnapshot.m_obfuscatingIndexBaseChanges = changedOuterClasses;
+		} else if (m_obfuscatingIndexBase != null) {
+			// nobody asked for this snapshot's index, so the next one starts from the same base
+			nextSnapshot.m_obfuscatingIndexBase = m_obfuscatingIndexBase;
+			nextSnapshot.m_obfuscatingIndexBaseChanges = Sets.union(m_obfuscatingIndexBaseChanges, changedOuterClasses).immutableCopy();
+		}
+	}
+	
+	private synchronized ObfuscatingIndex getSnapshotObfuscatingIndex(TranslationIndex index) {
+		if (m_obfuscatingIndex == null || !m_obfuscatingIndex.isFor(index)) {
+			if (m_obfuscatingIndexBase != null && m_obfuscatingIndexBase.isFor(index)) {
+				m_obfuscatingIndex = new ObfuscatingIndex(m_obfuscatingIndexBase, this, m_obfuscatingIndexBaseChanges);
+			} else {
+				m_obfuscatingIndex = new ObfuscatingIndex(this, index);
+			}
+			
+			// don't hold on to the old index any longer than we need it
+			m_obfuscatingIndexBase = null;
+			m_obfuscatingIndexBaseChanges = null;
+		}
+		return m_obfuscatingIndex;
 	}
 	
 	public Translator getTranslator(TranslationDirection direction, TranslationIndex index) {
@@ -108,25 +245,17 @@ public class Mappings implements Serializable {
 			case Deobfuscating:
 				
 				return new Translator(direction, m_classesByObf, index);
-				
+			
 			case Obfuscating:
 				
-				// fill in the missing deobf class entries with obf entries
-				Map<String,ClassMapping> classes = Maps.newHashMap();
-				for (ClassMapping classMapping : classes()) {
-					if (classMapping.getDeobfName() != null) {
-						classes.put(classMapping.getDeobfName(), classMapping);
-					} else {
-						classes.put(classMapping.getObfFullName(), classMapping);
-					}
+				if (m_isSnapshot) {
+					return getSnapshotObfuscatingIndex(index).getTranslator();
 				}
-				
-				// translate the translation index
-				// NOTE: this isn't actually recursive
-				TranslationIndex deobfIndex = new TranslationIndex(index, getTranslator(TranslationDirection.Deobfuscating, index));
-				
-				return new Translator(direction, classes, deobfIndex);
-				
+				if (m_obfuscatingIndex == null || !m_obfuscatingIndex.isFor(index)) {
+					m_obfuscatingIndex = new ObfuscatingIndex(this, index);
+				}
+				return m_obfuscatingIndex.getTranslator();
+			
 			default:
 				throw new Error("Invalid translation direction!");
 		}
@@ -143,6 +272,7 @@ public class Mappings implements Serializable {
 	}
 	
 	public void renameObfClass(String oldObfName, String newObfName) {
+		checkNotSnapshot();
 		for (ClassMapping classMapping : new ArrayList<ClassMapping>(classes())) {
 			if (classMapping.renameObfClass(oldObfName, newObfName)) {
 				boolean wasRemoved = m_classesByObf.remove(oldObfName) != null;
@@ -151,6 +281,10 @@ public class Mappings implements Serializable {
 				assert (wasAdded);
 			}
 		}
+		
+		// this can touch any class, so start over
+		m_obfuscatingIndex = null;
+		m_snapshot = null;
 	}
 	
 	public Set<String> getAllObfClassNames() {
@@ -201,13 +335,14 @@ public class Mappings implements Serializable {
 	}
 	
 	public List<ClassMapping> getClassMappingChain(ClassEntry obfClass) {
-		List<ClassMapping> mappingChain = Lists.newArrayList();
+		List<String> obfClassNames = obfClass.getClassChainNames();
+		List<ClassMapping> mappingChain = Lists.newArrayListWithCapacity(obfClassNames.size());
 		ClassMapping classMapping = null;
-		for (ClassEntry obfClassEntry : obfClass.getClassChain()) {
+		for (String obfClassName : obfClassNames) {
 			if (mappingChain.isEmpty()) {
-				classMapping = m_classesByObf.get(obfClassEntry.getName());
+				classMapping = m_classesByObf.get(obfClassName);
 			} else if (classMapping != null) {
-				classMapping = classMapping.getInnerClassByObfSimple(obfClassEntry.getInnermostClassName());
+				classMapping = classMapping.getInnerClassByObfSimple(obfClassName);
 			}
 			mappingChain.add(classMapping);
 		}
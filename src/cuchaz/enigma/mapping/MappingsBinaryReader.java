@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.io.ByteStreams;
+
+public class MappingsBinaryReader {
+	
+	// reads what MappingsBinaryWriter writes, see there for the format
+	// the whole file gets read into memory, then the record arrays come out in bulk
+	// every string, type, and signature gets decoded once, no matter how many records use it
+	
+	private byte[] m_bytes;
+	private int[] m_stringOffsets;
+	private int m_stringsStart;
+	private int m_stringsEnd;
+	private String[] m_strings;
+	private Type[] m_types;
+	private Signature[] m_signatures;
+	
+	public static boolean isBinary(File file)
+	throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return file.length() >= 4 && in.readInt() == MappingsBinaryWriter.Magic;
+		}
+	}
+	
+	public Mappings read(InputStream in)
+	throws IOException {
+		m_bytes = ByteStreams.toByteArray(in);
+		try {
+			return read(ByteBuffer.wrap(m_bytes));
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException | IllegalArgumentException ex) {
+			throw new IOException("Binary mappings are truncated or corrupt!", ex);
+		} finally {
+			// don't hang on to the file
+			m_bytes = null;
+			m_stringOffsets = null;
+			m_strings = null;
+			m_types = null;
+			m_signatures = null;
+		}
+	}
+	
+	private Mappings read(ByteBuffer buf)
+	throws IOException {
+		
+		// check the header
+		if (buf.getInt() != MappingsBinaryWriter.Magic) {
+			throw new IOException("Not a binary mappings file!");
+		}
+		int version = buf.getInt();
+		if (version != MappingsBinaryWriter.Version) {
+			throw new IOException("Unsupported binary mappings version: " + version);
+		}
+		
+		// find the strings, but don't decode any yet
+		int numStrings = buf.getInt();
+		int blobSize = buf.getInt();
+		m_stringOffsets = getInts(buf, numStrings);
+		m_stringsStart = buf.position();
+		m_stringsEnd = m_stringsStart + blobSize;
+		buf.position(m_stringsEnd);
+		m_strings = new String[numStrings];
+		m_types = new Type[numStrings];
+		m_signatures = new Signature[numStrings];
+		
+		// read the records
+		int numClasses = buf.getInt();
+		int[] classes = getInts(buf, numClasses*5);
+		int numFields = buf.getInt();
+		int[] fields = getInts(buf, numFields*3);
+		int numMethods = buf.getInt();
+		int[] methods = getInts(buf, numMethods*4);
+		int numArguments = buf.getInt();
+		int[] arguments = getInts(buf, numArguments*2);
+		
+		// and build the mappings from them
+		Mappings mappings = new Mappings();
+		ClassMapping[] classMappings = new ClassMapping[numClasses];
+		int fieldIndex = 0;
+		int methodIndex = 0;
+		int argumentIndex = 0;
+		for (int i=0; i<numClasses; i++) {
+			ClassMapping classMapping = new ClassMapping(getString(classes[i*5]), getString(classes[i*5 + 1]));
+			classMappings[i] = classMapping;
+			
+			// fields
+			int fieldsEnd = fieldIndex + classes[i*5 + 3];
+			for (; fieldIndex<fieldsEnd; fieldIndex++) {
+				FieldMapping fieldMapping = new FieldMapping(
+					getString(fields[fieldIndex*3]),
+					getType(fields[fieldIndex*3 + 2]),
+					getString(fields[fieldIndex*3 + 1])
+				);
+				if (classMapping.containsObfField(fieldMapping.getObfName(), fieldMapping.getObfType())
+					|| classMapping.containsDeobfField(fieldMapping.getDeobfName(), fieldMapping.getObfType())) {
+					throw new IOException("Duplicate field " + fieldMapping.getObfName() + " in class " + classMapping.getObfFullName());
+				}
+				classMapping.addFieldMapping(fieldMapping);
+			}
+			
+			// methods
+			int methodsEnd = methodIndex + classes[i*5 + 4];
+			for (; methodIndex<methodsEnd; methodIndex++) {
+				MethodMapping methodMapping = new MethodMapping(
+					getString(methods[methodIndex*4]),
+					getSignature(methods[methodIndex*4 + 2]),
+					getString(methods[methodIndex*4 + 1])
+				);
+				int argumentsEnd = argumentIndex + methods[methodIndex*4 + 3];
+				for (; argumentIndex<argumentsEnd; argumentIndex++) {
+					int index = arguments[argumentIndex*2];
+					if (methodMapping.getDeobfArgumentName(index) != null) {
+						throw new IOException("Duplicate argument " + index + " in method " + classMapping.getObfFullName() + "." + methodMapping.getObfName());
+					}
+					methodMapping.addArgumentMapping(new ArgumentMapping(index, getString(arguments[argumentIndex*2 + 1])));
+				}
+				if (classMapping.containsObfMethod(methodMapping.getObfName(), methodMapping.getObfSignature())
+					|| (methodMapping.getDeobfName() != null && classMapping.containsDeobfMethod(methodMapping.getDeobfName(), methodMapping.getObfSignature()))) {
+					throw new IOException("Duplicate method " + methodMapping.getObfName() + " in class " + classMapping.getObfFullName());
+				}
+				classMapping.addMethodMapping(methodMapping);
+			}
+			
+			// add it to its outer class, which always comes first
+			int outerClassIndex = classes[i*5 + 2];
+			if (outerClassIndex < 0) {
+				if (mappings.getClassByObf(classMapping.getObfFullName()) != null
+					|| (classMapping.getDeobfName() != null && mappings.containsDeobfClass(classMapping.getDeobfName()))) {
+					throw new IOException("Duplicate class " + classMapping.getObfFullName());
+				}
+				classMapping.markClean();
+				mappings.addClassMapping(classMapping);
+			} else if (outerClassIndex < i) {
+				ClassMapping outerClassMapping = classMappings[outerClassIndex];
+				if (outerClassMapping.hasInnerClassByObfSimple(classMapping.getObfSimpleName())
+					|| (classMapping.getDeobfName() != null && outerClassMapping.hasInnerClassByDeobf(classMapping.getDeobfName()))) {
+					throw new IOException("Duplicate class " + classMapping.getObfFullName());
+				}
+				outerClassMapping.addInnerClassMapping(classMapping);
+			} else {
+				throw new IOException("Inner class " + classMapping.getObfFullName() + " comes before its outer class!");
+			}
+		}
+		if (fieldIndex != numFields || methodIndex != numMethods || argumentIndex != numArguments) {
+			throw new IOException("Binary mappings have records that don't belong to any class!");
+		}
+		return mappings;
+	}
+	
+	private int[] getInts(ByteBuffer buf, int num) {
+		int[] ints = new int[num];
+		buf.asIntBuffer().get(ints);
+		buf.position(buf.position() + num*4);
+		return ints;
+	}
+	
+	private String getString(int index) {
+		if (index < 0) {
+			return null;
+		}
+		String string = m_strings[index];
+		if (string == null) {
+			int start = m_stringsStart + m_stringOffsets[index];
+			int end = index + 1 < m_stringOffsets.length ? m_stringsStart + m_stringOffsets[index + 1] : m_stringsEnd;
+			string = new String(m_bytes, start, end - start, StandardCharsets.UTF_8);
+			m_strings[index] = string;
+		}
+		return string;
+	}
+	
+	private Type getType(int index) {
+		Type type = m_types[index];
+		if (type == null) {
+			type = Type.get(getString(index));
+			m_types[index] = type;
+		}
+		return type;
+	}
+	
+	private Signature getSignature(int index) {
+		Signature signature = m_signatures[index];
+		if (signature == null) {
+			signature = Signature.get(getString(index));
+			m_signatures[index] = signature;
+		}
+		return signature;
+	}
+}
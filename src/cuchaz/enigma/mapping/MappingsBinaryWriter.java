@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+public class MappingsBinaryWriter {
+	
+	// the binary format, all ints are big-endian:
+	//   header:   magic, version
+	//   strings:  count, blob size, the offset of each string in the blob, then the blob of UTF-8 bytes
+	//             every name and descriptor is in here exactly once, everything else refers to strings by index
+	//   classes:  count, then for each class: obf name, deobf name, index of the outer class, num fields, num methods
+	//             outer classes always come before their inner classes
+	//   fields:   count, then for each field: obf name, deobf name, type, in class order
+	//   methods:  count, then for each method: obf name, deobf name, signature, num arguments, in class order
+	//   args:     count, then for each argument: index, name, in method order
+	// missing names and outer classes are -1
+	
+	public static final int Magic = 0x454e4d50; // "ENMP"
+	
+	// bump this whenever the format changes
+	public static final int Version = 1;
+	
+	private Map<String,Integer> m_stringIndices;
+	private List<String> m_strings;
+	private IntList m_classes;
+	private IntList m_fields;
+	private IntList m_methods;
+	private IntList m_arguments;
+	private int m_numClasses;
+	private int m_numFields;
+	private int m_numMethods;
+	private int m_numArguments;
+	
+	public void write(OutputStream out, Mappings mappings)
+	throws IOException {
+		
+		// flatten the mappings into records
+		m_stringIndices = Maps.newHashMap();
+		m_strings = new ArrayList<String>();
+		m_classes = new IntList();
+		m_fields = new IntList();
+		m_methods = new IntList();
+		m_arguments = new IntList();
+		m_numClasses = 0;
+		m_numFields = 0;
+		m_numMethods = 0;
+		m_numArguments = 0;
+		for (ClassMapping classMapping : sorted(mappings.classes())) {
+			addClass(classMapping, -1);
+		}
+		
+		// then write them out
+		DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+		dout.writeInt(Magic);
+		dout.writeInt(Version);
+		writeStrings(dout);
+		dout.writeInt(m_numClasses);
+		m_classes.write(dout);
+		dout.writeInt(m_numFields);
+		m_fields.write(dout);
+		dout.writeInt(m_numMethods);
+		m_methods.write(dout);
+		dout.writeInt(m_numArguments);
+		m_arguments.write(dout);
+		dout.flush();
+	}
+	
+	private void addClass(ClassMapping classMapping, int outerClassIndex) {
+		int classIndex = m_numClasses++;
+		m_classes.add(getStringIndex(classMapping.getObfFullName()));
+		m_classes.add(getStringIndex(classMapping.getDeobfName()));
+		m_classes.add(outerClassIndex);
+		
+		// we don't know how many fields and methods there are until we've seen them all
+		int countsPos = m_classes.size();
+		m_classes.add(0);
+		m_classes.add(0);
+		
+		int numFields = 0;
+		for (FieldMapping fieldMapping : sorted(classMapping.fields())) {
+			m_fields.add(getStringIndex(fieldMapping.getObfName()));
+			m_fields.add(getStringIndex(fieldMapping.getDeobfName()));
+			m_fields.add(getStringIndex(fieldMapping.getObfType().toString()));
+			numFields++;
+		}
+		m_numFields += numFields;
+		
+		int numMethods = 0;
+		for (MethodMapping methodMapping : sorted(classMapping.methods())) {
+			List<ArgumentMapping> argumentMappings = sorted(methodMapping.arguments());
+			m_methods.add(getStringIndex(methodMapping.getObfName()));
+			m_methods.add(getStringIndex(methodMapping.getDeobfName()));
+			m_methods.add(getStringIndex(methodMapping.getObfSignature().toString()));
+			m_methods.add(argumentMappings.size());
+			for (ArgumentMapping argumentMapping : argumentMappings) {
+				m_arguments.add(argumentMapping.getIndex());
+				m_arguments.add(getStringIndex(argumentMapping.getName()));
+			}
+			m_numArguments += argumentMappings.size();
+			numMethods++;
+		}
+		m_numMethods += numMethods;
+		
+		m_classes.set(countsPos, numFields);
+		m_classes.set(countsPos + 1, numMethods);
+		
+		for (ClassMapping innerClassMapping : sorted(classMapping.innerClasses())) {
+			addClass(innerClassMapping, classIndex);
+		}
+	}
+	
+	private int getStringIndex(String string) {
+		if (string == null) {
+			return -1;
+		}
+		Integer index = m_stringIndices.get(string);
+		if (index == null) {
+			index = m_strings.size();
+			m_strings.add(string);
+			m_stringIndices.put(string, index);
+		}
+		return index;
+	}
+	
+	private void writeStrings(DataOutputStream out)
+	throws IOException {
+		ByteArrayOutputStream blob = new ByteArrayOutputStream();
+		int[] offsets = new int[m_strings.size()];
+		for (int i=0; i<m_strings.size(); i++) {
+			offsets[i] = blob.size();
+			byte[] bytes = m_strings.get(i).getBytes(StandardCharsets.UTF_8);
+			blob.write(bytes, 0, bytes.length);
+		}
+		out.writeInt(offsets.length);
+		out.writeInt(blob.size());
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		blob.writeTo(out);
+	}
+	
+	private <T extends Comparable<T>> List<T> sorted(Iterable<T> things) {
+		// sort everything, so the same mappings always make the same file
+		List<T> out = new ArrayList<T>();
+		for (T t : things) {
+			out.add(t);
+		}
+		Collections.sort(out);
+		return out;
+	}
+	
+	private static class IntList {
+		
+		private int[] m_values = new int[64];
+		private int m_size = 0;
+		
+		public void add(int value) {
+			if (m_size == m_values.length) {
+				m_values = Ints.ensureCapacity(m_values, m_size + 1, m_size);
+			}
+			m_values[m_size++] = value;
+		}
+		
+		public void set(int i, int value) {
+			m_values[i] = value;
+		}
+		
+		public int size() {
+			return m_size;
+		}
+		
+		public void write(DataOutputStream out)
+		throws IOException {
+			for (int i=0; i<m_size; i++) {
+				out.writeInt(m_values[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+public class MappingsChange {
+	
+	// one edit to one obf entry, so listeners can update just what the edit touched
+	// edits to a method tree show up as one change for each method in the tree
+	
+	public enum Kind {
+		ClassRenamed,
+		MemberRenamed,
+		ArgumentRenamed,
+		MappingRemoved;
+	}
+	
+	private Kind m_kind;
+	private Entry m_obfEntry;
+	private String m_oldDeobfName;
+	private String m_newDeobfName;
+	
+	public MappingsChange(Entry obfEntry, String oldDeobfName, String newDeobfName) {
+		if (obfEntry == null) {
+			throw new IllegalArgumentException("obf entry cannot be null!");
+		}
+		m_obfEntry = obfEntry;
+		m_oldDeobfName = oldDeobfName;
+		m_newDeobfName = newDeobfName;
+		
+		// marking an entry as deobfuscated is just renaming it to its obf name
+		if (newDeobfName == null) {
+			m_kind = Kind.MappingRemoved;
+		} else if (obfEntry instanceof ClassEntry) {
+			m_kind = Kind.ClassRenamed;
+		} else if (obfEntry instanceof ArgumentEntry) {
+			m_kind = Kind.ArgumentRenamed;
+		} else {
+			m_kind = Kind.MemberRenamed;
+		}
+	}
+	
+	public Kind getKind() {
+		return m_kind;
+	}
+	
+	public Entry getObfEntry() {
+		return m_obfEntry;
+	}
+	
+	public ClassEntry getObfClassEntry() {
+		return m_obfEntry.getClassEntry();
+	}
+	
+	public String getOldDeobfName() {
+		return m_oldDeobfName;
+	}
+	
+	public String getNewDeobfName() {
+		return m_newDeobfName;
+	}
+	
+	public boolean changesClassName() {
+		return m_obfEntry instanceof ClassEntry;
+	}
+	
+	@Override
+	public String toString() {
+		return m_kind + " " + m_obfEntry + ": " + m_oldDeobfName + " -> " + m_newDeobfName;
+	}
+}
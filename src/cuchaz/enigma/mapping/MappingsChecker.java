@@ -59,27 +59,114 @@ public class MappingsChecker {
 	
 	public void dropBrokenMappings(Mappings mappings) {
 		for (ClassMapping classMapping : Lists.newArrayList(mappings.classes())) {
-			if (!checkClassMapping(classMapping)) {
+			if (!classMapping.isBodyLoaded()) {
+				
+				// don't read the whole class just to check it, just go over what's in it
+				// then whatever we dropped gets dropped again when the class does get read
+				if (!isInJar(classMapping)) {
+					mappings.removeClassMapping(classMapping);
+					m_droppedClassMappings.put(EntryFactory.getObfClassEntry(m_index, classMapping), classMapping);
+				} else {
+					int numDropped = getNumDropped();
+					classMapping.getBodyLoader().scanBody(classMapping, new CheckingBodyScanner());
+					if (getNumDropped() > numDropped) {
+						classMapping.setBodyLoader(new DroppingBodyLoader(classMapping.getBodyLoader()));
+					}
+				}
+				continue;
+			}
+			
+			int numDropped = getNumDropped();
+			if (!checkClassMapping(classMapping, true)) {
 				mappings.removeClassMapping(classMapping);
 				m_droppedClassMappings.put(EntryFactory.getObfClassEntry(m_index, classMapping), classMapping);
+			} else if (getNumDropped() > numDropped) {
+				// we dropped some members or inner classes, so tell the mappings
+				ClassEntry obfClassEntry = new ClassEntry(classMapping.getObfFullName());
+				mappings.classNameChanged(obfClassEntry);
+				mappings.classMembersChanged(obfClassEntry);
+			}
+		}
+	}
+	
+	private class CheckingBodyScanner implements ClassMapping.BodyScanner {
+		
+		// does the same checks as checkClassMapping(), but without a body to drop things from
+		
+		@Override
+		public boolean visitInnerClass(ClassMapping outerClassMapping, ClassMapping innerClassMapping) {
+			if (!isInJar(innerClassMapping)) {
+				m_droppedInnerClassMappings.put(EntryFactory.getObfClassEntry(m_index, innerClassMapping), innerClassMapping);
+				return false;
+			}
+			return true;
+		}
+		
+		@Override
+		public void visitField(ClassMapping classMapping, FieldMapping fieldMapping) {
+			FieldEntry obfFieldEntry = EntryFactory.getObfFieldEntry(classMapping, fieldMapping);
+			if (!m_index.containsObfField(obfFieldEntry)) {
+				m_droppedFieldMappings.put(obfFieldEntry, fieldMapping);
+			}
+		}
+		
+		@Override
+		public void visitMethod(ClassMapping classMapping, MethodMapping methodMapping) {
+			ClassEntry classEntry = EntryFactory.getObfClassEntry(m_index, classMapping);
+			BehaviorEntry obfBehaviorEntry = EntryFactory.getObfBehaviorEntry(classEntry, methodMapping);
+			if (!m_index.containsObfBehavior(obfBehaviorEntry)) {
+				m_droppedMethodMappings.put(obfBehaviorEntry, methodMapping);
 			}
+			m_relatedMethodChecker.checkMethod(classEntry, methodMapping);
 		}
 	}
 	
-	private boolean checkClassMapping(ClassMapping classMapping) {
+	private class DroppingBodyLoader implements ClassMapping.BodyLoader {
+		
+		private ClassMapping.BodyLoader m_bodyLoader;
+		
+		public DroppingBodyLoader(ClassMapping.BodyLoader bodyLoader) {
+			m_bodyLoader = bodyLoader;
+		}
+		
+		@Override
+		public ClassMapping loadBody(ClassMapping classMapping) {
+			// the drops were already reported when the mappings were checked, so just make them
+			ClassMapping body = m_bodyLoader.loadBody(classMapping);
+			checkClassMapping(body, false);
+			return body;
+		}
+		
+		@Override
+		public void scanBody(ClassMapping classMapping, ClassMapping.BodyScanner scanner) {
+			m_bodyLoader.scanBody(classMapping, scanner);
+		}
+	}
+	
+	private int getNumDropped() {
+		return m_droppedInnerClassMappings.size() + m_droppedFieldMappings.size() + m_droppedMethodMappings.size();
+	}
+	
+	private boolean isInJar(ClassMapping classMapping) {
+		return m_index.getObfClassEntries().contains(EntryFactory.getObfClassEntry(m_index, classMapping));
+	}
+	
+	private boolean checkClassMapping(ClassMapping classMapping, boolean report) {
 		
 		// check the class
-		ClassEntry classEntry = EntryFactory.getObfClassEntry(m_index, classMapping);
-		if (!m_index.getObfClassEntries().contains(classEntry)) {
+		if (!isInJar(classMapping)) {
 			return false;
 		}
+		ClassEntry classEntry = EntryFactory.getObfClassEntry(m_index, classMapping);
 		
 		// check the fields
 		for (FieldMapping fieldMapping : Lists.newArrayList(classMapping.fields())) {
 			FieldEntry obfFieldEntry = EntryFactory.getObfFieldEntry(classMapping, fieldMapping);
 			if (!m_index.containsObfField(obfFieldEntry)) {
 				classMapping.removeFieldMapping(fieldMapping);
-				m_droppedFieldMappings.put(obfFieldEntry, fieldMapping);
+				if (report) {
+					m_droppedFieldMappings.put(obfFieldEntry, fieldMapping);
+				}
 			}
 		}
 		
@@ -88,17 +175,23 @@ public class MappingsChecker {
 			BehaviorEntry obfBehaviorEntry = EntryFactory.getObfBehaviorEntry(classEntry, methodMapping);
 			if (!m_index.containsObfBehavior(obfBehaviorEntry)) {
 				classMapping.removeMethodMapping(methodMapping);
-				m_droppedMethodMappings.put(obfBehaviorEntry, methodMapping);
+				if (report) {
+					m_droppedMethodMappings.put(obfBehaviorEntry, methodMapping);
+				}
 			}
 			
-			m_relatedMethodChecker.checkMethod(classEntry, methodMapping);
+			if (report) {
+				m_relatedMethodChecker.checkMethod(classEntry, methodMapping);
+			}
 		}
 		
 		// check inner classes
 		for (ClassMapping innerClassMapping : Lists.newArrayList(classMapping.innerClasses())) {
-			if (!checkClassMapping(innerClassMapping)) {
+			if (!checkClassMapping(innerClassMapping, report)) {
 				classMapping.removeInnerClassMapping(innerClassMapping);
-				m_droppedInnerClassMappings.put(EntryFactory.getObfClassEntry(m_index, innerClassMapping), innerClassMapping);
+				if (report) {
+					m_droppedInnerClassMappings.put(EntryFactory.getObfClassEntry(m_index, innerClassMapping), innerClassMapping);
+				}
 			}
 		}
 		
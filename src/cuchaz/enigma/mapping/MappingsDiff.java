@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+public class MappingsDiff {
+	
+	// every name that differs between two sets of mappings, as one change per obf entry
+	// a change from null is an added mapping, a change to null is a removed one, and anything else is a rename
+	// both sets of mappings are keyed by obf names, so each entry gets matched with one lookup instead of a sort
+	
+	private List<MappingsChange> m_changes;
+	
+	public MappingsDiff(Mappings before, Mappings after) {
+		m_changes = Lists.newArrayList();
+		for (ClassMapping beforeClassMapping : before.classes()) {
+			diffClass(beforeClassMapping, after.getClassByObf(beforeClassMapping.getObfFullName()));
+		}
+		for (ClassMapping afterClassMapping : after.classes()) {
+			if (before.getClassByObf(afterClassMapping.getObfFullName()) == null) {
+				diffClass(null, afterClassMapping);
+			}
+		}
+	}
+	
+	public List<MappingsChange> getChanges() {
+		return m_changes;
+	}
+	
+	public boolean isEmpty() {
+		return m_changes.isEmpty();
+	}
+	
+	public List<MappingsChange> applyTo(MappingsRenamer renamer) {
+		
+		// removals go first, so their names are free by the time the renames want them
+		List<MappingsChange> conflicts = Lists.newArrayList();
+		for (MappingsChange change : m_changes) {
+			if (change.getNewDeobfName() == null) {
+				applyTo(renamer, change, conflicts);
+			}
+		}
+		for (MappingsChange change : m_changes) {
+			if (change.getNewDeobfName() != null) {
+				applyTo(renamer, change, conflicts);
+			}
+		}
+		return conflicts;
+	}
+	
+	private void applyTo(MappingsRenamer renamer, MappingsChange change, List<MappingsChange> conflicts) {
+		try {
+			if (!renamer.applyChange(change)) {
+				conflicts.add(change);
+			}
+		} catch (IllegalNameException ex) {
+			conflicts.add(change);
+		}
+	}
+	
+	private void diffClass(ClassMapping before, ClassMapping after) {
+		
+		// snapshots share the classes that didn't change, so there's nothing to look at
+		if (before == after) {
+			return;
+		}
+		
+		ClassEntry obfClassEntry = before != null ? before.getObfEntry() : after.getObfEntry();
+		addChange(obfClassEntry, before != null ? before.getDeobfName() : null, after != null ? after.getDeobfName() : null);
+		
+		// unread classes that share a body loader have the same body, so don't read it just to compare it
+		if (before != null && after != null) {
+			ClassMapping.BodyLoader bodyLoader = before.getBodyLoader();
+			if (bodyLoader != null && bodyLoader == after.getBodyLoader()) {
+				return;
+			}
+		}
+		
+		if (before != null) {
+			for (ClassMapping beforeInnerClassMapping : before.innerClasses()) {
+				diffClass(beforeInnerClassMapping, after != null ? after.getInnerClassByObfSimple(beforeInnerClassMapping.getObfSimpleName()) : null);
+			}
+			for (FieldMapping beforeFieldMapping : before.fields()) {
+				FieldMapping afterFieldMapping = after != null ? after.getFieldByObf(beforeFieldMapping.getObfName(), beforeFieldMapping.getObfType()) : null;
+				addChange(beforeFieldMapping.getObfEntry(obfClassEntry), beforeFieldMapping.getDeobfName(), afterFieldMapping != null ? afterFieldMapping.getDeobfName() : null);
+			}
+			for (MethodMapping beforeMethodMapping : before.methods()) {
+				diffMethod(obfClassEntry, beforeMethodMapping, after != null ? after.getMethodByObf(beforeMethodMapping.getObfName(), beforeMethodMapping.getObfSignature()) : null);
+			}
+		}
+		
+		if (after != null) {
+			for (ClassMapping afterInnerClassMapping : after.innerClasses()) {
+				if (before == null || !before.hasInnerClassByObfSimple(afterInnerClassMapping.getObfSimpleName())) {
+					diffClass(null, afterInnerClassMapping);
+				}
+			}
+			for (FieldMapping afterFieldMapping : after.fields()) {
+				if (before == null || !before.containsObfField(afterFieldMapping.getObfName(), afterFieldMapping.getObfType())) {
+					addChange(afterFieldMapping.getObfEntry(obfClassEntry), null, afterFieldMapping.getDeobfName());
+				}
+			}
+			for (MethodMapping afterMethodMapping : after.methods()) {
+				if (before == null || !before.containsObfMethod(afterMethodMapping.getObfName(), afterMethodMapping.getObfSignature())) {
+					diffMethod(obfClassEntry, null, afterMethodMapping);
+				}
+			}
+		}
+	}
+	
+	private void diffMethod(ClassEntry obfClassEntry, MethodMapping before, MethodMapping after) {
+		BehaviorEntry obfBehaviorEntry = before != null ? before.getObfEntry(obfClassEntry) : after.getObfEntry(obfClassEntry);
+		
+		// constructors don't have names, just arguments
+		if (obfBehaviorEntry instanceof MethodEntry) {
+			addChange(obfBehaviorEntry, before != null ? before.getDeobfName() : null, after != null ? after.getDeobfName() : null);
+		}
+		
+		if (before != null) {
+			for (ArgumentMapping beforeArgumentMapping : before.arguments()) {
+				int index = beforeArgumentMapping.getIndex();
+				addChange(new ArgumentEntry(obfBehaviorEntry, index, ""), beforeArgumentMapping.getName(), after != null ? after.getDeobfArgumentName(index) : null);
+			}
+		}
+		if (after != null) {
+			for (ArgumentMapping afterArgumentMapping : after.arguments()) {
+				int index = afterArgumentMapping.getIndex();
+				if (before == null || before.getDeobfArgumentName(index) == null) {
+					addChange(new ArgumentEntry(obfBehaviorEntry, index, ""), null, afterArgumentMapping.getName());
+				}
+			}
+		}
+	}
+	
+	private void addChange(Entry obfEntry, String oldDeobfName, String newDeobfName) {
+		if (oldDeobfName == null ? newDeobfName != null : !oldDeobfName.equals(newDeobfName)) {
+			m_changes.add(new MappingsChange(obfEntry, oldDeobfName, newDeobfName));
+		}
+	}
+}
@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+public enum MappingsFormat {
+	
+	// MappingsReader and MappingsWriter
+	Text,
+	
+	// MappingsBinaryReader and MappingsBinaryWriter
+	Binary,
+	
+	// one text file per class, see MappingsWriter.writeDirectory()
+	Directory;
+}
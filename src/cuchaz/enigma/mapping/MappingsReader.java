@@ -10,125 +10,633 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.List;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
+import com.google.common.io.Files;
+
+import cuchaz.enigma.Parallel;
 
 public class MappingsReader {
 	
+	// mappings files can have hundreds of thousands of lines, so this tokenizes them by hand
+	// lines get split into tokens right in the read buffer, only the names themselves ever become strings
+	
+	private static final int BufferSize = 64*1024;
+	
+	// no entry has more tokens than this, any extras are ignored
+	private static final int MaxTokens = 4;
+	
 	public Mappings read(Reader in)
 	throws IOException, MappingParseException {
-		return read(new BufferedReader(in));
+		return read(in, false);
 	}
 	
-	public Mappings read(BufferedReader in)
+	public Mappings read(Reader in, boolean parallel)
 	throws IOException, MappingParseException {
+		ParsedClasses parsedClasses = parallel ? readParallel(in) : readSequential(in);
+		
 		Mappings mappings = new Mappings();
-		Deque<Object> mappingStack = Queues.newArrayDeque();
+		addClasses(mappings, parsedClasses);
+		return mappings;
+	}
+	
+	public Mappings readDirectory(File dir)
+	throws IOException, MappingParseException {
+		// read the one-file-per-class layout MappingsWriter.writeDirectory() writes
+		Mappings mappings = new Mappings();
+		for (File file : Files.fileTreeTraverser().preOrderTraversal(dir)) {
+			if (!file.isFile() || !file.getName().endsWith(MappingsWriter.ClassFileExtension)) {
+				continue;
+			}
+			try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				addClasses(mappings, readSequential(in));
+			} catch (MappingParseException ex) {
+				throw new MappingParseException(file, ex);
+			}
+		}
+		return mappings;
+	}
+	
+	private void addClasses(Mappings mappings, ParsedClasses parsedClasses)
+	throws MappingParseException {
 		
-		int lineNumber = 0;
-		String line = null;
-		while ( (line = in.readLine()) != null) {
+		// add the classes in file order, so duplicates get caught just like before
+		// they match the file now, so they're not dirty
+		for (ClassMapping classMapping : parsedClasses.classMappings) {
+			classMapping.markClean();
+			mappings.addClassMapping(classMapping);
+		}
+		if (parsedClasses.error != null) {
+			throw parsedClasses.error;
+		}
+	}
+	
+	private ParsedClasses readSequential(Reader in)
+	throws IOException {
+		LineParser parser = new LineParser(new char[BufferSize], 0);
+		try {
+			int pos = 0;
+			int limit = 0;
+			int scan = 0;
+			boolean eof = false;
+			while (true) {
+				
+				// find the end of the line
+				int lineEnd = scan;
+				while (lineEnd < limit && parser.m_buf[lineEnd] != '\n') {
+					lineEnd++;
+				}
+				if (lineEnd == limit) {
+					if (!eof) {
+						
+						// no whole line left in the buffer, move the partial line to the front and read more
+						if (pos > 0) {
+							System.arraycopy(parser.m_buf, pos, parser.m_buf, 0, limit - pos);
+							limit -= pos;
+							lineEnd -= pos;
+							pos = 0;
+						} else if (limit == parser.m_buf.length) {
+							// the line is longer than the buffer
+							parser.m_buf = Arrays.copyOf(parser.m_buf, parser.m_buf.length*2);
+						}
+						int numRead = in.read(parser.m_buf, limit, parser.m_buf.length - limit);
+						if (numRead < 0) {
+							eof = true;
+						} else {
+							limit += numRead;
+						}
+						scan = lineEnd;
+						continue;
+					}
+					if (pos == limit) {
+						break;
+					}
+					// otherwise, the last line just doesn't end with a newline
+				}
+				
+				parser.readLine(pos, lineEnd);
+				if (lineEnd == limit) {
+					break;
+				}
+				pos = lineEnd + 1;
+				scan = pos;
+			}
+		} catch (MappingParseException ex) {
+			parser.m_parsed.error = ex;
+		}
+		return parser.m_parsed;
+	}
+	
+	private ParsedClasses readParallel(Reader in)
+	throws IOException {
+		
+		// read the whole file, the workers need random access to it
+		char[] buf = new char[BufferSize];
+		int length = 0;
+		while (true) {
+			if (length == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length*2);
+			}
+			int numRead = in.read(buf, length, buf.length - length);
+			if (numRead < 0) {
+				break;
+			}
+			length += numRead;
+		}
+		
+		// top-level classes don't depend on each other, so find where each one starts
+		// any unindented line that isn't blank or a comment starts a new block
+		// whatever comes before the first block goes with it, so every line still gets parsed
+		List<Block> blocks = Lists.newArrayList();
+		Block block = new Block(0, 1);
+		int lineNumber = 1;
+		int pos = 0;
+		while (pos < length) {
+			int lineEnd = pos;
+			while (lineEnd < length && buf[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			if (pos > 0 && isTopLevelLine(buf, pos, lineEnd)) {
+				block.end = pos;
+				blocks.add(block);
+				block = new Block(pos, lineNumber);
+			}
+			pos = lineEnd + 1;
 			lineNumber++;
-			
-			// strip comments
-			int commentPos = line.indexOf('#');
-			if (commentPos >= 0) {
-				line = line.substring(0, commentPos);
+		}
+		block.end = length;
+		blocks.add(block);
+		
+		if (blocks.size() < 2) {
+			return new BlockReader(buf, blocks).work(0, blocks.size());
+		}
+		
+		// then parse ranges of blocks on the fork-join pool
+		return Parallel.forRange(blocks.size(), new BlockReader(buf, blocks));
+	}
+	
+	ClassMapping readClass(char[] buf, int start, int end, int firstLineNumber)
+	throws MappingParseException {
+		// read just one top-level class, for LazyMappingsReader
+		Block block = new Block(start, firstLineNumber);
+		block.end = end;
+		ParsedClasses parsedClasses = new BlockReader(buf, Arrays.asList(block)).work(0, 1);
+		if (parsedClasses.error != null) {
+			throw parsedClasses.error;
+		}
+		if (parsedClasses.classMappings.size() != 1) {
+			throw new MappingParseException(firstLineNumber, "Expected exactly one top-level class here!");
+		}
+		ClassMapping classMapping = parsedClasses.classMappings.get(0);
+		classMapping.markClean();
+		return classMapping;
+	}
+	
+	void scanClass(char[] buf, int start, int end, int firstLineNumber, ClassMapping classMapping, ClassMapping.BodyScanner scanner)
+	throws MappingParseException {
+		// check one top-level class without reading it in, for LazyMappingsReader
+		// anything readClass() would complain about, this complains about too
+		// if there's a scanner, it sees the inner classes and members along the way
+		readLines(new LineScanner(buf, firstLineNumber - 1, classMapping, scanner), start, end);
+	}
+	
+	private void readLines(LineReader reader, int start, int end)
+	throws MappingParseException {
+		int pos = start;
+		while (pos < end) {
+			int lineEnd = pos;
+			while (lineEnd < end && reader.m_buf[lineEnd] != '\n') {
+				lineEnd++;
 			}
-			
-			// skip blank lines
-			if (line.trim().length() <= 0) {
-				continue;
+			reader.readLine(pos, lineEnd);
+			pos = lineEnd + 1;
+		}
+	}
+	
+	private static boolean isTopLevelLine(char[] buf, int start, int end) {
+		if (start >= end || buf[start] == '\t') {
+			return false;
+		}
+		int i = start;
+		while (i < end && buf[i] <= ' ') {
+			i++;
+		}
+		return i < end && buf[i] != '#';
+	}
+	
+	private static class Block {
+		
+		public int start;
+		public int end;
+		public int firstLineNumber;
+		
+		public Block(int start, int firstLineNumber) {
+			this.start = start;
+			this.firstLineNumber = firstLineNumber;
+		}
+	}
+	
+	private static class ParsedClasses {
+		
+		// the outer classes in file order, and the first parse error after them, if any
+		public List<ClassMapping> classMappings = Lists.newArrayList();
+		public MappingParseException error;
+		
+		public void merge(ParsedClasses next) {
+			// nothing after an error counts
+			if (error == null) {
+				classMappings.addAll(next.classMappings);
+				error = next.error;
 			}
+		}
+	}
+	
+	private class BlockReader implements Parallel.RangeWorker<ParsedClasses> {
+		
+		private char[] m_buf;
+		private List<Block> m_blocks;
+		
+		public BlockReader(char[] buf, List<Block> blocks) {
+			m_buf = buf;
+			m_blocks = blocks;
+		}
+		
+		@Override
+		public ParsedClasses work(int start, int stop) {
+			ParsedClasses parsedClasses = new ParsedClasses();
+			for (int i = start; i < stop; i++) {
+				Block block = m_blocks.get(i);
+				LineParser parser = new LineParser(m_buf, block.firstLineNumber - 1);
+				try {
+					readLines(parser, block.start, block.end);
+				} catch (MappingParseException ex) {
+					parser.m_parsed.error = ex;
+				}
+				parsedClasses.merge(parser.m_parsed);
+				if (parsedClasses.error != null) {
+					break;
+				}
+			}
+			return parsedClasses;
+		}
+		
+		@Override
+		public ParsedClasses merge(ParsedClasses left, ParsedClasses right) {
+			left.merge(right);
+			return left;
+		}
+	}
+	
+	private abstract class LineReader {
+		
+		// splits lines into tokens, and keeps track of which entry each line belongs to
+		
+		protected char[] m_buf;
+		protected int m_lineNumber;
+		private int m_lineStart;
+		private int m_lineEnd;
+		private int m_numTokens;
+		private int[] m_tokenStarts = new int[MaxTokens];
+		private int[] m_tokenEnds = new int[MaxTokens];
+		protected Deque<Object> m_mappingStack = Queues.newArrayDeque();
+		
+		public LineReader(char[] buf, int lineNumber) {
+			m_buf = buf;
+			m_lineNumber = lineNumber;
+		}
+		
+		public void readLine(int lineStart, int lineEnd)
+		throws MappingParseException {
+			m_lineNumber++;
+			m_lineStart = lineStart;
+			m_lineEnd = lineEnd;
 			
 			// get the indent of this line
 			int indent = 0;
-			for (int i = 0; i < line.length(); i++) {
-				if (line.charAt(i) != '\t') {
+			while (m_lineStart + indent < m_lineEnd && m_buf[m_lineStart + indent] == '\t') {
+				indent++;
+			}
+			
+			// split the line into tokens, stopping at any comment
+			m_numTokens = 0;
+			int i = m_lineStart + indent;
+			while (i < m_lineEnd) {
+				char c = m_buf[i];
+				if (c == '#') {
 					break;
+				} else if (c <= ' ') {
+					i++;
+					continue;
 				}
-				indent++;
+				int tokenStart = i;
+				while (i < m_lineEnd && m_buf[i] > ' ' && m_buf[i] != '#') {
+					i++;
+				}
+				if (m_numTokens < MaxTokens) {
+					m_tokenStarts[m_numTokens] = tokenStart;
+					m_tokenEnds[m_numTokens] = i;
+				}
+				m_numTokens++;
+			}
+			
+			// skip blank lines
+			if (m_numTokens <= 0) {
+				return;
 			}
 			
 			// handle stack pops
-			while (indent < mappingStack.size()) {
-				mappingStack.pop();
+			while (indent < m_mappingStack.size()) {
+				m_mappingStack.pop();
 			}
 			
-			String[] parts = line.trim().split("\\s");
 			try {
 				// read the first token
-				String token = parts[0];
-				
-				if (token.equalsIgnoreCase("CLASS")) {
-					ClassMapping classMapping;
-					if (indent <= 0) {
-						// outer class
-						classMapping = readClass(parts, false);
-						mappings.addClassMapping(classMapping);
-					} else {
-						
-						// inner class
-						if (!(mappingStack.peek() instanceof ClassMapping)) {
-							throw new MappingParseException(lineNumber, "Unexpected CLASS entry here!");
-						}
-						
-						classMapping = readClass(parts, true);
-						((ClassMapping)mappingStack.peek()).addInnerClassMapping(classMapping);
-					}
-					mappingStack.push(classMapping);
-				} else if (token.equalsIgnoreCase("FIELD")) {
-					if (mappingStack.isEmpty() || ! (mappingStack.peek() instanceof ClassMapping)) {
-						throw new MappingParseException(lineNumber, "Unexpected FIELD entry here!");
-					}
-					((ClassMapping)mappingStack.peek()).addFieldMapping(readField(parts));
-				} else if (token.equalsIgnoreCase("METHOD")) {
-					if (mappingStack.isEmpty() || ! (mappingStack.peek() instanceof ClassMapping)) {
-						throw new MappingParseException(lineNumber, "Unexpected METHOD entry here!");
-					}
-					MethodMapping methodMapping = readMethod(parts);
-					((ClassMapping)mappingStack.peek()).addMethodMapping(methodMapping);
-					mappingStack.push(methodMapping);
-				} else if (token.equalsIgnoreCase("ARG")) {
-					if (mappingStack.isEmpty() || ! (mappingStack.peek() instanceof MethodMapping)) {
-						throw new MappingParseException(lineNumber, "Unexpected ARG entry here!");
-					}
-					((MethodMapping)mappingStack.peek()).addArgumentMapping(readArgument(parts));
+				if (isToken(0, "CLASS")) {
+					readClassLine(indent);
+				} else if (isToken(0, "FIELD")) {
+					readFieldLine();
+				} else if (isToken(0, "METHOD")) {
+					readMethodLine();
+				} else if (isToken(0, "ARG")) {
+					readArgumentLine();
 				}
-			} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
-				throw new MappingParseException(lineNumber, "Malformed line:\n" + line);
+			} catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+				throw new MappingParseException(m_lineNumber, "Malformed line:\n" + new String(m_buf, m_lineStart, i - m_lineStart).trim());
 			}
 		}
 		
-		return mappings;
-	}
-	
-	private ArgumentMapping readArgument(String[] parts) {
-		return new ArgumentMapping(Integer.parseInt(parts[1]), parts[2]);
+		protected abstract void readClassLine(int indent) throws MappingParseException;
+		protected abstract void readFieldLine() throws MappingParseException;
+		protected abstract void readMethodLine() throws MappingParseException;
+		protected abstract void readArgumentLine() throws MappingParseException;
+		
+		private boolean isToken(int index, String keyword) {
+			// keywords are case-insensitive
+			int start = m_tokenStarts[index];
+			if (m_tokenEnds[index] - start != keyword.length()) {
+				return false;
+			}
+			for (int i=0; i<keyword.length(); i++) {
+				if (Character.toUpperCase(m_buf[start + i]) != keyword.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private String getToken(int index) {
+			if (index >= m_numTokens) {
+				throw new IllegalArgumentException("Missing token " + index);
+			}
+			return new String(m_buf, m_tokenStarts[index], m_tokenEnds[index] - m_tokenStarts[index]);
+		}
+		
+		private int getIntToken(int index) {
+			// parse it right out of the buffer, Integer.parseInt() would need a string
+			if (index >= m_numTokens) {
+				throw new IllegalArgumentException("Missing token " + index);
+			}
+			int start = m_tokenStarts[index];
+			int end = m_tokenEnds[index];
+			if (end - start > 9) {
+				throw new NumberFormatException("Number is too long");
+			}
+			int value = 0;
+			for (int i=start; i<end; i++) {
+				char c = m_buf[i];
+				if (c < '0' || c > '9') {
+					throw new NumberFormatException("Not a number: " + getToken(index));
+				}
+				value = value*10 + (c - '0');
+			}
+			return value;
+		}
+		
+		protected ArgumentMapping readArgument() {
+			return new ArgumentMapping(getIntToken(1), getToken(2));
+		}
+		
+		protected ClassMapping readClass() {
+			if (m_numTokens == 2) {
+				return new ClassMapping(getToken(1));
+			} else {
+				return new ClassMapping(getToken(1), getToken(2));
+			}
+		}
+		
+		protected FieldMapping readField() {
+			return MappingsReader.this.readField(getToken(1), getToken(2), m_numTokens > 3 ? getToken(3) : null);
+		}
+		
+		protected MethodMapping readMethod() {
+			if (m_numTokens == 3) {
+				return new MethodMapping(getToken(1), Signature.get(getToken(2)));
+			} else {
+				return new MethodMapping(getToken(1), Signature.get(getToken(3)), getToken(2));
+			}
+		}
 	}
 	
-	private ClassMapping readClass(String[] parts, boolean makeSimple) {
-		if (parts.length == 2) {
-			return new ClassMapping(parts[1]);
-		} else {
-			return new ClassMapping(parts[1], parts[2]);
+	private class LineParser extends LineReader {
+		
+		private ParsedClasses m_parsed = new ParsedClasses();
+		
+		public LineParser(char[] buf, int lineNumber) {
+			super(buf, lineNumber);
+		}
+		
+		@Override
+		protected void readClassLine(int indent)
+		throws MappingParseException {
+			ClassMapping classMapping;
+			if (indent <= 0) {
+				// outer class
+				classMapping = readClass();
+				m_parsed.classMappings.add(classMapping);
+			} else {
+				
+				// inner class
+				if (!(m_mappingStack.peek() instanceof ClassMapping)) {
+					throw new MappingParseException(m_lineNumber, "Unexpected CLASS entry here!");
+				}
+				
+				classMapping = readClass();
+				((ClassMapping)m_mappingStack.peek()).addInnerClassMapping(classMapping);
+			}
+			m_mappingStack.push(classMapping);
+		}
+		
+		@Override
+		protected void readFieldLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof ClassMapping)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected FIELD entry here!");
+			}
+			ClassMapping classMapping = (ClassMapping)m_mappingStack.peek();
+			FieldMapping fieldMapping = readField();
+			
+			// ClassMapping would throw on duplicates too, but without a line number
+			if (classMapping.containsObfField(fieldMapping.getObfName(), fieldMapping.getObfType())) {
+				throw new MappingParseException(m_lineNumber, "Already have mapping for " + classMapping.getObfFullName() + "." + fieldMapping.getObfName() + ":" + fieldMapping.getObfType());
+			}
+			if (classMapping.containsDeobfField(fieldMapping.getDeobfName(), fieldMapping.getObfType())) {
+				throw new MappingParseException(m_lineNumber, "Already have mapping for " + classMapping.getDeobfName() + "." + fieldMapping.getDeobfName() + ":" + fieldMapping.getObfType());
+			}
+			classMapping.addFieldMapping(fieldMapping);
+		}
+		
+		@Override
+		protected void readMethodLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof ClassMapping)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected METHOD entry here!");
+			}
+			ClassMapping classMapping = (ClassMapping)m_mappingStack.peek();
+			MethodMapping methodMapping = readMethod();
+			if (classMapping.containsObfMethod(methodMapping.getObfName(), methodMapping.getObfSignature())) {
+				throw new MappingParseException(m_lineNumber, "Already have mapping for " + classMapping.getObfFullName() + "." + methodMapping.getObfName() + methodMapping.getObfSignature());
+			}
+			if (methodMapping.getDeobfName() != null && classMapping.containsDeobfMethod(methodMapping.getDeobfName(), methodMapping.getObfSignature())) {
+				throw new MappingParseException(m_lineNumber, "Already have mapping for " + classMapping.getDeobfName() + "." + methodMapping.getDeobfName() + methodMapping.getObfSignature());
+			}
+			classMapping.addMethodMapping(methodMapping);
+			m_mappingStack.push(methodMapping);
+		}
+		
+		@Override
+		protected void readArgumentLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof MethodMapping)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected ARG entry here!");
+			}
+			((MethodMapping)m_mappingStack.peek()).addArgumentMapping(readArgument());
 		}
 	}
 	
-	/* TEMP */
-	protected FieldMapping readField(String[] parts) {
-		return new FieldMapping(parts[1], new Type(parts[3]), parts[2]);
+	private class LineScanner extends LineReader {
+		
+		// reads the lines just like LineParser does, so it finds the same errors, but doesn't keep anything it reads
+		// the only state is what it takes to catch duplicates, one class at a time
+		
+		private ClassMapping m_outerClassMapping;
+		private ClassMapping.BodyScanner m_scanner;
+		
+		public LineScanner(char[] buf, int lineNumber, ClassMapping outerClassMapping, ClassMapping.BodyScanner scanner) {
+			super(buf, lineNumber);
+			m_outerClassMapping = outerClassMapping;
+			m_scanner = scanner;
+		}
+		
+		@Override
+		protected void readClassLine(int indent)
+		throws MappingParseException {
+			if (indent <= 0) {
+				// the outer class line was already read, that's how we know where the class is
+				if (m_outerClassMapping == null) {
+					throw new MappingParseException(m_lineNumber, "Expected exactly one top-level class here!");
+				}
+				m_mappingStack.push(new ScannedClass(m_outerClassMapping, m_scanner != null));
+				m_outerClassMapping = null;
+			} else {
+				if (!(m_mappingStack.peek() instanceof ScannedClass)) {
+					throw new MappingParseException(m_lineNumber, "Unexpected CLASS entry here!");
+				}
+				ScannedClass outerClass = (ScannedClass)m_mappingStack.peek();
+				ClassMapping classMapping = readClass();
+				boolean isVisited = outerClass.m_isVisited && m_scanner.visitInnerClass(outerClass.m_classMapping, classMapping);
+				m_mappingStack.push(new ScannedClass(classMapping, isVisited));
+			}
+		}
+		
+		@Override
+		protected void readFieldLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof ScannedClass)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected FIELD entry here!");
+			}
+			ScannedClass scannedClass = (ScannedClass)m_mappingStack.peek();
+			FieldMapping fieldMapping = readField();
+			scannedClass.addField(fieldMapping);
+			if (scannedClass.m_isVisited) {
+				m_scanner.visitField(scannedClass.m_classMapping, fieldMapping);
+			}
+		}
+		
+		@Override
+		protected void readMethodLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof ScannedClass)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected METHOD entry here!");
+			}
+			ScannedClass scannedClass = (ScannedClass)m_mappingStack.peek();
+			MethodMapping methodMapping = readMethod();
+			scannedClass.addMethod(methodMapping);
+			if (scannedClass.m_isVisited) {
+				m_scanner.visitMethod(scannedClass.m_classMapping, methodMapping);
+			}
+			m_mappingStack.push(methodMapping);
+		}
+		
+		@Override
+		protected void readArgumentLine()
+		throws MappingParseException {
+			if (m_mappingStack.isEmpty() || ! (m_mappingStack.peek() instanceof MethodMapping)) {
+				throw new MappingParseException(m_lineNumber, "Unexpected ARG entry here!");
+			}
+			readArgument();
+		}
+		
+		private class ScannedClass {
+			
+			// the member names we've seen, so we can complain about the same duplicates ClassMapping would
+			private ClassMapping m_classMapping;
+			private boolean m_isVisited;
+			private MemberMap<Type,Boolean> m_fieldsByObf = new MemberMap<Type,Boolean>();
+			private MemberMap<Type,Boolean> m_fieldsByDeobf = new MemberMap<Type,Boolean>();
+			private MemberMap<Signature,Boolean> m_methodsByObf = new MemberMap<Signature,Boolean>();
+			private MemberMap<Signature,Boolean> m_methodsByDeobf = new MemberMap<Signature,Boolean>();
+			
+			public ScannedClass(ClassMapping classMapping, boolean isVisited) {
+				m_classMapping = classMapping;
+				m_isVisited = isVisited;
+			}
+			
+			public void addField(FieldMapping fieldMapping)
+			throws MappingParseException {
+				if (m_fieldsByObf.put(fieldMapping.getObfName(), fieldMapping.getObfType(), true) != null) {
+					throw new MappingParseException(m_lineNumber, "Already have mapping for " + m_classMapping.getObfFullName() + "." + fieldMapping.getObfName() + ":" + fieldMapping.getObfType());
+				}
+				if (m_fieldsByDeobf.put(fieldMapping.getDeobfName(), fieldMapping.getObfType(), true) != null) {
+					throw new MappingParseException(m_lineNumber, "Already have mapping for " + m_classMapping.getDeobfName() + "." + fieldMapping.getDeobfName() + ":" + fieldMapping.getObfType());
+				}
+			}
+			
+			public void addMethod(MethodMapping methodMapping)
+			throws MappingParseException {
+				if (m_methodsByObf.put(methodMapping.getObfName(), methodMapping.getObfSignature(), true) != null) {
+					throw new MappingParseException(m_lineNumber, "Already have mapping for " + m_classMapping.getObfFullName() + "." + methodMapping.getObfName() + methodMapping.getObfSignature());
+				}
+				if (methodMapping.getDeobfName() != null && m_methodsByDeobf.put(methodMapping.getDeobfName(), methodMapping.getObfSignature(), true) != null) {
+					throw new MappingParseException(m_lineNumber, "Already have mapping for " + m_classMapping.getDeobfName() + "." + methodMapping.getDeobfName() + methodMapping.getObfSignature());
+				}
+			}
+		}
 	}
 	
-	private MethodMapping readMethod(String[] parts) {
-		if (parts.length == 3) {
-			return new MethodMapping(parts[1], new Signature(parts[2]));
-		} else {
-			return new MethodMapping(parts[1], new Signature(parts[3]), parts[2]);
+	protected FieldMapping readField(String obfName, String deobfName, String obfType) {
+		if (obfType == null) {
+			throw new IllegalArgumentException("Field has no type");
 		}
+		return new FieldMapping(obfName, Type.get(obfType), deobfName);
 	}
 }
@@ -11,22 +11,43 @@
 package cuchaz.enigma.mapping;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.List;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+
+import com.google.common.collect.Lists;
 
 import cuchaz.enigma.analysis.JarIndex;
 
 public class MappingsRenamer {
 	
+	public interface ChangeListener {
+		void onChange(MappingsChange change);
+	}
+	
 	private JarIndex m_index;
 	private Mappings m_mappings;
+	private List<ChangeListener> m_listeners;
 	
 	public MappingsRenamer(JarIndex index, Mappings mappings) {
 		m_index = index;
 		m_mappings = mappings;
+		m_listeners = Lists.newArrayList();
+	}
+	
+	public void addListener(ChangeListener listener) {
+		m_listeners.add(listener);
+	}
+	
+	public void removeListener(ChangeListener listener) {
+		m_listeners.remove(listener);
+	}
+	
+	private void fireChange(Entry obfEntry, String oldDeobfName, String newDeobfName) {
+		MappingsChange change = new MappingsChange(obfEntry, oldDeobfName, newDeobfName);
+		for (ChangeListener listener : m_listeners) {
+			listener.onChange(change);
+		}
 	}
 	
 	public void setClassName(ClassEntry obf, String deobfName) {
@@ -44,8 +65,10 @@ public class MappingsRenamer {
 			}
 			
 			ClassMapping classMapping = mappingChain.get(0);
+			String oldDeobfName = classMapping.getDeobfName();
 			m_mappings.setClassDeobfName(classMapping, deobfName);
-			
+			fireChange(obf, oldDeobfName, deobfName);
+		
 		} else {
 			
 			ClassMapping outerClassMapping = mappingChain.get(mappingChain.size() - 2);
@@ -57,7 +80,10 @@ public class MappingsRenamer {
 				}
 			}
 			
+			String oldDeobfName = outerClassMapping.getDeobfInnerClassName(obf.getInnermostClassName());
 			outerClassMapping.setInnerClassName(obf, deobfName);
+			m_mappings.classNameChanged(obf);
+			fireChange(obf, oldDeobfName, deobfName);
 		}
 	}
 	
@@ -70,10 +96,15 @@ public class MappingsRenamer {
 		List<ClassMapping> mappingChain = getOrCreateClassMappingChain(obf);
 		if (mappingChain.size() == 1) {
 			ClassMapping classMapping = mappingChain.get(0);
+			String oldDeobfName = classMapping.getDeobfName();
 			m_mappings.setClassDeobfName(classMapping, deobfName);
+			fireChange(obf, oldDeobfName, deobfName);
 		} else {
 			ClassMapping outerClassMapping = mappingChain.get(mappingChain.size() - 2);
+			String oldDeobfName = outerClassMapping.getDeobfInnerClassName(obf.getInnermostClassName());
 			outerClassMapping.setInnerClassName(obf, deobfName);
+			m_mappings.classNameChanged(obf);
+			fireChange(obf, oldDeobfName, deobfName);
 		}
 	}
 	
@@ -85,17 +116,30 @@ public class MappingsRenamer {
 		}
 		
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = classMapping.getDeobfFieldName(obf.getName(), obf.getType());
 		classMapping.setFieldName(obf.getName(), obf.getType(), deobfName);
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, deobfName);
 	}
 	
 	public void removeFieldMapping(FieldEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
-		classMapping.removeFieldMapping(classMapping.getFieldByObf(obf.getName(), obf.getType()));
+		FieldMapping fieldMapping = classMapping.getFieldByObf(obf.getName(), obf.getType());
+		if (fieldMapping == null) {
+			// nothing to remove, so nothing changed
+			return;
+		}
+		classMapping.removeFieldMapping(fieldMapping);
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, fieldMapping.getDeobfName(), null);
 	}
 	
 	public void markFieldAsDeobfuscated(FieldEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = classMapping.getDeobfFieldName(obf.getName(), obf.getType());
 		classMapping.setFieldName(obf.getName(), obf.getType(), obf.getName());
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, obf.getName());
 	}
 	
 	public void setMethodTreeName(MethodEntry obf, String deobfName) {
@@ -125,7 +169,10 @@ public class MappingsRenamer {
 		}
 		
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfMethodName(classMapping, obf);
 		classMapping.setMethodName(obf.getName(), obf.getSignature(), deobfName);
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, deobfName);
 	}
 	
 	public void removeMethodTreeMapping(MethodEntry obf) {
@@ -136,7 +183,10 @@ public class MappingsRenamer {
 	
 	public void removeMethodMapping(MethodEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfMethodName(classMapping, obf);
 		classMapping.setMethodName(obf.getName(), obf.getSignature(), null);
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, null);
 	}
 	
 	public void markMethodTreeAsDeobfuscated(MethodEntry obf) {
@@ -147,7 +197,10 @@ public class MappingsRenamer {
 	
 	public void markMethodAsDeobfuscated(MethodEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfMethodName(classMapping, obf);
 		classMapping.setMethodName(obf.getName(), obf.getSignature(), obf.getName());
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, obf.getName());
 	}
 	
 	public void setArgumentName(ArgumentEntry obf, String deobfName) {
@@ -158,25 +211,38 @@ public class MappingsRenamer {
 		}
 		
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfArgumentName(classMapping, obf);
 		classMapping.setArgumentName(obf.getMethodName(), obf.getMethodSignature(), obf.getIndex(), deobfName);
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, deobfName);
 	}
 	
 	public void removeArgumentMapping(ArgumentEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfArgumentName(classMapping, obf);
 		classMapping.removeArgumentName(obf.getMethodName(), obf.getMethodSignature(), obf.getIndex());
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, null);
 	}
 	
 	public void markArgumentAsDeobfuscated(ArgumentEntry obf) {
 		ClassMapping classMapping = getOrCreateClassMapping(obf.getClassEntry());
+		String oldDeobfName = getDeobfArgumentName(classMapping, obf);
 		classMapping.setArgumentName(obf.getMethodName(), obf.getMethodSignature(), obf.getIndex(), obf.getName());
+		m_mappings.classMembersChanged(obf.getClassEntry());
+		fireChange(obf, oldDeobfName, obf.getName());
 	}
 	
 	public boolean moveFieldToObfClass(ClassMapping classMapping, FieldMapping fieldMapping, ClassEntry obfClass) {
 		classMapping.removeFieldMapping(fieldMapping);
+		m_mappings.classMembersChanged(new ClassEntry(classMapping.getObfFullName()));
+		fireChange(fieldMapping.getObfEntry(classMapping.getObfEntry()), fieldMapping.getDeobfName(), null);
 		ClassMapping targetClassMapping = getOrCreateClassMapping(obfClass);
 		if (!targetClassMapping.containsObfField(fieldMapping.getObfName(), fieldMapping.getObfType())) {
 			if (!targetClassMapping.containsDeobfField(fieldMapping.getDeobfName(), fieldMapping.getObfType())) {
 				targetClassMapping.addFieldMapping(fieldMapping);
+				m_mappings.classMembersChanged(obfClass);
+				fireChange(fieldMapping.getObfEntry(obfClass), null, fieldMapping.getDeobfName());
 				return true;
 			} else {
 				System.err.println("WARNING: deobf field was already there: " + obfClass + "." + fieldMapping.getDeobfName());
@@ -187,10 +253,14 @@ public class MappingsRenamer {
 	
 	public boolean moveMethodToObfClass(ClassMapping classMapping, MethodMapping methodMapping, ClassEntry obfClass) {
 		classMapping.removeMethodMapping(methodMapping);
+		m_mappings.classMembersChanged(new ClassEntry(classMapping.getObfFullName()));
+		fireChange(methodMapping.getObfEntry(classMapping.getObfEntry()), methodMapping.getDeobfName(), null);
 		ClassMapping targetClassMapping = getOrCreateClassMapping(obfClass);
 		if (!targetClassMapping.containsObfMethod(methodMapping.getObfName(), methodMapping.getObfSignature())) {
 			if (!targetClassMapping.containsDeobfMethod(methodMapping.getDeobfName(), methodMapping.getObfSignature())) {
 				targetClassMapping.addMethodMapping(methodMapping);
+				m_mappings.classMembersChanged(obfClass);
+				fireChange(methodMapping.getObfEntry(obfClass), null, methodMapping.getDeobfName());
 				return true;
 			} else {
 				System.err.println("WARNING: deobf method was already there: " + obfClass + "." + methodMapping.getDeobfName() + methodMapping.getObfSignature());
@@ -199,12 +269,96 @@ public class MappingsRenamer {
 		return false;
 	}
 	
+	public boolean applyChange(MappingsChange change) {
+		
+		// a change only goes on if the entry still has the name the change started from, otherwise someone else changed it too
+		Entry obf = change.getObfEntry();
+		String deobfName = getDeobfName(obf);
+		String newDeobfName = change.getNewDeobfName();
+		if (deobfName == null ? newDeobfName == null : deobfName.equals(newDeobfName)) {
+			// nothing to do
+			return true;
+		}
+		if (deobfName == null ? change.getOldDeobfName() != null : !deobfName.equals(change.getOldDeobfName())) {
+			return false;
+		}
+		
+		if (obf instanceof ClassEntry) {
+			ClassEntry obfClass = (ClassEntry)obf;
+			if (newDeobfName == null) {
+				removeClassMapping(obfClass);
+			} else if (newDeobfName.equals(obfClass.isInnerClass() ? obfClass.getInnermostClassName() : obfClass.getName())) {
+				markClassAsDeobfuscated(obfClass);
+			} else {
+				setClassName(obfClass, newDeobfName);
+			}
+		} else if (obf instanceof FieldEntry) {
+			FieldEntry obfField = (FieldEntry)obf;
+			if (newDeobfName == null) {
+				removeFieldMapping(obfField);
+			} else if (newDeobfName.equals(obfField.getName())) {
+				markFieldAsDeobfuscated(obfField);
+			} else {
+				setFieldName(obfField, newDeobfName);
+			}
+		} else if (obf instanceof MethodEntry) {
+			MethodEntry obfMethod = (MethodEntry)obf;
+			if (newDeobfName == null) {
+				removeMethodMapping(obfMethod);
+			} else if (newDeobfName.equals(obfMethod.getName())) {
+				markMethodAsDeobfuscated(obfMethod);
+			} else {
+				setMethodName(obfMethod, newDeobfName);
+			}
+		} else if (obf instanceof ArgumentEntry) {
+			ArgumentEntry obfArgument = (ArgumentEntry)obf;
+			if (newDeobfName == null) {
+				removeArgumentMapping(obfArgument);
+			} else {
+				setArgumentName(obfArgument, newDeobfName);
+			}
+		} else {
+			throw new Error("Unknown entry type: " + obf);
+		}
+		return true;
+	}
+	
 	public void write(OutputStream out) throws IOException {
-		// TEMP: just use the object output for now. We can find a more efficient storage format later
-		GZIPOutputStream gzipout = new GZIPOutputStream(out);
-		ObjectOutputStream oout = new ObjectOutputStream(gzipout);
-		oout.writeObject(this);
-		gzipout.finish();
+		new MappingsBinaryWriter().write(out, m_mappings);
+	}
+	
+	private String getDeobfName(Entry obf) {
+		List<ClassMapping> mappingChain = m_mappings.getClassMappingChain(obf.getClassEntry());
+		ClassMapping classMapping = mappingChain.get(mappingChain.size() - 1);
+		if (classMapping == null) {
+			return null;
+		} else if (obf instanceof ClassEntry) {
+			return classMapping.getDeobfName();
+		} else if (obf instanceof FieldEntry) {
+			return classMapping.getDeobfFieldName(obf.getName(), ((FieldEntry)obf).getType());
+		} else if (obf instanceof MethodEntry) {
+			return getDeobfMethodName(classMapping, (MethodEntry)obf);
+		} else if (obf instanceof ArgumentEntry) {
+			return getDeobfArgumentName(classMapping, (ArgumentEntry)obf);
+		} else {
+			throw new Error("Unknown entry type: " + obf);
+		}
+	}
+	
+	private String getDeobfMethodName(ClassMapping classMapping, MethodEntry obf) {
+		MethodMapping methodMapping = classMapping.getMethodByObf(obf.getName(), obf.getSignature());
+		if (methodMapping != null) {
+			return methodMapping.getDeobfName();
+		}
+		return null;
+	}
+	
+	private String getDeobfArgumentName(ClassMapping classMapping, ArgumentEntry obf) {
+		MethodMapping methodMapping = classMapping.getMethodByObf(obf.getMethodName(), obf.getMethodSignature());
+		if (methodMapping != null) {
+			return methodMapping.getDeobfArgumentName(obf.getIndex());
+		}
+		return null;
 	}
 	
 	private ClassMapping getOrCreateClassMapping(ClassEntry obfClassEntry) {
@@ -10,79 +10,194 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 
 public class MappingsWriter {
 	
+	// the lines all get built in one buffer, which goes to the writer in big chunks instead of one small write per line
+	private static final int BufferSize = 64*1024;
+	
+	public static final String ClassFileExtension = ".mapping";
+	
+	// lists the class files writeDirectory() wrote, so the next save knows which ones it's allowed to delete
+	public static final String ManifestFileName = "mappings.manifest";
+	
+	private static final String[] Indents = { "", "\t", "\t\t", "\t\t\t", "\t\t\t\t" };
+	
 	public void write(Writer out, Mappings mappings) throws IOException {
-		write(new PrintWriter(out), mappings);
+		StringBuilder buf = new StringBuilder(BufferSize*2);
+		char[] chars = new char[BufferSize*2];
+		// only the outer classes need sorting, everything inside a class is kept in order already
+		for (ClassMapping classMapping : sorted(mappings.classes(), ClassMapping.class)) {
+			write(buf, classMapping, 0);
+			if (buf.length() >= BufferSize) {
+				chars = flush(buf, chars, out);
+			}
+		}
+		flush(buf, chars, out);
+		out.flush();
+	}
+	
+	public void writeDirectory(File dir, Mappings mappings, boolean onlyDirty) throws IOException {
+		
+		// write one file per top-level class, so a save only has to rewrite the classes that changed
+		// classes are clean once they're saved, so onlyDirty should only be used when the directory has every clean class in it already
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to make mappings directory: " + dir);
+		}
+		Set<String> classPaths = Sets.newTreeSet();
+		for (ClassMapping classMapping : mappings.classes()) {
+			File file = getClassFile(dir, classMapping);
+			classPaths.add(getClassPath(classMapping));
+			if (onlyDirty && !classMapping.isDirty() && file.exists()) {
+				continue;
+			}
+			Files.createParentDirs(file);
+			try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+				StringBuilder buf = new StringBuilder();
+				write(buf, classMapping, 0);
+				out.append(buf);
+			}
+		}
+		
+		// drop the files for classes that aren't there anymore, but only the ones we wrote last time
+		// the directory could have anything else in it, and that's none of our business
+		File manifestFile = new File(dir, ManifestFileName);
+		if (manifestFile.exists()) {
+			for (String classPath : Files.readLines(manifestFile, StandardCharsets.UTF_8)) {
+				if (isClassPath(classPath) && !classPaths.contains(classPath)) {
+					File file = new File(dir, classPath.replace('/', File.separatorChar));
+					if (file.exists() && !file.delete()) {
+						throw new IOException("Unable to delete mappings file: " + file);
+					}
+				}
+			}
+		}
+		Files.asCharSink(manifestFile, StandardCharsets.UTF_8).writeLines(classPaths, "\n");
+		
+		for (ClassMapping classMapping : mappings.classes()) {
+			classMapping.markClean();
+		}
+	}
+	
+	public static File getClassFile(File dir, ClassMapping classMapping) {
+		return new File(dir, getClassPath(classMapping).replace('/', File.separatorChar));
 	}
 	
-	public void write(PrintWriter out, Mappings mappings) throws IOException {
-		for (ClassMapping classMapping : sorted(mappings.classes())) {
-			write(out, classMapping, 0);
+	private static String getClassPath(ClassMapping classMapping) {
+		
+		// obfuscators love names like a and A, which would be the same file on case-insensitive filesystems
+		// so upper-case letters become _ and the lower-case letter, and _ becomes __
+		// anything else with a case turns into _ and its five-digit char code, which can't be mistaken for the others
+		String name = classMapping.getObfFullName();
+		StringBuilder buf = new StringBuilder(name.length() + 16);
+		for (int i=0; i<name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= 'A' && c <= 'Z') {
+				buf.append('_').append((char)(c - 'A' + 'a'));
+			} else if (c == '_') {
+				buf.append("__");
+			} else if (c > 127 && (Character.toLowerCase(c) != c || Character.toUpperCase(c) != c)) {
+				buf.append('_').append(String.format("%05d", (int)c));
+			} else {
+				buf.append(c);
+			}
 		}
+		return buf.append(ClassFileExtension).toString();
 	}
 	
-	private void write(PrintWriter out, ClassMapping classMapping, int depth) throws IOException {
-		if (classMapping.getDeobfName() == null) {
-			out.format("%sCLASS %s\n", getIndent(depth), classMapping.getObfFullName());
-		} else {
-			out.format("%sCLASS %s %s\n", getIndent(depth), classMapping.getObfFullName(), classMapping.getDeobfName());
+	private static boolean isClassPath(String path) {
+		// don't trust the manifest to stay inside the directory
+		if (!path.endsWith(ClassFileExtension) || path.startsWith("/")) {
+			return false;
+		}
+		for (String part : path.split("/")) {
+			if (part.isEmpty() || part.equals(".") || part.equals("..") || part.indexOf('\\') >= 0 || part.indexOf(':') >= 0) {
+				return false;
+			}
 		}
+		return true;
+	}
+	
+	private char[] flush(StringBuilder buf, char[] chars, Writer out) throws IOException {
+		if (chars.length < buf.length()) {
+			chars = new char[buf.length()];
+		}
+		buf.getChars(0, buf.length(), chars, 0);
+		out.write(chars, 0, buf.length());
+		buf.setLength(0);
+		return chars;
+	}
+	
+	private void write(StringBuilder buf, ClassMapping classMapping, int depth) {
+		indent(buf, depth).append("CLASS ").append(classMapping.getObfFullName());
+		if (classMapping.getDeobfName() != null) {
+			buf.append(' ').append(classMapping.getDeobfName());
+		}
+		buf.append('\n');
 		
-		for (ClassMapping innerClassMapping : sorted(classMapping.innerClasses())) {
-			write(out, innerClassMapping, depth + 1);
+		for (ClassMapping innerClassMapping : classMapping.innerClasses()) {
+			write(buf, innerClassMapping, depth + 1);
 		}
 		
-		for (FieldMapping fieldMapping : sorted(classMapping.fields())) {
-			write(out, fieldMapping, depth + 1);
+		for (FieldMapping fieldMapping : classMapping.fields()) {
+			write(buf, fieldMapping, depth + 1);
 		}
 		
-		for (MethodMapping methodMapping : sorted(classMapping.methods())) {
-			write(out, methodMapping, depth + 1);
+		for (MethodMapping methodMapping : classMapping.methods()) {
+			write(buf, methodMapping, depth + 1);
 		}
 	}
 	
-	private void write(PrintWriter out, FieldMapping fieldMapping, int depth) throws IOException {
-		out.format("%sFIELD %s %s %s\n", getIndent(depth), fieldMapping.getObfName(), fieldMapping.getDeobfName(), fieldMapping.getObfType().toString());
+	private void write(StringBuilder buf, FieldMapping fieldMapping, int depth) {
+		indent(buf, depth).append("FIELD ")
+			.append(fieldMapping.getObfName()).append(' ')
+			.append(fieldMapping.getDeobfName()).append(' ')
+			.append(fieldMapping.getObfType().toString()).append('\n');
 	}
 	
-	private void write(PrintWriter out, MethodMapping methodMapping, int depth) throws IOException {
-		if (methodMapping.getDeobfName() == null) {
-			out.format("%sMETHOD %s %s\n", getIndent(depth), methodMapping.getObfName(), methodMapping.getObfSignature());
-		} else {
-			out.format("%sMETHOD %s %s %s\n", getIndent(depth), methodMapping.getObfName(), methodMapping.getDeobfName(), methodMapping.getObfSignature());
+	private void write(StringBuilder buf, MethodMapping methodMapping, int depth) {
+		indent(buf, depth).append("METHOD ").append(methodMapping.getObfName()).append(' ');
+		if (methodMapping.getDeobfName() != null) {
+			buf.append(methodMapping.getDeobfName()).append(' ');
 		}
+		buf.append(methodMapping.getObfSignature().toString()).append('\n');
 		
-		for (ArgumentMapping argumentMapping : sorted(methodMapping.arguments())) {
-			write(out, argumentMapping, depth + 1);
+		for (ArgumentMapping argumentMapping : methodMapping.arguments()) {
+			write(buf, argumentMapping, depth + 1);
 		}
 	}
 	
-	private void write(PrintWriter out, ArgumentMapping argumentMapping, int depth) throws IOException {
-		out.format("%sARG %d %s\n", getIndent(depth), argumentMapping.getIndex(), argumentMapping.getName());
+	private void write(StringBuilder buf, ArgumentMapping argumentMapping, int depth) {
+		indent(buf, depth).append("ARG ").append(argumentMapping.getIndex()).append(' ').append(argumentMapping.getName()).append('\n');
 	}
 	
-	private <T extends Comparable<T>> List<T> sorted(Iterable<T> classes) {
-		List<T> out = new ArrayList<T>();
-		for (T t : classes) {
-			out.add(t);
+	private <T extends Comparable<T>> T[] sorted(Iterable<T> things, Class<T> type) {
+		T[] out = Iterables.toArray(things, type);
+		if (out.length > 1) {
+			Arrays.sort(out);
 		}
-		Collections.sort(out);
 		return out;
 	}
 	
-	private String getIndent(int depth) {
-		StringBuilder buf = new StringBuilder();
+	private StringBuilder indent(StringBuilder buf, int depth) {
+		if (depth < Indents.length) {
+			return buf.append(Indents[depth]);
+		}
 		for (int i = 0; i < depth; i++) {
-			buf.append("\t");
+			buf.append('\t');
 		}
-		return buf.toString();
+		return buf;
 	}
 }
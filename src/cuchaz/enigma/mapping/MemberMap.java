@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+class MemberMap<D,V> implements Serializable {
+	
+	// maps (name, descriptor) pairs to members, where the descriptor is a field type or a method signature
+	// the keys live in parallel arrays next to their hashes, so lookups never have to build a key object
+	// open addressing with linear probing, and removals shift entries back instead of leaving tombstones
+	// classes usually have only a handful of members, so start small
+	// sorted maps also keep the entries in (name + descriptor) order, which is the order the mappings files list them in
+	// files are read in that order, so almost every put just goes on the end
+	
+	private static final long serialVersionUID = 3265470553398419735L;
+	private static final int MinCapacity = 8;
+	
+	private boolean m_isSorted;
+	private transient String[] m_names;
+	private transient Object[] m_descriptors;
+	private transient Object[] m_values;
+	private transient int[] m_hashes;
+	private transient int m_size;
+	private transient String[] m_sortedNames;
+	private transient Object[] m_sortedDescriptors;
+	private transient Object[] m_sortedValues;
+	
+	public MemberMap() {
+		this(false);
+	}
+	
+	public MemberMap(boolean isSorted) {
+		m_isSorted = isSorted;
+		init(MinCapacity);
+	}
+	
+	public int size() {
+		return m_size;
+	}
+	
+	public boolean containsKey(String name, D descriptor) {
+		return find(name, descriptor) >= 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V get(String name, D descriptor) {
+		int i = find(name, descriptor);
+		if (i < 0) {
+			return null;
+		}
+		return (V)m_values[i];
+	}
+	
+	public V put(String name, D descriptor, V value) {
+		checkKey(name, descriptor);
+		V oldValue = putHashed(name, descriptor, value);
+		if (m_isSorted) {
+			putSorted(name, descriptor, value, oldValue != null);
+		}
+		return oldValue;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private V putHashed(String name, D descriptor, V value) {
+		int hash = hash(name, descriptor);
+		int mask = m_values.length - 1;
+		int i = hash & mask;
+		while (m_values[i] != null) {
+			if (m_hashes[i] == hash && m_names[i].equals(name) && m_descriptors[i].equals(descriptor)) {
+				V oldValue = (V)m_values[i];
+				m_values[i] = value;
+				return oldValue;
+			}
+			i = (i + 1) & mask;
+		}
+		m_names[i] = name;
+		m_descriptors[i] = descriptor;
+		m_values[i] = value;
+		m_hashes[i] = hash;
+		m_size++;
+		
+		// keep the load factor under 3/4 so probe runs stay short
+		if (m_size*4 > m_values.length*3) {
+			resize(m_values.length*2);
+		}
+		return null;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V remove(String name, D descriptor) {
+		int i = find(name, descriptor);
+		if (i < 0) {
+			return null;
+		}
+		V oldValue = (V)m_values[i];
+		
+		// shift back any entries in the same probe run that could have landed in the hole
+		int mask = m_values.length - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (m_values[j] != null) {
+			int home = m_hashes[j] & mask;
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				m_names[hole] = m_names[j];
+				m_descriptors[hole] = m_descriptors[j];
+				m_values[hole] = m_values[j];
+				m_hashes[hole] = m_hashes[j];
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		m_names[hole] = null;
+		m_descriptors[hole] = null;
+		m_values[hole] = null;
+		m_hashes[hole] = 0;
+		m_size--;
+		
+		if (m_isSorted) {
+			// the sorted entries haven't lost this one yet
+			int index = findSorted(name, descriptor, m_size + 1);
+			System.arraycopy(m_sortedNames, index + 1, m_sortedNames, index, m_size - index);
+			System.arraycopy(m_sortedDescriptors, index + 1, m_sortedDescriptors, index, m_size - index);
+			System.arraycopy(m_sortedValues, index + 1, m_sortedValues, index, m_size - index);
+			m_sortedNames[m_size] = null;
+			m_sortedDescriptors[m_size] = null;
+			m_sortedValues[m_size] = null;
+		}
+		return oldValue;
+	}
+	
+	private void putSorted(String name, D descriptor, V value, boolean isReplace) {
+		if (isReplace) {
+			m_sortedValues[findSorted(name, descriptor, m_size)] = value;
+			return;
+		}
+		
+		// m_size already counts the new entry, so the others are the first m_size - 1
+		int numOthers = m_size - 1;
+		int index;
+		if (numOthers == 0 || compare(m_sortedNames[numOthers - 1], m_sortedDescriptors[numOthers - 1], name, descriptor) < 0) {
+			// the usual case, the new key goes after all the others
+			index = numOthers;
+		} else {
+			index = -(findSorted(name, descriptor, numOthers) + 1);
+		}
+		if (m_size > m_sortedValues.length) {
+			int capacity = m_sortedValues.length*2;
+			m_sortedNames = Arrays.copyOf(m_sortedNames, capacity);
+			m_sortedDescriptors = Arrays.copyOf(m_sortedDescriptors, capacity);
+			m_sortedValues = Arrays.copyOf(m_sortedValues, capacity);
+		}
+		System.arraycopy(m_sortedNames, index, m_sortedNames, index + 1, numOthers - index);
+		System.arraycopy(m_sortedDescriptors, index, m_sortedDescriptors, index + 1, numOthers - index);
+		System.arraycopy(m_sortedValues, index, m_sortedValues, index + 1, numOthers - index);
+		m_sortedNames[index] = name;
+		m_sortedDescriptors[index] = descriptor;
+		m_sortedValues[index] = value;
+	}
+	
+	private int findSorted(String name, Object descriptor, int size) {
+		// just like Arrays.binarySearch(), so a miss gives -(insertion point) - 1
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compare(m_sortedNames[mid], m_sortedDescriptors[mid], name, descriptor);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+	
+	private static int compare(String name1, Object descriptor1, String name2, Object descriptor2) {
+		// compares name + descriptor, like FieldMapping and MethodMapping do, but without building the strings
+		String string1 = descriptor1.toString();
+		String string2 = descriptor2.toString();
+		int length1 = name1.length() + string1.length();
+		int length2 = name2.length() + string2.length();
+		int length = Math.min(length1, length2);
+		for (int i=0; i<length; i++) {
+			char c1 = i < name1.length() ? name1.charAt(i) : string1.charAt(i - name1.length());
+			char c2 = i < name2.length() ? name2.charAt(i) : string2.charAt(i - name2.length());
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return length1 - length2;
+	}
+	
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator(m_isSorted ? m_sortedValues : m_values);
+			}
+			
+			@Override
+			public int size() {
+				return m_size;
+			}
+		};
+	}
+	
+	private class ValueIterator implements Iterator<V> {
+		
+		// hashed values have gaps, sorted values are all at the front
+		private Object[] m_array;
+		private int m_next;
+		
+		public ValueIterator(Object[] array) {
+			m_array = array;
+			m_next = advance(0);
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return m_next < m_array.length;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			V value = (V)m_array[m_next];
+			m_next = advance(m_next + 1);
+			return value;
+		}
+		
+		@Override
+		public void remove() {
+			// removals shift entries around, so there's no safe way to keep iterating
+			throw new UnsupportedOperationException();
+		}
+		
+		private int advance(int i) {
+			while (i < m_array.length && m_array[i] == null) {
+				i++;
+			}
+			return i;
+		}
+	}
+	
+	private int find(String name, D descriptor) {
+		checkKey(name, descriptor);
+		int hash = hash(name, descriptor);
+		int mask = m_values.length - 1;
+		int i = hash & mask;
+		while (m_values[i] != null) {
+			if (m_hashes[i] == hash && m_names[i].equals(name) && m_descriptors[i].equals(descriptor)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private void checkKey(String name, D descriptor) {
+		if (name == null) {
+			throw new IllegalArgumentException("name cannot be null!");
+		}
+		if (descriptor == null) {
+			throw new IllegalArgumentException("descriptor cannot be null!");
+		}
+	}
+	
+	private static int hash(String name, Object descriptor) {
+		int hash = name.hashCode()*31 + descriptor.hashCode();
+		// member names are short and similar, so spread the high bits down into the mask
+		return hash ^ (hash >>> 16);
+	}
+	
+	private void init(int capacity) {
+		m_names = new String[capacity];
+		m_descriptors = new Object[capacity];
+		m_values = new Object[capacity];
+		m_hashes = new int[capacity];
+		m_size = 0;
+		if (m_isSorted) {
+			m_sortedNames = new String[capacity];
+			m_sortedDescriptors = new Object[capacity];
+			m_sortedValues = new Object[capacity];
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void resize(int capacity) {
+		// only the hash table changes size, the sorted entries keep their own arrays
+		String[] names = m_names;
+		Object[] descriptors = m_descriptors;
+		Object[] values = m_values;
+		int size = m_size;
+		m_names = new String[capacity];
+		m_descriptors = new Object[capacity];
+		m_values = new Object[capacity];
+		m_hashes = new int[capacity];
+		m_size = 0;
+		for (int i=0; i<values.length; i++) {
+			if (values[i] != null) {
+				putHashed(names[i], (D)descriptors[i], (V)values[i]);
+			}
+		}
+		assert (m_size == size);
+	}
+	
+	private void writeObject(ObjectOutputStream out)
+	throws IOException {
+		// hashes of descriptors aren't guaranteed to survive serialization, so just write the entries
+		out.defaultWriteObject();
+		out.writeInt(m_size);
+		for (int i=0; i<m_values.length; i++) {
+			if (m_values[i] != null) {
+				out.writeObject(m_names[i]);
+				out.writeObject(m_descriptors[i]);
+				out.writeObject(m_values[i]);
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int size = in.readInt();
+		init(MinCapacity);
+		for (int i=0; i<size; i++) {
+			put((String)in.readObject(), (D)in.readObject(), (V)in.readObject());
+		}
+	}
+}
@@ -42,6 +42,17 @@ public class MethodMapping implements Serializable, Comparable<MethodMapping>, M
 		m_arguments = Maps.newTreeMap();
 	}
 	
+	public MethodMapping(MethodMapping other) {
+		// signatures are immutable, so just share it
+		m_obfName = other.m_obfName;
+		m_deobfName = other.m_deobfName;
+		m_obfSignature = other.m_obfSignature;
+		m_arguments = Maps.newTreeMap();
+		for (Entry<Integer,ArgumentMapping> entry : other.m_arguments.entrySet()) {
+			m_arguments.put(entry.getKey(), new ArgumentMapping(entry.getValue()));
+		}
+	}
+	
 	public MethodMapping(MethodMapping other, ClassNameReplacer obfClassNameReplacer) {
 		m_obfName = other.m_obfName;
 		m_deobfName = other.m_deobfName;
@@ -51,7 +62,7 @@ public class MethodMapping implements Serializable, Comparable<MethodMapping>, M
 			m_arguments.put(entry.getKey(), new ArgumentMapping(entry.getValue()));
 		}
 	}
-
+	
 	@Override
 	public String getObfName() {
 		return m_obfName;
@@ -179,7 +190,7 @@ public class MethodMapping implements Serializable, Comparable<MethodMapping>, M
 		}
 		return false;
 	}
-
+	
 	@Override
 	public BehaviorEntry getObfEntry(ClassEntry classEntry) {
 		if (isConstructor()) {
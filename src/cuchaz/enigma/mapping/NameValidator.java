@@ -10,17 +10,17 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import javassist.bytecode.Descriptor;
 
+import com.google.common.collect.ImmutableSet;
+
 public class NameValidator {
 	
-	private static final Pattern IdentifierPattern;
-	private static final Pattern ClassPattern;
-	private static final List<String> ReservedWords = Arrays.asList(
+	// identifiers look like [A-Za-z_<][A-Za-z0-9_>]*, and class names are identifiers separated by . or /
+	// every name in a mappings file goes through here, so check the characters by hand instead of with a regex
+	private static final Set<String> ReservedWords = ImmutableSet.of(
 		"abstract", "continue", "for", "new", "switch", "assert", "default", "goto", "package", "synchronized",
 		"boolean", "do", "if", "private", "this", "break", "double", "implements", "protected", "throw", "byte",
 		"else", "import", "public", "throws", "case", "enum", "instanceof", "return", "transient", "catch",
@@ -28,30 +28,11 @@ public class NameValidator {
 		"long", "strictfp", "volatile", "const", "float", "native", "super", "while"
 	);
 	
-	static {
-		
-		// java allows all kinds of weird characters...
-		StringBuilder startChars = new StringBuilder();
-		StringBuilder partChars = new StringBuilder();
-		for (int i = Character.MIN_CODE_POINT; i <= Character.MAX_CODE_POINT; i++) {
-			if (Character.isJavaIdentifierStart(i)) {
-				startChars.appendCodePoint(i);
-			}
-			if (Character.isJavaIdentifierPart(i)) {
-				partChars.appendCodePoint(i);
-			}
-		}
-		
-		String identifierRegex = "[A-Za-z_<][A-Za-z0-9_>]*";
-		IdentifierPattern = Pattern.compile(identifierRegex);
-		ClassPattern = Pattern.compile(String.format("^(%s(\\.|/))*(%s)$", identifierRegex, identifierRegex));
-	}
-	
 	public static String validateClassName(String name, boolean packageRequired) {
 		if (name == null) {
 			return null;
 		}
-		if (!ClassPattern.matcher(name).matches() || ReservedWords.contains(name)) {
+		if (!isClassName(name) || ReservedWords.contains(name)) {
 			throw new IllegalNameException(name, "This doesn't look like a legal class name");
 		}
 		if (packageRequired && new ClassEntry(name).getPackageName() == null) {
@@ -64,7 +45,7 @@ public class NameValidator {
 		if (name == null) {
 			return null;
 		}
-		if (!IdentifierPattern.matcher(name).matches() || ReservedWords.contains(name)) {
+		if (!isIdentifier(name, 0, name.length()) || ReservedWords.contains(name)) {
 			throw new IllegalNameException(name, "This doesn't look like a legal identifier");
 		}
 		return name;
@@ -77,4 +58,39 @@ public class NameValidator {
 	public static String validateArgumentName(String name) {
 		return validateFieldName(name);
 	}
+	
+	private static boolean isClassName(String name) {
+		int start = 0;
+		for (int i=0; i<name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '.' || c == '/') {
+				if (!isIdentifier(name, start, i)) {
+					return false;
+				}
+				start = i + 1;
+			}
+		}
+		return isIdentifier(name, start, name.length());
+	}
+	
+	private static boolean isIdentifier(String name, int start, int end) {
+		if (start >= end) {
+			return false;
+		}
+		char c = name.charAt(start);
+		if (!(isLetter(c) || c == '_' || c == '<')) {
+			return false;
+		}
+		for (int i=start + 1; i<end; i++) {
+			c = name.charAt(i);
+			if (!(isLetter(c) || (c >= '0' && c <= '9') || c == '_' || c == '>')) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isLetter(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
 }
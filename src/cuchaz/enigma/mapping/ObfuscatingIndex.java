@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+
+import cuchaz.enigma.analysis.TranslationIndex;
+
+public class ObfuscatingIndex {
+	
+	private class DeobfIndex extends TranslationIndex {
+		
+		private static final long serialVersionUID = 4617340329546893207L;
+		
+		public DeobfIndex() {
+			super();
+		}
+		
+		public DeobfIndex(TranslationIndex other) {
+			super(other);
+		}
+		
+		@Override
+		public ClassEntry resolveEntryClass(Entry deobfEntry) {
+			// snapshot translators get used from many threads, and any lookup can add classes to the index
+			synchronized (ObfuscatingIndex.this) {
+				translateAncestors(deobfEntry.getClassEntry());
+				return super.resolveEntryClass(deobfEntry);
+			}
+		}
+	}
+	
+	// everything the obfuscating translator needs, kept up to date as the mappings change
+	// ie, the classes keyed by their deobf names, and the translation index in deobf names
+	// classes only get translated into the index when a member lookup needs them, so most class mappings never get read
+	// when a class gets renamed, we only translate again the classes whose index info names it
+	
+	private TranslationIndex m_obfIndex;
+	private Translator m_deobfuscatingTranslator;
+	private Map<String,ClassMapping> m_classes;
+	private TranslationIndex m_deobfIndex;
+	private Translator m_obfuscatingTranslator;
+	private Map<ClassEntry,ClassEntry> m_deobfClassEntries;
+	private Multimap<String,ClassEntry> m_classesByReferencedOutermostClass;
+	
+	public ObfuscatingIndex(Mappings mappings, TranslationIndex obfIndex) {
+		
+		m_obfIndex = obfIndex;
+		m_deobfuscatingTranslator = mappings.getTranslator(TranslationDirection.Deobfuscating, obfIndex);
+		
+		// fill in the missing deobf class entries with obf entries
+		m_classes = Maps.newHashMap();
+		for (ClassMapping classMapping : mappings.classes()) {
+			m_classes.put(getKey(classMapping), classMapping);
+		}
+		
+		// remember which classes show up in which translations, that only takes the jar
+		m_deobfIndex = new DeobfIndex();
+		m_deobfClassEntries = Maps.newHashMap();
+		m_classesByReferencedOutermostClass = HashMultimap.create();
+		for (ClassEntry obfClassEntry : obfIndex.getIndexedClasses()) {
+			for (ClassEntry referencedClassEntry : obfIndex.getReferencedClasses(obfClassEntry)) {
+				m_classesByReferencedOutermostClass.put(referencedClassEntry.getOutermostClassName(), obfClassEntry);
+			}
+		}
+		
+		m_obfuscatingTranslator = new Translator(TranslationDirection.Obfuscating, m_classes, m_deobfIndex);
+	}
+	
+	public ObfuscatingIndex(ObfuscatingIndex base, Mappings mappings, Set<String> changedObfOuterClassNames) {
+		
+		// start from another index for the same jar, and only translate again the classes the changes could affect
+		m_obfIndex = base.m_obfIndex;
+		m_deobfuscatingTranslator = mappings.getTranslator(TranslationDirection.Deobfuscating, m_obfIndex);
+		
+		m_classes = Maps.newHashMap();
+		for (ClassMapping classMapping : mappings.classes()) {
+			m_classes.put(getKey(classMapping), classMapping);
+		}
+		
+		// which classes show up in which translations depends only on the jar, so that can be shared
+		// the base can still be translating classes on other threads though
+		synchronized (base) {
+			m_deobfIndex = new DeobfIndex(base.m_deobfIndex);
+			m_deobfClassEntries = Maps.newHashMap(base.m_deobfClassEntries);
+		}
+		m_classesByReferencedOutermostClass = base.m_classesByReferencedOutermostClass;
+		
+		m_obfuscatingTranslator = new Translator(TranslationDirection.Obfuscating, m_classes, m_deobfIndex);
+		
+		for (String obfOuterClassName : changedObfOuterClassNames) {
+			for (ClassEntry dependentClassEntry : m_classesByReferencedOutermostClass.get(obfOuterClassName)) {
+				if (m_deobfClassEntries.containsKey(dependentClassEntry)) {
+					translateClass(dependentClassEntry);
+				}
+			}
+		}
+	}
+	
+	public boolean isFor(TranslationIndex obfIndex) {
+		return m_obfIndex == obfIndex;
+	}
+	
+	public Translator getTranslator() {
+		return m_obfuscatingTranslator;
+	}
+	
+	public synchronized void classAdded(ClassMapping classMapping) {
+		m_classes.put(getKey(classMapping), classMapping);
+		if (classMapping.getDeobfName() != null) {
+			classNameChanged(new ClassEntry(classMapping.getObfFullName()));
+		}
+	}
+	
+	public synchronized void classNameChanged(ClassMapping classMapping, String oldDeobfName) {
+		
+		// outer classes are keyed by their deobf names
+		m_classes.remove(oldDeobfName != null ? oldDeobfName : classMapping.getObfFullName());
+		m_classes.put(getKey(classMapping), classMapping);
+		if (oldDeobfName != null) {
+			m_obfuscatingTranslator.clearCache(new ClassEntry(oldDeobfName));
+		}
+		classNameChanged(new ClassEntry(classMapping.getObfFullName()));
+	}
+	
+	public synchronized void classNameChanged(ClassEntry obfClassEntry) {
+		
+		// the new name changes the translation of every class that mentions any class in this outermost class
+		ClassEntry obfOutermostClassEntry = obfClassEntry.getOutermostClassEntry();
+		m_deobfuscatingTranslator.clearCache(obfOutermostClassEntry);
+		m_obfuscatingTranslator.clearCache(m_deobfuscatingTranslator.translateEntry(obfOutermostClassEntry));
+		for (ClassEntry dependentClassEntry : m_classesByReferencedOutermostClass.get(obfOutermostClassEntry.getName())) {
+			// classes nobody has looked up yet get the new name when they are looked up
+			if (m_deobfClassEntries.containsKey(dependentClassEntry)) {
+				translateClass(dependentClassEntry);
+			}
+		}
+	}
+	
+	public synchronized void classMembersChanged(ClassEntry obfClassEntry) {
+		
+		// the index only lists the members each class declares, so no other class is affected
+		m_deobfuscatingTranslator.clearCache(obfClassEntry);
+		if (m_deobfClassEntries.containsKey(obfClassEntry)) {
+			translateClass(obfClassEntry);
+		} else {
+			// not in the index, but the translator could have cached a translation anyway
+			m_obfuscatingTranslator.clearCache(m_deobfuscatingTranslator.translateEntry(obfClassEntry));
+		}
+	}
+	
+	private ClassEntry translateClass(ClassEntry obfClassEntry) {
+		ClassEntry oldDeobfClassEntry = m_deobfClassEntries.get(obfClassEntry);
+		if (oldDeobfClassEntry != null) {
+			m_deobfIndex.removeClass(oldDeobfClassEntry);
+			m_obfuscatingTranslator.clearCache(oldDeobfClassEntry);
+		}
+		ClassEntry deobfClassEntry = m_deobfIndex.translateClass(m_obfIndex, obfClassEntry, m_deobfuscatingTranslator);
+		m_deobfClassEntries.put(obfClassEntry, deobfClassEntry);
+		m_obfuscatingTranslator.clearCache(deobfClassEntry);
+		return deobfClassEntry;
+	}
+	
+	private void translateAncestors(ClassEntry deobfClassEntry) {
+		
+		// resolving a member looks at its class, the superclasses, and the interfaces, so make sure those are in the index
+		while (deobfClassEntry != null) {
+			ClassEntry obfClassEntry = m_obfuscatingTranslator.translateEntry(deobfClassEntry);
+			if (!m_deobfClassEntries.containsKey(obfClassEntry)) {
+				deobfClassEntry = translateClass(obfClassEntry);
+			}
+			for (ClassEntry interfaceEntry : Lists.newArrayList(m_deobfIndex.getInterfaces(deobfClassEntry))) {
+				translateAncestors(interfaceEntry);
+			}
+			deobfClassEntry = m_deobfIndex.getSuperclass(deobfClassEntry);
+		}
+	}
+	
+	private String getKey(ClassMapping classMapping) {
+		if (classMapping.getDeobfName() != null) {
+			return classMapping.getDeobfName();
+		}
+		return classMapping.getObfFullName();
+	}
+}
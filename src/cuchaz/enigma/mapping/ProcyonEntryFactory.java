@@ -20,7 +20,7 @@ public class ProcyonEntryFactory {
 		return new FieldEntry(
 			new ClassEntry(def.getDeclaringType().getInternalName()),
 			def.getName(),
-			new Type(def.getErasedSignature())
+			Type.get(def.getErasedSignature())
 		);
 	}
 	
@@ -28,7 +28,7 @@ public class ProcyonEntryFactory {
 		return new MethodEntry(
 			new ClassEntry(def.getDeclaringType().getInternalName()),
 			def.getName(),
-			new Signature(def.getErasedSignature())
+			Signature.get(def.getErasedSignature())
 		);
 	}
 	
@@ -40,7 +40,7 @@ public class ProcyonEntryFactory {
 		} else {
 			return new ConstructorEntry(
 				new ClassEntry(def.getDeclaringType().getInternalName()),
-				new Signature(def.getErasedSignature())
+				Signature.get(def.getErasedSignature())
 			);
 		}
 	}
@@ -10,56 +10,107 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-
-import cuchaz.enigma.Util;
+import com.google.common.collect.MapMaker;
 
 public class Signature implements Serializable {
 	
 	private static final long serialVersionUID = -5843719505729497539L;
 	
-	private List<Type> m_argumentTypes;
-	private Type m_returnType;
+	// signatures are immutable, so they render their descriptor and hash once, up front
+	// parsing the same descriptor twice with get() hands back the same instance, for as long as anyone holds on to it
+	private static final ConcurrentMap<String,Signature> m_cache = new MapMaker().weakValues().makeMap();
+	
+	// the serialized form is the same as it's always been, a list of argument types and a return type
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("m_argumentTypes", List.class),
+		new ObjectStreamField("m_returnType", Type.class)
+	};
+	
+	private final transient List<Type> m_argumentTypes;
+	private final transient Type m_returnType;
+	private transient String m_descriptor;
+	private final transient int m_hashCode;
+	
+	public static Signature get(String signature) {
+		Signature out = m_cache.get(signature);
+		if (out == null) {
+			out = new Signature(signature);
+			Signature existing = m_cache.putIfAbsent(out.toString(), out);
+			if (existing != null) {
+				out = existing;
+			}
+			if (!signature.equals(out.toString())) {
+				// the descriptor wasn't in canonical form, remember it too so we don't parse it again
+				m_cache.putIfAbsent(signature, out);
+			}
+		}
+		return out;
+	}
 	
 	public Signature(String signature) {
+		ImmutableList.Builder<Type> argumentTypes = ImmutableList.builder();
+		Type returnType;
+		int end;
 		try {
-			m_argumentTypes = Lists.newArrayList();
 			int i=0;
 			while (i<signature.length()) {
 				char c = signature.charAt(i);
 				if (c == '(') {
-					assert(m_argumentTypes.isEmpty());
-					assert(m_returnType == null);
+					assert(i == 0);
 					i++;
 				} else if (c == ')') {
 					i++;
 					break;
 				} else {
-					String type = Type.parseFirst(signature.substring(i));
-					m_argumentTypes.add(new Type(type));
-					i += type.length();
+					end = Type.parseEnd(signature, i);
+					argumentTypes.add(Type.get(signature.substring(i, end)));
+					i = end;
 				}
 			}
-			m_returnType = new Type(Type.parseFirst(signature.substring(i)));
+			end = Type.parseEnd(signature, i);
+			returnType = Type.get(signature.substring(i, end));
 		} catch (Exception ex) {
 			throw new IllegalArgumentException("Unable to parse signature: " + signature, ex);
 		}
+		m_argumentTypes = argumentTypes.build();
+		m_returnType = returnType;
+		if (signature.charAt(0) == '(' && end == signature.length()) {
+			// we read the whole thing, so it's already in canonical form
+			m_descriptor = signature;
+		} else {
+			m_descriptor = render(m_argumentTypes, m_returnType);
+		}
+		m_hashCode = m_descriptor.hashCode();
 	}
 	
 	public Signature(Signature other) {
-		m_argumentTypes = Lists.newArrayList(other.m_argumentTypes);
-		m_returnType = new Type(other.m_returnType);
+		m_argumentTypes = other.m_argumentTypes;
+		m_returnType = other.m_returnType;
+		m_descriptor = other.m_descriptor;
+		m_hashCode = other.m_hashCode;
 	}
 	
 	public Signature(Signature other, ClassNameReplacer replacer) {
-		m_argumentTypes = Lists.newArrayList(other.m_argumentTypes);
-		for (int i=0; i<m_argumentTypes.size(); i++) {
-			m_argumentTypes.set(i, new Type(m_argumentTypes.get(i), replacer));
+		ImmutableList.Builder<Type> argumentTypes = ImmutableList.builder();
+		for (Type type : other.m_argumentTypes) {
+			argumentTypes.add(new Type(type, replacer));
 		}
+		m_argumentTypes = argumentTypes.build();
 		m_returnType = new Type(other.m_returnType, replacer);
+		m_descriptor = render(m_argumentTypes, m_returnType);
+		m_hashCode = m_descriptor.hashCode();
 	}
 	
 	public List<Type> getArgumentTypes() {
@@ -72,21 +123,16 @@ public class Signature implements Serializable {
 	
 	@Override
 	public String toString() {
-		StringBuilder buf = new StringBuilder();
-		buf.append("(");
-		for (Type type : m_argumentTypes) {
-			buf.append(type.toString());
-		}
-		buf.append(")");
-		buf.append(m_returnType.toString());
-		return buf.toString();
+		return m_descriptor;
 	}
 	
 	public Iterable<Type> types() {
-		List<Type> types = Lists.newArrayList();
-		types.addAll(m_argumentTypes);
-		types.add(m_returnType);
-		return types;
+		return new Iterable<Type>() {
+			@Override
+			public Iterator<Type> iterator() {
+				return Iterators.concat(m_argumentTypes.iterator(), Iterators.singletonIterator(m_returnType));
+			}
+		};
 	}
 	
 	@Override
@@ -98,20 +144,52 @@ public class Signature implements Serializable {
 	}
 	
 	public boolean equals(Signature other) {
-		return m_argumentTypes.equals(other.m_argumentTypes) && m_returnType.equals(other.m_returnType);
+		// the descriptor says everything about the signature
+		return this == other || (m_hashCode == other.m_hashCode && m_descriptor.equals(other.m_descriptor));
 	}
 	
 	@Override
 	public int hashCode() {
-		return Util.combineHashesOrdered(m_argumentTypes.hashCode(), m_returnType.hashCode());
+		return m_hashCode;
 	}
 
 	public boolean hasClass(ClassEntry classEntry) {
-		for (Type type : types()) {
+		for (Type type : m_argumentTypes) {
 			if (type.hasClass() && type.getClassEntry().equals(classEntry)) {
 				return true;
 			}
 		}
-		return false;
+		return m_returnType.hasClass() && m_returnType.getClassEntry().equals(classEntry);
+	}
+	
+	private void writeObject(ObjectOutputStream out)
+	throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("m_argumentTypes", Lists.newArrayList(m_argumentTypes));
+		fields.put("m_returnType", m_returnType);
+		out.writeFields();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in)
+	throws IOException, ClassNotFoundException {
+		// just render the descriptor, readResolve() swaps in the real signature
+		ObjectInputStream.GetField fields = in.readFields();
+		m_descriptor = render((List<Type>)fields.get("m_argumentTypes", null), (Type)fields.get("m_returnType", null));
+	}
+	
+	private Object readResolve() {
+		return get(m_descriptor);
+	}
+	
+	private static String render(List<Type> argumentTypes, Type returnType) {
+		StringBuilder buf = new StringBuilder();
+		buf.append("(");
+		for (Type type : argumentTypes) {
+			buf.append(type.toString());
+		}
+		buf.append(")");
+		buf.append(returnType.toString());
+		return buf.toString();
 	}
 }
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma.mapping;
+
+import java.util.Map;
+
+public class TranslationTable {
+	
+	// the translations of a batch of entries, made all at once by Translator.translateAll()
+	// whole-jar operations read this instead of asking the translator about the same entries over and over
+	// entries that weren't in the batch just go to the translator
+	
+	private Translator m_translator;
+	private Map<Entry,Entry> m_translations;
+	
+	public TranslationTable(Translator translator, Map<Entry,Entry> translations) {
+		m_translator = translator;
+		m_translations = translations;
+	}
+	
+	public Translator getTranslator() {
+		return m_translator;
+	}
+	
+	public int size() {
+		return m_translations.size();
+	}
+	
+	public boolean contains(Entry entry) {
+		return m_translations.containsKey(entry);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T extends Entry> T translateEntry(T entry) {
+		T out = (T)m_translations.get(entry);
+		if (out == null) {
+			out = m_translator.translateEntry(entry);
+		}
+		return out;
+	}
+	
+	public Map<Entry,Entry> getTranslations() {
+		return m_translations;
+	}
+}
@@ -10,20 +10,38 @@
  ******************************************************************************/
 package cuchaz.enigma.mapping;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 
+import cuchaz.enigma.Parallel;
 import cuchaz.enigma.analysis.TranslationIndex;
 
 public class Translator {
 	
+	// batches smaller than this aren't worth farming out to other threads
+	private static final int MinEntriesToTranslateInParallel = 1000;
+	
 	private TranslationDirection m_direction;
 	private Map<String,ClassMapping> m_classes;
 	private TranslationIndex m_index;
 	
+	// translated entries, types, and signatures, along with the outermost classes whose mappings they were read from
+	// so when a mapping changes, we only have to forget the translations that could have used it
+	// lots of threads can read the cache at once without locking, only changes to it take the lock
+	private Map<Object,Object> m_cache;
+	private Multimap<String,Object> m_cacheKeysByClass;
+	private volatile int m_cacheGeneration;
+	
 	private ClassNameReplacer m_classNameReplacer = new ClassNameReplacer() {
 		@Override
 		public String replace(String className) {
@@ -35,12 +53,85 @@ public class Translator {
 		m_direction = null;
 		m_classes = Maps.newHashMap();
 		m_index = new TranslationIndex();
+		initCache();
 	}
 	
 	public Translator(TranslationDirection direction, Map<String,ClassMapping> classes, TranslationIndex index) {
 		m_direction = direction;
 		m_classes = classes;
 		m_index = index;
+		initCache();
+	}
+	
+	private void initCache() {
+		m_cache = new ConcurrentHashMap<Object,Object>();
+		m_cacheKeysByClass = HashMultimap.create();
+		m_cacheGeneration = 0;
+	}
+	
+	public void clearCache() {
+		synchronized (m_cache) {
+			m_cache.clear();
+			m_cacheKeysByClass.clear();
+			m_cacheGeneration++;
+		}
+	}
+	
+	public void clearCache(ClassEntry classEntry) {
+		
+		// the mappings for a class live with its outermost class, so forget everything that read from there
+		synchronized (m_cache) {
+			for (Object key : m_cacheKeysByClass.removeAll(classEntry.getOutermostClassName())) {
+				m_cache.remove(key);
+			}
+			m_cacheGeneration++;
+		}
+	}
+	
+	public int getCacheSize() {
+		return m_cache.size();
+	}
+	
+	private int getCacheGeneration() {
+		return m_cacheGeneration;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> T getCached(T key) {
+		return (T)m_cache.get(key);
+	}
+	
+	private <T> T putCached(T key, T value, Set<String> classNames, int generation) {
+		synchronized (m_cache) {
+			// if the mappings changed while we were translating, the translation could already be stale
+			if (generation == m_cacheGeneration) {
+				m_cache.put(key, value);
+				for (String className : classNames) {
+					m_cacheKeysByClass.put(className, key);
+				}
+			}
+		}
+		return value;
+	}
+	
+	private void addDependency(Set<String> classNames, ClassEntry classEntry) {
+		if (classEntry != null) {
+			classNames.add(classEntry.getOutermostClassName());
+		}
+	}
+	
+	private void addDependencies(Set<String> classNames, Type type) {
+		if (type.hasClass()) {
+			addDependency(classNames, type.getClassEntry());
+		}
+	}
+	
+	private void addDependencies(Set<String> classNames, Signature signature) {
+		if (signature != null) {
+			for (Type type : signature.types()) {
+				addDependencies(classNames, type);
+			}
+		}
 	}
 	
 	public TranslationDirection getDirection() {
@@ -84,6 +175,44 @@ public class Translator {
 		}
 	}
 	
+	public TranslationTable translateAll(Collection<? extends Entry> entries) {
+		return translateAll(entries, entries.size() >= MinEntriesToTranslateInParallel);
+	}
+	
+	public TranslationTable translateAll(Collection<? extends Entry> entries, boolean parallel) {
+		
+		// translate each distinct entry just once
+		final Entry[] in = Sets.newLinkedHashSet(entries).toArray(new Entry[0]);
+		final Entry[] out = new Entry[in.length];
+		if (parallel && in.length > 1) {
+			// the caches and the index are safe to share, so just split the entries among the fork-join threads
+			Parallel.forRange(in.length, new Parallel.RangeWorker<Void>() {
+				@Override
+				public Void work(int start, int stop) {
+					for (int i=start; i<stop; i++) {
+						out[i] = translateEntry(in[i]);
+					}
+					return null;
+				}
+				
+				@Override
+				public Void merge(Void left, Void right) {
+					return null;
+				}
+			});
+		} else {
+			for (int i=0; i<in.length; i++) {
+				out[i] = translateEntry(in[i]);
+			}
+		}
+		
+		ImmutableMap.Builder<Entry,Entry> translations = ImmutableMap.builder();
+		for (int i=0; i<in.length; i++) {
+			translations.put(in[i], out[i]);
+		}
+		return new TranslationTable(this, translations.build());
+	}
+	
 	public String translate(ClassEntry in) {
 		ClassEntry translated = translateEntry(in);
 		if (translated.equals(in)) {
@@ -97,14 +226,25 @@ public class Translator {
 	}
 	
 	public ClassEntry translateEntry(ClassEntry in) {
+		ClassEntry out = getCached(in);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependency(classNames, in);
+			out = putCached(in, translateUncachedEntry(in), classNames, generation);
+		}
+		return out;
+	}
+	
+	private ClassEntry translateUncachedEntry(ClassEntry in) {
 		
 		if (in.isInnerClass()) {
 			
 			// translate as much of the class chain as we can
 			List<ClassMapping> mappingsChain = getClassMappingChain(in);
-			String[] obfClassNames = in.getName().split("\\$");
+			List<String> obfClassNames = in.getClassChainNames();
 			StringBuilder buf = new StringBuilder();
-			for (int i=0; i<obfClassNames.length; i++) {
+			for (int i=0; i<obfClassNames.size(); i++) {
 				boolean isFirstClass = buf.length() == 0;
 				String className = null;
 				ClassMapping classMapping = mappingsChain.get(i);
@@ -115,7 +255,7 @@ public class Translator {
 					);
 				}
 				if (className == null) {
-					className = obfClassNames[i];
+					className = obfClassNames.get(i);
 				}
 				if (!isFirstClass) {
 					buf.append("$");
@@ -123,7 +263,7 @@ public class Translator {
 				buf.append(className);
 			}
 			return new ClassEntry(buf.toString());
-			
+		
 		} else {
 			
 			// normal classes are easy
@@ -143,7 +283,7 @@ public class Translator {
 		// resolve the class entry
 		ClassEntry resolvedClassEntry = m_index.resolveEntryClass(in);
 		if (resolvedClassEntry != null) {
-		
+			
 			// look for the class
 			ClassMapping classMapping = findClassMapping(resolvedClassEntry);
 			if (classMapping != null) {
@@ -162,6 +302,19 @@ public class Translator {
 	}
 	
 	public FieldEntry translateEntry(FieldEntry in) {
+		FieldEntry out = getCached(in);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependency(classNames, in.getClassEntry());
+			addDependency(classNames, m_index.resolveEntryClass(in));
+			addDependencies(classNames, in.getType());
+			out = putCached(in, translateUncachedEntry(in), classNames, generation);
+		}
+		return out;
+	}
+	
+	private FieldEntry translateUncachedEntry(FieldEntry in) {
 		String name = translate(in);
 		if (name == null) {
 			name = in.getName();
@@ -174,7 +327,7 @@ public class Translator {
 		// resolve the class entry
 		ClassEntry resolvedClassEntry = m_index.resolveEntryClass(in);
 		if (resolvedClassEntry != null) {
-		
+			
 			// look for class
 			ClassMapping classMapping = findClassMapping(resolvedClassEntry);
 			if (classMapping != null) {
@@ -193,6 +346,19 @@ public class Translator {
 	}
 	
 	public MethodEntry translateEntry(MethodEntry in) {
+		MethodEntry out = getCached(in);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependency(classNames, in.getClassEntry());
+			addDependency(classNames, m_index.resolveEntryClass(in));
+			addDependencies(classNames, in.getSignature());
+			out = putCached(in, translateUncachedEntry(in), classNames, generation);
+		}
+		return out;
+	}
+	
+	private MethodEntry translateUncachedEntry(MethodEntry in) {
 		String name = translate(in);
 		if (name == null) {
 			name = in.getName();
@@ -201,6 +367,18 @@ public class Translator {
 	}
 	
 	public ConstructorEntry translateEntry(ConstructorEntry in) {
+		ConstructorEntry out = getCached(in);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependency(classNames, in.getClassEntry());
+			addDependencies(classNames, in.getSignature());
+			out = putCached(in, translateUncachedEntry(in), classNames, generation);
+		}
+		return out;
+	}
+	
+	private ConstructorEntry translateUncachedEntry(ConstructorEntry in) {
 		if (in.isStatic()) {
 			return new ConstructorEntry(translateEntry(in.getClassEntry()));
 		} else {
@@ -247,43 +425,66 @@ public class Translator {
 	}
 	
 	public Type translateType(Type type) {
-		return new Type(type, m_classNameReplacer);
+		Type out = getCached(type);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependencies(classNames, type);
+			out = putCached(type, new Type(type, m_classNameReplacer), classNames, generation);
+		}
+		return out;
 	}
 	
 	public Signature translateSignature(Signature signature) {
-		return new Signature(signature, m_classNameReplacer);
+		Signature out = getCached(signature);
+		if (out == null) {
+			int generation = getCacheGeneration();
+			Set<String> classNames = Sets.newHashSet();
+			addDependencies(classNames, signature);
+			out = putCached(signature, new Signature(signature, m_classNameReplacer), classNames, generation);
+		}
+		return out;
 	}
 	
 	private ClassMapping findClassMapping(ClassEntry in) {
-		List<ClassMapping> mappingChain = getClassMappingChain(in);
-		return mappingChain.get(mappingChain.size() - 1);
+		
+		// walk down the chain without keeping it around
+		List<String> parts = in.getClassChainNames();
+		ClassMapping classMapping = m_classes.get(parts.get(0));
+		for (int i=1; i<parts.size() && classMapping != null; i++) {
+			classMapping = m_direction.choose(
+				classMapping.getInnerClassByObfSimple(parts.get(i)),
+				classMapping.getInnerClassByDeobfThenObfSimple(parts.get(i))
+			);
+		}
+		return classMapping;
 	}
 	
 	private List<ClassMapping> getClassMappingChain(ClassEntry in) {
 		
 		// get a list of all the classes in the hierarchy
-		String[] parts = in.getName().split("\\$");
-		List<ClassMapping> mappingsChain = Lists.newArrayList();
+		List<String> parts = in.getClassChainNames();
+		List<ClassMapping> mappingsChain = Lists.newArrayListWithCapacity(parts.size());
 		
 		// get mappings for the outer class
-		ClassMapping outerClassMapping = m_classes.get(parts[0]);
+		ClassMapping outerClassMapping = m_classes.get(parts.get(0));
 		mappingsChain.add(outerClassMapping);
 		
-		for (int i=1; i<parts.length; i++) {
+		for (int i=1; i<parts.size(); i++) {
 			
 			// get mappings for the inner class
 			ClassMapping innerClassMapping = null;
 			if (outerClassMapping != null) {
 				innerClassMapping = m_direction.choose(
-					outerClassMapping.getInnerClassByObfSimple(parts[i]),
-					outerClassMapping.getInnerClassByDeobfThenObfSimple(parts[i])
+					outerClassMapping.getInnerClassByObfSimple(parts.get(i)),
+					outerClassMapping.getInnerClassByDeobfThenObfSimple(parts.get(i))
 				);
 			}
 			mappingsChain.add(innerClassMapping);
 			outerClassMapping = innerClassMapping;
 		}
 		
-		assert(mappingsChain.size() == parts.length);
+		assert(mappingsChain.size() == parts.size());
 		return mappingsChain;
 	}
 }
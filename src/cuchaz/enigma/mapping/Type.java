@@ -12,12 +12,18 @@ package cuchaz.enigma.mapping;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 
 public class Type implements Serializable {
 	
 	private static final long serialVersionUID = 7862257669347104063L;
+	
+	// types are immutable, and their name is their descriptor, which caches its own hash
+	// parsing the same descriptor twice with get() hands back the same instance, for as long as anyone holds on to it
+	private static final ConcurrentMap<String,Type> m_cache = new MapMaker().weakValues().makeMap();
 
 	public enum Primitive {
 		Byte('B'),
@@ -54,47 +60,82 @@ public class Type implements Serializable {
 	}
 	
 	public static String parseFirst(String in) {
+		return in.substring(0, parseEnd(in, 0));
+	}
+	
+	public static int parseEnd(String in, int start) {
+		
+		// read one type from the input, starting at the given offset, and return the offset just past it
+		// this walks the input in place, so parsing a whole signature never copies what's left of it
 		
-		if (in == null || in.length() <= 0) {
+		if (in == null || start >= in.length()) {
 			throw new IllegalArgumentException("No type to parse, input is empty!");
 		}
 		
-		// read one type from the input
-		
-		char c = in.charAt(0);
-		
-		// first check for void
-		if (c == 'V') {
-			return "V";
+		// skip past any array dimensions, the element type follows
+		int i = start;
+		while (i < in.length() && in.charAt(i) == '[') {
+			i++;
+		}
+		if (i >= in.length()) {
+			throw new IllegalArgumentException("don't know how to parse: " + in.substring(start));
 		}
+		char c = in.charAt(i);
 		
-		// then check for primitives
-		Primitive primitive = Primitive.get(c);
-		if (primitive != null) {
-			return in.substring(0, 1);
+		// void and primitives are one character long
+		if (c == 'V' || isPrimitiveCode(c)) {
+			return i + 1;
 		}
 		
-		// then check for classes
-		if (c == 'L') {
-			return readClass(in);
+		// classes and templates run until the ';' that isn't inside any type parameters
+		if (c == 'L' || c == 'T') {
+			int depth = 0;
+			for (; i < in.length(); i++) {
+				c = in.charAt(i);
+				if (c == '<') {
+					depth++;
+				} else if (c == '>') {
+					depth--;
+				} else if (depth == 0 && c == ';') {
+					return i + 1;
+				}
+			}
+			throw new IllegalArgumentException("unterminated class name: " + in.substring(start));
 		}
 		
-		// then check for templates
-		if (c == 'T') {
-			return readClass(in);
+		throw new IllegalArgumentException("don't know how to parse: " + in.substring(start));
+	}
+	
+	private static boolean isPrimitiveCode(char c) {
+		// same as Primitive.get(c) != null, without boxing the char to look it up
+		switch (c) {
+			case 'B':
+			case 'C':
+			case 'S':
+			case 'I':
+			case 'J':
+			case 'F':
+			case 'D':
+			case 'Z':
+				return true;
+			default:
+				return false;
 		}
-
-		// then check for arrays
-		int dim = countArrayDimension(in);
-		if (dim > 0) {
-			String arrayType = Type.parseFirst(in.substring(dim));
-			return in.substring(0, dim + arrayType.length());
+	}
+	
+	public static Type get(String name) {
+		Type out = m_cache.get(name);
+		if (out == null) {
+			out = new Type(name);
+			Type existing = m_cache.putIfAbsent(name, out);
+			if (existing != null) {
+				out = existing;
+			}
 		}
-		
-		throw new IllegalArgumentException("don't know how to parse: " + in);
+		return out;
 	}
 	
-	protected String m_name;
+	private final String m_name;
 	
 	public Type(String name) {
 		
@@ -116,18 +157,22 @@ public class Type implements Serializable {
 	}
 	
 	public Type(Type other, ClassNameReplacer replacer) {
-		m_name = other.m_name;
-		if (other.isClass()) {
-			String replacedName = replacer.replace(other.getClassEntry().getClassName());
+		m_name = replaceClassName(other, replacer);
+	}
+	
+	private static String replaceClassName(Type type, ClassNameReplacer replacer) {
+		if (type.isClass()) {
+			String replacedName = replacer.replace(type.getClassEntry().getClassName());
 			if (replacedName != null) {
-				m_name = "L" + replacedName + ";";
+				return "L" + replacedName + ";";
 			}
-		} else if (other.isArray() && other.hasClass()) {
-			String replacedName = replacer.replace(other.getClassEntry().getClassName());
+		} else if (type.isArray() && type.hasClass()) {
+			String replacedName = replacer.replace(type.getClassEntry().getClassName());
 			if (replacedName != null) {
-				m_name = Type.getArrayPrefix(other.getArrayDimension()) + "L" + replacedName + ";";
+				return Type.getArrayPrefix(type.getArrayDimension()) + "L" + replacedName + ";";
 			}
 		}
+		return type.m_name;
 	}
 	
 	@Override
@@ -140,7 +185,7 @@ public class Type implements Serializable {
 	}
 	
 	public boolean isPrimitive() {
-		return m_name.length() == 1 && Primitive.get(m_name.charAt(0)) != null;
+		return m_name.length() == 1 && isPrimitiveCode(m_name.charAt(0));
 	}
 	
 	public Primitive getPrimitive() {
@@ -200,7 +245,9 @@ public class Type implements Serializable {
 	}
 	
 	public boolean hasClass() {
-		return isClass() || (isArray() && getArrayType().hasClass());
+		// arrays of classes are just a run of [ in front of a class
+		int dim = countArrayDimension(m_name);
+		return dim < m_name.length() && m_name.charAt(dim) == 'L' && m_name.charAt(m_name.length() - 1) == ';';
 	}
 	
 	@Override
@@ -212,9 +259,10 @@ public class Type implements Serializable {
 	}
 	
 	public boolean equals(Type other) {
-		return m_name.equals(other.m_name);
+		return this == other || m_name.equals(other.m_name);
 	}
 	
+	@Override
 	public int hashCode() {
 		return m_name.hashCode();
 	}
@@ -224,24 +272,4 @@ public class Type implements Serializable {
 		for(; i < in.length() && in.charAt(i) == '['; i++);
 		return i;
 	}
-	
-	private static String readClass(String in) {
-		// read all the characters in the buffer until we hit a ';'
-		// include the parameters too
-		StringBuilder buf = new StringBuilder();
-		int depth = 0;
-		for (int i=0; i<in.length(); i++) {
-			char c = in.charAt(i);
-			buf.append(c);
-			
-			if (c == '<') {
-				depth++;
-			} else if (c == '>') {
-				depth--;
-			} else if (depth == 0 && c == ';') {
-				return buf.toString();
-			}
-		}
-		return null;
-	}
 }
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.util.List;
+import java.util.jar.JarFile;
+
+import com.google.common.collect.Lists;
+
+import cuchaz.enigma.analysis.JarClassRepository;
+import cuchaz.enigma.bytecode.ClassHeader;
+import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class BenchmarkDescriptorParser {
+	
+	// not a unit test, run it by hand:
+	// java -cp <classpath> cuchaz.enigma.BenchmarkDescriptorParser <jar> [<num runs>]
+	
+	private interface Parser {
+		int parse(List<String> descriptors);
+	}
+	
+	private static final Parser Substring = new Parser() {
+		@Override
+		public int parse(List<String> descriptors) {
+			int numTypes = 0;
+			for (String descriptor : descriptors) {
+				numTypes += parseWithSubstrings(descriptor).size();
+			}
+			return numTypes;
+		}
+	};
+	
+	private static final Parser Cursor = new Parser() {
+		@Override
+		public int parse(List<String> descriptors) {
+			int numTypes = 0;
+			for (String descriptor : descriptors) {
+				numTypes += parseWithCursor(descriptor).size();
+			}
+			return numTypes;
+		}
+	};
+	
+	private static final Parser NewSignature = new Parser() {
+		@Override
+		public int parse(List<String> descriptors) {
+			int numTypes = 0;
+			for (String descriptor : descriptors) {
+				numTypes += new Signature(descriptor).getArgumentTypes().size() + 1;
+			}
+			return numTypes;
+		}
+	};
+	
+	private static final Parser InternedSignature = new Parser() {
+		@Override
+		public int parse(List<String> descriptors) {
+			int numTypes = 0;
+			for (String descriptor : descriptors) {
+				numTypes += Signature.get(descriptor).getArgumentTypes().size() + 1;
+			}
+			return numTypes;
+		}
+	};
+	
+	public static void main(String[] args)
+	throws Exception {
+		
+		JarFile jar = new JarFile(args.length > 0 ? args[0] : "build/test-obf/translation.jar");
+		int numRuns = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		
+		// parse every method descriptor in the jar
+		List<String> descriptors = Lists.newArrayList();
+		JarClassRepository repository = new JarClassRepository(jar);
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			for (ClassHeader.Member method : repository.getClassHeader(classEntry).getMethods()) {
+				descriptors.add(method.getDescriptor());
+			}
+		}
+		System.out.println("Benchmarking " + descriptors.size() + " method descriptors from " + jar.getName());
+		
+		// make sure both parsers agree before timing them
+		for (String descriptor : descriptors) {
+			if (!parseWithSubstrings(descriptor).equals(parseWithCursor(descriptor))) {
+				throw new Error("Parsers disagree on " + descriptor);
+			}
+		}
+		
+		// warm up the JIT
+		for (int i = 0; i < 5; i++) {
+			time(Substring, descriptors);
+			time(Cursor, descriptors);
+			time(NewSignature, descriptors);
+			time(InternedSignature, descriptors);
+		}
+		
+		long substringNanos = 0;
+		long cursorNanos = 0;
+		long newSignatureNanos = 0;
+		long internedSignatureNanos = 0;
+		for (int i = 0; i < numRuns; i++) {
+			substringNanos += time(Substring, descriptors);
+			cursorNanos += time(Cursor, descriptors);
+			newSignatureNanos += time(NewSignature, descriptors);
+			internedSignatureNanos += time(InternedSignature, descriptors);
+		}
+		System.out.println(String.format("Substring parser:      %8.1f ns/descriptor", (double)substringNanos/numRuns/descriptors.size()));
+		System.out.println(String.format("Cursor parser:         %8.1f ns/descriptor (%.1fx)", (double)cursorNanos/numRuns/descriptors.size(), (double)substringNanos/Math.max(1, cursorNanos)));
+		System.out.println(String.format("new Signature():       %8.1f ns/descriptor", (double)newSignatureNanos/numRuns/descriptors.size()));
+		System.out.println(String.format("Signature.get():       %8.1f ns/descriptor", (double)internedSignatureNanos/numRuns/descriptors.size()));
+	}
+	
+	private static long time(Parser parser, List<String> descriptors) {
+		long start = System.nanoTime();
+		int numTypes = parser.parse(descriptors);
+		long nanos = System.nanoTime() - start;
+		// use the result, so the JIT can't throw the parsing away
+		if (numTypes < descriptors.size()) {
+			throw new Error("Lost some types!");
+		}
+		return nanos;
+	}
+	
+	private static List<String> parseWithCursor(String descriptor) {
+		List<String> types = Lists.newArrayList();
+		int i = 1;
+		while (descriptor.charAt(i) != ')') {
+			int end = Type.parseEnd(descriptor, i);
+			types.add(descriptor.substring(i, end));
+			i = end;
+		}
+		i++;
+		types.add(descriptor.substring(i, Type.parseEnd(descriptor, i)));
+		return types;
+	}
+	
+	private static List<String> parseWithSubstrings(String descriptor) {
+		// this is how Signature used to parse descriptors, copying the rest of the descriptor for every type
+		List<String> types = Lists.newArrayList();
+		int i = 1;
+		while (descriptor.charAt(i) != ')') {
+			String type = parseFirstWithSubstrings(descriptor.substring(i));
+			types.add(type);
+			i += type.length();
+		}
+		i++;
+		types.add(parseFirstWithSubstrings(descriptor.substring(i)));
+		return types;
+	}
+	
+	private static String parseFirstWithSubstrings(String in) {
+		char c = in.charAt(0);
+		if (c == 'V' || Type.Primitive.get(c) != null) {
+			return in.substring(0, 1);
+		}
+		if (c == 'L' || c == 'T') {
+			StringBuilder buf = new StringBuilder();
+			int depth = 0;
+			for (int i = 0; i < in.length(); i++) {
+				c = in.charAt(i);
+				buf.append(c);
+				if (c == '<') {
+					depth++;
+				} else if (c == '>') {
+					depth--;
+				} else if (depth == 0 && c == ';') {
+					return buf.toString();
+				}
+			}
+			return null;
+		}
+		int dim = 0;
+		while (dim < in.length() && in.charAt(dim) == '[') {
+			dim++;
+		}
+		String arrayType = parseFirstWithSubstrings(in.substring(dim));
+		return in.substring(0, dim + arrayType.length());
+	}
+}
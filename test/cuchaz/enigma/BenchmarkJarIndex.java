@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.util.jar.JarFile;
+
+import javassist.CtClass;
+import cuchaz.enigma.analysis.JarClassIterator;
+import cuchaz.enigma.analysis.JarClassRepository;
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.analysis.TranslationIndex;
+import cuchaz.enigma.bytecode.ClassHeader;
+import cuchaz.enigma.bytecode.ClassRenamer;
+import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.EntryInterner;
+
+public class BenchmarkJarIndex {
+	
+	// not a unit test, run it by hand:
+	// java -cp <classpath> cuchaz.enigma.BenchmarkJarIndex <jar> [<num runs>]
+	
+	// the old indexJar() read every class from the jar again for each of its steps
+	private static final int BaselineNumPasses = 5;
+	
+	public static void main(String[] args)
+	throws Exception {
+		
+		JarFile jar = new JarFile(args.length > 0 ? args[0] : "build/test-obf/translation.jar");
+		int numRuns = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		System.out.println("Benchmarking " + jar.getName() + " with " + JarClassIterator.getClassEntries(jar).size() + " classes");
+		
+		// warm up the JIT
+		index(jar, false);
+		index(jar, true);
+		parse(jar);
+		parseBaseline(jar);
+		scan(jar);
+		
+		long indexNanos = 0;
+		long parallelIndexNanos = 0;
+		long parseNanos = 0;
+		long baselineParseNanos = 0;
+		long scanNanos = 0;
+		for (int i = 0; i < numRuns; i++) {
+			indexNanos += index(jar, false);
+			parallelIndexNanos += index(jar, true);
+			parseNanos += parse(jar);
+			baselineParseNanos += parseBaseline(jar);
+			scanNanos += scan(jar);
+		}
+		indexNanos /= numRuns;
+		parallelIndexNanos /= numRuns;
+		parseNanos /= numRuns;
+		baselineParseNanos /= numRuns;
+		scanNanos /= numRuns;
+		
+		System.out.println(String.format("One parse pass:        %8.1f ms", parseNanos/1e6));
+		System.out.println(String.format("%d parse passes:        %8.1f ms (the old indexJar, %.1fx one pass)", BaselineNumPasses, baselineParseNanos/1e6, (double)baselineParseNanos/Math.max(1, parseNanos)));
+		System.out.println(String.format("One header scan pass:  %8.1f ms", scanNanos/1e6));
+		System.out.println(String.format("Single-pass indexJar:  %8.1f ms", indexNanos/1e6));
+		System.out.println(String.format("Parallel indexJar:     %8.1f ms (%d cores)", parallelIndexNanos/1e6, Runtime.getRuntime().availableProcessors()));
+		
+		// how often indexing could reuse a member resolution instead of walking the hierarchy again
+		JarIndex index = new JarIndex();
+		index.indexJar(jar, true);
+		TranslationIndex translationIndex = index.getTranslationIndex();
+		long numHits = translationIndex.getNumResolutionHits();
+		long numMisses = translationIndex.getNumResolutionMisses();
+		System.out.println(String.format("Resolution cache:      %d hits, %d misses (%.1f%% hit rate)", numHits, numMisses, 100.0*numHits/Math.max(1, numHits + numMisses)));
+		
+		// how much heap a finished index holds on to, with and without sharing equal entries
+		long plainBytes = measureHeap(jar, new EntryInterner(false));
+		long internedBytes = measureHeap(jar, new EntryInterner());
+		System.out.println(String.format("Index heap, plain:     %8.1f MiB", plainBytes/1024.0/1024.0));
+		System.out.println(String.format("Index heap, interned:  %8.1f MiB (%.1f%% of plain)", internedBytes/1024.0/1024.0, 100.0*internedBytes/Math.max(1, plainBytes)));
+	}
+	
+	private static long measureHeap(JarFile jar, EntryInterner interner) {
+		long before = getUsedHeap();
+		JarIndex index = new JarIndex(interner);
+		index.indexJar(jar, true);
+		long after = getUsedHeap();
+		// keep the index reachable until we've measured it
+		if (index.getObfClassEntries().isEmpty()) {
+			System.out.println("Empty index!");
+		}
+		return after - before;
+	}
+	
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	private static long index(JarFile jar, boolean parallel) {
+		long start = System.nanoTime();
+		new JarIndex().indexJar(jar, true, parallel);
+		return System.nanoTime() - start;
+	}
+	
+	private static long parse(JarFile jar) {
+		long start = System.nanoTime();
+		for (CtClass c : JarClassIterator.classes(jar)) {
+			ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
+		}
+		return System.nanoTime() - start;
+	}
+	
+	private static long parseBaseline(JarFile jar) {
+		// each pass gets a new iterator over a new class pool, so every class gets parsed into a new CtClass every time
+		long start = System.nanoTime();
+		for (int i = 0; i < BaselineNumPasses; i++) {
+			for (CtClass c : JarClassIterator.classes(jar)) {
+				ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+	
+	private static long scan(JarFile jar) {
+		long start = System.nanoTime();
+		JarClassRepository repository = new JarClassRepository(jar);
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			ClassHeader header = repository.getClassHeader(classEntry);
+			ClassRenamer.moveAllClassesOutOfDefaultPackage(header, Constants.NonePackage);
+		}
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.FieldMapping;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsBinaryReader;
+import cuchaz.enigma.mapping.MappingsBinaryWriter;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.MethodMapping;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class BenchmarkMappingsFormat {
+	
+	// not a unit test, run it by hand:
+	// java -cp <classpath> cuchaz.enigma.BenchmarkMappingsFormat [<mappings file> [<num runs>]]
+	// without a mappings file, this makes up a big set of mappings
+	
+	public static void main(String[] args)
+	throws Exception {
+		
+		Mappings mappings;
+		if (args.length > 0) {
+			mappings = new MappingsReader().read(new FileReader(args[0]));
+		} else {
+			mappings = makeMappings(5000, 20, 20);
+		}
+		int numRuns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		
+		// write both formats into memory, so we only time the parsing
+		ByteArrayOutputStream textBuf = new ByteArrayOutputStream();
+		try (Writer out = new OutputStreamWriter(textBuf, StandardCharsets.UTF_8)) {
+			new MappingsWriter().write(out, mappings);
+		}
+		byte[] text = textBuf.toByteArray();
+		ByteArrayOutputStream binaryBuf = new ByteArrayOutputStream();
+		new MappingsBinaryWriter().write(binaryBuf, mappings);
+		byte[] binary = binaryBuf.toByteArray();
+		System.out.println(String.format("Benchmarking %d classes: text %d bytes, binary %d bytes (%.1f%%)",
+			mappings.classes().size(), text.length, binary.length, 100.0*binary.length/text.length
+		));
+		
+		// warm up the JIT
+		for (int i = 0; i < 3; i++) {
+			readText(text);
+			readBinary(binary);
+		}
+		
+		long textNanos = 0;
+		long binaryNanos = 0;
+		for (int i = 0; i < numRuns; i++) {
+			long start = System.nanoTime();
+			readText(text);
+			textNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			readBinary(binary);
+			binaryNanos += System.nanoTime() - start;
+		}
+		System.out.println(String.format("Text reader:   %8.1f ms", textNanos/1000000.0/numRuns));
+		System.out.println(String.format("Binary reader: %8.1f ms (%.1fx)", binaryNanos/1000000.0/numRuns, (double)textNanos/Math.max(1, binaryNanos)));
+	}
+	
+	private static Mappings readText(byte[] text)
+	throws Exception {
+		return new MappingsReader().read(new InputStreamReader(new ByteArrayInputStream(text), StandardCharsets.UTF_8));
+	}
+	
+	private static Mappings readBinary(byte[] binary)
+	throws Exception {
+		return new MappingsBinaryReader().read(new ByteArrayInputStream(binary));
+	}
+	
+	static Mappings makeMappings(int numClasses, int numFields, int numMethods) {
+		// use the same handful of types and signatures everywhere, like real mappings do
+		Type[] types = { Type.get("I"), Type.get("Ljava/lang/String;"), Type.get("[Lnone/b;") };
+		Signature[] signatures = { Signature.get("()V"), Signature.get("(ILjava/lang/String;)V"), Signature.get("([Lnone/b;)Lnone/c;") };
+		Mappings mappings = new Mappings();
+		for (int i=0; i<numClasses; i++) {
+			ClassMapping classMapping = new ClassMapping("none/c" + i, "deobf/pkg" + (i % 50) + "/Class" + i);
+			for (int j=0; j<numFields; j++) {
+				classMapping.addFieldMapping(new FieldMapping("f" + j, types[j % types.length], "field" + j));
+			}
+			for (int j=0; j<numMethods; j++) {
+				MethodMapping methodMapping = new MethodMapping("m" + j, signatures[j % signatures.length], "method" + j);
+				methodMapping.setArgumentName(0, "arg" + j);
+				classMapping.addMethodMapping(methodMapping);
+			}
+			mappings.addClassMapping(classMapping);
+		}
+		return mappings;
+	}
+}
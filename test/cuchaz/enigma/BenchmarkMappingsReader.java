@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Deque;
+
+import com.google.common.collect.Queues;
+
+import cuchaz.enigma.mapping.ArgumentMapping;
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.FieldMapping;
+import cuchaz.enigma.mapping.LazyMappingsReader;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.MethodMapping;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class BenchmarkMappingsReader {
+	
+	// not a unit test, run it by hand:
+	// java -cp <classpath> cuchaz.enigma.BenchmarkMappingsReader [<mappings file> [<num runs>]]
+	// without a mappings file, this makes up a big set of mappings
+	
+	public static void main(String[] args)
+	throws Exception {
+		
+		String text;
+		if (args.length > 0) {
+			text = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+		} else {
+			StringWriter out = new StringWriter();
+			new MappingsWriter().write(out, BenchmarkMappingsFormat.makeMappings(5000, 20, 20));
+			text = out.toString();
+		}
+		int numRuns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int numLines = 0;
+		for (int i=0; i<text.length(); i++) {
+			if (text.charAt(i) == '\n') {
+				numLines++;
+			}
+		}
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		System.out.println("Benchmarking " + numLines + " lines of mappings");
+		
+		// make sure the readers agree before timing them
+		String expected = toText(readWithLines(text));
+		if (!expected.equals(toText(readWithTokenizer(text, false))) || !expected.equals(toText(readWithTokenizer(text, true)))) {
+			throw new Error("Readers disagree!");
+		}
+		
+		// warm up the JIT
+		for (int i = 0; i < 3; i++) {
+			readWithLines(text);
+			readWithTokenizer(text, false);
+			readWithTokenizer(text, true);
+			readLazily(bytes);
+		}
+		
+		long linesNanos = 0;
+		long tokenizerNanos = 0;
+		long parallelNanos = 0;
+		long lazyNanos = 0;
+		for (int i = 0; i < numRuns; i++) {
+			long start = System.nanoTime();
+			readWithLines(text);
+			linesNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			readWithTokenizer(text, false);
+			tokenizerNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			readWithTokenizer(text, true);
+			parallelNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			readLazily(bytes);
+			lazyNanos += System.nanoTime() - start;
+		}
+		System.out.println(String.format("Line reader:    %10.0f lines/s", numLines/(linesNanos/1e9/numRuns)));
+		System.out.println(String.format("Tokenizer:      %10.0f lines/s (%.1fx)", numLines/(tokenizerNanos/1e9/numRuns), (double)linesNanos/Math.max(1, tokenizerNanos)));
+		System.out.println(String.format("Parallel:       %10.0f lines/s (%.1fx)", numLines/(parallelNanos/1e9/numRuns), (double)linesNanos/Math.max(1, parallelNanos)));
+		System.out.println(String.format("Lazy (open):    %10.0f lines/s (%.1fx)", numLines/(lazyNanos/1e9/numRuns), (double)linesNanos/Math.max(1, lazyNanos)));
+	}
+	
+	private static Mappings readWithTokenizer(String text, boolean parallel)
+	throws Exception {
+		return new MappingsReader().read(new StringReader(text), parallel);
+	}
+	
+	private static Mappings readLazily(byte[] bytes)
+	throws Exception {
+		return new LazyMappingsReader().read(new ByteArrayInputStream(bytes));
+	}
+	
+	private static String toText(Mappings mappings)
+	throws IOException {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, mappings);
+		return out.toString();
+	}
+	
+	private static Mappings readWithLines(String text)
+	throws Exception {
+		// this is how MappingsReader used to read mappings, with a trim, a regex split, and a string array for every line
+		BufferedReader in = new BufferedReader(new StringReader(text));
+		Mappings mappings = new Mappings();
+		Deque<Object> mappingStack = Queues.newArrayDeque();
+		String line = null;
+		while ( (line = in.readLine()) != null) {
+			int commentPos = line.indexOf('#');
+			if (commentPos >= 0) {
+				line = line.substring(0, commentPos);
+			}
+			if (line.trim().length() <= 0) {
+				continue;
+			}
+			int indent = 0;
+			for (int i = 0; i < line.length(); i++) {
+				if (line.charAt(i) != '\t') {
+					break;
+				}
+				indent++;
+			}
+			while (indent < mappingStack.size()) {
+				mappingStack.pop();
+			}
+			String[] parts = line.trim().split("\\s");
+			String token = parts[0];
+			if (token.equalsIgnoreCase("CLASS")) {
+				ClassMapping classMapping = parts.length == 2 ? new ClassMapping(parts[1]) : new ClassMapping(parts[1], parts[2]);
+				if (indent <= 0) {
+					mappings.addClassMapping(classMapping);
+				} else {
+					((ClassMapping)mappingStack.peek()).addInnerClassMapping(classMapping);
+				}
+				mappingStack.push(classMapping);
+			} else if (token.equalsIgnoreCase("FIELD")) {
+				((ClassMapping)mappingStack.peek()).addFieldMapping(new FieldMapping(parts[1], Type.get(parts[3]), parts[2]));
+			} else if (token.equalsIgnoreCase("METHOD")) {
+				MethodMapping methodMapping = parts.length == 3
+					? new MethodMapping(parts[1], Signature.get(parts[2]))
+					: new MethodMapping(parts[1], Signature.get(parts[3]), parts[2]);
+				((ClassMapping)mappingStack.peek()).addMethodMapping(methodMapping);
+				mappingStack.push(methodMapping);
+			} else if (token.equalsIgnoreCase("ARG")) {
+				((MethodMapping)mappingStack.peek()).addArgumentMapping(new ArgumentMapping(Integer.parseInt(parts[1]), parts[2]));
+			}
+		}
+		return mappings;
+	}
+}
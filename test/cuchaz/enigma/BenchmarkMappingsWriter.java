@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.io.Files;
+
+import cuchaz.enigma.mapping.ArgumentMapping;
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.FieldMapping;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.MethodMapping;
+
+public class BenchmarkMappingsWriter {
+	
+	// not a unit test, run it by hand:
+	// java -cp <classpath> cuchaz.enigma.BenchmarkMappingsWriter [<mappings file> [<num runs>]]
+	// without a mappings file, this makes up a big set of mappings
+	
+	public static void main(String[] args)
+	throws Exception {
+		
+		Mappings mappings;
+		if (args.length > 0) {
+			mappings = new MappingsReader().read(new FileReader(args[0]));
+		} else {
+			mappings = BenchmarkMappingsFormat.makeMappings(5000, 20, 20);
+		}
+		int numRuns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		System.out.println("Benchmarking " + mappings.classes().size() + " classes");
+		
+		// make sure the writers agree before timing them
+		if (!writeWithFormat(mappings).equals(writeWithBuffer(mappings))) {
+			throw new Error("Writers disagree!");
+		}
+		
+		// warm up the JIT
+		for (int i = 0; i < 3; i++) {
+			writeWithFormat(mappings);
+			writeWithBuffer(mappings);
+		}
+		
+		long formatNanos = 0;
+		long bufferNanos = 0;
+		for (int i = 0; i < numRuns; i++) {
+			long start = System.nanoTime();
+			writeWithFormat(mappings);
+			formatNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			writeWithBuffer(mappings);
+			bufferNanos += System.nanoTime() - start;
+		}
+		System.out.println(String.format("Format writer:  %8.1f ms", formatNanos/1000000.0/numRuns));
+		System.out.println(String.format("Buffer writer:  %8.1f ms (%.1fx)", bufferNanos/1000000.0/numRuns, (double)formatNanos/Math.max(1, bufferNanos)));
+		
+		// save a directory of mappings, then save it again after renaming one class
+		File dir = Files.createTempDir();
+		try {
+			long start = System.nanoTime();
+			new MappingsWriter().writeDirectory(dir, mappings, true);
+			long allNanos = System.nanoTime() - start;
+			ClassMapping classMapping = mappings.classes().iterator().next();
+			mappings.setClassDeobfName(classMapping, classMapping.getDeobfName() + "Renamed");
+			start = System.nanoTime();
+			new MappingsWriter().writeDirectory(dir, mappings, true);
+			long dirtyNanos = System.nanoTime() - start;
+			System.out.println(String.format("Save directory: %8.1f ms", allNanos/1000000.0));
+			System.out.println(String.format("Save one class: %8.1f ms (%.1fx)", dirtyNanos/1000000.0, (double)allNanos/Math.max(1, dirtyNanos)));
+		} finally {
+			for (File file : Files.fileTreeTraverser().postOrderTraversal(dir)) {
+				file.delete();
+			}
+		}
+	}
+	
+	private static String writeWithBuffer(Mappings mappings)
+	throws IOException {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, mappings);
+		return out.toString();
+	}
+	
+	private static String writeWithFormat(Mappings mappings) {
+		// this is how MappingsWriter used to write mappings, with a format call and a new indent string for every line
+		StringWriter buf = new StringWriter();
+		PrintWriter out = new PrintWriter(buf);
+		for (ClassMapping classMapping : sorted(mappings.classes())) {
+			write(out, classMapping, 0);
+		}
+		out.flush();
+		return buf.toString();
+	}
+	
+	private static void write(PrintWriter out, ClassMapping classMapping, int depth) {
+		if (classMapping.getDeobfName() == null) {
+			out.format("%sCLASS %s\n", getIndent(depth), classMapping.getObfFullName());
+		} else {
+			out.format("%sCLASS %s %s\n", getIndent(depth), classMapping.getObfFullName(), classMapping.getDeobfName());
+		}
+		for (ClassMapping innerClassMapping : sorted(classMapping.innerClasses())) {
+			write(out, innerClassMapping, depth + 1);
+		}
+		for (FieldMapping fieldMapping : sorted(classMapping.fields())) {
+			out.format("%sFIELD %s %s %s\n", getIndent(depth + 1), fieldMapping.getObfName(), fieldMapping.getDeobfName(), fieldMapping.getObfType().toString());
+		}
+		for (MethodMapping methodMapping : sorted(classMapping.methods())) {
+			if (methodMapping.getDeobfName() == null) {
+				out.format("%sMETHOD %s %s\n", getIndent(depth + 1), methodMapping.getObfName(), methodMapping.getObfSignature());
+			} else {
+				out.format("%sMETHOD %s %s %s\n", getIndent(depth + 1), methodMapping.getObfName(), methodMapping.getDeobfName(), methodMapping.getObfSignature());
+			}
+			for (ArgumentMapping argumentMapping : sorted(methodMapping.arguments())) {
+				out.format("%sARG %d %s\n", getIndent(depth + 2), argumentMapping.getIndex(), argumentMapping.getName());
+			}
+		}
+	}
+	
+	private static <T extends Comparable<T>> List<T> sorted(Iterable<T> classes) {
+		List<T> out = new ArrayList<T>();
+		for (T t : classes) {
+			out.add(t);
+		}
+		Collections.sort(out);
+		return out;
+	}
+	
+	private static String getIndent(int depth) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			buf.append("\t");
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import com.google.common.collect.Sets;
+
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.mapping.BehaviorEntry;
+import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.FieldEntry;
+import cuchaz.enigma.mapping.MethodEntry;
+
+public class JarIndexChecker {
+	
+	public static void assertSameIndex(JarIndex expected, JarIndex observed) {
+		assertThat(observed.getObfClassEntries(), is(expected.getObfClassEntries()));
+		assertThat(Sets.newHashSet(observed.getObfBehaviorEntries()), is(Sets.newHashSet(expected.getObfBehaviorEntries())));
+		assertThat(Sets.newHashSet(observed.getObfFieldEntries()), is(Sets.newHashSet(expected.getObfFieldEntries())));
+		for (ClassEntry classEntry : expected.getObfClassEntries()) {
+			assertThat(observed.getOuterClass(classEntry), is(expected.getOuterClass(classEntry)));
+			assertThat(Sets.newHashSet(observed.getInnerClasses(classEntry)), is(Sets.newHashSet(expected.getInnerClasses(classEntry))));
+			assertThat(observed.getAnonymousClassCaller(classEntry), is(expected.getAnonymousClassCaller(classEntry)));
+			assertThat(observed.getTranslationIndex().getSuperclass(classEntry), is(expected.getTranslationIndex().getSuperclass(classEntry)));
+			assertThat(Sets.newHashSet(observed.getTranslationIndex().getInterfaces(classEntry)), is(Sets.newHashSet(expected.getTranslationIndex().getInterfaces(classEntry))));
+		}
+		for (BehaviorEntry behaviorEntry : expected.getObfBehaviorEntries()) {
+			assertThat(observed.getAccess(behaviorEntry), is(expected.getAccess(behaviorEntry)));
+			assertThat(Sets.newHashSet(observed.getBehaviorReferences(behaviorEntry)), is(Sets.newHashSet(expected.getBehaviorReferences(behaviorEntry))));
+			if (behaviorEntry instanceof MethodEntry) {
+				MethodEntry methodEntry = (MethodEntry)behaviorEntry;
+				assertThat(observed.getBridgedMethod(methodEntry), is(expected.getBridgedMethod(methodEntry)));
+			}
+		}
+		for (FieldEntry fieldEntry : expected.getObfFieldEntries()) {
+			assertThat(observed.getAccess(fieldEntry), is(expected.getAccess(fieldEntry)));
+			assertThat(Sets.newHashSet(observed.getFieldReferences(fieldEntry)), is(Sets.newHashSet(expected.getFieldReferences(fieldEntry))));
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static cuchaz.enigma.TestEntryFactory.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import cuchaz.enigma.mapping.ClassEntry;
+
+public class TestClassEntry {
+	
+	@Test
+	public void outerClass() {
+		ClassEntry classEntry = newClass("none/a");
+		assertThat(classEntry.isInnerClass(), is(false));
+		assertThat(classEntry.getClassChainNames(), contains("none/a"));
+		assertThat(classEntry.getClassChain(), contains(classEntry));
+		assertThat(classEntry.getOutermostClassName(), is("none/a"));
+		assertThat(classEntry.getOutermostClassEntry(), is(sameInstance(classEntry)));
+	}
+	
+	@Test
+	public void innerClasses() {
+		ClassEntry classEntry = newClass("none/a$b$c");
+		assertThat(classEntry.getClassChainNames(), contains("none/a", "b", "c"));
+		assertThat(classEntry.getClassChain(), contains(newClass("none/a"), newClass("none/a$b"), newClass("none/a$b$c")));
+		assertThat(classEntry.getOutermostClassName(), is("none/a"));
+		assertThat(classEntry.getOutermostClassEntry(), is(newClass("none/a")));
+		assertThat(classEntry.getOuterClassName(), is("none/a$b"));
+		assertThat(classEntry.getOuterClassEntry(), is(newClass("none/a$b")));
+		assertThat(classEntry.getInnermostClassName(), is("c"));
+		
+		// the pieces are computed once, and the outer classes share them
+		List<ClassEntry> classChain = classEntry.getClassChain();
+		assertThat(classEntry.getClassChain(), is(sameInstance(classChain)));
+		assertThat(classEntry.getClassChainNames(), is(sameInstance(classEntry.getClassChainNames())));
+		assertThat(classChain.get(2), is(sameInstance(classEntry)));
+		assertThat(classEntry.getOuterClassEntry(), is(sameInstance(classChain.get(1))));
+		assertThat(classChain.get(1).getClassChain().get(0), is(sameInstance(classChain.get(0))));
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutableChain() {
+		newClass("none/a$b").getClassChain().remove(0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void innerClassWithPackage() {
+		newClass("none/a$none/b");
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import javassist.CtBehavior;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.bytecode.Descriptor;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import cuchaz.enigma.analysis.JarClassRepository;
+import cuchaz.enigma.bytecode.ClassHeader;
+import cuchaz.enigma.bytecode.ClassRenamer;
+import cuchaz.enigma.mapping.ClassEntry;
+
+public class TestClassHeader {
+	
+	@Test
+	public void translation()
+	throws Exception {
+		checkJar("build/test-obf/translation.jar");
+	}
+	
+	@Test
+	public void innerClasses()
+	throws Exception {
+		checkJar("build/test-obf/innerClasses.jar");
+	}
+	
+	@Test
+	public void inheritanceTree()
+	throws Exception {
+		checkJar("build/test-obf/inheritanceTree.jar");
+	}
+	
+	private void checkJar(String path)
+	throws Exception {
+		JarClassRepository repository = new JarClassRepository(new JarFile(path));
+		for (ClassEntry classEntry : repository.getClassEntries()) {
+			
+			// the header should agree with javassist, including after moving out of the default package
+			ClassHeader header = repository.getClassHeader(classEntry);
+			CtClass c = repository.getClass(classEntry);
+			checkHeader(header, c);
+			
+			// javassist caches the superclass name, so rename a fresh copy of the class
+			c = repository.getClass(classEntry);
+			ClassRenamer.moveAllClassesOutOfDefaultPackage(header, Constants.NonePackage);
+			ClassRenamer.moveAllClassesOutOfDefaultPackage(c, Constants.NonePackage);
+			checkHeader(header, c);
+		}
+	}
+	
+	private void checkHeader(ClassHeader header, CtClass c) {
+		assertThat(header.getName(), is(Descriptor.toJvmName(c.getName())));
+		assertThat(header.getSuperName(), is(Descriptor.toJvmName(c.getClassFile().getSuperclass())));
+		List<String> interfaces = Lists.newArrayList();
+		for (String interfaceName : c.getClassFile().getInterfaces()) {
+			interfaces.add(Descriptor.toJvmName(interfaceName));
+		}
+		assertThat(header.getInterfaces(), is(interfaces));
+		assertThat(header.getAccess(), is(c.getClassFile().getAccessFlags()));
+		
+		List<String> fields = Lists.newArrayList();
+		for (CtField field : c.getDeclaredFields()) {
+			fields.add(field.getFieldInfo().getAccessFlags() + " " + field.getName() + field.getFieldInfo().getDescriptor());
+		}
+		assertThat(describe(header.getFields()), is(fields));
+		
+		List<String> behaviors = Lists.newArrayList();
+		for (CtBehavior behavior : c.getDeclaredBehaviors()) {
+			behaviors.add(behavior.getMethodInfo().getAccessFlags() + " " + behavior.getMethodInfo().getName() + behavior.getMethodInfo().getDescriptor());
+		}
+		// javassist lists the class initializer separately
+		assertThat(sorted(describe(header.getMethods())), is(sorted(behaviors)));
+	}
+	
+	private List<String> describe(List<ClassHeader.Member> members) {
+		List<String> out = Lists.newArrayList();
+		for (ClassHeader.Member member : members) {
+			out.add(member.getAccess() + " " + member.toString());
+		}
+		return out;
+	}
+	
+	private List<String> sorted(List<String> list) {
+		String[] array = list.toArray(new String[list.size()]);
+		Arrays.sort(array);
+		return Arrays.asList(array);
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.FieldMapping;
+import cuchaz.enigma.mapping.MethodMapping;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class TestClassMapping {
+	
+	private static final int NumMembers = 500;
+	
+	@Test
+	public void fields() {
+		ClassMapping classMapping = new ClassMapping("none/a", "deobf/A");
+		for (int i=0; i<NumMembers; i++) {
+			classMapping.addFieldMapping(new FieldMapping("f" + i, getType(i), "field" + i));
+		}
+		checkFields(classMapping, NumMembers);
+		
+		// same names with other types are other fields
+		assertThat(classMapping.getFieldByObf("f1", new Type("J")), is(nullValue()));
+		assertThat(classMapping.getFieldByDeobf("field1", new Type("J")), is(nullValue()));
+		
+		// remove every other field, then rename the rest
+		for (int i=0; i<NumMembers; i+=2) {
+			classMapping.removeFieldMapping(classMapping.getFieldByObf("f" + i, getType(i)));
+		}
+		for (int i=1; i<NumMembers; i+=2) {
+			assertThat(classMapping.getFieldByObf("f" + (i - 1), getType(i - 1)), is(nullValue()));
+			classMapping.setFieldName("f" + i, getType(i), "renamed" + i);
+			assertThat(classMapping.getDeobfFieldName("f" + i, getType(i)), is("renamed" + i));
+			assertThat(classMapping.getObfFieldName("renamed" + i, getType(i)), is("f" + i));
+			assertThat(classMapping.getFieldByDeobf("field" + i, getType(i)), is(nullValue()));
+		}
+		assertThat(Lists.newArrayList(classMapping.fields()).size(), is(NumMembers/2));
+	}
+	
+	@Test
+	public void methods() {
+		ClassMapping classMapping = new ClassMapping("none/a", "deobf/A");
+		for (int i=0; i<NumMembers; i++) {
+			classMapping.addMethodMapping(new MethodMapping("m" + i, getSignature(i), "method" + i));
+		}
+		for (int i=0; i<NumMembers; i++) {
+			assertThat(classMapping.containsObfMethod("m" + i, getSignature(i)), is(true));
+			assertThat(classMapping.getMethodByObf("m" + i, getSignature(i)).getDeobfName(), is("method" + i));
+			assertThat(classMapping.getMethodByDeobf("method" + i, getSignature(i)).getObfName(), is("m" + i));
+			assertThat(classMapping.containsObfMethod("m" + i, new Signature("(Z)Z")), is(false));
+		}
+		
+		// unmap half the methods, and remove the other half
+		for (int i=0; i<NumMembers; i++) {
+			MethodMapping methodMapping = classMapping.getMethodByObf("m" + i, getSignature(i));
+			if (i % 2 == 0) {
+				classMapping.setMethodName("m" + i, getSignature(i), null);
+				assertThat(classMapping.getMethodByDeobf("method" + i, getSignature(i)), is(nullValue()));
+			}
+			classMapping.removeMethodMapping(methodMapping);
+			assertThat(classMapping.getMethodByObf("m" + i, getSignature(i)), is(nullValue()));
+		}
+		assertThat(classMapping.methods().iterator().hasNext(), is(false));
+	}
+	
+	@Test
+	public void renameObfClass() {
+		ClassMapping classMapping = new ClassMapping("none/a", "deobf/A");
+		for (int i=0; i<NumMembers; i++) {
+			classMapping.addFieldMapping(new FieldMapping("f" + i, new Type("Lnone/b;"), "field" + i));
+			classMapping.addMethodMapping(new MethodMapping("m" + i, new Signature("(Lnone/b;)V"), "method" + i));
+		}
+		classMapping.renameObfClass("none/b", "none/c");
+		for (int i=0; i<NumMembers; i++) {
+			assertThat(classMapping.getFieldByObf("f" + i, new Type("Lnone/b;")), is(nullValue()));
+			assertThat(classMapping.getFieldByObf("f" + i, new Type("Lnone/c;")).getDeobfName(), is("field" + i));
+			assertThat(classMapping.getMethodByObf("m" + i, new Signature("(Lnone/b;)V")), is(nullValue()));
+			assertThat(classMapping.getMethodByObf("m" + i, new Signature("(Lnone/c;)V")).getDeobfName(), is("method" + i));
+		}
+	}
+	
+	@Test
+	public void serialization()
+	throws Exception {
+		ClassMapping classMapping = new ClassMapping("none/a", "deobf/A");
+		for (int i=0; i<NumMembers; i++) {
+			classMapping.addFieldMapping(new FieldMapping("f" + i, getType(i), "field" + i));
+		}
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+			out.writeObject(classMapping);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+			checkFields((ClassMapping)in.readObject(), NumMembers);
+		}
+	}
+	
+	private void checkFields(ClassMapping classMapping, int numFields) {
+		List<FieldMapping> fieldMappings = Lists.newArrayList(classMapping.fields());
+		assertThat(fieldMappings.size(), is(numFields));
+		for (int i=0; i<numFields; i++) {
+			assertThat(classMapping.containsObfField("f" + i, getType(i)), is(true));
+			assertThat(classMapping.getDeobfFieldName("f" + i, getType(i)), is("field" + i));
+			assertThat(classMapping.getObfFieldName("field" + i, getType(i)), is("f" + i));
+		}
+	}
+	
+	private Type getType(int i) {
+		switch (i % 3) {
+			case 0: return new Type("I");
+			case 1: return new Type("Ljava/lang/String;");
+			default: return new Type("[Lnone/b;");
+		}
+	}
+	
+	private Signature getSignature(int i) {
+		switch (i % 3) {
+			case 0: return new Signature("()V");
+			case 1: return new Signature("(ILjava/lang/String;)V");
+			default: return new Signature("([Lnone/b;)Lnone/c;");
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static cuchaz.enigma.TestEntryFactory.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.jar.JarFile;
+
+import org.junit.Test;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.mapping.BehaviorEntry;
+import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.EntryInterner;
+import cuchaz.enigma.mapping.FieldEntry;
+import cuchaz.enigma.mapping.MethodEntry;
+
+public class TestEntryInterner {
+	
+	@Test
+	public void sharedInstances() {
+		EntryInterner interner = new EntryInterner();
+		MethodEntry a = interner.intern(newMethod("none/a", "a", "(I)V"));
+		MethodEntry b = interner.intern(newMethod("none/a", "a", "(I)V"));
+		assertThat(a, is(sameInstance(b)));
+		assertThat(a.getClassEntry(), is(sameInstance(interner.intern(newClass("none/a")))));
+		
+		// the parts are shared between different entries too
+		FieldEntry field = interner.intern(newField("none/a", "b", "I"));
+		assertThat(field.getClassEntry(), is(sameInstance(a.getClassEntry())));
+		assertThat(interner.intern((BehaviorEntry)newConstructor("none/a", "(I)V")).getSignature(), is(sameInstance(a.getSignature())));
+	}
+	
+	@Test
+	public void disabled() {
+		EntryInterner interner = new EntryInterner(false);
+		MethodEntry a = newMethod("none/a", "a", "(I)V");
+		assertThat(interner.intern(a), is(sameInstance(a)));
+		assertThat(interner.intern(newMethod("none/a", "a", "(I)V")), is(not(sameInstance(a))));
+	}
+	
+	@Test
+	public void index()
+	throws Exception {
+		
+		// every reference to the same entry should point to one instance
+		JarIndex index = new JarIndex();
+		index.indexJar(new JarFile("build/test-obf/inheritanceTree.jar"), false);
+		for (BehaviorEntry behaviorEntry : index.getObfBehaviorEntries()) {
+			for (EntryReference<BehaviorEntry,BehaviorEntry> reference : index.getBehaviorReferences(behaviorEntry)) {
+				assertThat(reference.entry, is(sameInstance(behaviorEntry)));
+			}
+		}
+		for (FieldEntry fieldEntry : index.getObfFieldEntries()) {
+			for (EntryReference<FieldEntry,BehaviorEntry> reference : index.getFieldReferences(fieldEntry)) {
+				assertThat(reference.entry, is(sameInstance(fieldEntry)));
+			}
+		}
+		for (ClassEntry classEntry : index.getObfClassEntries()) {
+			for (BehaviorEntry behaviorEntry : index.getObfBehaviorEntries(classEntry)) {
+				assertThat(behaviorEntry.getClassEntry(), is(sameInstance(classEntry)));
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import java.util.jar.JarFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+import cuchaz.enigma.analysis.IndexInputStream;
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.analysis.JarIndexCache;
+
+public class TestJarIndexCache {
+	
+	@Rule
+	public TemporaryFolder m_tempFolder = new TemporaryFolder();
+	
+	@Test
+	public void writeThenRead()
+	throws Exception {
+		JarFile jar = new JarFile("build/test-obf/innerClasses.jar");
+		JarIndexCache cache = new JarIndexCache(m_tempFolder.getRoot());
+		
+		// the first open indexes the jar and writes the cache
+		JarIndex coldIndex = cache.getJarIndex(jar, true, false);
+		File cacheFile = cache.getCacheFile(new File(jar.getName()));
+		assertThat(cacheFile.exists(), is(true));
+		
+		// the second open reads it back
+		JarIndex warmIndex = cache.getJarIndex(jar, true, false);
+		assertThat(warmIndex, is(not(sameInstance(coldIndex))));
+		
+		JarIndex index = new JarIndex();
+		index.indexJar(jar, true);
+		JarIndexChecker.assertSameIndex(index, coldIndex);
+		JarIndexChecker.assertSameIndex(index, warmIndex);
+	}
+	
+	@Test
+	public void corruptCache()
+	throws Exception {
+		JarFile jar = new JarFile("build/test-obf/loneClass.jar");
+		JarIndexCache cache = new JarIndexCache(m_tempFolder.getRoot());
+		File cacheFile = cache.getCacheFile(new File(jar.getName()));
+		Files.write(new byte[] { 1, 2, 3 }, cacheFile);
+		
+		// a bad cache file should just get re-indexed and replaced
+		JarIndex index = new JarIndex();
+		index.indexJar(jar, true);
+		JarIndexChecker.assertSameIndex(index, cache.getJarIndex(jar, true, false));
+		JarIndexChecker.assertSameIndex(index, cache.getJarIndex(jar, true, false));
+	}
+	
+	@Test
+	public void otherCode()
+	throws Exception {
+		JarFile jar = new JarFile("build/test-obf/loneClass.jar");
+		File cacheFile = new JarIndexCache(m_tempFolder.getRoot()).getCacheFile(new File(jar.getName()));
+		
+		// a cache written by some other build of the code is ignored, and replaced
+		new JarIndexCache(m_tempFolder.getRoot(), "someOtherBuild").getJarIndex(jar, true, false);
+		assertThat(readCodeHash(cacheFile), is("someOtherBuild"));
+		JarIndex index = new JarIndex();
+		index.indexJar(jar, true);
+		JarIndexChecker.assertSameIndex(index, new JarIndexCache(m_tempFolder.getRoot()).getJarIndex(jar, true, false));
+		assertThat(readCodeHash(cacheFile), is(JarIndexCache.getCodeHash()));
+		
+		// and no temp files are left behind
+		assertThat(m_tempFolder.getRoot().list(), is(new String[] { cacheFile.getName() }));
+	}
+	
+	@Test(expected = InvalidClassException.class)
+	public void onlyIndexClasses()
+	throws Exception {
+		// a set of entries is fine, but not a set of anything else
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+			out.writeObject(Sets.newHashSet(TestEntryFactory.newClass("none/a")));
+			out.writeObject(Sets.newHashSet(new Date()));
+		}
+		try (IndexInputStream in = new IndexInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+			assertThat(in.readObject(), is(not(nullValue())));
+			in.readObject();
+		}
+	}
+	
+	private String readCodeHash(File cacheFile)
+	throws Exception {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(cacheFile))) {
+			in.readInt();
+			in.readInt();
+			return in.readUTF();
+		}
+	}
+}
@@ -23,13 +23,18 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Collection;
 import java.util.Set;
 import java.util.jar.JarFile;
 
 import org.junit.Test;
 
+import com.google.common.collect.Sets;
+
 import cuchaz.enigma.analysis.Access;
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.JarIndex;
@@ -97,6 +102,61 @@ public class TestJarIndexInheritanceTree {
 		assertThat(index.getSubclass(m_subClassB), is(empty()));
 	}
 	
+	@Test
+	public void subclassesRecursively()
+	throws Exception {
+		
+		TranslationIndex index = m_index.getTranslationIndex();
+		assertThat(getSubclassesRecursively(index, m_baseClass), containsInAnyOrder(
+			m_subClassA,
+			m_subClassAA,
+			m_subClassB
+		));
+		assertThat(getSubclassesRecursively(index, m_subClassA), contains(m_subClassAA));
+		assertThat(getSubclassesRecursively(index, m_subClassAA), is(empty()));
+		
+		// the subclasses should survive a round trip through the cache format
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.write(out);
+		TranslationIndex readIndex = new TranslationIndex();
+		readIndex.read(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(readIndex.getSubclass(m_baseClass), containsInAnyOrder(m_subClassA, m_subClassB));
+		assertThat(getSubclassesRecursively(readIndex, m_baseClass), containsInAnyOrder(
+			m_subClassA,
+			m_subClassAA,
+			m_subClassB
+		));
+		
+		// and follow removed classes
+		readIndex.removeClass(m_subClassA);
+		assertThat(readIndex.getSubclass(m_baseClass), contains(m_subClassB));
+		assertThat(getSubclassesRecursively(readIndex, m_baseClass), contains(m_subClassB));
+	}
+	
+	@Test
+	public void resolutionCache() {
+		
+		TranslationIndex index = m_index.getTranslationIndex();
+		FieldEntry inheritedField = newField(m_subClassAA, "a", "Ljava/lang/String;");
+		long numHits = index.getNumResolutionHits();
+		long numMisses = index.getNumResolutionMisses();
+		assertThat(index.resolveEntryClass(inheritedField), is(m_baseClass));
+		assertThat(index.resolveEntryClass(inheritedField), is(m_baseClass));
+		assertThat(index.getNumResolutionMisses(), is(numMisses + 1));
+		assertThat(index.getNumResolutionHits(), is(numHits + 1));
+		
+		// changing the index should forget the old resolution
+		index.removeClass(m_baseClass);
+		assertThat(index.resolveEntryClass(inheritedField), is(nullValue()));
+		assertThat(index.getNumResolutionMisses(), is(numMisses + 2));
+	}
+	
+	private Set<ClassEntry> getSubclassesRecursively(TranslationIndex index, ClassEntry classEntry) {
+		Set<ClassEntry> out = Sets.newHashSet();
+		index.getSubclassesRecursively(out, classEntry);
+		return out;
+	}
+	
 	@Test
 	public void access() {
 		assertThat(m_index.getAccess(m_nameField), is(Access.Private));
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.jar.JarFile;
+
+import org.junit.Test;
+
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.mapping.BehaviorEntry;
+import cuchaz.enigma.mapping.EntryInterner;
+import cuchaz.enigma.mapping.FieldEntry;
+
+public class TestJarIndexParallel {
+	
+	@Test
+	public void innerClasses()
+	throws Exception {
+		checkSameIndex("build/test-obf/innerClasses.jar");
+	}
+	
+	@Test
+	public void constructors()
+	throws Exception {
+		checkSameIndex("build/test-obf/constructors.jar");
+	}
+	
+	@Test
+	public void inheritanceTree()
+	throws Exception {
+		checkSameIndex("build/test-obf/inheritanceTree.jar");
+	}
+	
+	@Test
+	public void translation()
+	throws Exception {
+		checkSameIndex("build/test-obf/translation.jar");
+	}
+	
+	@Test
+	public void referencesShareInternedEntries()
+	throws Exception {
+		
+		// the ranges index into their own collections, but their entries should still come from the index's interner
+		// no inner classes, since renaming inner classes makes new entries
+		EntryInterner interner = new EntryInterner();
+		JarIndex index = new JarIndex(interner);
+		index.indexJar(new JarFile("build/test-obf/translation.jar"), false, true);
+		int numReferences = 0;
+		for (BehaviorEntry behaviorEntry : index.getObfBehaviorEntries()) {
+			for (FieldEntry fieldEntry : index.getReferencedFields(behaviorEntry)) {
+				assertThat(interner.intern(fieldEntry), is(sameInstance(fieldEntry)));
+				numReferences++;
+			}
+			for (BehaviorEntry calledEntry : index.getReferencedBehaviors(behaviorEntry)) {
+				assertThat(interner.intern(calledEntry), is(sameInstance(calledEntry)));
+				numReferences++;
+			}
+		}
+		assertThat(numReferences, is(greaterThan(0)));
+	}
+	
+	private void checkSameIndex(String path)
+	throws Exception {
+		JarFile jar = new JarFile(path);
+		JarIndex sequentialIndex = new JarIndex();
+		sequentialIndex.indexJar(jar, true, false);
+		JarIndex parallelIndex = new JarIndex();
+		parallelIndex.indexJar(jar, true, true);
+		
+		JarIndexChecker.assertSameIndex(sequentialIndex, parallelIndex);
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.io.Files;
+
+import cuchaz.enigma.analysis.JarClassRepository;
+import cuchaz.enigma.analysis.JarIndex;
+import cuchaz.enigma.analysis.JarIndexCache;
+import cuchaz.enigma.bytecode.ClassPublifier;
+import cuchaz.enigma.mapping.ClassEntry;
+
+public class TestJarIndexUpdate {
+	
+	private interface ClassChanger {
+		CtClass change(CtClass c) throws Exception;
+	}
+	
+	private static final ClassChanger Publify = new ClassChanger() {
+		@Override
+		public CtClass change(CtClass c) {
+			return ClassPublifier.publify(c);
+		}
+	};
+	
+	private static final ClassChanger AddMembers = new ClassChanger() {
+		@Override
+		public CtClass change(CtClass c)
+		throws Exception {
+			if (c.isInterface()) {
+				c.addMethod(CtNewMethod.abstractMethod(CtClass.voidType, "addedMethod", new CtClass[0], new CtClass[0], c));
+			} else {
+				c.addMethod(CtNewMethod.make("public void addedMethod() {}", c));
+				c.addField(new CtField(CtClass.intType, "addedField", c));
+			}
+			return c;
+		}
+	};
+	
+	@Rule
+	public TemporaryFolder m_tempFolder = new TemporaryFolder();
+	
+	@Test
+	public void noChanges()
+	throws Exception {
+		File file = new File("build/test-obf/innerClasses.jar");
+		checkUpdate(file, file);
+	}
+	
+	@Test
+	public void innerClasses()
+	throws Exception {
+		checkEveryClass(new File("build/test-obf/innerClasses.jar"));
+	}
+	
+	@Test
+	public void inheritanceTree()
+	throws Exception {
+		checkEveryClass(new File("build/test-obf/inheritanceTree.jar"));
+	}
+	
+	@Test
+	public void constructors()
+	throws Exception {
+		checkEveryClass(new File("build/test-obf/constructors.jar"));
+	}
+	
+	@Test
+	public void staleCache()
+	throws Exception {
+		
+		// cache the index for the old build
+		File file = m_tempFolder.newFile("artifact.jar");
+		File newFile = new File("build/test-obf/innerClasses.jar");
+		File oldFile = writeJar(newFile, new JarClassRepository(new JarFile(newFile)).getClassEntries().get(0), AddMembers);
+		Files.copy(oldFile, file);
+		JarIndexCache cache = new JarIndexCache(m_tempFolder.newFolder("cache"));
+		cache.getJarIndex(new JarFile(file), true, false);
+		
+		// then replace the jar with the new build, the cache should patch the old index
+		// JarFile caches zip directories by path, so write a new file instead of overwriting the old one
+		file.delete();
+		Files.copy(newFile, file);
+		JarIndex index = cache.getJarIndex(new JarFile(file), true, false);
+		JarIndex expected = new JarIndex();
+		expected.indexJar(new JarFile(newFile), true);
+		JarIndexChecker.assertSameIndex(expected, index);
+		
+		// and the patched index is cached for the new build
+		assertThat(cache.getJarIndex(new JarFile(file), true, false), is(not(nullValue())));
+	}
+	
+	private void checkEveryClass(File file)
+	throws Exception {
+		for (ClassEntry classEntry : new JarClassRepository(new JarFile(file)).getClassEntries()) {
+			
+			// removed and added classes
+			File fileWithoutClass = writeJar(file, classEntry, null);
+			checkUpdate(file, fileWithoutClass);
+			checkUpdate(fileWithoutClass, file);
+			
+			// changed classes, with and without changing the members
+			File fileWithPublicClass = writeJar(file, classEntry, Publify);
+			checkUpdate(file, fileWithPublicClass);
+			File fileWithMoreMembers = writeJar(file, classEntry, AddMembers);
+			checkUpdate(file, fileWithMoreMembers);
+			checkUpdate(fileWithMoreMembers, file);
+		}
+	}
+	
+	private void checkUpdate(File oldFile, File newFile)
+	throws Exception {
+		JarIndex index = new JarIndex();
+		index.indexJar(new JarFile(oldFile), true);
+		index.updateJar(new JarFile(newFile), false);
+		
+		JarIndex expected = new JarIndex();
+		expected.indexJar(new JarFile(newFile), true);
+		JarIndexChecker.assertSameIndex(expected, index);
+	}
+	
+	private File writeJar(File file, ClassEntry classEntry, ClassChanger changer)
+	throws Exception {
+		
+		// copy the jar, but drop or change one class
+		JarClassRepository repository = new JarClassRepository(new JarFile(file));
+		File outFile = m_tempFolder.newFile();
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(outFile))) {
+			for (ClassEntry otherClassEntry : repository.getClassEntries()) {
+				byte[] data;
+				if (otherClassEntry.equals(classEntry)) {
+					if (changer == null) {
+						continue;
+					}
+					data = changer.change(repository.getClass(otherClassEntry)).toBytecode();
+				} else {
+					data = repository.getClassBytes(otherClassEntry.getName());
+				}
+				out.putNextEntry(new JarEntry(otherClassEntry.getName() + ".class"));
+				out.write(data);
+				out.closeEntry();
+			}
+		}
+		return outFile;
+	}
+}
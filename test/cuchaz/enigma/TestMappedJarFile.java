@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+
+import cuchaz.enigma.analysis.JarClassRepository;
+import cuchaz.enigma.analysis.MappedJarFile;
+
+public class TestMappedJarFile {
+	
+	@Rule
+	public TemporaryFolder m_tempFolder = new TemporaryFolder();
+	
+	@Test
+	public void deflated()
+	throws Exception {
+		File file = new File("build/test-obf/translation.jar");
+		assertSameEntries(new JarFile(file), MappedJarFile.open(file));
+	}
+	
+	@Test
+	public void stored()
+	throws Exception {
+		
+		// copy a jar, but don't compress anything
+		JarFile jar = new JarFile("build/test-obf/innerClasses.jar");
+		File file = m_tempFolder.newFile("stored.jar");
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				byte[] data = ByteStreams.toByteArray(jar.getInputStream(entry));
+				CRC32 crc = new CRC32();
+				crc.update(data);
+				JarEntry storedEntry = new JarEntry(entry.getName());
+				storedEntry.setMethod(ZipEntry.STORED);
+				storedEntry.setSize(data.length);
+				storedEntry.setCrc(crc.getValue());
+				out.putNextEntry(storedEntry);
+				out.write(data);
+				out.closeEntry();
+			}
+		}
+		
+		MappedJarFile mappedJar = MappedJarFile.open(file);
+		assertSameEntries(new JarFile(file), mappedJar);
+		for (String name : mappedJar.getEntryNames()) {
+			assertThat(mappedJar.isStored(name), is(true));
+		}
+		
+		// the repository should hand out the same classes either way
+		JarClassRepository storedClasses = new JarClassRepository(new JarFile(file));
+		JarClassRepository deflatedClasses = new JarClassRepository(jar);
+		assertThat(storedClasses.getClassEntries(), is(deflatedClasses.getClassEntries()));
+		for (int i = 0; i < storedClasses.getClassEntries().size(); i++) {
+			String className = storedClasses.getClassEntries().get(i).getName();
+			assertThat(storedClasses.getClassBytes(className), is(deflatedClasses.getClassBytes(className)));
+			assertThat(storedClasses.getClass(className).getName(), is(deflatedClasses.getClass(className).getName()));
+		}
+	}
+	
+	@Test
+	public void close()
+	throws Exception {
+		File file = new File("build/test-obf/translation.jar");
+		MappedJarFile mappedJar = MappedJarFile.open(file);
+		String name = mappedJar.getEntryNames().get(0);
+		mappedJar.close();
+		assertThat(mappedJar.getSize(name), is(not(-1)));
+		try {
+			mappedJar.read(name, new byte[mappedJar.getSize(name)], 0);
+			throw new AssertionError("Read from a closed jar");
+		} catch (Error ex) {
+			assertThat(ex.getMessage(), containsString("closed"));
+		}
+		
+		// the repository goes back to the JarFile once its mapping is gone
+		JarClassRepository classes = new JarClassRepository(new JarFile(file));
+		String className = classes.getClassEntries().get(0).getName();
+		byte[] data = classes.getClassBytes(className);
+		classes.close();
+		assertThat(classes.getClassBytes(className), is(data));
+		assertThat(classes.getClass(className), is(not(nullValue())));
+	}
+	
+	@Test
+	public void notAZip()
+	throws Exception {
+		File file = m_tempFolder.newFile("junk.jar");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(new byte[] { 1, 2, 3, 4, 5 });
+		}
+		assertThat(MappedJarFile.open(file), is(nullValue()));
+	}
+	
+	private void assertSameEntries(JarFile jar, MappedJarFile mappedJar)
+	throws Exception {
+		assertThat(mappedJar, is(not(nullValue())));
+		
+		List<String> names = Lists.newArrayList();
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			names.add(entries.nextElement().getName());
+		}
+		assertThat(mappedJar.getEntryNames(), is(names));
+		
+		for (String name : names) {
+			byte[] expected;
+			try (InputStream in = jar.getInputStream(jar.getJarEntry(name))) {
+				expected = ByteStreams.toByteArray(in);
+			}
+			ByteBuffer buf = mappedJar.getEntry(name);
+			byte[] observed = new byte[buf.remaining()];
+			buf.get(observed);
+			assertThat(name, observed, is(expected));
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsBinaryReader;
+import cuchaz.enigma.mapping.MappingsBinaryWriter;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.MethodMapping;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class TestMappingsBinary {
+	
+	@Test
+	public void roundTrip()
+	throws Exception {
+		Mappings mappings = readTextMappings();
+		
+		// add some things the test mappings don't have
+		ClassMapping classMapping = mappings.getClassByObf("none/a");
+		classMapping.addMethodMapping(new MethodMapping("b", Signature.get("(ILjava/lang/String;)V")));
+		classMapping.setArgumentName("b", Signature.get("(ILjava/lang/String;)V"), 0, "index");
+		classMapping.setArgumentName("b", Signature.get("(ILjava/lang/String;)V"), 1, "name");
+		
+		Mappings readMappings = new MappingsBinaryReader().read(new ByteArrayInputStream(writeBinary(mappings)));
+		assertThat(toText(readMappings), is(toText(mappings)));
+		assertThat(readMappings.getClassByObf("none/g").getInnerClassByObfSimple("a").getInnerClassByObfSimple("a").getDeobfName(), is("A_InnerInnerClass"));
+		assertThat(readMappings.getClassByObf("none/a").getMethodByObf("b", Signature.get("(ILjava/lang/String;)V")).getDeobfArgumentName(1), is("name"));
+	}
+	
+	@Test
+	public void sameMappingsSameBytes()
+	throws Exception {
+		byte[] bytes = writeBinary(readTextMappings());
+		assertThat(Arrays.equals(writeBinary(readTextMappings()), bytes), is(true));
+		assertThat(Arrays.equals(writeBinary(new MappingsBinaryReader().read(new ByteArrayInputStream(bytes))), bytes), is(true));
+	}
+	
+	@Test
+	public void emptyMappings()
+	throws Exception {
+		Mappings mappings = new MappingsBinaryReader().read(new ByteArrayInputStream(writeBinary(new Mappings())));
+		assertThat(mappings.classes().size(), is(0));
+	}
+	
+	@Test(expected = IOException.class)
+	public void notBinary()
+	throws Exception {
+		new MappingsBinaryReader().read(new ByteArrayInputStream("CLASS none/a deobf/A\n".getBytes("UTF-8")));
+	}
+	
+	@Test
+	public void truncated()
+	throws Exception {
+		byte[] bytes = writeBinary(readTextMappings());
+		for (int length : Arrays.asList(0, 6, 12, bytes.length/2, bytes.length - 1)) {
+			try {
+				new MappingsBinaryReader().read(new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+				throw new AssertionError("Read truncated mappings!");
+			} catch (IOException ex) {
+				// good
+			}
+		}
+	}
+	
+	@Test
+	public void duplicates()
+	throws Exception {
+		
+		// two classes and two fields with different names, then make the names the same
+		Mappings mappings = new Mappings();
+		ClassMapping classMapping = new ClassMapping("none/classOne", "deobf/ClassOne");
+		classMapping.setFieldName("fieldOne", Type.get("I"), "deobfFieldOne");
+		classMapping.setFieldName("fieldTwo", Type.get("I"), "deobfFieldTwo");
+		mappings.addClassMapping(classMapping);
+		mappings.addClassMapping(new ClassMapping("none/classTwo", "deobf/ClassTwo"));
+		byte[] bytes = writeBinary(mappings);
+		for (String[] names : Arrays.asList(new String[] { "classTwo", "classOne" }, new String[] { "fieldTwo", "fieldOne" })) {
+			try {
+				new MappingsBinaryReader().read(new ByteArrayInputStream(replace(bytes, names[0], names[1])));
+				throw new AssertionError("Read duplicate " + names[1]);
+			} catch (IOException ex) {
+				assertThat(ex.getMessage(), containsString("Duplicate"));
+			}
+		}
+	}
+	
+	private byte[] replace(byte[] bytes, String oldString, String newString)
+	throws Exception {
+		String string = new String(bytes, "ISO-8859-1");
+		assertThat(string, containsString(oldString));
+		return string.replace(oldString, newString).getBytes("ISO-8859-1");
+	}
+	
+	private Mappings readTextMappings()
+	throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			return new MappingsReader().read(new InputStreamReader(in));
+		}
+	}
+	
+	private byte[] writeBinary(Mappings mappings)
+	throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new MappingsBinaryWriter().write(out, mappings);
+		return out.toByteArray();
+	}
+	
+	private String toText(Mappings mappings)
+	throws IOException {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, mappings);
+		return out.toString();
+	}
+}
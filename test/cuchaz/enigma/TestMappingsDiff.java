@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static cuchaz.enigma.TestEntryFactory.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.jar.JarFile;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cuchaz.enigma.mapping.ArgumentEntry;
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.Entry;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsChange;
+import cuchaz.enigma.mapping.MappingsDiff;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.TranslationDirection;
+import cuchaz.enigma.mapping.Type;
+
+public class TestMappingsDiff {
+	
+	private static Deobfuscator m_deobfuscator;
+	
+	@BeforeClass
+	public static void beforeClass()
+	throws Exception {
+		m_deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+	}
+	
+	@Test
+	public void sameMappings()
+	throws Exception {
+		Mappings mappings = readMappings();
+		assertThat(new MappingsDiff(mappings, readMappings()).isEmpty(), is(true));
+		assertThat(new MappingsDiff(mappings, mappings.getSnapshot()).isEmpty(), is(true));
+		assertThat(new MappingsDiff(new Mappings(), new Mappings()).isEmpty(), is(true));
+	}
+	
+	@Test
+	public void findsChanges()
+	throws Exception {
+		Mappings after = readMappings();
+		editMappings(after);
+		MappingsDiff diff = new MappingsDiff(readMappings(), after);
+		
+		assertChange(diff, newClass("none/a"), "deobf/A_Basic", "deobf/A_Renamed");
+		assertChange(diff, newField("none/a", "a", "I"), "f1", null);
+		assertChange(diff, newMethod("none/a", "a", "()V"), "m1", "m1Renamed");
+		assertChange(diff, new ArgumentEntry(newMethod("none/a", "a", "(I)V"), 0, ""), null, "index");
+		assertChange(diff, newClass("none/g$a"), "A_InnerClass", "A_Renamed");
+		assertChange(diff, newField("none/g$a$a", "a", "I"), "f3", "f3Renamed");
+		
+		// removing a class removes everything in it
+		assertChange(diff, newClass("none/b"), "deobf/B_BaseClass", null);
+		assertChange(diff, newField("none/b", "a", "I"), "f1", null);
+		assertChange(diff, newField("none/b", "a", "C"), "f2", null);
+		assertChange(diff, newMethod("none/b", "a", "()I"), "m1", null);
+		assertChange(diff, newMethod("none/b", "b", "()I"), "m2", null);
+		assertThat(diff.getChanges().size(), is(11));
+		
+		// and going backwards undoes it all
+		MappingsDiff backwards = new MappingsDiff(after, readMappings());
+		assertThat(backwards.getChanges().size(), is(11));
+		assertChange(backwards, newClass("none/b"), null, "deobf/B_BaseClass");
+		assertChange(backwards, new ArgumentEntry(newMethod("none/a", "a", "(I)V"), 0, ""), "index", null);
+	}
+	
+	@Test
+	public void applyToSameMappings()
+	throws Exception {
+		Mappings after = readMappings();
+		editMappings(after);
+		MappingsDiff diff = new MappingsDiff(readMappings(), after);
+		
+		Mappings mappings = readMappings();
+		m_deobfuscator.setMappings(mappings);
+		assertThat(m_deobfuscator.applyChanges(diff).isEmpty(), is(true));
+		assertThat(new MappingsDiff(mappings, after).getChanges(), is(empty()));
+		
+		// once is enough
+		assertThat(m_deobfuscator.applyChanges(diff).isEmpty(), is(true));
+		assertThat(new MappingsDiff(mappings, after).getChanges(), is(empty()));
+	}
+	
+	@Test
+	public void applyToOtherMappings()
+	throws Exception {
+		Mappings after = readMappings();
+		editMappings(after);
+		MappingsDiff diff = new MappingsDiff(readMappings(), after);
+		
+		// someone else renamed a different field, and the same method to something else
+		Mappings mappings = readMappings();
+		ClassMapping classMapping = mappings.getClassByObf("none/c");
+		classMapping.setFieldName("b", Type.get("C"), "f2Theirs");
+		mappings.getClassByObf("none/a").setMethodName("a", Signature.get("()V"), "m1Theirs");
+		
+		m_deobfuscator.setMappings(mappings);
+		List<MappingsChange> conflicts = m_deobfuscator.applyChanges(diff);
+		assertThat(conflicts.size(), is(1));
+		assertThat(conflicts.get(0).getObfEntry(), is((Entry)newMethod("none/a", "a", "()V")));
+		
+		// everything else went on, and their edits are still there
+		assertThat(mappings.getClassByObf("none/a").getDeobfName(), is("deobf/A_Renamed"));
+		assertThat(mappings.getClassByObf("none/a").getMethodByObf("a", Signature.get("()V")).getDeobfName(), is("m1Theirs"));
+		assertThat(mappings.getClassByObf("none/a").getMethodByObf("a", Signature.get("(I)V")).getDeobfArgumentName(0), is("index"));
+		assertThat(mappings.getClassByObf("none/g").getInnerClassByObfSimple("a").getDeobfName(), is("A_Renamed"));
+		assertThat(mappings.getClassByObf("none/b").getDeobfName(), is(nullValue()));
+		assertThat(classMapping.getDeobfFieldName("b", Type.get("C")), is("f2Theirs"));
+		assertThat(m_deobfuscator.getTranslator(TranslationDirection.Deobfuscating).translateEntry(newClass("none/a")), is(newClass("deobf/A_Renamed")));
+	}
+	
+	private void editMappings(Mappings mappings) {
+		ClassMapping classMapping = mappings.getClassByObf("none/a");
+		mappings.setClassDeobfName(classMapping, "deobf/A_Renamed");
+		classMapping.removeFieldMapping(classMapping.getFieldByObf("a", Type.get("I")));
+		classMapping.setMethodName("a", Signature.get("()V"), "m1Renamed");
+		classMapping.setArgumentName("a", Signature.get("(I)V"), 0, "index");
+		
+		ClassMapping outerClassMapping = mappings.getClassByObf("none/g");
+		outerClassMapping.setInnerClassName(newClass("none/g$a"), "A_Renamed");
+		outerClassMapping.getInnerClassByObfSimple("a").getInnerClassByObfSimple("a").setFieldName("a", Type.get("I"), "f3Renamed");
+		
+		mappings.removeClassMapping(mappings.getClassByObf("none/b"));
+	}
+	
+	private void assertChange(MappingsDiff diff, Entry obfEntry, String oldDeobfName, String newDeobfName) {
+		for (MappingsChange change : diff.getChanges()) {
+			if (change.getObfEntry().equals(obfEntry)) {
+				assertThat(change.getOldDeobfName(), is(oldDeobfName));
+				assertThat(change.getNewDeobfName(), is(newDeobfName));
+				return;
+			}
+		}
+		throw new AssertionError("No change for " + obfEntry);
+	}
+	
+	private Mappings readMappings()
+	throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			return new MappingsReader().read(new InputStreamReader(in));
+		}
+	}
+}
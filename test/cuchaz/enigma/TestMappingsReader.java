@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.io.CharStreams;
+
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.LazyMappingsReader;
+import cuchaz.enigma.mapping.MappingLoadException;
+import cuchaz.enigma.mapping.MappingParseException;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class TestMappingsReader {
+	
+	@Test
+	public void commentsAndWhitespace()
+	throws Exception {
+		Mappings mappings = read(
+			"# a comment\r\n"
+			+ "CLASS none/a deobf/A # another comment\r\n"
+			+ "\r\n"
+			+ "\tfield b  c  I\r\n"
+			+ "\t    \r\n"
+			+ "\tMETHOD d\tdeobfD ()V#no space\r\n"
+			+ "\t\tARG 0 arg0\r\n"
+			+ "\tCLASS none/a$b Inner"
+		);
+		ClassMapping classMapping = mappings.getClassByObf("none/a");
+		assertThat(classMapping.getDeobfName(), is("deobf/A"));
+		assertThat(classMapping.getDeobfFieldName("b", Type.get("I")), is("c"));
+		assertThat(classMapping.getMethodByObf("d", Signature.get("()V")).getDeobfName(), is("deobfD"));
+		assertThat(classMapping.getMethodByObf("d", Signature.get("()V")).getDeobfArgumentName(0), is("arg0"));
+		assertThat(classMapping.getInnerClassByObfSimple("b").getDeobfName(), is("Inner"));
+	}
+	
+	@Test
+	public void linesLongerThanTheBuffer()
+	throws Exception {
+		StringBuilder buf = new StringBuilder();
+		buf.append("CLASS none/a deobf/A\n");
+		buf.append("# ");
+		for (int i=0; i<100000; i++) {
+			buf.append('x');
+		}
+		buf.append('\n');
+		for (int i=0; i<10000; i++) {
+			buf.append("\tFIELD f" + i + " field" + i + " I\n");
+		}
+		ClassMapping classMapping = read(buf.toString()).getClassByObf("none/a");
+		assertThat(Iterables.size(classMapping.fields()), is(10000));
+		assertThat(classMapping.getDeobfFieldName("f9999", Type.get("I")), is("field9999"));
+	}
+	
+	@Test
+	public void errorsHaveLineNumbers()
+	throws Exception {
+		assertError("CLASS none/a\n\n\tMETHOD b ()V\n\t\tARG x name\n", "Line 4: ");
+		assertError("# comment\nFIELD a b I\n", "Line 2: ");
+		assertError("CLASS none/a\n\tFIELD a b\n", "Line 2: ");
+		assertError("CLASS none/a\n\tMETHOD a b c\n", "Line 2: ");
+		assertError("CLASS none/a\nCLASS none/b\n\n# comment\nCLASS none/c\n\tFIELD a b\nCLASS none/d\n\tMETHOD a b c\n", "Line 6: ");
+		assertError("CLASS none/a\n\tMETHOD a b ()V\n\tMETHOD a c ()V\n", "Line 3: Already have mapping");
+		assertError("CLASS none/a\n\tFIELD a b I\n\tFIELD c b I\n", "Line 3: Already have mapping");
+	}
+	
+	@Test
+	public void parallelMatchesSequential()
+	throws Exception {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, BenchmarkMappingsFormat.makeMappings(500, 5, 5));
+		String text = "# leading comment\n\n" + out.toString().replace("\n\tFIELD f3 ", " # trailing comment\n\n\tFIELD f3 ");
+		assertThat(toText(read(text, true)), is(toText(read(text, false))));
+		assertThat(read(text, true).classes().size(), is(500));
+		
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			text = CharStreams.toString(new InputStreamReader(in));
+		}
+		assertThat(toText(read(text, true)), is(toText(read(text, false))));
+	}
+	
+	@Test
+	public void parallelFindsDuplicates()
+	throws Exception {
+		String text = "CLASS none/a deobf/A\nCLASS none/b deobf/B\nCLASS none/c deobf/C\nCLASS none/a deobf/D\n";
+		for (boolean parallel : Arrays.asList(false, true)) {
+			try {
+				read(text, parallel);
+				throw new AssertionError("Read duplicate classes!");
+			} catch (Error ex) {
+				assertThat(ex.getMessage(), is("Already have mapping for none/a"));
+			}
+		}
+	}
+	
+	@Test
+	public void lazyReadsClassesWhenAsked()
+	throws Exception {
+		Mappings mappings;
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			mappings = new LazyMappingsReader().read(in);
+		}
+		ClassMapping classMapping = mappings.getClassByObf("none/a");
+		assertThat(classMapping.getDeobfName(), is("deobf/A_Basic"));
+		assertThat(classMapping.isBodyLoaded(), is(false));
+		assertThat(mappings.getClassByDeobf("deobf/A_Basic"), is(classMapping));
+		
+		// snapshots of classes nobody has read yet read them on their own
+		ClassMapping snapshotClassMapping = mappings.getSnapshot().getClassByObf("none/a");
+		assertThat(snapshotClassMapping.isBodyLoaded(), is(false));
+		
+		assertThat(classMapping.getDeobfFieldName("a", Type.get("I")), is("f1"));
+		assertThat(classMapping.isBodyLoaded(), is(true));
+		assertThat(snapshotClassMapping.isBodyLoaded(), is(false));
+		assertThat(snapshotClassMapping.getDeobfFieldName("a", Type.get("I")), is("f1"));
+		
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			assertThat(toText(new LazyMappingsReader().read(in)), is(toText(mappings)));
+		}
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			assertThat(toText(mappings), is(toText(new MappingsReader().read(new InputStreamReader(in)))));
+		}
+	}
+	
+	@Test
+	public void lazyErrorsHaveLineNumbers()
+	throws Exception {
+		// only a misplaced top-level line shows up when the mappings are opened
+		try {
+			new LazyMappingsReader().read(new ByteArrayInputStream("CLASS none/a\n\n\tFIELD a b I\nFIELD c d I\n".getBytes("UTF-8")));
+			throw new AssertionError("Read bad mappings!");
+		} catch (MappingParseException ex) {
+			assertThat(ex.getMessage(), startsWith("Line 4: "));
+		}
+		
+		// errors inside classes show up when the class gets read
+		assertLazyError("CLASS none/a\n\tMETHOD b ()V\n\t\tARG x name\nCLASS none/b\n", "Line 3: ");
+		assertLazyError("CLASS none/a\nCLASS none/b\n\tFIELD a b\n", "Line 3: ");
+		assertLazyError("CLASS none/a\n\tCLASS none/a$b\n\t\tMETHOD a b (I)\n", "Line 3: ");
+		assertLazyError("CLASS none/a\n\tFIELD a b I\n\tARG 0 c\n", "Line 3: ");
+		assertLazyError("CLASS none/a\n\tMETHOD a b ()V\n\tMETHOD a c ()V\n", "Line 3: Already have mapping");
+		assertLazyError("CLASS none/a\n\tFIELD a b I\n\tFIELD c b I\n", "Line 3: Already have mapping");
+		
+		// the same names in different classes are fine
+		Mappings mappings = new LazyMappingsReader().read(new ByteArrayInputStream("CLASS none/a\n\tFIELD a b I\n\tCLASS none/a$b\n\t\tFIELD a b I\n".getBytes("UTF-8")));
+		assertThat(mappings.getClassByObf("none/a").getInnerClassByObfSimple("b").getDeobfFieldName("a", Type.get("I")), is("b"));
+	}
+	
+	private void assertLazyError(String text, String messagePrefix)
+	throws Exception {
+		Mappings mappings = new LazyMappingsReader().read(new ByteArrayInputStream(text.getBytes("UTF-8")));
+		try {
+			for (ClassMapping classMapping : mappings.classes()) {
+				classMapping.innerClasses();
+			}
+			throw new AssertionError("Read bad mappings!");
+		} catch (MappingLoadException ex) {
+			assertThat(ex.getParseException().getMessage(), startsWith(messagePrefix));
+		}
+	}
+	
+	private void assertError(String text, String messagePrefix)
+	throws Exception {
+		for (boolean parallel : Arrays.asList(false, true)) {
+			try {
+				read(text, parallel);
+				throw new AssertionError("Read bad mappings!");
+			} catch (MappingParseException ex) {
+				assertThat(ex.getMessage(), startsWith(messagePrefix));
+			}
+		}
+	}
+	
+	private Mappings read(String text)
+	throws Exception {
+		return read(text, false);
+	}
+	
+	private Mappings read(String text, boolean parallel)
+	throws Exception {
+		return new MappingsReader().read(new StringReader(text), parallel);
+	}
+	
+	private String toText(Mappings mappings)
+	throws IOException {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, mappings);
+		return out.toString();
+	}
+}
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Jeff Martin.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public
+ * License v3.0 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl.html
+ * 
+ * Contributors:
+ *     Jeff Martin - initial API and implementation
+ ******************************************************************************/
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+import cuchaz.enigma.mapping.ClassMapping;
+import cuchaz.enigma.mapping.FieldMapping;
+import cuchaz.enigma.mapping.MappingParseException;
+import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsWriter;
+import cuchaz.enigma.mapping.MethodMapping;
+import cuchaz.enigma.mapping.Signature;
+import cuchaz.enigma.mapping.Type;
+
+public class TestMappingsWriter {
+	
+	@Rule
+	public TemporaryFolder m_tempFolder = new TemporaryFolder();
+	
+	@Test
+	public void writesSortedMappings()
+	throws Exception {
+		String text = toText(readTextMappings());
+		assertThat(text, startsWith("CLASS none/a deobf/A_Basic\n\tFIELD a f2 F\n\tFIELD a f1 I\n"));
+		assertThat(text, containsString("\n\tCLASS none/g$a A_InnerClass\n\t\tCLASS none/g$a$a A_InnerInnerClass\n\t\t\tFIELD a f3 I\n\t\t\tMETHOD a m2 ()V\n"));
+		assertThat(text, containsString("\nCLASS none/h\n"));
+		assertThat(toText(new MappingsReader().read(new StringReader(text))), is(text));
+	}
+	
+	@Test
+	public void longerThanTheBuffer()
+	throws Exception {
+		Mappings mappings = BenchmarkMappingsFormat.makeMappings(2000, 5, 5);
+		String text = toText(mappings);
+		assertThat(text.length() > 64*1024, is(true));
+		assertThat(toText(new MappingsReader().read(new StringReader(text))), is(text));
+	}
+	
+	@Test
+	public void membersStaySortedWhenEdited()
+	throws Exception {
+		ClassMapping classMapping = new ClassMapping("none/a");
+		classMapping.addFieldMapping(new FieldMapping("b", Type.get("I"), "f2"));
+		classMapping.addFieldMapping(new FieldMapping("aa", Type.get("I"), "f3"));
+		classMapping.addFieldMapping(new FieldMapping("a", Type.get("I"), "f1"));
+		classMapping.addFieldMapping(new FieldMapping("c", Type.get("I"), "f4"));
+		classMapping.addMethodMapping(new MethodMapping("b", Signature.get("()V"), "m2"));
+		classMapping.addMethodMapping(new MethodMapping("a", Signature.get("()V"), "m1"));
+		classMapping.addInnerClassMapping(new ClassMapping("none/a$ab", "Inner2"));
+		classMapping.addInnerClassMapping(new ClassMapping("none/a$b", "Inner1"));
+		classMapping.removeFieldMapping(classMapping.getFieldByObf("c", Type.get("I")));
+		classMapping.setFieldObfNameAndType("b", Type.get("I"), "a", Type.get("J"));
+		Mappings mappings = new Mappings();
+		mappings.addClassMapping(classMapping);
+		
+		String text = toText(mappings);
+		assertThat(text, is(
+			"CLASS none/a\n"
+			+ "\tCLASS none/a$b Inner1\n"
+			+ "\tCLASS none/a$ab Inner2\n"
+			+ "\tFIELD a f1 I\n"
+			+ "\tFIELD a f2 J\n"
+			+ "\tFIELD aa f3 I\n"
+			+ "\tMETHOD a m1 ()V\n"
+			+ "\tMETHOD b m2 ()V\n"
+		));
+		assertThat(toText(new MappingsReader().read(new StringReader(text))), is(text));
+	}
+	
+	@Test
+	public void directoryRoundTrip()
+	throws Exception {
+		Mappings mappings = readTextMappings();
+		File dir = m_tempFolder.getRoot();
+		new MappingsWriter().writeDirectory(dir, mappings, false);
+		assertThat(MappingsWriter.getClassFile(dir, mappings.getClassByObf("none/g")).exists(), is(true));
+		
+		Mappings readMappings = new MappingsReader().readDirectory(dir);
+		assertThat(toText(readMappings), is(toText(mappings)));
+		for (ClassMapping classMapping : readMappings.classes()) {
+			assertThat(classMapping.isDirty(), is(false));
+		}
+	}
+	
+	@Test
+	public void fileNamesIgnoreCase()
+	throws Exception {
+		File dir = m_tempFolder.getRoot();
+		Mappings mappings = new Mappings();
+		String[] names = { "none/a", "none/A", "none/_a", "None/a", "none/a_", "none/\u00e9", "none/\u00c9" };
+		Set<String> paths = Sets.newHashSet();
+		for (String name : names) {
+			ClassMapping classMapping = new ClassMapping(name, "deobf/C" + paths.size());
+			mappings.addClassMapping(classMapping);
+			String path = MappingsWriter.getClassFile(dir, classMapping).getPath().toLowerCase(Locale.ROOT);
+			assertThat(name, paths.add(path), is(true));
+		}
+		assertThat(MappingsWriter.getClassFile(dir, mappings.getClassByObf("none/a")).getName(), is("a" + MappingsWriter.ClassFileExtension));
+		
+		new MappingsWriter().writeDirectory(dir, mappings, false);
+		assertThat(toText(new MappingsReader().readDirectory(dir)), is(toText(mappings)));
+	}
+	
+	@Test
+	public void onlyDirtyClassesGetWritten()
+	throws Exception {
+		File dir = m_tempFolder.getRoot();
+		new MappingsWriter().writeDirectory(dir, readTextMappings(), false);
+		Mappings mappings = new MappingsReader().readDirectory(dir);
+		
+		// make every file look old, then change one field in an inner class
+		for (ClassMapping classMapping : mappings.classes()) {
+			MappingsWriter.getClassFile(dir, classMapping).setLastModified(0);
+		}
+		ClassMapping innerClassMapping = mappings.getClassByObf("none/g").getInnerClassByObfSimple("a");
+		innerClassMapping.setFieldName("a", Type.get("I"), "renamed");
+		assertThat(mappings.getClassByObf("none/g").isDirty(), is(true));
+		assertThat(mappings.getClassByObf("none/a").isDirty(), is(false));
+		
+		new MappingsWriter().writeDirectory(dir, mappings, true);
+		for (ClassMapping classMapping : mappings.classes()) {
+			boolean wasWritten = MappingsWriter.getClassFile(dir, classMapping).lastModified() != 0;
+			assertThat(classMapping.getObfFullName(), wasWritten, is(classMapping.getObfFullName().equals("none/g")));
+			assertThat(classMapping.isDirty(), is(false));
+		}
+		assertThat(toText(new MappingsReader().readDirectory(dir)), is(toText(mappings)));
+	}
+	
+	@Test
+	public void removedClassesGetDeleted()
+	throws Exception {
+		File dir = m_tempFolder.getRoot();
+		Mappings mappings = readTextMappings();
+		new MappingsWriter().writeDirectory(dir, mappings, false);
+		File file = MappingsWriter.getClassFile(dir, mappings.getClassByObf("none/b"));
+		assertThat(file.exists(), is(true));
+		
+		mappings.removeClassMapping(mappings.getClassByObf("none/b"));
+		new MappingsWriter().writeDirectory(dir, mappings, true);
+		assertThat(file.exists(), is(false));
+		assertThat(new MappingsReader().readDirectory(dir).getClassByObf("none/b"), is(nullValue()));
+	}
+	
+	@Test
+	public void otherFilesAreLeftAlone()
+	throws Exception {
+		
+		// saving into a directory someone else uses shouldn't delete their files, even ones that look like ours
+		File dir = m_tempFolder.getRoot();
+		File otherFile = new File(dir, "other/thing" + MappingsWriter.ClassFileExtension);
+		Files.createParentDirs(otherFile);
+		Files.write("not ours", otherFile, StandardCharsets.UTF_8);
+		Mappings mappings = readTextMappings();
+		new MappingsWriter().writeDirectory(dir, mappings, false);
+		mappings.removeClassMapping(mappings.getClassByObf("none/b"));
+		new MappingsWriter().writeDirectory(dir, mappings, true);
+		assertThat(otherFile.exists(), is(true));
+		
+		// and neither should a manifest that points outside the directory
+		File outsideFile = m_tempFolder.newFile("outside" + MappingsWriter.ClassFileExtension);
+		File subDir = m_tempFolder.newFolder("sub");
+		Files.write("../outside" + MappingsWriter.ClassFileExtension + "\n", new File(subDir, MappingsWriter.ManifestFileName), StandardCharsets.UTF_8);
+		new MappingsWriter().writeDirectory(subDir, mappings, false);
+		assertThat(outsideFile.exists(), is(true));
+	}
+	
+	@Test
+	public void directoryErrorsHaveFileNames()
+	throws Exception {
+		File dir = m_tempFolder.getRoot();
+		File file = new File(dir, "none/a" + MappingsWriter.ClassFileExtension);
+		Files.createParentDirs(file);
+		Files.write("CLASS none/a\n\tFIELD a b\n", file, StandardCharsets.UTF_8);
+		try {
+			new MappingsReader().readDirectory(dir);
+			throw new AssertionError("Read bad mappings!");
+		} catch (MappingParseException ex) {
+			assertThat(ex.getMessage(), startsWith(file.getPath() + ": Line 2: "));
+		}
+	}
+	
+	private Mappings readTextMappings()
+	throws Exception {
+		try (InputStream in = getClass().getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			return new MappingsReader().read(new InputStreamReader(in));
+		}
+	}
+	
+	private String toText(Mappings mappings)
+	throws Exception {
+		StringWriter out = new StringWriter();
+		new MappingsWriter().write(out, mappings);
+		return out.toString();
+	}
+}
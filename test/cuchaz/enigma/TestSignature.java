@@ -13,6 +13,11 @@ package cuchaz.enigma;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.Test;
 
 import cuchaz.enigma.mapping.ClassNameReplacer;
@@ -265,4 +270,36 @@ public class TestSignature {
 		assertThat(new Signature("([I)V").toString(), is("([I)V"));
 		assertThat(new Signature("([[D[[[J)V").toString(), is("([[D[[[J)V"));
 	}
+	
+	@Test
+	public void interned() {
+		assertThat(Signature.get("(ILFoo;)[LBar;"), is(sameInstance(Signature.get("(ILFoo;)[LBar;"))));
+		assertThat(Signature.get("(ILFoo;)[LBar;"), is(new Signature("(ILFoo;)[LBar;")));
+		assertThat(Signature.get("(ILFoo;)[LBar;").getArgumentTypes().get(1), is(sameInstance(Type.get("LFoo;"))));
+		assertThat(Type.get("[LBar;"), is(sameInstance(Type.get("[LBar;"))));
+		assertThat(Signature.get("(I)V"), is(not(sameInstance(Signature.get("(J)V")))));
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		new Signature("(I)V").getArgumentTypes().add(new Type("J"));
+	}
+	
+	@Test
+	public void serialization()
+	throws Exception {
+		Signature sig = new Signature("(I[LFoo;)LBar;");
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+			out.writeObject(sig);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+			Signature readSig = (Signature)in.readObject();
+			assertThat(readSig, is(sig));
+			assertThat(readSig.toString(), is("(I[LFoo;)LBar;"));
+			assertThat(readSig.hashCode(), is(sig.hashCode()));
+			assertThat(readSig, is(sameInstance(Signature.get("(I[LFoo;)LBar;"))));
+			assertThat(readSig.getArgumentTypes().get(0), is(new Type("I")));
+		}
+	}
 }
@@ -14,22 +14,41 @@ import static cuchaz.enigma.TestEntryFactory.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.jar.JarFile;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
+import cuchaz.enigma.analysis.TranslationIndex;
+import cuchaz.enigma.mapping.BehaviorEntry;
+import cuchaz.enigma.mapping.ClassEntry;
+import cuchaz.enigma.mapping.ClassMapping;
 import cuchaz.enigma.mapping.Entry;
+import cuchaz.enigma.mapping.LazyMappingsReader;
 import cuchaz.enigma.mapping.Mappings;
+import cuchaz.enigma.mapping.MappingsChange;
+import cuchaz.enigma.mapping.MappingsChecker;
 import cuchaz.enigma.mapping.MappingsReader;
+import cuchaz.enigma.mapping.MappingsRenamer;
+import cuchaz.enigma.mapping.ObfuscatingIndex;
+import cuchaz.enigma.mapping.Signature;
 import cuchaz.enigma.mapping.TranslationDirection;
+import cuchaz.enigma.mapping.TranslationTable;
 import cuchaz.enigma.mapping.Translator;
+import cuchaz.enigma.mapping.Type;
 
 
 public class TestTranslator {
-
+	
 	private static Deobfuscator m_deobfuscator;
 	private static Mappings m_mappings;
 	private static Translator m_deobfTranslator;
@@ -53,7 +72,7 @@ public class TestTranslator {
 		assertMapping(newClass("none/b"), newClass("deobf/B_BaseClass"));
 		assertMapping(newClass("none/c"), newClass("deobf/C_SubClass"));
 	}
-
+	
 	@Test
 	public void basicFields() {
 		assertMapping(newField("none/a", "a", "I"), newField("deobf/A_Basic", "f1", "I"));
@@ -153,6 +172,374 @@ public class TestTranslator {
 		assertMapping(newMethod("none/i$b", "a", "()Ljava/lang/Object;"), newMethod("deobf/I_Generics$B_Generic", "m1", "()Ljava/lang/Object;"));
 	}
 	
+	@Test
+	public void renamingKeepsUnrelatedTranslations()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new MappingsReader().read(new InputStreamReader(in)));
+		}
+		Translator translator = deobfuscator.getTranslator(TranslationDirection.Deobfuscating);
+		Entry unrelatedField = translator.translateEntry(newField("none/a", "a", "I"));
+		Entry unrelatedMethod = translator.translateEntry(newMethod("none/a", "a", "(I)V"));
+		assertThat(translator.translateEntry(newField("none/c", "a", "I")), is(newField("deobf/C_SubClass", "f1", "I")));
+		assertThat(translator.translateType(new Type("Lnone/b;")), is(new Type("Ldeobf/B_BaseClass;")));
+		
+		// renaming a field should update everything that resolves to it, even through a subclass
+		deobfuscator.rename(newField("none/b", "a", "I"), "renamed");
+		assertThat(deobfuscator.getTranslator(TranslationDirection.Deobfuscating), is(sameInstance(translator)));
+		assertThat(translator.translateEntry(newField("none/b", "a", "I")), is(newField("deobf/B_BaseClass", "renamed", "I")));
+		assertThat(translator.translateEntry(newField("none/c", "a", "I")), is(newField("deobf/C_SubClass", "renamed", "I")));
+		
+		// renaming a class should update the types that use it
+		deobfuscator.rename(newClass("none/b"), "deobf/Renamed");
+		assertThat(translator.translateType(new Type("Lnone/b;")), is(new Type("Ldeobf/Renamed;")));
+		assertThat(translator.translateType(new Type("[Lnone/b;")), is(new Type("[Ldeobf/Renamed;")));
+		
+		// but translations for other classes should still be cached
+		assertThat(translator.translateEntry(newField("none/a", "a", "I")), is(sameInstance(unrelatedField)));
+		assertThat(translator.translateEntry(newMethod("none/a", "a", "(I)V")), is(sameInstance(unrelatedMethod)));
+		
+		// and the obfuscating translator should see the new names too
+		Translator obfTranslator = deobfuscator.getTranslator(TranslationDirection.Obfuscating);
+		assertThat(obfTranslator.translateEntry(newField("deobf/Renamed", "renamed", "I")), is(newField("none/b", "a", "I")));
+	}
+	
+	@Test
+	public void lazyMappingsTranslateTheSame()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new LazyMappingsReader().read(in));
+		}
+		
+		// listing the classes only needs their names
+		deobfuscator.getSeparatedClasses(new ArrayList<ClassEntry>(), new ArrayList<ClassEntry>());
+		assertThat(deobfuscator.getMappings().getClassByObf("none/a").isBodyLoaded(), is(false));
+		
+		Translator translator = deobfuscator.getTranslator(TranslationDirection.Deobfuscating);
+		assertThat(translator.translateEntry(newClass("none/a")), is(newClass("deobf/A_Basic")));
+		assertThat(deobfuscator.getMappings().getClassByObf("none/a").isBodyLoaded(), is(false));
+		assertThat(translator.translateEntry(newField("none/a", "a", "I")), is(newField("deobf/A_Basic", "f1", "I")));
+		assertThat(translator.translateEntry(newField("none/c", "a", "I")), is(newField("deobf/C_SubClass", "f1", "I")));
+		assertThat(translator.translateEntry(newMethod("none/i$b", "a", "()Ljava/lang/Object;")), is(newMethod("deobf/I_Generics$B_Generic", "m1", "()Ljava/lang/Object;")));
+		
+		Translator obfTranslator = deobfuscator.getTranslator(TranslationDirection.Obfuscating);
+		assertThat(obfTranslator.translateEntry(newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$B_Generic;")), is(newField("none/i", "a", "Lnone/i$b;")));
+		
+		// and renames work on classes nobody has read yet
+		deobfuscator.rename(newField("none/b", "a", "I"), "renamed");
+		assertThat(translator.translateEntry(newField("none/c", "a", "I")), is(newField("deobf/C_SubClass", "renamed", "I")));
+	}
+	
+	@Test
+	public void lazyMappingsObfuscateWithoutReadingEverything()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new LazyMappingsReader().read(in));
+		}
+		Mappings mappings = deobfuscator.getMappings();
+		
+		// classes only need their names
+		Translator translator = deobfuscator.getTranslator(TranslationDirection.Obfuscating);
+		assertThat(translator.translateEntry(newClass("deobf/C_SubClass")), is(newClass("none/c")));
+		assertThat(mappings.getClassByObf("none/b").isBodyLoaded(), is(false));
+		assertThat(mappings.getClassByObf("none/c").isBodyLoaded(), is(false));
+		
+		// members only need the classes they could resolve to
+		assertThat(translator.translateEntry(newMethod("deobf/C_SubClass", "m2", "()I")), is(newMethod("none/c", "b", "()I")));
+		assertThat(mappings.getClassByObf("none/b").isBodyLoaded(), is(true));
+		assertThat(mappings.getClassByObf("none/c").isBodyLoaded(), is(true));
+		assertThat(mappings.getClassByObf("none/a").isBodyLoaded(), is(false));
+		assertThat(mappings.getClassByObf("none/g").isBodyLoaded(), is(false));
+		
+		// and classes read later still see renames made before
+		deobfuscator.rename(newClass("none/a"), "deobf/A_Renamed");
+		assertThat(translator.translateEntry(newField("deobf/A_Renamed", "f1", "I")), is(newField("none/a", "a", "I")));
+	}
+	
+	@Test
+	public void lazyMappingsGetCheckedWhenOpened()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		Mappings mappings = new LazyMappingsReader().read(new ByteArrayInputStream((
+			"CLASS none/a deobf/A_Basic\n"
+			+ "\tFIELD a f1 I\n"
+			+ "\tFIELD z missing I\n"
+			+ "\tMETHOD z missing ()V\n"
+			+ "CLASS none/g deobf/G_OuterClass\n"
+			+ "\tCLASS none/g$a A_InnerClass\n"
+			+ "\t\tFIELD z missing I\n"
+			+ "\tCLASS none/g$z Missing\n"
+			+ "\t\tFIELD a f1 I\n"
+		).getBytes("UTF-8")));
+		
+		// everything that doesn't match the jar gets found up front, without reading any classes
+		MappingsChecker checker = new MappingsChecker(deobfuscator.getJarIndex());
+		checker.dropBrokenMappings(mappings);
+		assertThat(checker.getDroppedFieldMappings().keySet(), containsInAnyOrder(newField("none/a", "z", "I"), newField("none/g$a", "z", "I")));
+		assertThat(checker.getDroppedMethodMappings().keySet(), contains((BehaviorEntry)newMethod("none/a", "z", "()V")));
+		assertThat(checker.getDroppedInnerClassMappings().keySet(), contains(newClass("none/g$z")));
+		assertThat(mappings.getClassByObf("none/a").isBodyLoaded(), is(false));
+		assertThat(mappings.getClassByObf("none/g").isBodyLoaded(), is(false));
+		
+		// and it's gone once the classes do get read
+		ClassMapping classMapping = mappings.getClassByObf("none/a");
+		assertThat(classMapping.getDeobfFieldName("a", Type.get("I")), is("f1"));
+		assertThat(classMapping.getDeobfFieldName("z", Type.get("I")), is(nullValue()));
+		assertThat(classMapping.getMethodByObf("z", Signature.get("()V")), is(nullValue()));
+		assertThat(classMapping.isDirty(), is(true));
+		ClassMapping outerClassMapping = mappings.getClassByObf("none/g");
+		assertThat(outerClassMapping.getInnerClassByObfSimple("z"), is(nullValue()));
+		assertThat(outerClassMapping.getInnerClassByObfSimple("a").getDeobfFieldName("z", Type.get("I")), is(nullValue()));
+	}
+	
+	@Test
+	public void obfuscatingTranslatorFollowsRenames()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new MappingsReader().read(new InputStreamReader(in)));
+		}
+		Mappings mappings = deobfuscator.getMappings();
+		TranslationIndex index = deobfuscator.getJarIndex().getTranslationIndex();
+		Translator translator = mappings.getTranslator(TranslationDirection.Obfuscating, index);
+		assertThat(translator.translateEntry(newField("deobf/C_SubClass", "f1", "I")), is(newField("none/c", "a", "I")));
+		assertThat(translator.translateEntry(newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$B_Generic;")), is(newField("none/i", "a", "Lnone/i$b;")));
+		
+		// renames shouldn't build a new translator
+		deobfuscator.rename(newClass("none/b"), "deobf/Renamed");
+		deobfuscator.rename(newField("none/b", "a", "I"), "renamed");
+		deobfuscator.rename(newClass("none/i$b"), "Renamed");
+		deobfuscator.rename(newMethod("none/a", "a", "()V"), "renamed");
+		assertThat(mappings.getTranslator(TranslationDirection.Obfuscating, index), is(sameInstance(translator)));
+		
+		// but it should translate just like a new one
+		Translator expected = new ObfuscatingIndex(mappings, index).getTranslator();
+		for (Entry deobfEntry : Arrays.<Entry>asList(
+			newClass("deobf/Renamed"),
+			newField("deobf/Renamed", "renamed", "I"),
+			newField("deobf/C_SubClass", "renamed", "I"),
+			newField("deobf/C_SubClass", "f3", "I"),
+			newMethod("deobf/A_Basic", "renamed", "()V"),
+			newMethod("deobf/A_Basic", "m2", "()I"),
+			newClass("deobf/I_Generics$Renamed"),
+			newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$Renamed;"),
+			newMethod("deobf/I_Generics$Renamed", "m1", "()Ljava/lang/Object;")
+		)) {
+			assertThat(translator.translateEntry(deobfEntry), is(expected.translateEntry(deobfEntry)));
+		}
+		assertThat(translator.translateEntry(newField("deobf/C_SubClass", "renamed", "I")), is(newField("none/c", "a", "I")));
+		assertThat(translator.translateEntry(newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$Renamed;")), is(newField("none/i", "a", "Lnone/i$b;")));
+	}
+	
+	@Test
+	public void snapshotObfuscatingTranslatorsFollowRenames()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new MappingsReader().read(new InputStreamReader(in)));
+		}
+		Mappings mappings = deobfuscator.getMappings();
+		TranslationIndex index = deobfuscator.getJarIndex().getTranslationIndex();
+		Translator translator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Obfuscating);
+		assertThat(translator.translateEntry(newField("deobf/C_SubClass", "f1", "I")), is(newField("none/c", "a", "I")));
+		
+		// the next snapshot starts from this one, the one after that skips a snapshot nobody translated with
+		deobfuscator.rename(newClass("none/b"), "deobf/Renamed");
+		deobfuscator.rename(newField("none/b", "a", "I"), "renamed");
+		Translator nextTranslator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Obfuscating);
+		assertThat(nextTranslator.translateEntry(newField("deobf/C_SubClass", "renamed", "I")), is(newField("none/c", "a", "I")));
+		deobfuscator.rename(newClass("none/i$b"), "Renamed");
+		deobfuscator.getTranslatorSnapshot(TranslationDirection.Deobfuscating);
+		deobfuscator.rename(newMethod("none/a", "a", "()V"), "renamed");
+		deobfuscator.removeMapping(newClass("none/c"));
+		Translator lastTranslator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Obfuscating);
+		
+		// every snapshot should translate just like a new index for its mappings
+		Translator expected = new ObfuscatingIndex(mappings.getSnapshot(), index).getTranslator();
+		for (Entry deobfEntry : Arrays.<Entry>asList(
+			newClass("deobf/Renamed"),
+			newField("deobf/Renamed", "renamed", "I"),
+			newField("none/c", "renamed", "I"),
+			newMethod("deobf/A_Basic", "renamed", "()V"),
+			newMethod("deobf/A_Basic", "m2", "()I"),
+			newClass("deobf/I_Generics$Renamed"),
+			newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$Renamed;"),
+			newMethod("deobf/I_Generics$Renamed", "m1", "()Ljava/lang/Object;")
+		)) {
+			assertThat(lastTranslator.translateEntry(deobfEntry), is(expected.translateEntry(deobfEntry)));
+		}
+		assertThat(lastTranslator.translateEntry(newField("none/c", "renamed", "I")), is(newField("none/c", "a", "I")));
+		assertThat(lastTranslator.translateEntry(newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$Renamed;")), is(newField("none/i", "a", "Lnone/i$b;")));
+		
+		// and the older ones still see the old names
+		assertThat(translator.translateEntry(newClass("deobf/B_BaseClass")), is(newClass("none/b")));
+		assertThat(nextTranslator.translateEntry(newField("deobf/I_Generics", "f5", "Ldeobf/I_Generics$B_Generic;")), is(newField("none/i", "a", "Lnone/i$b;")));
+	}
+	
+	@Test
+	public void snapshotsDontSeeLaterEdits()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new MappingsReader().read(new InputStreamReader(in)));
+		}
+		Mappings mappings = deobfuscator.getMappings();
+		Mappings snapshot = mappings.getSnapshot();
+		assertThat(snapshot.isSnapshot(), is(true));
+		assertThat(mappings.getSnapshot(), is(sameInstance(snapshot)));
+		final Translator deobfTranslator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Deobfuscating);
+		final Translator obfTranslator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Obfuscating);
+		
+		// edits make new snapshots, but the old ones stay the same
+		deobfuscator.rename(newClass("none/b"), "deobf/Renamed");
+		deobfuscator.rename(newField("none/a", "a", "I"), "renamed");
+		deobfuscator.rename(newClass("none/g$a"), "Renamed");
+		Mappings newSnapshot = mappings.getSnapshot();
+		assertThat(newSnapshot, is(not(sameInstance(snapshot))));
+		assertThat(snapshot.getClassByObf("none/b").getDeobfName(), is("deobf/B_BaseClass"));
+		assertThat(newSnapshot.getClassByObf("none/b").getDeobfName(), is("deobf/Renamed"));
+		assertThat(deobfTranslator.translateEntry(newClass("none/b")), is(newClass("deobf/B_BaseClass")));
+		assertThat(deobfTranslator.translateEntry(newField("none/a", "a", "I")), is(newField("deobf/A_Basic", "f1", "I")));
+		assertThat(deobfTranslator.translateEntry(newClass("none/g$a")), is(newClass("deobf/G_OuterClass$A_InnerClass")));
+		assertThat(obfTranslator.translateEntry(newClass("deobf/B_BaseClass")), is(newClass("none/b")));
+		
+		// but the new translators see them
+		Translator newDeobfTranslator = deobfuscator.getTranslatorSnapshot(TranslationDirection.Deobfuscating);
+		assertThat(newDeobfTranslator.translateEntry(newClass("none/b")), is(newClass("deobf/Renamed")));
+		assertThat(newDeobfTranslator.translateEntry(newField("none/a", "a", "I")), is(newField("deobf/A_Basic", "renamed", "I")));
+		assertThat(newDeobfTranslator.translateEntry(newClass("none/g$a")), is(newClass("deobf/G_OuterClass$Renamed")));
+		assertThat(deobfuscator.getTranslatorSnapshot(TranslationDirection.Obfuscating).translateEntry(newClass("deobf/Renamed")), is(newClass("none/b")));
+		
+		// classes nobody touched are shared with the old snapshot
+		assertThat(newSnapshot.getClassByObf("none/c"), is(sameInstance(snapshot.getClassByObf("none/c"))));
+		assertThat(newSnapshot.getClassByObf("none/g"), is(not(sameInstance(snapshot.getClassByObf("none/g")))));
+		
+		// and lots of threads can read the old snapshot while the mappings keep changing
+		List<Thread> threads = Lists.newArrayList();
+		final List<Throwable> errors = Collections.synchronizedList(Lists.<Throwable>newArrayList());
+		for (int i=0; i<4; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j=0; j<1000; j++) {
+							assertThat(deobfTranslator.translateEntry(newField("none/c", "a", "I")), is(newField("deobf/C_SubClass", "f1", "I")));
+							assertThat(obfTranslator.translateEntry(newClass("deobf/B_BaseClass")), is(newClass("none/b")));
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (int i=0; i<100; i++) {
+			deobfuscator.rename(newClass("none/b"), "deobf/Renamed" + i);
+			deobfuscator.rename(newField("none/b", "a", "I"), "renamed" + i);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(errors, is(empty()));
+	}
+	
+	@Test
+	public void editsSendChanges()
+	throws Exception {
+		
+		Deobfuscator deobfuscator = new Deobfuscator(new JarFile("build/test-obf/translation.jar"));
+		try (InputStream in = TestTranslator.class.getResourceAsStream("/cuchaz/enigma/resources/translation.mappings")) {
+			deobfuscator.setMappings(new MappingsReader().read(new InputStreamReader(in)));
+		}
+		final List<MappingsChange> changes = Lists.newArrayList();
+		deobfuscator.addChangeListener(new MappingsRenamer.ChangeListener() {
+			@Override
+			public void onChange(MappingsChange change) {
+				changes.add(change);
+			}
+		});
+		Translator translator = deobfuscator.getTranslator(TranslationDirection.Deobfuscating);
+		Entry unrelatedField = translator.translateEntry(newField("none/a", "a", "I"));
+		
+		deobfuscator.rename(newClass("none/b"), "deobf/Renamed");
+		assertChange(changes.remove(0), MappingsChange.Kind.ClassRenamed, newClass("none/b"), "deobf/B_BaseClass", "deobf/Renamed");
+		deobfuscator.rename(newClass("none/g$a"), "Renamed");
+		assertChange(changes.remove(0), MappingsChange.Kind.ClassRenamed, newClass("none/g$a"), "A_InnerClass", "Renamed");
+		deobfuscator.rename(newField("none/c", "b", "I"), "renamed");
+		assertChange(changes.remove(0), MappingsChange.Kind.MemberRenamed, newField("none/c", "b", "I"), "f3", "renamed");
+		deobfuscator.removeMapping(newField("none/c", "b", "I"));
+		assertChange(changes.remove(0), MappingsChange.Kind.MappingRemoved, newField("none/c", "b", "I"), "renamed", null);
+		assertThat(changes, is(empty()));
+		
+		// removing it again doesn't change anything
+		deobfuscator.removeMapping(newField("none/c", "b", "I"));
+		assertThat(changes, is(empty()));
+		
+		// method trees send a change for each method in the tree
+		deobfuscator.rename(newMethod("none/b", "a", "()I"), "renamed");
+		assertThat(changes.size(), is(2));
+		for (MappingsChange change : changes) {
+			assertThat(change.getKind(), is(MappingsChange.Kind.MemberRenamed));
+			assertThat(change.getNewDeobfName(), is("renamed"));
+			assertThat(translator.translateEntry(change.getObfEntry()).getName(), is("renamed"));
+		}
+		assertThat(changes.get(0).getObfEntry(), is(not(changes.get(1).getObfEntry())));
+		changes.clear();
+		
+		// marking as deobfuscated is just another rename
+		deobfuscator.markAsDeobfuscated(newField("none/c", "b", "I"));
+		assertChange(changes.remove(0), MappingsChange.Kind.MemberRenamed, newField("none/c", "b", "I"), null, "b");
+		
+		// and the translator only forgot the classes that changed
+		assertThat(translator.translateEntry(newField("none/a", "a", "I")), is(sameInstance(unrelatedField)));
+	}
+	
+	@Test
+	public void translateAll() {
+		
+		// lots of duplicates, like the references in a whole jar would have
+		List<Entry> obfEntries = Lists.newArrayList();
+		for (int i=0; i<1000; i++) {
+			obfEntries.add(newClass("none/a"));
+			obfEntries.add(newField("none/c", "a", "I"));
+			obfEntries.add(newMethod("none/a", "a", "(I)V"));
+			obfEntries.add(newClass("none/g$a$a"));
+			obfEntries.add(newClass("none/h"));
+		}
+		for (boolean parallel : Arrays.asList(false, true)) {
+			TranslationTable table = m_deobfTranslator.translateAll(obfEntries, parallel);
+			assertThat(table.size(), is(5));
+			for (Entry obfEntry : obfEntries) {
+				assertThat(table.contains(obfEntry), is(true));
+				assertThat(table.translateEntry(obfEntry), is(m_deobfTranslator.translateEntry(obfEntry)));
+			}
+			assertThat(table.translateEntry(newClass("none/g$a$a")), is(newClass("deobf/G_OuterClass$A_InnerClass$A_InnerInnerClass")));
+			
+			// entries outside the batch still get translated
+			assertThat(table.contains(newClass("none/b")), is(false));
+			assertThat(table.translateEntry(newClass("none/b")), is(newClass("deobf/B_BaseClass")));
+		}
+	}
+	
+	private void assertChange(MappingsChange change, MappingsChange.Kind kind, Entry obfEntry, String oldDeobfName, String newDeobfName) {
+		assertThat(change.getKind(), is(kind));
+		assertThat(change.getObfEntry(), is(obfEntry));
+		assertThat(change.getOldDeobfName(), is(oldDeobfName));
+		assertThat(change.getNewDeobfName(), is(newDeobfName));
+	}
+	
 	private void assertMapping(Entry obf, Entry deobf) {
 		assertThat(m_deobfTranslator.translateEntry(obf), is(deobf));
 		assertThat(m_obfTranslator.translateEntry(deobf), is(obf));
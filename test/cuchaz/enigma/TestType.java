@@ -240,4 +240,22 @@ public class TestType {
 		assertThat(new Type("[[[I").toString(), is("[[[I"));
 		assertThat(new Type("[LFoo;").toString(), is("[LFoo;"));
 	}
+	
+	@Test
+	public void parseEnd() {
+		String in = "(IJ[[ZLFoo;[LBar<LCow;>;TT;)V";
+		assertThat(Type.parseEnd(in, 1), is(2));
+		assertThat(Type.parseEnd(in, 2), is(3));
+		assertThat(Type.parseEnd(in, 3), is(6));
+		assertThat(Type.parseEnd(in, 6), is(11));
+		assertThat(Type.parseEnd(in, 11), is(24));
+		assertThat(Type.parseEnd(in, 24), is(27));
+		assertThat(Type.parseEnd(in, 28), is(29));
+		assertThat(Type.parseFirst(in.substring(6)), is("LFoo;"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void parseEndUnterminated() {
+		Type.parseEnd("(LFoo", 1);
+	}
 }